@@ -0,0 +1,481 @@
+package main.rice;
+
+import main.rice.basegen.BaseSetGenerator;
+import main.rice.concisegen.ConciseSetGenerator;
+import main.rice.concisegen.SignatureGroups;
+import main.rice.metrics.Metrics;
+import main.rice.parse.ConfigFile;
+import main.rice.parse.ConfigFileParser;
+import main.rice.parse.InvalidConfigException;
+import main.rice.test.*;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A long-running FEAT server, so that a stream of jobs only pays for JVM startup once,
+ * and jobs on the same reference solution and function reuse the Python workers that
+ * earlier jobs started. The daemon listens on the loopback interface only. Each
+ * connection carries any number of job frames, each of which is answered by a response
+ * frame; frames are the same length-prefixed frames used by PythonWorker.
+ *
+ * A job is a JSON object holding the paths to a config file ("config"), a directory of
+ * buggy implementations ("impls") and a reference solution ("solution"), and optionally
+ * "lazy": true to compute the results of testing lazily, as with Main's --lazy. Its
+ * response holds the concise test set as a list of arguments encoded by
+ * ArgEncoder.encodeArgs() ("tests"), or an error message ("error").
+ *
+ * Jobs from every connection are queued and run a fixed number at a time. Across jobs,
+ * the daemon keeps each parsed config file and the base set generated from it (until the
+ * config file changes), and shares a result cache, an expected results store and a
+ * bytecode cache kept in its state directory. Jobs run in ZYGOTE mode, so they require a
+ * platform that supports os.fork(). For each reference solution and function, the
+ * daemon keeps a workspace: a scratch directory and a pool of workers, which are kept
+ * alive from one job to the next for as long as the implementations stay the same. A
+ * job whose workspace is in use by another job runs in a scratch directory and with
+ * workers of its own instead, so jobs on the same files can still run at once.
+ */
+public class Daemon implements Closeable {
+
+    /**
+     * The socket on which the daemon accepts connections.
+     */
+    private final ServerSocket server;
+
+    /**
+     * The threads that serve each connection.
+     */
+    private final ExecutorService connections = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "feat-daemon");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The queue of jobs, and the threads that run them.
+     */
+    private final ExecutorService jobs;
+
+    /**
+     * The connections that are currently open.
+     */
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The parsed config files and their base sets, by the absolute path, modification
+     * time and size of the config file.
+     */
+    private final Map<String, PreparedConfig> configs = new ConcurrentHashMap<>();
+
+    /**
+     * The cache of outcomes shared by every job.
+     */
+    private final ResultCache cache;
+
+    /**
+     * The store of expected results shared by every job.
+     */
+    private final ExpectedResultsStore expectedStore;
+
+    /**
+     * The bytecode cache directory shared by every job.
+     */
+    private final String pycacheDir;
+
+    /**
+     * The workspaces kept across jobs, by the absolute path of the reference solution
+     * and the name of the function under test.
+     */
+    private final Map<String, Workspace> workspaces = new ConcurrentHashMap<>();
+
+    /**
+     * The most workers that a job keeps alive at once, so that a large directory of
+     * implementations does not keep a process alive for every one of them.
+     */
+    private static final int MAX_WORKERS = 64;
+
+    /**
+     * Constructor for a Daemon; binds to the input port on the loopback interface, and
+     * opens (or creates) its caches in the input state directory.
+     *
+     * @param port     the port to listen on; 0 to pick any free port
+     * @param stateDir the directory to keep the caches shared across jobs in
+     * @param numJobs  the number of jobs to run at once
+     * @throws IOException if the port cannot be bound or the caches cannot be opened
+     */
+    public Daemon(int port, String stateDir, int numJobs) throws IOException {
+        if (numJobs < 1) {
+            throw new IllegalArgumentException("numJobs must be positive");
+        }
+        Path state = Paths.get(stateDir);
+        Files.createDirectories(state);
+        this.cache = new ResultCache(state.resolve("results.cache").toString());
+        this.expectedStore = new ExpectedResultsStore(
+                state.resolve("expected.store").toString());
+        this.pycacheDir = state.resolve("pycache").toString();
+        this.jobs = Executors.newFixedThreadPool(numJobs, task -> {
+            Thread thread = new Thread(task, "feat-daemon-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Returns the port the daemon is listening on.
+     *
+     * @return the port the daemon is listening on
+     */
+    public int getPort() {
+        return this.server.getLocalPort();
+    }
+
+    /**
+     * Starts accepting connections on a background thread.
+     */
+    public void start() {
+        this.connections.submit(this::run);
+    }
+
+    /**
+     * Accepts connections until the daemon is closed.
+     */
+    public void run() {
+        while (!this.server.isClosed()) {
+            try {
+                Socket socket = this.server.accept();
+                this.open.add(socket);
+                this.connections.submit(() -> this.serve(socket));
+            } catch (IOException e) {
+                // The server socket was closed
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections, abandons any jobs in progress or in the queue, shuts
+     * down the workers kept across jobs and deletes their workspaces, and closes the
+     * shared caches.
+     *
+     * @throws IOException if the shared caches cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.server.close();
+        } catch (IOException e) {
+            // There is nothing more to do about a socket that will not close
+        }
+        for (Socket socket : this.open) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Likewise
+            }
+        }
+        this.connections.shutdownNow();
+        this.jobs.shutdownNow();
+        try {
+            this.jobs.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            for (Workspace workspace : this.workspaces.values()) {
+                workspace.close();
+            }
+        } finally {
+            try {
+                this.cache.close();
+            } finally {
+                this.expectedStore.close();
+            }
+        }
+    }
+
+    /**
+     * Serves every job sent over a single connection, one at a time.
+     *
+     * @param socket the connection
+     */
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            while (true) {
+                String frame;
+                try {
+                    frame = PythonWorker.readFrame(in);
+                } catch (EOFException e) {
+                    return;
+                }
+
+                JSONObject response = new JSONObject();
+                try {
+                    JSONObject request = new JSONObject(frame);
+                    Future<JSONArray> job = this.jobs.submit(() -> this.runJob(request));
+                    response.put("tests", job.get());
+                } catch (ExecutionException e) {
+                    response.put("error", String.valueOf(e.getCause().getMessage()));
+                } catch (JSONException e) {
+                    response.put("error", String.valueOf(e.getMessage()));
+                }
+                PythonWorker.writeFrame(out, response.toString());
+            }
+        } catch (IOException | InterruptedException | RejectedExecutionException e) {
+            // The client went away, or the daemon is shutting down
+        } finally {
+            this.open.remove(socket);
+        }
+    }
+
+    /**
+     * Runs a single job from start to finish.
+     *
+     * @param request the request describing the job
+     * @return the concise test set, as a list of encoded arguments
+     * @throws IOException if any of the paths are invalid
+     * @throws InvalidConfigException if the config file is invalid
+     * @throws InterruptedException if interrupted while running the job
+     */
+    private JSONArray runJob(JSONObject request)
+            throws IOException, InvalidConfigException, InterruptedException {
+        long start = Metrics.startTimer();
+        PreparedConfig prepared = this.prepare(request.getString("config"));
+        String funcName = prepared.config.getFuncName();
+        String solution = request.getString("solution");
+        String impls = request.getString("impls");
+        List<Path> files = listFiles(impls);
+        Workspace workspace = this.workspaces.computeIfAbsent(
+                Paths.get(solution).toAbsolutePath().normalize() + "\n" + funcName,
+                k -> new Workspace());
+
+        // A job that finds its workspace in use runs cold rather than waiting for it
+        boolean warm = workspace.lock.tryLock();
+        Set<TestCase> concise;
+        try (Tester tester = new Tester(funcName, solution, impls, prepared.baseSet)) {
+            tester.setExecutionMode(ExecutionMode.ZYGOTE);
+            tester.setNumWorkers(Math.max(1, Math.min(files.size(), MAX_WORKERS)));
+            tester.setBytecodeCache(this.pycacheDir);
+            if (warm) {
+                workspace.attach(tester, impls, files);
+            } else {
+                tester.setScratchRoot(Tester.getDefaultScratchRoot());
+            }
+            tester.setResultCache(this.cache);
+            tester.setExpectedResultsStore(this.expectedStore);
+            tester.computeExpectedResults();
+            if (request.optBoolean("lazy")) {
+                try (KillOracle oracle = tester.createKillOracle()) {
+                    concise = ConciseSetGenerator.setCover(oracle);
+                }
+            } else {
+                concise = ConciseSetGenerator.setCover(
+                        new SignatureGroups(tester.runTests()));
+            }
+        } finally {
+            if (warm) {
+                workspace.lock.unlock();
+            }
+        }
+
+        JSONArray tests = new JSONArray();
+        for (TestCase test : concise) {
+            tests.put(ArgEncoder.encodeArgs(test));
+        }
+        Metrics.increment("feat_daemon_jobs_total", 1);
+        Metrics.observeSince("feat_daemon_job_seconds", start);
+        return tests;
+    }
+
+    /**
+     * Returns the parsed config file at the input path along with its base set, parsing
+     * and generating them only if the file has changed since they were last used.
+     *
+     * @param configPath the path to the config file
+     * @return the parsed config file and its base set
+     * @throws IOException if the config file cannot be read
+     * @throws InvalidConfigException if the config file is invalid
+     */
+    private PreparedConfig prepare(String configPath)
+            throws IOException, InvalidConfigException {
+        Path path = Paths.get(configPath).toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path,
+                BasicFileAttributes.class);
+        String key = path + "\n" + attributes.lastModifiedTime().toMillis() + "\n"
+                + attributes.size();
+        PreparedConfig prepared = this.configs.get(key);
+        if (prepared != null) {
+            Metrics.increment("feat_daemon_config_hits_total", 1);
+            return prepared;
+        }
+
+        // Forget any earlier version of the same file
+        this.configs.keySet().removeIf(k -> k.startsWith(path + "\n"));
+        ConfigFileParser parser = new ConfigFileParser();
+        ConfigFile config = parser.parse(parser.readFile(path.toString()));
+        List<TestCase> baseSet = new BaseSetGenerator(config.getNodes(),
+                config.getNumRand()).genBaseSet();
+        prepared = new PreparedConfig(config, List.copyOf(baseSet));
+        this.configs.put(key, prepared);
+        return prepared;
+    }
+
+    /**
+     * Lists the regular files directly within the input directory, in order of name.
+     *
+     * @param dir the path to the directory
+     * @return the files within the directory
+     * @throws IOException if the directory cannot be read
+     */
+    private static List<Path> listFiles(String dir) throws IOException {
+        try (var list = Files.list(Paths.get(dir))) {
+            return list.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+
+    /**
+     * Runs a daemon until the process is killed.
+     *
+     * @param args the port to listen on, the state directory, and optionally the number
+     *             of jobs to run at once (1 by default)
+     * @throws IOException if the port cannot be bound or the caches cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        int numJobs = (args.length > 2) ? Integer.parseInt(args[2]) : 1;
+        try (Daemon daemon = new Daemon(Integer.parseInt(args[0]), args[1], numJobs)) {
+            System.out.println("Listening on port " + daemon.getPort());
+            daemon.run();
+        }
+    }
+
+    /**
+     * A scratch directory and a pool of workers started in it, kept across the jobs on
+     * a single reference solution and function; a job must hold the lock to use it.
+     */
+    private static class Workspace implements Closeable {
+
+        /**
+         * The lock held by the job that is using the workspace.
+         */
+        final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * The scratch directory, created by the first job to use the workspace.
+         */
+        Path dir = null;
+
+        /**
+         * The pool of workers; null until the first job has created it.
+         */
+        WorkerPool pool = null;
+
+        /**
+         * The hash of the directory of implementations that the workers were started
+         * on, and of its contents.
+         */
+        String fingerprint = null;
+
+        /**
+         * Makes the input Tester work in this workspace, handing it the pool of workers
+         * left behind by the previous job if it tested the same implementations, and a
+         * fresh one (which later jobs may then reuse) otherwise. The caller must hold
+         * the lock.
+         *
+         * @param tester the Tester for the job
+         * @param impls  the path to the directory of buggy implementations
+         * @param files  the files within that directory
+         * @throws IOException if the scratch directory cannot be created, or an
+         *                     implementation cannot be read
+         */
+        void attach(Tester tester, String impls, List<Path> files) throws IOException {
+            if (this.dir == null) {
+                Path root = Paths.get(Tester.getDefaultScratchRoot());
+                Files.createDirectories(root);
+                this.dir = Files.createTempDirectory(root, "feat-daemon-");
+            }
+            tester.setScratchDir(this.dir.toString());
+
+            // Workers import their implementation once, so they can only be reused on
+            // the very same files; the expected results they reload themselves
+            StringBuilder sb = new StringBuilder(
+                    Paths.get(impls).toAbsolutePath().normalize().toString());
+            for (Path file : files) {
+                sb.append('\n').append(file.getFileName()).append(' ')
+                        .append(ResultCache.hash(Files.readAllBytes(file)));
+            }
+            String fingerprint = ResultCache.hash(
+                    sb.toString().getBytes(StandardCharsets.UTF_8));
+            if (!fingerprint.equals(this.fingerprint)) {
+                if (this.pool != null) {
+                    this.pool.close();
+                }
+                this.pool = tester.createWorkerPool();
+                this.fingerprint = fingerprint;
+                Metrics.increment("feat_daemon_workspace_resets_total", 1);
+            }
+            tester.setWorkerPool(this.pool);
+        }
+
+        /**
+         * Shuts down the workers, and deletes the scratch directory.
+         *
+         * @throws IOException if the scratch directory cannot be deleted
+         */
+        @Override
+        public void close() throws IOException {
+            if (this.pool != null) {
+                this.pool.close();
+            }
+            if (this.dir == null) {
+                return;
+            }
+            try (var paths = Files.walk(this.dir)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * A parsed config file along with the base set generated from it.
+     */
+    private static class PreparedConfig {
+
+        /**
+         * The parsed config file.
+         */
+        final ConfigFile config;
+
+        /**
+         * The base set generated from the config file.
+         */
+        final List<TestCase> baseSet;
+
+        /**
+         * Constructor for a PreparedConfig.
+         *
+         * @param config  the parsed config file
+         * @param baseSet the base set generated from the config file
+         */
+        PreparedConfig(ConfigFile config, List<TestCase> baseSet) {
+            this.config = config;
+            this.baseSet = baseSet;
+        }
+    }
+}
@@ -4,11 +4,14 @@ package main.rice;
 
 import main.rice.basegen.BaseSetGenerator;
 import main.rice.concisegen.ConciseSetGenerator;
+import main.rice.concisegen.SignatureGroups;
+import main.rice.metrics.Metrics;
 import main.rice.node.APyNode;
 import main.rice.parse.*;
 import main.rice.test.*;
 
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.util.*;
 
 /**
@@ -18,7 +21,25 @@ public class Main{
     /**
      * Using these arguments, main() should delegate to generateTests() (described below) in order to
      * compute the concise test set.
-     * @param args input a String[] that should contain three arguments
+     * @param args input a String[] that should contain three arguments, optionally
+     *             followed by --lazy, --cache=[path to a result cache file],
+     *             --expected-cache=[path to an expected results store file],
+     *             --agents=[comma-separated host:port list of WorkerAgents, which
+     *             share the secret in the FEAT_AGENT_SECRET environment variable],
+     *             --metrics=[path prefix of the .json and .prom metrics reports],
+     *             --progress, which prints progress to stderr as each implementation
+     *             finishes, --journal=[path to a journal file to resume from],
+     *             --no-dedupe, which runs every implementation even if its source is
+     *             equivalent to another's, --signatures, which prints to stderr which
+     *             implementations fail exactly the same test cases, --scratch or
+     *             --scratch=[directory to create a scratch directory in], which leaves
+     *             the input files untouched, --pycache=[path to a bytecode cache
+     *             directory shared across runs], which requires --scratch,
+     *             --matrix=[path to a kill matrix file to write the results of testing
+     *             to, which then stays off the heap unless --signatures is given too],
+     *             and/or --adaptive, which runs implementations concurrently, tuning
+     *             how many run at once (up to twice the number of CPUs) to the load on
+     *             the machine
      * @throws IOException
      * @throws InvalidConfigException
      * @throws InterruptedException
@@ -44,6 +65,15 @@ public class Main{
         String buggyPath = args[1];
         String referPath = args[2];
 
+        // With --metrics, time this run alone and write out the reports at the end
+        String metricsPrefix = null;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].startsWith("--metrics=")) {
+                metricsPrefix = args[i].substring("--metrics=".length());
+                Metrics.reset();
+            }
+        }
+
         ConfigFileParser parser = new ConfigFileParser();
         String content = parser.readFile(configPath);
         ConfigFile file = parser.parse(content);
@@ -55,9 +85,96 @@ public class Main{
         BaseSetGenerator generator = new BaseSetGenerator(nodes, numRand);
         List<TestCase> testCases = generator.genBaseSet();
         Tester tester = new Tester(funcName, referPath, buggyPath, testCases);
-        tester.computeExpectedResults();
-        TestResults testResults = tester.runTests();
-        return ConciseSetGenerator.setCover(testResults);
+
+        // Parse the optional flags that follow the three paths
+        boolean lazy = false;
+        boolean signatures = false;
+        ResultCache cache = null;
+        ExpectedResultsStore expectedStore = null;
+        Journal journal = null;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].equals("--lazy")) {
+                lazy = true;
+            } else if (args[i].startsWith("--cache=")) {
+                cache = new ResultCache(args[i].substring("--cache=".length()));
+                tester.setResultCache(cache);
+            } else if (args[i].startsWith("--expected-cache=")) {
+                expectedStore = new ExpectedResultsStore(
+                        args[i].substring("--expected-cache=".length()));
+                tester.setExpectedResultsStore(expectedStore);
+            } else if (args[i].startsWith("--agents=")) {
+                List<InetSocketAddress> agents = new ArrayList<>();
+                for (String agent : args[i].substring("--agents=".length()).split(",")) {
+                    int colon = agent.lastIndexOf(':');
+                    agents.add(new InetSocketAddress(agent.substring(0, colon),
+                            Integer.parseInt(agent.substring(colon + 1))));
+                }
+                tester.setAgents(agents, 1, System.getenv(WorkerAgent.SECRET_ENV));
+            } else if (args[i].startsWith("--journal=")) {
+                journal = new Journal(args[i].substring("--journal=".length()));
+                tester.setJournal(journal);
+            } else if (args[i].equals("--scratch")) {
+                tester.setScratchRoot(Tester.getDefaultScratchRoot());
+            } else if (args[i].startsWith("--scratch=")) {
+                tester.setScratchRoot(args[i].substring("--scratch=".length()));
+            } else if (args[i].startsWith("--pycache=")) {
+                tester.setBytecodeCache(args[i].substring("--pycache=".length()));
+            } else if (args[i].startsWith("--matrix=")) {
+                tester.setKillMatrixFile(args[i].substring("--matrix=".length()));
+            } else if (args[i].equals("--adaptive")) {
+                tester.setParallelism(2 * Runtime.getRuntime().availableProcessors());
+                tester.setAdaptiveConcurrency(true);
+            } else if (args[i].equals("--signatures")) {
+                signatures = true;
+            } else if (args[i].equals("--no-dedupe")) {
+                tester.setDeduplicate(false);
+            } else if (args[i].equals("--progress")) {
+                tester.setTestListener(new TestListener() {
+                    @Override
+                    public void implementationFinished(int fileIndex, String filename,
+                                                       Outcome[] outcomes,
+                                                       Progress progress) {
+                        System.err.println(filename + ": " + progress);
+                    }
+                });
+            }
+        }
+
+        try {
+            tester.computeExpectedResults();
+
+            // With --lazy, only run the tests that the set cover actually needs to look at
+            if (lazy) {
+                try (KillOracle oracle = tester.createKillOracle()) {
+                    return ConciseSetGenerator.setCover(oracle);
+                }
+            }
+            // A matrix kept in a file is covered straight from the file, since grouping
+            // the files by signature would read the whole matrix onto the heap
+            TestResults results = tester.runTests();
+            if (results.getKillMatrixFile() != null && !signatures) {
+                return ConciseSetGenerator.setCover(results);
+            }
+            SignatureGroups groups = new SignatureGroups(results);
+            if (signatures) {
+                System.err.print(groups);
+            }
+            return ConciseSetGenerator.setCover(groups);
+        } finally {
+            tester.close();
+            if (cache != null) {
+                cache.close();
+            }
+            if (expectedStore != null) {
+                expectedStore.close();
+            }
+            if (journal != null) {
+                journal.close();
+            }
+            if (metricsPrefix != null) {
+                Metrics.write(metricsPrefix);
+            }
+        }
     }
 
 }
\ No newline at end of file
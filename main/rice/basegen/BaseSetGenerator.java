@@ -1,5 +1,6 @@
 package main.rice.basegen;
 
+import main.rice.metrics.Metrics;
 import main.rice.node.APyNode;
 import main.rice.obj.APyObj;
 import main.rice.test.TestCase;
@@ -48,8 +49,11 @@ public class BaseSetGenerator {
      * @return the base test set (as a List, so that we can use indices in the Tester)
      */
     public List<TestCase> genBaseSet() {
+        long start = Metrics.startTimer();
         this.baseSet = this.genExTests();
         this.genRandTests();
+        Metrics.observeSince("feat_base_set_seconds", start);
+        Metrics.set("feat_base_set_size", this.baseSet.size());
 
         // Convert to a list so that we can use indices in testing
         return new ArrayList<>(this.baseSet);
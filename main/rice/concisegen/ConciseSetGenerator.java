@@ -1,12 +1,13 @@
 package main.rice.concisegen;
 
+import main.rice.metrics.Metrics;
+import main.rice.test.KillMatrixFile;
+import main.rice.test.KillOracle;
 import main.rice.test.TestCase;
 import main.rice.test.TestResults;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.io.IOException;
+import java.util.*;
 
 /**
  * Stateless class that is a wrapper for a greedy approximation of the set cover
@@ -16,59 +17,391 @@ import java.util.Set;
  */
 public class ConciseSetGenerator {
 
+    /**
+     * The number of files that the lazy setCover() runs a test case on at a time.
+     */
+    static final int LAZY_CHUNK_SIZE = 16;
+
     /**
      * A greedy approximation of the set cover algorithm. Given a set of incorrect
      * implementations (S), a set of test cases (B), and list "mapping" each test case
      * (index i) to the set of implementations (Si) that it caught -- all contained within
      * results --, finds an approximately minimal subset of B (M) such that all of the
-     * incorrect implementations are caught by at least one element in M.
+     * incorrect implementations are caught by at least one element in M. Results backed
+     * by a kill matrix file are covered straight from the file, so that the matrix never
+     * has to be read onto the heap.
      *
      * @param results the results of running all tests in B on all files in S
      * @return M, a set of test cases that is an approximately minimal set covering
      */
     public static Set<TestCase> setCover(TestResults results) {
+        KillMatrixFile matrixFile = results.getKillMatrixFile();
+        if (matrixFile != null) {
+            List<TestCase> tests = new ArrayList<>();
+            for (int caseIndex = 0; caseIndex < matrixFile.getNumCases(); caseIndex++) {
+                tests.add(results.getTestCase(caseIndex));
+            }
+            return setCover(matrixFile, tests);
+        }
+        return setCover(new SignatureGroups(results));
+    }
+
+    /**
+     * The same greedy approximation of the set cover algorithm as above, but run on the
+     * results of testing with behaviorally identical files already collapsed into one
+     * representative per group. Each representative counts for as many files as it
+     * stands for, so the result is the same set of test cases that setCover() would
+     * select given the original results.
+     *
+     * @param groups the results of running all tests in B on all files in S, grouped by
+     *               failure signature
+     * @return M, a set of test cases that is an approximately minimal set covering
+     */
+    public static Set<TestCase> setCover(SignatureGroups groups) {
+        long start = Metrics.startTimer();
 
         // Initialize the structure to return
         HashSet<TestCase> hittingSet = new HashSet<>();
 
-        // We'll be mutating both caseToFiles and wrongSet, so make copies
-        List<Set<Integer>> caseToFiles = new ArrayList<>();
-        for (Set<Integer> set : results.getCaseToFiles()) {
-            caseToFiles.add(new HashSet<>(set));
+        // Number the representatives densely and lay the reduced results out as bitsets,
+        // both by test case and by group, so that covering a group only has to touch
+        // the test cases that caught it; keep track of how many files the representatives
+        // caught by each test case stand for
+        List<Integer> representatives = new ArrayList<>(groups.getRepresentatives());
+        Map<Integer, Integer> positions = new HashMap<>();
+        int[] weights = new int[representatives.size()];
+        List<BitSet> groupToCases = new ArrayList<>();
+        for (int representative : representatives) {
+            weights[positions.size()] = groups.getMembers(representative).size();
+            positions.put(representative, positions.size());
+            groupToCases.add(new BitSet());
+        }
+        List<BitSet> caseToGroups = new ArrayList<>();
+        int[] filesCaught = new int[groups.getCaseToGroups().size()];
+        for (Set<Integer> set : groups.getCaseToGroups()) {
+            BitSet caught = new BitSet(representatives.size());
+            for (int representative : set) {
+                int position = positions.get(representative);
+                caught.set(position);
+                groupToCases.get(position).set(caseToGroups.size());
+                filesCaught[caseToGroups.size()] += weights[position];
+            }
+            caseToGroups.add(caught);
+        }
+        BitSet wrongGroups = new BitSet(representatives.size());
+        for (int representative : groups.getWrongGroups()) {
+            wrongGroups.set(positions.get(representative));
         }
-        Set<Integer> wrongSet = new HashSet<>(results.getWrongSet());
+        BitSet uncovered = new BitSet(representatives.size());
+        uncovered.set(0, representatives.size());
+        Metrics.set("feat_signature_groups", groups.getRepresentatives().size());
 
         // Select tests until we've "covered" every program that was initially in the
         // wrong set
-        while (wrongSet.size() > 0) {
+        while (!wrongGroups.isEmpty()) {
+            int maxFilesCaught = 0;
+            int caseOfMaxFiles = -1;
+
+            // Find the test case that covers the most heretofore-uncovered files
+            for (int caseIndex = 0; caseIndex < caseToGroups.size(); caseIndex++) {
+                if (filesCaught[caseIndex] > maxFilesCaught) {
+                    maxFilesCaught = filesCaught[caseIndex];
+                    caseOfMaxFiles = caseIndex;
+                }
+            }
+
+            // Remove all newly-covered groups from wrongGroups
+            BitSet coveredGroups = (BitSet) caseToGroups.get(caseOfMaxFiles).clone();
+            coveredGroups.and(uncovered);
+            uncovered.andNot(coveredGroups);
+            wrongGroups.andNot(coveredGroups);
+
+            // Update the counts such that the files caught by each test no longer include
+            // the newly-covered groups
+            for (int position = coveredGroups.nextSetBit(0); position >= 0;
+                 position = coveredGroups.nextSetBit(position + 1)) {
+                BitSet cases = groupToCases.get(position);
+                for (int caseIndex = cases.nextSetBit(0); caseIndex >= 0;
+                     caseIndex = cases.nextSetBit(caseIndex + 1)) {
+                    filesCaught[caseIndex] -= weights[position];
+                }
+            }
+
+            // Add the selected test case to the hitting set
+            hittingSet.add(groups.getTestCase(caseOfMaxFiles));
+        }
+
+        // Return the hitting set
+        Metrics.observeSince("feat_set_cover_seconds", start);
+        Metrics.set("feat_concise_set_size", hittingSet.size());
+        return hittingSet;
+    }
+
+    /**
+     * The same greedy approximation of the set cover algorithm as above, but run directly
+     * on a kill matrix file, so that a matrix larger than the heap never has to be read
+     * into memory as a whole; only a bitset of the uncovered files and a count per test
+     * case are kept. The wrong set is made up of every file that some test case caught,
+     * as it is for the results of runTests(), so the result is the same set of test
+     * cases that setCover() would select given those results (other than that every
+     * string argument is decoded as a PyStringObj).
+     *
+     * @param matrix the results of running all tests in B on all files in S
+     * @return M, a set of test cases that is an approximately minimal set covering
+     */
+    public static Set<TestCase> setCover(KillMatrixFile matrix) {
+        List<TestCase> tests = new ArrayList<>();
+        for (int caseIndex = 0; caseIndex < matrix.getNumCases(); caseIndex++) {
+            tests.add(matrix.getTestCase(caseIndex));
+        }
+        return setCover(matrix, tests);
+    }
+
+    /**
+     * The same as setCover(KillMatrixFile), but returning the test cases from the input
+     * list, rather than decoding them from the file, so that they are exactly the test
+     * cases that were run.
+     *
+     * @param matrix the results of running all tests in B on all files in S
+     * @param tests  the test cases, where the i-th one is the i-th row of the matrix
+     * @return M, a set of test cases that is an approximately minimal set covering
+     */
+    public static Set<TestCase> setCover(KillMatrixFile matrix, List<TestCase> tests) {
+        if (tests.size() != matrix.getNumCases()) {
+            throw new IllegalArgumentException("tests must match the rows of the matrix");
+        }
+        long start = Metrics.startTimer();
+
+        // Initialize the structure to return
+        HashSet<TestCase> hittingSet = new HashSet<>();
+
+        // Count the files caught by each test case, and collect every caught file into
+        // the set of files that remain to be covered
+        int numCases = matrix.getNumCases();
+        int rowWords = matrix.getRowWords();
+        long[] uncovered = new long[rowWords];
+        int[] filesCaught = new int[numCases];
+        for (int caseIndex = 0; caseIndex < numCases; caseIndex++) {
+            for (int wordIndex = 0; wordIndex < rowWords; wordIndex++) {
+                long word = matrix.getWord(caseIndex, wordIndex);
+                uncovered[wordIndex] |= word;
+                filesCaught[caseIndex] += Long.bitCount(word);
+            }
+        }
+        int numUncovered = 0;
+        for (long word : uncovered) {
+            numUncovered += Long.bitCount(word);
+        }
+
+        // Select tests until we've "covered" every program that any test case catches
+        long[] covered = new long[rowWords];
+        while (numUncovered > 0) {
             int maxFilesCaught = 0;
             int caseOfMaxFiles = -1;
 
             // Find the test case that covers the most heretofore-uncovered files
-            for (int caseIndex = 0; caseIndex < caseToFiles.size(); caseIndex++) {
-                Set<Integer> filesCaught = caseToFiles.get(caseIndex);
-                if (filesCaught.size() > maxFilesCaught) {
-                    maxFilesCaught = filesCaught.size();
+            for (int caseIndex = 0; caseIndex < numCases; caseIndex++) {
+                if (filesCaught[caseIndex] > maxFilesCaught) {
+                    maxFilesCaught = filesCaught[caseIndex];
                     caseOfMaxFiles = caseIndex;
                 }
             }
 
-            // Remove all covered files from the wrongSet
-            HashSet<Integer> coveredFiles =
-                new HashSet<>(caseToFiles.get(caseOfMaxFiles));
-            wrongSet.removeAll(coveredFiles);
+            // Remove all newly-covered files from the uncovered set
+            for (int wordIndex = 0; wordIndex < rowWords; wordIndex++) {
+                covered[wordIndex] = matrix.getWord(caseOfMaxFiles, wordIndex)
+                        & uncovered[wordIndex];
+                uncovered[wordIndex] &= ~covered[wordIndex];
+                numUncovered -= Long.bitCount(covered[wordIndex]);
+            }
 
-            // Update the caseToFiles mapping such that the set of files caught by each
-            // test no longer includes the newly-covered files
-            for (Set<Integer> filesCaught : caseToFiles) {
-                filesCaught.removeAll(coveredFiles);
+            // Update the counts such that the files caught by each test no longer include
+            // the newly-covered files
+            for (int caseIndex = 0; caseIndex < numCases; caseIndex++) {
+                for (int wordIndex = 0; wordIndex < rowWords && filesCaught[caseIndex] > 0;
+                     wordIndex++) {
+                    if (covered[wordIndex] != 0) {
+                        filesCaught[caseIndex] -= Long.bitCount(
+                                matrix.getWord(caseIndex, wordIndex) & covered[wordIndex]);
+                    }
+                }
             }
 
             // Add the selected test case to the hitting set
-            hittingSet.add(results.getTestCase(caseOfMaxFiles));
+            hittingSet.add(tests.get(caseOfMaxFiles));
         }
 
         // Return the hitting set
+        Metrics.observeSince("feat_set_cover_seconds", start);
+        Metrics.set("feat_concise_set_size", hittingSet.size());
         return hittingSet;
     }
-}
\ No newline at end of file
+
+    /**
+     * The same greedy approximation of the set cover algorithm as above, but computing
+     * the results of testing on demand rather than requiring all of them up front. Each
+     * round only needs the test case that catches the most uncovered files. A test case
+     * can catch at most the uncovered files it has caught so far plus the uncovered
+     * files it has yet to be run on, and that bound can only shrink as the test case is
+     * run on more files and as files are covered. Test cases are considered in order of
+     * their bounds; the one at the top is run on its next chunk of uncovered files
+     * (LAZY_CHUNK_SIZE of them), which tightens its bound, until some test case whose
+     * bound is exact reaches the top and wins the round. So a test case stops being run
+     * as soon as its bound drops below another test case's exact count, and is never run
+     * on files that another test case has already covered.
+     *
+     * If the oracle prefers running several test cases on a file at once (e.g. in a
+     * single process), the runners-up that could still win the round are run on their
+     * next chunks along with the test case at the top, up to the oracle's batch width.
+     *
+     * Ties are broken in favor of the test case with the lowest index, exactly as above,
+     * so the result is the same set of test cases that setCover() would select given
+     * the full results of testing.
+     *
+     * @param oracle the source of the results of running each test in B on each file
+     * @return M, a set of test cases that is an approximately minimal set covering
+     * @throws IOException if a test case cannot be run
+     * @throws InterruptedException if interrupted while running a test case
+     */
+    public static Set<TestCase> setCover(KillOracle oracle)
+            throws IOException, InterruptedException {
+        long start = Metrics.startTimer();
+
+        // Initialize the structure to return
+        HashSet<TestCase> hittingSet = new HashSet<>();
+
+        // Every file might turn out to be wrong until every test case has passed it
+        int numFiles = oracle.getNumFiles();
+        BitSet uncovered = new BitSet(numFiles);
+        uncovered.set(0, numFiles);
+
+        // For each test case, keep track of the files it has already been run on, the
+        // files it caught, and an upper bound on the number of uncovered files it catches
+        int numCases = oracle.getNumCases();
+        BitSet[] evaluated = new BitSet[numCases];
+        BitSet[] caught = new BitSet[numCases];
+        int[] bounds = new int[numCases];
+        long[] fileRuns = new long[numFiles];
+        long[] fileCatches = new long[numFiles];
+        PriorityQueue<Integer> candidates = new PriorityQueue<>((a, b) ->
+                bounds[a] != bounds[b] ? Integer.compare(bounds[b], bounds[a])
+                        : Integer.compare(a, b));
+        for (int caseIndex = 0; caseIndex < numCases; caseIndex++) {
+            evaluated[caseIndex] = new BitSet(numFiles);
+            caught[caseIndex] = new BitSet(numFiles);
+            bounds[caseIndex] = numFiles;
+            candidates.add(caseIndex);
+        }
+
+        // Select tests until we've "covered" every program that any test case catches
+        int width = Math.max(1, oracle.getBatchWidth());
+        while (!uncovered.isEmpty() && !candidates.isEmpty()) {
+            // Take the test cases with the highest bounds, up to the first one whose
+            // bound is exact; a test case whose bound has shrunk since it was queued goes
+            // back into the queue with its new bound, or is dropped if it is 0
+            List<Integer> step = new ArrayList<>();
+            int winner = -1;
+            while (step.size() < width && !candidates.isEmpty()) {
+                int caseIndex = candidates.poll();
+                int bound = getBound(caught[caseIndex], evaluated[caseIndex], uncovered);
+                if (bound < bounds[caseIndex]) {
+                    bounds[caseIndex] = bound;
+                    if (bound > 0) {
+                        candidates.add(caseIndex);
+                    }
+                } else if (isExact(evaluated[caseIndex], uncovered)) {
+                    // An exact bound at the top beats (or ties with a higher index)
+                    // every other bound, so this is the one that setCover() would pick
+                    if (step.isEmpty()) {
+                        winner = caseIndex;
+                    } else {
+                        candidates.add(caseIndex);
+                    }
+                    break;
+                } else {
+                    step.add(caseIndex);
+                }
+            }
+            if (winner >= 0) {
+                uncovered.andNot(caught[winner]);
+                hittingSet.add(oracle.getTestCase(winner));
+                continue;
+            }
+
+            // Run each of the test cases taken on its next chunk of uncovered files,
+            // grouping the cells by file. Files that have been caught least often so far
+            // go first: a file that nothing catches has to be run on every test case
+            // sooner or later, and lowers bounds the most in the meantime, while one that
+            // is easily caught is likely to be covered before it is needed
+            Comparator<Integer> byCatchRate = (a, b) -> {
+                int order = Long.compare(fileCatches[a] * (fileRuns[b] + 1),
+                        fileCatches[b] * (fileRuns[a] + 1));
+                return (order != 0) ? order : Integer.compare(a, b);
+            };
+            Map<Integer, Set<Integer>> cells = new TreeMap<>();
+            for (int caseIndex : step) {
+                BitSet pending = (BitSet) uncovered.clone();
+                pending.andNot(evaluated[caseIndex]);
+                List<Integer> chunk = pending.stream().boxed().sorted(byCatchRate)
+                        .limit(LAZY_CHUNK_SIZE).toList();
+                for (int fileIndex : chunk) {
+                    cells.computeIfAbsent(fileIndex, k -> new TreeSet<>()).add(caseIndex);
+                    evaluated[caseIndex].set(fileIndex);
+                    fileRuns[fileIndex]++;
+                }
+                Metrics.increment("feat_lazy_cells_total", chunk.size());
+            }
+            Map<Integer, Set<Integer>> results = oracle.getCaught(cells);
+            for (Map.Entry<Integer, Set<Integer>> entry : results.entrySet()) {
+                for (int caseIndex : entry.getValue()) {
+                    caught[caseIndex].set(entry.getKey());
+                    fileCatches[entry.getKey()]++;
+                }
+            }
+            for (int caseIndex : step) {
+                bounds[caseIndex] = getBound(caught[caseIndex], evaluated[caseIndex],
+                        uncovered);
+                if (bounds[caseIndex] > 0) {
+                    candidates.add(caseIndex);
+                }
+            }
+        }
+
+        // Return the hitting set
+        Metrics.observeSince("feat_set_cover_seconds", start);
+        Metrics.set("feat_concise_set_size", hittingSet.size());
+        return hittingSet;
+    }
+
+    /**
+     * Computes an upper bound on the number of uncovered files that a test case catches:
+     * the uncovered files it has caught so far, plus the uncovered files it has yet to be
+     * run on.
+     *
+     * @param caught    the files that the test case caught
+     * @param evaluated the files that the test case has been run on
+     * @param uncovered the files that remain uncovered
+     * @return the upper bound, which is exact if the test case has been run on every
+     * uncovered file
+     */
+    private static int getBound(BitSet caught, BitSet evaluated, BitSet uncovered) {
+        BitSet live = (BitSet) caught.clone();
+        live.and(uncovered);
+        BitSet pending = (BitSet) uncovered.clone();
+        pending.andNot(evaluated);
+        return live.cardinality() + pending.cardinality();
+    }
+
+    /**
+     * Returns whether a test case has been run on every uncovered file.
+     *
+     * @param evaluated the files that the test case has been run on
+     * @param uncovered the files that remain uncovered
+     * @return true if the test case's bound is exact; false otherwise
+     */
+    private static boolean isExact(BitSet evaluated, BitSet uncovered) {
+        BitSet pending = (BitSet) uncovered.clone();
+        pending.andNot(evaluated);
+        return pending.isEmpty();
+    }
+}
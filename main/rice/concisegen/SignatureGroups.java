@@ -0,0 +1,161 @@
+package main.rice.concisegen;
+
+import main.rice.test.KillMatrix;
+import main.rice.test.TestCase;
+import main.rice.test.TestResults;
+
+import java.util.*;
+
+/**
+ * The results of testing with every group of behaviorally identical files collapsed into
+ * a single representative. Two files are behaviorally identical if they have the same
+ * failure signature, i.e., they are caught by exactly the same test cases (and are both
+ * in the wrong set, or both not). Any cover of the representatives covers the original
+ * files too, so the set cover can run on this (usually much smaller) instance instead;
+ * each representative is weighted by the number of files it stands for, so that the
+ * greedy algorithm makes the same choices that it would on the original instance.
+ */
+public class SignatureGroups {
+
+    /**
+     * The results of testing that the groups were built from.
+     */
+    private final TestResults results;
+
+    /**
+     * The files that each representative stands for (including itself), by
+     * representative; a group's representative is the file in it with the lowest index.
+     */
+    private final SortedMap<Integer, SortedSet<Integer>> groups = new TreeMap<>();
+
+    /**
+     * A list where the i-th element is the set of representatives caught by the i-th
+     * test case.
+     */
+    private final List<Set<Integer>> caseToGroups = new ArrayList<>();
+
+    /**
+     * The set of representatives whose files failed one or more test cases.
+     */
+    private final Set<Integer> wrongGroups = new HashSet<>();
+
+    /**
+     * Constructor for a SignatureGroups; groups the files in the input results by their
+     * failure signatures.
+     *
+     * @param results the results of running all tests in B on all files in S
+     */
+    public SignatureGroups(TestResults results) {
+        this.results = results;
+
+        // The signature of a file is its row of the kill matrix; the first file with each
+        // signature (in order of increasing file index) becomes the representative of
+        // its group. Files that no test case caught and that are not wrong take no part.
+        KillMatrix matrix = results.getKillMatrix();
+        Map<List<Object>, Integer> representatives = new HashMap<>();
+        for (int fileIndex = 0; fileIndex < matrix.getNumFiles(); fileIndex++) {
+            boolean wrong = results.getWrongSet().contains(fileIndex);
+            if (!wrong && matrix.countCases(fileIndex) == 0) {
+                continue;
+            }
+            BitSet signature = BitSet.valueOf(matrix.getFileRow(fileIndex));
+            int current = fileIndex;
+            int representative = representatives.computeIfAbsent(
+                    List.<Object>of(signature, wrong), k -> current);
+            this.groups.computeIfAbsent(representative, k -> new TreeSet<>())
+                    .add(fileIndex);
+            if (representative == fileIndex && wrong) {
+                this.wrongGroups.add(representative);
+            }
+        }
+
+        // Build the reduced results out of the representatives alone, by masking each
+        // test case's row of the kill matrix
+        BitSet mask = new BitSet(matrix.getNumFiles());
+        for (int representative : this.groups.keySet()) {
+            mask.set(representative);
+        }
+        for (int caseIndex = 0; caseIndex < matrix.getNumCases(); caseIndex++) {
+            BitSet caught = BitSet.valueOf(matrix.getCaseRow(caseIndex));
+            caught.and(mask);
+            Set<Integer> caughtGroups = new HashSet<>();
+            for (int fileIndex = caught.nextSetBit(0); fileIndex >= 0;
+                 fileIndex = caught.nextSetBit(fileIndex + 1)) {
+                caughtGroups.add(fileIndex);
+            }
+            this.caseToGroups.add(caughtGroups);
+        }
+    }
+
+    /**
+     * Returns the index-th test case of the original results.
+     *
+     * @param index the index of the test case to be returned
+     * @return the index-th test case, if index is valid; null otherwise
+     */
+    public TestCase getTestCase(int index) {
+        return this.results.getTestCase(index);
+    }
+
+    /**
+     * Returns the representatives of the groups, in increasing order.
+     *
+     * @return the representatives of the groups
+     */
+    public SortedSet<Integer> getRepresentatives() {
+        return Collections.unmodifiableSortedSet(new TreeSet<>(this.groups.keySet()));
+    }
+
+    /**
+     * Returns the files that the input representative stands for, including itself.
+     *
+     * @param representative the representative of a group
+     * @return the files in the representative's group, in increasing order; an empty set
+     * if the input is not a representative
+     */
+    public SortedSet<Integer> getMembers(int representative) {
+        SortedSet<Integer> members = this.groups.get(representative);
+        return (members == null) ? Collections.emptySortedSet()
+                : Collections.unmodifiableSortedSet(members);
+    }
+
+    /**
+     * Returns the reduced per-case list of representatives that each test case caught.
+     *
+     * @return a list where the i-th element is the set of representatives caught by the
+     * i-th test case
+     */
+    public List<Set<Integer>> getCaseToGroups() {
+        return Collections.unmodifiableList(this.caseToGroups);
+    }
+
+    /**
+     * Returns the set of representatives whose files failed one or more test cases.
+     *
+     * @return the set of wrong representatives
+     */
+    public Set<Integer> getWrongGroups() {
+        return Collections.unmodifiableSet(this.wrongGroups);
+    }
+
+    /**
+     * Reports which files each representative stands for, one group per line, e.g.
+     * "impl3.py: [impl3.py, impl7.py, impl12.py]"; files whose names the results do not
+     * know are reported by their index instead, e.g. "3: [3, 7, 12]".
+     *
+     * @return a human-readable report of the groups
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, SortedSet<Integer>> entry : this.groups.entrySet()) {
+            List<String> members = new ArrayList<>();
+            for (int fileIndex : entry.getValue()) {
+                members.add(this.results.getFilename(fileIndex));
+            }
+            sb.append(this.results.getFilename(entry.getKey())).append(": ")
+                    .append(members).append("\n");
+        }
+        return sb.toString();
+    }
+}
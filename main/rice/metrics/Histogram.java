@@ -0,0 +1,105 @@
+package main.rice.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution of observed values, summarized as the number of observations that fell
+ * at or below each of a fixed set of bucket bounds, along with their count and sum.
+ * This is the same summary a Prometheus histogram exports, so it can be written out as
+ * one directly.
+ */
+public class Histogram {
+
+    /**
+     * The upper bounds of the buckets, in increasing order; every observation also falls
+     * in an implicit final bucket with no upper bound.
+     */
+    private final double[] bounds;
+
+    /**
+     * The number of observations that fell in each bucket (not cumulatively), with the
+     * last element counting those above every bound.
+     */
+    private final LongAdder[] buckets;
+
+    /**
+     * The sum of all observations.
+     */
+    private final DoubleAdder sum = new DoubleAdder();
+
+    /**
+     * Constructor for a Histogram.
+     *
+     * @param bounds the upper bounds of the buckets, in increasing order
+     */
+    public Histogram(double[] bounds) {
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < this.buckets.length; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a single observation.
+     *
+     * @param value the observed value
+     */
+    public void observe(double value) {
+        int bucket = 0;
+        while (bucket < this.bounds.length && value > this.bounds[bucket]) {
+            bucket++;
+        }
+        this.buckets[bucket].increment();
+        this.sum.add(value);
+    }
+
+    /**
+     * Returns the upper bounds of the buckets.
+     *
+     * @return the upper bounds of the buckets, in increasing order
+     */
+    public double[] getBounds() {
+        return this.bounds.clone();
+    }
+
+    /**
+     * Returns the number of observations at or below each bucket bound, as Prometheus
+     * reports them.
+     *
+     * @return an array where the i-th element is the number of observations at or below
+     * the i-th bound, and the last element is the total number of observations
+     */
+    public long[] getCumulativeCounts() {
+        long[] counts = new long[this.buckets.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += this.buckets[i].sum();
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the total number of observations.
+     *
+     * @return the total number of observations
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : this.buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sum of all observations.
+     *
+     * @return the sum of all observations
+     */
+    public double getSum() {
+        return this.sum.sum();
+    }
+}
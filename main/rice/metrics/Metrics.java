@@ -0,0 +1,205 @@
+package main.rice.metrics;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stateless class for recording performance metrics from anywhere in FEAT and exporting
+ * them at the end of a run. Metrics are identified by Prometheus-style names and come in
+ * three kinds: counters, which only ever go up; gauges, which hold the latest value set;
+ * and histograms of durations in seconds. Every metric is created the first time it is
+ * recorded, and recording is thread-safe and cheap enough to do once per process.
+ */
+public class Metrics {
+
+    /**
+     * The bucket bounds, in seconds, of every duration histogram.
+     */
+    private static final double[] SECONDS_BUCKETS = {0.001, 0.005, 0.01, 0.05, 0.1, 0.25,
+            0.5, 1, 2.5, 5, 10, 30, 60, 300};
+
+    /**
+     * The counters, by name.
+     */
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+    /**
+     * The gauges, by name.
+     */
+    private static final Map<String, Double> GAUGES = new ConcurrentHashMap<>();
+
+    /**
+     * The duration histograms, by name.
+     */
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    /**
+     * Adds to a counter.
+     *
+     * @param name   the name of the counter
+     * @param amount the amount to add; must be non-negative
+     */
+    public static void increment(String name, long amount) {
+        COUNTERS.computeIfAbsent(name, unused -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * Sets a gauge.
+     *
+     * @param name  the name of the gauge
+     * @param value the new value of the gauge
+     */
+    public static void set(String name, double value) {
+        GAUGES.put(name, value);
+    }
+
+    /**
+     * Returns the current time, for passing to observeSince() later on.
+     *
+     * @return the current value of the system's high-resolution timer, in nanoseconds
+     */
+    public static long startTimer() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time elapsed since a timer was started in a duration histogram.
+     *
+     * @param name       the name of the histogram
+     * @param startNanos the value returned by startTimer()
+     */
+    public static void observeSince(String name, long startNanos) {
+        getHistogram(name).observe((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    /**
+     * Returns the current value of a counter.
+     *
+     * @param name the name of the counter
+     * @return the value of the counter; 0 if it has never been incremented
+     */
+    public static long getCounter(String name) {
+        LongAdder counter = COUNTERS.get(name);
+        return (counter == null) ? 0 : counter.sum();
+    }
+
+    /**
+     * Returns the current value of a gauge.
+     *
+     * @param name the name of the gauge
+     * @return the value of the gauge, or null if it has never been set
+     */
+    public static Double getGauge(String name) {
+        return GAUGES.get(name);
+    }
+
+    /**
+     * Returns a duration histogram, creating it if needed.
+     *
+     * @param name the name of the histogram
+     * @return the histogram
+     */
+    public static Histogram getHistogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, unused -> new Histogram(SECONDS_BUCKETS));
+    }
+
+    /**
+     * Forgets every metric recorded so far.
+     */
+    public static void reset() {
+        COUNTERS.clear();
+        GAUGES.clear();
+        HISTOGRAMS.clear();
+    }
+
+    /**
+     * Builds a JSON report of every metric recorded so far.
+     *
+     * @return an object with a "counters", a "gauges", and a "histograms" member, each
+     * mapping metric names to their values; each histogram is an object holding its
+     * count, its sum, and the cumulative count at or below each bucket bound
+     */
+    public static JSONObject toJson() {
+        JSONObject counters = new JSONObject();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(COUNTERS).entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().sum());
+        }
+        JSONObject gauges = new JSONObject();
+        for (Map.Entry<String, Double> entry : new TreeMap<>(GAUGES).entrySet()) {
+            gauges.put(entry.getKey(), entry.getValue());
+        }
+        JSONObject histograms = new JSONObject();
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            Histogram histogram = entry.getValue();
+            double[] bounds = histogram.getBounds();
+            long[] counts = histogram.getCumulativeCounts();
+            JSONObject buckets = new JSONObject();
+            for (int i = 0; i < bounds.length; i++) {
+                buckets.put(String.valueOf(bounds[i]), counts[i]);
+            }
+            buckets.put("+Inf", counts[bounds.length]);
+            histograms.put(entry.getKey(), new JSONObject()
+                    .put("count", histogram.getCount())
+                    .put("sum", histogram.getSum())
+                    .put("buckets", buckets));
+        }
+        return new JSONObject()
+                .put("counters", counters)
+                .put("gauges", gauges)
+                .put("histograms", histograms);
+    }
+
+    /**
+     * Builds a report of every metric recorded so far in the Prometheus text exposition
+     * format.
+     *
+     * @return the report
+     */
+    public static String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(COUNTERS).entrySet()) {
+            sb.append("# TYPE ").append(entry.getKey()).append(" counter\n");
+            sb.append(entry.getKey()).append(' ').append(entry.getValue().sum())
+                    .append('\n');
+        }
+        for (Map.Entry<String, Double> entry : new TreeMap<>(GAUGES).entrySet()) {
+            sb.append("# TYPE ").append(entry.getKey()).append(" gauge\n");
+            sb.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            String name = entry.getKey();
+            Histogram histogram = entry.getValue();
+            double[] bounds = histogram.getBounds();
+            long[] counts = histogram.getCumulativeCounts();
+            sb.append("# TYPE ").append(name).append(" histogram\n");
+            for (int i = 0; i < bounds.length; i++) {
+                sb.append(name).append("_bucket{le=\"").append(bounds[i]).append("\"} ")
+                        .append(counts[i]).append('\n');
+            }
+            sb.append(name).append("_bucket{le=\"+Inf\"} ").append(counts[bounds.length])
+                    .append('\n');
+            sb.append(name).append("_sum ").append(histogram.getSum()).append('\n');
+            sb.append(name).append("_count ").append(histogram.getCount()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes every metric recorded so far to prefix.json, as a JSON report, and to
+     * prefix.prom, in the Prometheus text exposition format.
+     *
+     * @param prefix the path of the reports, minus their extensions
+     * @throws IOException if either report cannot be written
+     */
+    public static void write(String prefix) throws IOException {
+        Files.writeString(Paths.get(prefix + ".json"), toJson().toString(2) + "\n");
+        Files.writeString(Paths.get(prefix + ".prom"), toPrometheus());
+    }
+}
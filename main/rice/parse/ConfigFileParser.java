@@ -2,6 +2,7 @@ package main.rice.parse;
 
 // TODO: implement the ConfigFileParser class here
 
+import main.rice.metrics.Metrics;
 import main.rice.node.*;
 import org.json.*;
 
@@ -43,6 +44,7 @@ public class ConfigFileParser{
      * @throws InvalidConfigException
      */
     public ConfigFile parse(String contents) throws InvalidConfigException{
+        long start = Metrics.startTimer();
 
         // parse the input string
         JSONObject content;
@@ -79,6 +81,7 @@ public class ConfigFileParser{
         for (int i=0; i< types.length();i++){
             nodes.add(parseTypeElem((String)types.get(i), (String)exhaustiveD.get(i), (String)randomD.get(i)));
         }
+        Metrics.observeSince("feat_parse_seconds", start);
         return new ConfigFile(fname, nodes, numRand);
     }
 
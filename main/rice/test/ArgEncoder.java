@@ -0,0 +1,144 @@
+package main.rice.test;
+
+import main.rice.obj.*;
+import org.json.JSONArray;
+
+import java.util.*;
+
+/**
+ * Stateless class for encoding the arguments of a test case as JSON, which is how they
+ * are sent to the Python processes and remote agents that run the test case. Booleans,
+ * integers, and strings are encoded as the JSON values they correspond to; every other
+ * object is encoded as a two-element array of a type tag and a payload, so that the
+ * Python side can tell lists, tuples, and sets apart and knows that a float is never an
+ * integer: ["f", repr] for a float, ["l", elements] for a list, ["t", elements] for a
+ * tuple, ["s", elements] for a set, and ["d", [[key, value], ...]] for a dict. The
+ * generated Python scripts decode these with the decode_arg() function written by the
+ * Tester, and a WorkerAgent decodes them with decodeArgs().
+ */
+public class ArgEncoder {
+
+    /**
+     * Encodes the arguments of a test case.
+     *
+     * @param test the test case whose arguments are to be encoded
+     * @return a JSON array holding the encoding of each argument, in order
+     */
+    public static JSONArray encodeArgs(TestCase test) {
+        JSONArray args = new JSONArray();
+        for (APyObj arg : test.getArgs()) {
+            args.put(encode(arg));
+        }
+        return args;
+    }
+
+    /**
+     * Encodes a single Python object.
+     *
+     * @param obj the object to be encoded
+     * @return a JSON value (a Boolean, Integer, String, or JSONArray) encoding obj
+     */
+    public static Object encode(APyObj obj) {
+        if (obj instanceof PyBoolObj || obj instanceof PyIntObj) {
+            return obj.getValue();
+        } else if (obj instanceof PyFloatObj) {
+            return new JSONArray().put("f").put(obj.getValue().toString());
+        } else if (obj instanceof PyCharObj) {
+            return obj.getValue().toString();
+        } else if (obj instanceof PyStringObj string) {
+            // A string is a sequence of characters, but is sent as a single string
+            StringBuilder sb = new StringBuilder();
+            for (PyCharObj character : string.getValue()) {
+                sb.append(character.getValue());
+            }
+            return sb.toString();
+        } else if (obj instanceof PyDictObj<?, ?> dict) {
+            JSONArray entries = new JSONArray();
+            for (Map.Entry<? extends APyObj, ? extends APyObj> entry
+                    : dict.getValue().entrySet()) {
+                entries.put(new JSONArray().put(encode(entry.getKey()))
+                        .put(encode(entry.getValue())));
+            }
+            return new JSONArray().put("d").put(entries);
+        } else if (obj instanceof AIterablePyObj<?> iterable) {
+            String tag;
+            if (obj instanceof PyTupleObj) {
+                tag = "t";
+            } else if (obj instanceof PySetObj) {
+                tag = "s";
+            } else {
+                tag = "l";
+            }
+            JSONArray elems = new JSONArray();
+            for (APyObj elem : iterable.getValue()) {
+                elems.put(encode(elem));
+            }
+            return new JSONArray().put(tag).put(elems);
+        }
+        throw new IllegalArgumentException("cannot encode " + obj.getClass().getName());
+    }
+
+    /**
+     * Decodes the arguments of a test case encoded by encodeArgs().
+     *
+     * @param args the encoded arguments
+     * @return a test case holding the decoded arguments
+     * @throws IllegalArgumentException if args is not a valid encoding
+     */
+    public static TestCase decodeArgs(JSONArray args) {
+        List<APyObj> decoded = new ArrayList<>();
+        for (int i = 0; i < args.length(); i++) {
+            decoded.add(decode(args.get(i)));
+        }
+        return new TestCase(decoded);
+    }
+
+    /**
+     * Decodes a single Python object encoded by encode(). Since characters and strings
+     * are encoded the same way, every string is decoded as a PyStringObj.
+     *
+     * @param value the encoded object
+     * @return the decoded object
+     * @throws IllegalArgumentException if value is not a valid encoding
+     */
+    public static APyObj decode(Object value) {
+        if (value instanceof Boolean bool) {
+            return new PyBoolObj(bool);
+        } else if (value instanceof Integer integer) {
+            return new PyIntObj(integer);
+        } else if (value instanceof String string) {
+            return new PyStringObj(string);
+        } else if (!(value instanceof JSONArray) || ((JSONArray) value).length() != 2) {
+            throw new IllegalArgumentException("cannot decode " + value);
+        }
+
+        JSONArray tagged = (JSONArray) value;
+        String tag = tagged.getString(0);
+        if (tag.equals("f")) {
+            return new PyFloatObj(Double.parseDouble(tagged.getString(1)));
+        }
+        JSONArray payload = tagged.getJSONArray(1);
+        if (tag.equals("d")) {
+            Map<APyObj, APyObj> entries = new LinkedHashMap<>();
+            for (int i = 0; i < payload.length(); i++) {
+                JSONArray entry = payload.getJSONArray(i);
+                entries.put(decode(entry.get(0)), decode(entry.get(1)));
+            }
+            return new PyDictObj<>(entries);
+        }
+        List<APyObj> elems = new ArrayList<>();
+        for (int i = 0; i < payload.length(); i++) {
+            elems.add(decode(payload.get(i)));
+        }
+        switch (tag) {
+            case "l":
+                return new PyListObj<>(elems);
+            case "t":
+                return new PyTupleObj<>(elems);
+            case "s":
+                return new PySetObj<>(new LinkedHashSet<>(elems));
+            default:
+                throw new IllegalArgumentException("unknown tag " + tag);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package main.rice.test;
+
+import main.rice.metrics.Metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Limits how many tasks run at once, tuning the limit as they run in the manner of
+ * additive-increase/multiplicative-decrease (AIMD) congestion control. Each time a
+ * window of tasks (as many as the limit allows at once) has finished, the controller
+ * measures their throughput and looks at the machine: if the load average per CPU is too
+ * high, too little memory is available, or throughput fell after the limit was last
+ * raised, the limit is cut by a constant factor; otherwise it is raised by one, up to a
+ * maximum. Every limit chosen is reported as the feat_concurrency_limit gauge.
+ *
+ * Tasks call acquire() before they start and release() once they finish; a task that is
+ * already running when the limit is cut is not interrupted, but no new task starts until
+ * the number running drops below the new limit.
+ */
+public class ConcurrencyController {
+
+    /**
+     * The factor by which the limit is cut when the machine is overloaded.
+     */
+    static final double DECREASE_FACTOR = 0.5;
+
+    /**
+     * The load average per CPU above which the machine counts as overloaded.
+     */
+    static final double MAX_LOAD_PER_CPU = 1.5;
+
+    /**
+     * The fraction of memory that must remain available for the machine not to count as
+     * overloaded.
+     */
+    static final double MIN_FREE_MEMORY = 0.1;
+
+    /**
+     * The relative drop in throughput, after the limit was raised, that counts as a sign
+     * that the raise overloaded the machine; smaller drops are put down to noise.
+     */
+    static final double THROUGHPUT_TOLERANCE = 0.1;
+
+    /**
+     * The largest limit that may be chosen.
+     */
+    private final int maxLimit;
+
+    /**
+     * Reports the current load average per CPU, or a negative value if unknown.
+     */
+    private final DoubleSupplier loadPerCpu;
+
+    /**
+     * Reports the current fraction of memory that is available, or a negative value if
+     * unknown.
+     */
+    private final DoubleSupplier freeMemory;
+
+    /**
+     * The current limit on the number of tasks running at once.
+     */
+    private int limit;
+
+    /**
+     * The number of tasks currently running.
+     */
+    private int running = 0;
+
+    /**
+     * The number of tasks that have finished in the current window.
+     */
+    private int finished = 0;
+
+    /**
+     * The System.nanoTime() at which the current window started.
+     */
+    private long windowStart = System.nanoTime();
+
+    /**
+     * The throughput of the previous window, in tasks per second; negative if there was
+     * none.
+     */
+    private double lastThroughput = -1;
+
+    /**
+     * Whether the limit was raised at the end of the previous window.
+     */
+    private boolean raised = false;
+
+    /**
+     * Constructor for a ConcurrencyController that watches the load average and the
+     * available memory of this machine.
+     *
+     * @param initialLimit the limit to start with; clamped to [1, maxLimit]
+     * @param maxLimit     the largest limit that may be chosen; must be positive
+     */
+    public ConcurrencyController(int initialLimit, int maxLimit) {
+        this(initialLimit, maxLimit, ConcurrencyController::getSystemLoadPerCpu,
+                ConcurrencyController::getSystemFreeMemory);
+    }
+
+    /**
+     * Constructor for a ConcurrencyController that watches the input readings.
+     *
+     * @param initialLimit the limit to start with; clamped to [1, maxLimit]
+     * @param maxLimit     the largest limit that may be chosen; must be positive
+     * @param loadPerCpu   reports the current load average per CPU, or a negative value
+     *                     if unknown
+     * @param freeMemory   reports the current fraction of memory that is available, or
+     *                     a negative value if unknown
+     */
+    public ConcurrencyController(int initialLimit, int maxLimit, DoubleSupplier loadPerCpu,
+                                 DoubleSupplier freeMemory) {
+        if (maxLimit < 1) {
+            throw new IllegalArgumentException("maxLimit must be positive");
+        }
+        this.maxLimit = maxLimit;
+        this.loadPerCpu = loadPerCpu;
+        this.freeMemory = freeMemory;
+        this.limit = Math.max(1, Math.min(initialLimit, maxLimit));
+        Metrics.set("feat_concurrency_limit", this.limit);
+    }
+
+    /**
+     * Returns the current limit on the number of tasks running at once.
+     *
+     * @return the current limit
+     */
+    public synchronized int getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * Waits until the number of tasks running is below the limit, then counts the calling
+     * task as running.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (this.running >= this.limit) {
+            this.wait();
+        }
+        this.running++;
+    }
+
+    /**
+     * Counts a task that acquire() let run as finished, and adjusts the limit if that
+     * finishes the current window.
+     */
+    public synchronized void release() {
+        this.running--;
+        this.finished++;
+        if (this.finished >= this.limit) {
+            double seconds = (System.nanoTime() - this.windowStart) / 1e9;
+            this.adjust(this.finished / Math.max(seconds, 1e-9));
+        }
+        this.notifyAll();
+    }
+
+    /**
+     * Ends the current window, whose tasks achieved the input throughput, and chooses
+     * the limit for the next one.
+     *
+     * @param throughput the throughput of the window that just ended, in tasks per second
+     */
+    public synchronized void adjust(double throughput) {
+        double load = this.loadPerCpu.getAsDouble();
+        double free = this.freeMemory.getAsDouble();
+        boolean slower = this.raised
+                && throughput < this.lastThroughput * (1 - THROUGHPUT_TOLERANCE);
+        boolean overloaded = (load > MAX_LOAD_PER_CPU)
+                || (free >= 0 && free < MIN_FREE_MEMORY) || slower;
+
+        int previous = this.limit;
+        if (overloaded) {
+            this.limit = Math.max(1, (int) (this.limit * DECREASE_FACTOR));
+        } else {
+            this.limit = Math.min(this.maxLimit, this.limit + 1);
+        }
+        this.raised = this.limit > previous;
+        this.lastThroughput = throughput;
+        this.finished = 0;
+        this.windowStart = System.nanoTime();
+
+        if (this.limit != previous) {
+            Metrics.increment("feat_concurrency_adjustments_total", 1);
+        }
+        Metrics.set("feat_concurrency_limit", this.limit);
+        Metrics.set("feat_concurrency_throughput", throughput);
+        this.notifyAll();
+    }
+
+    /**
+     * Returns the 1-minute load average of this machine divided by its number of CPUs.
+     *
+     * @return the load average per CPU, or a negative value if unknown
+     */
+    private static double getSystemLoadPerCpu() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        double load = os.getSystemLoadAverage();
+        return (load < 0) ? -1 : load / os.getAvailableProcessors();
+    }
+
+    /**
+     * Returns the fraction of this machine's memory that is available to new processes,
+     * which on Linux includes the page cache that could be reclaimed; elsewhere, only
+     * memory that is actually free counts.
+     *
+     * @return the fraction of memory available, or a negative value if unknown
+     */
+    private static double getSystemFreeMemory() {
+        try {
+            long total = -1;
+            long available = -1;
+            for (String line : Files.readAllLines(Paths.get("/proc/meminfo"))) {
+                if (line.startsWith("MemTotal:")) {
+                    total = parseKilobytes(line);
+                } else if (line.startsWith("MemAvailable:")) {
+                    available = parseKilobytes(line);
+                }
+            }
+            if (total > 0 && available >= 0) {
+                return (double) available / total;
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Fall back to what the JVM can tell us
+        }
+        if (ManagementFactory.getOperatingSystemMXBean()
+                instanceof com.sun.management.OperatingSystemMXBean os
+                && os.getTotalMemorySize() > 0) {
+            return (double) os.getFreeMemorySize() / os.getTotalMemorySize();
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the size in a line of /proc/meminfo, e.g. "MemTotal:  16318412 kB".
+     *
+     * @param line the line to be parsed
+     * @return the size, in kilobytes
+     */
+    private static long parseKilobytes(String line) {
+        String[] fields = line.trim().split("\\s+");
+        return Long.parseLong(fields[1]);
+    }
+}
@@ -0,0 +1,368 @@
+package main.rice.test;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Hands out work units to a set of WorkerAgents over TCP and collects their outcomes.
+ * Each agent has its own queue of units, seeded so that every unit for a given
+ * implementation starts out on the same agent; a connection whose agent's queue runs dry
+ * steals from the back of the longest other queue, so that faster agents end up doing
+ * more of the work. A unit whose agent fails is put at the front of another agent's queue
+ * and never handed back to any agent that has failed it, up to a fixed number of times.
+ *
+ * Every connection presents the secret shared with the agents, and waits for each unit
+ * only as long as its budget (plus some slack) allows; an agent that takes longer is
+ * treated as having failed.
+ */
+public class Coordinator {
+
+    /**
+     * The number of milliseconds to wait when connecting to an agent.
+     */
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * The number of milliseconds on top of a unit's budget to wait for its outcomes, to
+     * allow for setting up and tearing down the unit on the agent.
+     */
+    private static final long UNIT_GRACE_MILLIS = 2000;
+
+    /**
+     * The number of milliseconds per test case on top of a unit's budget to wait for its
+     * outcomes, to allow for starting a process for each one.
+     */
+    private static final long TEST_GRACE_MILLIS = 1000;
+
+    /**
+     * The addresses of the agents.
+     */
+    private final List<InetSocketAddress> agents;
+
+    /**
+     * The number of connections (and thus units in flight) per agent.
+     */
+    private final int connectionsPerAgent;
+
+    /**
+     * The number of times a unit may be retried after a failure before it is given up on.
+     */
+    private final int maxRetries;
+
+    /**
+     * The secret shared with the agents.
+     */
+    private final String secret;
+
+    /**
+     * The queue of units waiting to be run by each agent.
+     */
+    private final List<Deque<WorkUnit>> queues = new ArrayList<>();
+
+    /**
+     * The units that failed too many times to be retried.
+     */
+    private final List<WorkUnit> abandoned = new ArrayList<>();
+
+    /**
+     * The number of units that have been handed to an agent and not yet finished.
+     */
+    private int numInFlight = 0;
+
+    /**
+     * Constructor for a Coordinator.
+     *
+     * @param agents              the addresses of the agents
+     * @param connectionsPerAgent the number of connections to open to each agent
+     * @param maxRetries          the number of times a unit may be retried
+     * @param secret              the secret shared with the agents
+     */
+    public Coordinator(List<InetSocketAddress> agents, int connectionsPerAgent,
+                       int maxRetries, String secret) {
+        if (agents.isEmpty() || connectionsPerAgent < 1 || maxRetries < 0
+                || secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("invalid coordinator configuration");
+        }
+        this.agents = agents;
+        this.connectionsPerAgent = connectionsPerAgent;
+        this.maxRetries = maxRetries;
+        this.secret = secret;
+    }
+
+    /**
+     * Runs the input units on the agents, setting the outcomes of each one that finishes.
+     *
+     * @param units    the units to be run
+     * @param expected the contents of expected.py, which is sent to each agent once per
+     *                 connection
+     * @param finished called with each unit as soon as it finishes, possibly from
+     *                 several threads at once
+     * @return the units that could not be run by any agent, whose outcomes are still null
+     * @throws InterruptedException if interrupted while waiting for the agents
+     */
+    public List<WorkUnit> run(List<WorkUnit> units, String expected,
+                              Consumer<WorkUnit> finished) throws InterruptedException {
+        synchronized (this) {
+            this.queues.clear();
+            this.abandoned.clear();
+            this.numInFlight = 0;
+            for (int i = 0; i < this.agents.size(); i++) {
+                this.queues.add(new ArrayDeque<>());
+            }
+            for (WorkUnit unit : units) {
+                this.queues.get(unit.fileIndex % this.agents.size()).addLast(unit);
+            }
+        }
+
+        // Open every connection on its own thread
+        int numConnections = this.agents.size() * this.connectionsPerAgent;
+        ExecutorService executor = Executors.newFixedThreadPool(numConnections, task -> {
+            Thread thread = new Thread(task, "feat-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int agent = 0; agent < this.agents.size(); agent++) {
+                for (int i = 0; i < this.connectionsPerAgent; i++) {
+                    int agentIndex = agent;
+                    tasks.add(() -> {
+                        this.serveConnection(agentIndex, expected, finished);
+                        return null;
+                    });
+                }
+            }
+            executor.invokeAll(tasks);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Whatever is left over once every connection has closed was never run
+        List<WorkUnit> unfinished = new ArrayList<>(this.abandoned);
+        for (Deque<WorkUnit> queue : this.queues) {
+            unfinished.addAll(queue);
+        }
+        return unfinished;
+    }
+
+    /**
+     * Feeds units to a single connection to an agent until there are none left or the
+     * connection fails.
+     *
+     * @param agent    the index of the agent
+     * @param expected the contents of expected.py
+     * @param finished called with each unit as soon as it finishes
+     * @throws InterruptedException if interrupted while waiting for a unit
+     */
+    private void serveConnection(int agent, String expected, Consumer<WorkUnit> finished)
+            throws InterruptedException {
+        try (Socket socket = new Socket()) {
+            socket.connect(this.agents.get(agent), CONNECT_TIMEOUT_MILLIS);
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            PythonWorker.writeFrame(out, new JSONObject().put("secret", this.secret)
+                    .put("expected", expected).toString());
+
+            WorkUnit unit;
+            while ((unit = this.take(agent)) != null) {
+                try {
+                    socket.setSoTimeout(getReadTimeoutMillis(unit.request));
+                    PythonWorker.writeFrame(out, unit.request.toString());
+                    JSONObject response = new JSONObject(PythonWorker.readFrame(in));
+                    if (response.has("error")) {
+                        // The agent is fine, but could not run this particular unit
+                        this.retry(agent, unit);
+                        continue;
+                    }
+                    JSONArray outcomes = response.getJSONArray("outcomes");
+                    for (int i = 0; i < unit.outcomes.length; i++) {
+                        unit.outcomes[i] = Outcome.valueOf(outcomes.getString(i));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // The agent went away, hung, or sent garbage, so give up on this
+                    // connection and let some other agent pick the unit up
+                    Arrays.fill(unit.outcomes, null);
+                    this.retry(agent, unit);
+                    return;
+                }
+                this.finish();
+                finished.accept(unit);
+            }
+        } catch (IOException | JSONException e) {
+            // The agent is unreachable; the other connections will take up the slack
+        }
+    }
+
+    /**
+     * Returns how long to wait for an agent to run the unit described by the input
+     * request: its budget, as limited by both its per-test and its overall timeout, plus
+     * some slack.
+     *
+     * @param request the request describing the unit
+     * @return the number of milliseconds to wait, or 0 if the unit has no budget
+     */
+    static int getReadTimeoutMillis(JSONObject request) {
+        long testTimeout = request.getLong("testTimeout");
+        long implementationTimeout = request.getLong("implementationTimeout");
+        int numTests = request.getJSONArray("tests").length();
+        long budget = testTimeout * numTests;
+        if (implementationTimeout != 0) {
+            budget = (budget == 0) ? implementationTimeout
+                    : Math.min(budget, implementationTimeout);
+        }
+        if (budget == 0) {
+            return 0;
+        }
+        long timeout = budget + UNIT_GRACE_MILLIS + TEST_GRACE_MILLIS * numTests;
+        return (int) Math.min(timeout, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Takes the next unit for the input agent, stealing one from another agent if its own
+     * queue is empty, and waiting if there is none it may run but some unit might still
+     * be put back by a failed connection. Units that the agent has already failed are
+     * left for the others.
+     *
+     * @param agent the index of the agent
+     * @return the next unit to run, or null if there is nothing left to run
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private synchronized WorkUnit take(int agent) throws InterruptedException {
+        while (true) {
+            WorkUnit unit = poll(this.queues.get(agent).iterator(), agent);
+            if (unit == null) {
+                // Steal from the longest queue holding a unit this agent may run
+                List<Deque<WorkUnit>> victims = new ArrayList<>(this.queues);
+                victims.sort(Comparator.comparingInt(queue -> -queue.size()));
+                for (Deque<WorkUnit> victim : victims) {
+                    unit = poll(victim.descendingIterator(), agent);
+                    if (unit != null) {
+                        break;
+                    }
+                }
+            }
+            if (unit != null) {
+                this.numInFlight++;
+                return unit;
+            }
+            if (this.numInFlight == 0) {
+                return null;
+            }
+            this.wait();
+        }
+    }
+
+    /**
+     * Removes and returns the first unit from the input iterator that the input agent has
+     * not already failed.
+     *
+     * @param units an iterator over a queue of units
+     * @param agent the index of the agent
+     * @return the unit removed, or null if there is none the agent may run
+     */
+    private static WorkUnit poll(Iterator<WorkUnit> units, int agent) {
+        while (units.hasNext()) {
+            WorkUnit unit = units.next();
+            if (!unit.failedAgents.contains(agent)) {
+                units.remove();
+                return unit;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records that a unit has finished.
+     */
+    private synchronized void finish() {
+        this.numInFlight--;
+        this.notifyAll();
+    }
+
+    /**
+     * Puts a unit that failed at the front of the shortest queue of an agent that has not
+     * failed it yet, or abandons it if it has already been retried too many times or
+     * every agent has failed it.
+     *
+     * @param agent the index of the agent that failed to run the unit
+     * @param unit  the unit that failed
+     */
+    private synchronized void retry(int agent, WorkUnit unit) {
+        this.numInFlight--;
+        unit.attempts++;
+        unit.failedAgents.add(agent);
+        Deque<WorkUnit> next = null;
+        for (int i = 0; i < this.queues.size(); i++) {
+            Deque<WorkUnit> queue = this.queues.get(i);
+            if (!unit.failedAgents.contains(i)
+                    && (next == null || queue.size() < next.size())) {
+                next = queue;
+            }
+        }
+        if (unit.attempts > this.maxRetries || next == null) {
+            this.abandoned.add(unit);
+        } else {
+            next.addFirst(unit);
+        }
+        this.notifyAll();
+    }
+
+    /**
+     * A block of test cases to be run on a single implementation by a single agent.
+     */
+    public static class WorkUnit {
+
+        /**
+         * The index of the implementation.
+         */
+        final int fileIndex;
+
+        /**
+         * The indices of the test cases to be run.
+         */
+        final List<Integer> tests;
+
+        /**
+         * The request sent to the agent.
+         */
+        final JSONObject request;
+
+        /**
+         * An array where the i-th element is the outcome of the tests.get(i)-th test case,
+         * or null until the unit has been run.
+         */
+        final Outcome[] outcomes;
+
+        /**
+         * The number of times the unit has failed.
+         */
+        int attempts = 0;
+
+        /**
+         * The indices of the agents that have failed to run the unit.
+         */
+        final Set<Integer> failedAgents = new HashSet<>();
+
+        /**
+         * Constructor for a WorkUnit.
+         *
+         * @param fileIndex the index of the implementation
+         * @param tests     the indices of the test cases to be run
+         * @param request   the request sent to the agent
+         */
+        WorkUnit(int fileIndex, List<Integer> tests, JSONObject request) {
+            this.fileIndex = fileIndex;
+            this.tests = tests;
+            this.request = request;
+            this.outcomes = new Outcome[tests.size()];
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package main.rice.test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A strategy for actually executing test cases, which a Tester delegates to for both the
+ * reference solution and the buggy implementations. Everything around the execution
+ * itself (caching, journaling, deduplication, distribution, progress reporting and the
+ * merging of outcomes into TestResults) stays in the Tester, so a backend only has to
+ * run what it is asked to run. By default, a Tester uses Python subprocesses as
+ * configured through its ExecutionMode; a different backend (e.g., one that evaluates
+ * the reference solution in the JVM) can be plugged in through
+ * Tester.setExecutionBackend().
+ *
+ * A backend may be called from several threads at once, up to the Tester's parallelism.
+ */
+public interface ExecutionBackend extends Closeable {
+
+    /**
+     * Runs a block of test cases on the reference solution.
+     *
+     * @param testIndices the indices of the test cases to be run
+     * @return a list where the i-th element is the repr() of the result of running the
+     * testIndices.get(i)-th test case on the reference solution, or the empty string if
+     * it raised an exception
+     * @throws IOException if the test cases cannot be run
+     * @throws InterruptedException if interrupted while running the test cases
+     */
+    List<String> computeExpected(List<Integer> testIndices)
+            throws IOException, InterruptedException;
+
+    /**
+     * Runs a block of test cases on a single buggy implementation, comparing each result
+     * to the expected results that the Tester wrote out, and reports the outcome of each
+     * test case to the input sink as soon as it is known. Every test case must be
+     * reported exactly once before this method returns.
+     *
+     * @param filename    the name of the implementation, within the Tester's implDir
+     * @param testIndices the indices of the test cases to be run, in increasing order
+     * @param sink        the sink to report each outcome to
+     * @throws IOException if the test cases cannot be run, or the sink fails
+     * @throws InterruptedException if interrupted while running the test cases
+     */
+    void evaluate(String filename, List<Integer> testIndices, OutcomeSink sink)
+            throws IOException, InterruptedException;
+
+    /**
+     * Releases whatever the backend holds on to between calls (e.g., worker processes).
+     * Does nothing by default.
+     *
+     * @throws IOException if the resources cannot be released
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Receives the outcomes that an ExecutionBackend reports.
+     */
+    @FunctionalInterface
+    interface OutcomeSink {
+
+        /**
+         * Records the outcome of a single test case.
+         *
+         * @param testIndex the index of the test case
+         * @param outcome   the outcome of the test case
+         * @throws IOException if the outcome cannot be recorded
+         */
+        void accept(int testIndex, Outcome outcome) throws IOException;
+    }
+}
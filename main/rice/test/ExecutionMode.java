@@ -0,0 +1,33 @@
+package main.rice.test;
+
+/**
+ * The strategies that a Tester can use to execute the buggy implementations on the test
+ * cases.
+ */
+public enum ExecutionMode {
+
+    /**
+     * Starts a fresh Python process for every (test case, implementation) pair.
+     */
+    PROCESS_PER_TEST,
+
+    /**
+     * Keeps a pool of long-lived Python workers, each of which imports a single
+     * implementation once and then evaluates test cases sent to it over stdin.
+     */
+    WORKER_POOL,
+
+    /**
+     * Like WORKER_POOL, except that each worker is a zygote that imports its
+     * implementation once and then forks a fresh child process for every test case, so
+     * that no state the implementation mutates can carry over from one test case to the
+     * next. Requires a platform that supports os.fork().
+     */
+    ZYGOTE,
+
+    /**
+     * Starts one Python process per implementation (and one for the reference solution),
+     * which runs every test case and reports all of the results at once.
+     */
+    BATCH
+}
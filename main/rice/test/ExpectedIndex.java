@@ -0,0 +1,130 @@
+package main.rice.test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stateless class for reading and writing expected.idx, an indexed copy of the expected
+ * results in expected.py. Rather than importing all of expected.py, the wrapper maps
+ * this file into memory and decodes only the results for the test cases it actually
+ * runs, so the cost of looking up a result does not grow with the size of the base test
+ * set.
+ *
+ * The file consists of the 8-byte magic number "FEATIDX1"; the hex-encoded SHA-256 hash
+ * of the expected.py it was written alongside (64 bytes); the number of results n (a
+ * big-endian unsigned 32-bit integer); a table of n + 1 big-endian 64-bit offsets,
+ * relative to the end of the table, where the i-th result starts (the last of which is
+ * the end of the data); and finally the UTF-8 encoded repr of each result.
+ */
+public class ExpectedIndex {
+
+    /**
+     * The magic number at the start of every index file.
+     */
+    private static final byte[] MAGIC = "FEATIDX1".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The number of bytes in the hex-encoded hash of expected.py.
+     */
+    private static final int HASH_LENGTH = 64;
+
+    /**
+     * The number of bytes before the offset table.
+     */
+    private static final int HEADER_LENGTH = MAGIC.length + HASH_LENGTH + 4;
+
+    /**
+     * Writes an index file holding the input results.
+     *
+     * @param path         the path to the index file
+     * @param results      the expected results, as Python reprs
+     * @param expectedHash the hash of the expected.py holding the same results
+     * @throws IOException if the index file cannot be written
+     */
+    public static void write(Path path, List<String> results, String expectedHash)
+            throws IOException {
+        // Encode every result first, so that the offset table can be filled in
+        byte[][] encoded = new byte[results.size()][];
+        long[] offsets = new long[results.size() + 1];
+        for (int i = 0; i < results.size(); i++) {
+            encoded[i] = results.get(i).getBytes(StandardCharsets.UTF_8);
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + 8 * offsets.length);
+        header.put(MAGIC);
+        header.put(expectedHash.getBytes(StandardCharsets.US_ASCII));
+        header.putInt(results.size());
+        for (long offset : offsets) {
+            header.putLong(offset);
+        }
+
+        // Replace any existing index in one step, so that a worker which still has it
+        // mapped keeps reading the results it was written with
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), "tmp-",
+                ".idx");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            out.write(header.array());
+            for (byte[] result : encoded) {
+                out.write(result);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns whether the index file at the input path was written alongside the
+     * expected.py with the input hash, and thus holds the same results.
+     *
+     * @param path         the path to the index file
+     * @param expectedHash the hash of the current expected.py
+     * @return true if the index file is up to date; false if it is stale or malformed
+     * @throws IOException if the index file cannot be read
+     */
+    public static boolean isCurrent(Path path, String expectedHash) throws IOException {
+        byte[] prefix = new byte[MAGIC.length + HASH_LENGTH];
+        try (InputStream in = Files.newInputStream(path)) {
+            if (in.readNBytes(prefix, 0, prefix.length) < prefix.length) {
+                return false;
+            }
+        }
+        return Arrays.equals(Arrays.copyOfRange(prefix, 0, MAGIC.length), MAGIC)
+                && new String(prefix, MAGIC.length, HASH_LENGTH, StandardCharsets.US_ASCII)
+                        .equals(expectedHash);
+    }
+
+    /**
+     * Reads a single result from an index file, without reading any of the others.
+     *
+     * @param path      the path to the index file
+     * @param caseIndex the index of the test case whose result is to be read
+     * @return the repr of the expected result of the caseIndex-th test case
+     * @throws IOException if the index file cannot be read or caseIndex is out of range
+     */
+    public static String read(Path path, int caseIndex) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            int count = buffer.getInt(MAGIC.length + HASH_LENGTH);
+            if (caseIndex < 0 || caseIndex >= count) {
+                throw new IOException("no expected result for test case " + caseIndex);
+            }
+            long dataStart = HEADER_LENGTH + 8L * (count + 1);
+            long start = buffer.getLong(HEADER_LENGTH + 8 * caseIndex);
+            long end = buffer.getLong(HEADER_LENGTH + 8 * (caseIndex + 1));
+            byte[] result = new byte[(int) (end - start)];
+            buffer.get((int) (dataStart + start), result);
+            return new String(result, StandardCharsets.UTF_8);
+        }
+    }
+}
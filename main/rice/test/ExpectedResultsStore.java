@@ -0,0 +1,134 @@
+package main.rice.test;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent store of the results of running individual test cases on the reference
+ * solution. Each result is stored under a key derived from the contents of the solution
+ * file, the name of the function under test, and the test case, so editing the solution
+ * simply leaves the old results unused.
+ *
+ * The store is kept in a single append-only file with one JSON array ["key", "result"]
+ * per line, which is read in full when the store is opened.
+ */
+public class ExpectedResultsStore implements Closeable {
+
+    /**
+     * The stored results, by key.
+     */
+    private final Map<String, String> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The writer used to append new entries to the store file.
+     */
+    private final Writer writer;
+
+    /**
+     * Constructor for an ExpectedResultsStore; loads every entry from the input file,
+     * creating it (and its parent directories) if it does not exist yet.
+     *
+     * @param path the path to the store file
+     * @throws IOException if the store file cannot be read or created
+     */
+    public ExpectedResultsStore(String path) throws IOException {
+        Path file = Paths.get(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        String contents = Files.exists(file) ? Files.readString(file) : "";
+        contents.lines().forEach(this::load);
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        // Finish off a line that was only partly written, so that it doesn't run into the
+        // first new entry
+        if (!contents.isEmpty() && !contents.endsWith("\n")) {
+            this.writer.write("\n");
+            this.writer.flush();
+        }
+    }
+
+    /**
+     * Returns the stored result for the input key.
+     *
+     * @param key the key of the result, as built by key()
+     * @return the stored result, or null if there is none
+     */
+    public String get(String key) {
+        return this.entries.get(key);
+    }
+
+    /**
+     * Stores the result for the input key, appending it to the store file.
+     *
+     * @param key    the key of the result, as built by key()
+     * @param result the result to be stored
+     * @throws IOException if the store file cannot be written to
+     */
+    public synchronized void put(String key, String result) throws IOException {
+        if (result.equals(this.entries.put(key, result))) {
+            return;
+        }
+        this.writer.write(new JSONArray().put(key).put(result) + "\n");
+        this.writer.flush();
+    }
+
+    /**
+     * Returns the number of results in the store.
+     *
+     * @return the number of stored results
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Closes the store file; every entry has already been written to it.
+     *
+     * @throws IOException if the store file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.writer.close();
+    }
+
+    /**
+     * Builds the key for the result of a single test case on the reference solution.
+     *
+     * @param solutionHash the hash of the reference solution's contents
+     * @param funcName     the name of the function under test
+     * @param testRepr     the string representation of the test case
+     * @return the key for the result
+     */
+    public static String key(String solutionHash, String funcName, String testRepr) {
+        String combined = solutionHash + "\0" + funcName + "\0" + testRepr;
+        return ResultCache.hash(combined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a single entry from a line of the store file. A line that cannot be parsed
+     * (e.g., one that was only partly written when a previous run was killed) is skipped.
+     *
+     * @param line the line of the store file
+     */
+    private void load(String line) {
+        try {
+            JSONArray entry = new JSONArray(line);
+            if (entry.length() == 2) {
+                this.entries.put(entry.getString(0), entry.getString(1));
+            }
+        } catch (JSONException e) {
+            // Not a complete entry, so skip the line
+        }
+    }
+}
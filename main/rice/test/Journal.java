@@ -0,0 +1,271 @@
+package main.rice.test;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A crash-safe record of the work a Tester has finished, so that a run which dies partway
+ * through can be resumed without redoing that work. Unlike a ResultCache, the journal
+ * records every outcome the moment it is known (including outcomes that exceeded their
+ * budget, which are keyed by the budget they were run under), along with the expected
+ * results, so replaying it reproduces the interrupted run exactly.
+ *
+ * The journal is a single append-only file with one JSON array per line: ["E", "key",
+ * "result"] for an expected result and ["O", "key", "OUTCOME"] for an outcome. Every
+ * line is flushed as soon as it is written and forced to disk within
+ * SYNC_INTERVAL_MILLIS (by a background thread, if no later entry does so first), so a
+ * crash loses at most a fraction of a second of work. Lines that cannot be decoded or
+ * parsed, such as one that was only partly written when a run died, are skipped on
+ * replay.
+ */
+public class Journal implements Closeable {
+
+    /**
+     * The longest time, in milliseconds, that a written entry may go without being
+     * forced to disk.
+     */
+    private static final long SYNC_INTERVAL_MILLIS = 200;
+
+    /**
+     * The thread that forces entries to disk once they have waited SYNC_INTERVAL_MILLIS.
+     */
+    private static final ScheduledExecutorService SYNCER =
+            Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "feat-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * The expected results in the journal, by key.
+     */
+    private final Map<String, String> expected = new ConcurrentHashMap<>();
+
+    /**
+     * The outcomes in the journal, by key.
+     */
+    private final Map<String, Outcome> outcomes = new ConcurrentHashMap<>();
+
+    /**
+     * The channel of the journal file, used to force written entries to disk.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The writer used to append new entries to the journal file.
+     */
+    private final Writer writer;
+
+    /**
+     * The time at which the journal was last forced to disk, in milliseconds.
+     */
+    private long lastSync = System.currentTimeMillis();
+
+    /**
+     * The pending task that will force the entries written since the last sync to disk,
+     * or null if there is none.
+     */
+    private ScheduledFuture<?> pendingSync = null;
+
+    /**
+     * Constructor for a Journal; replays every entry from the input file, creating it
+     * (and its parent directories) if it does not exist yet.
+     *
+     * @param path the path to the journal file
+     * @throws IOException if the journal file cannot be read or created
+     */
+    public Journal(String path) throws IOException {
+        Path file = Paths.get(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        byte[] contents = Files.exists(file) ? Files.readAllBytes(file) : new byte[0];
+        int start = 0;
+        for (int i = 0; i <= contents.length; i++) {
+            if (i == contents.length || contents[i] == '\n') {
+                this.replay(contents, start, i - start);
+                start = i + 1;
+            }
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.writer = new BufferedWriter(new OutputStreamWriter(
+                Channels.newOutputStream(this.channel), StandardCharsets.UTF_8));
+
+        // Finish off a line that was only partly written when the last run died, so that
+        // it doesn't run into the first new entry
+        if (contents.length > 0 && contents[contents.length - 1] != '\n') {
+            this.writer.write("\n");
+            this.writer.flush();
+        }
+    }
+
+    /**
+     * Returns the journaled expected result for the input key.
+     *
+     * @param key the key of the result, as built by ExpectedResultsStore.key()
+     * @return the journaled result, or null if there is none
+     */
+    public String getExpected(String key) {
+        return this.expected.get(key);
+    }
+
+    /**
+     * Journals the expected result for the input key.
+     *
+     * @param key    the key of the result, as built by ExpectedResultsStore.key()
+     * @param result the result
+     * @throws IOException if the journal file cannot be written to
+     */
+    public synchronized void putExpected(String key, String result) throws IOException {
+        if (result.equals(this.expected.put(key, result))) {
+            return;
+        }
+        this.append(new JSONArray().put("E").put(key).put(result));
+    }
+
+    /**
+     * Returns the journaled outcome for the input key.
+     *
+     * @param key the key of the outcome
+     * @return the journaled outcome, or null if there is none
+     */
+    public Outcome getOutcome(String key) {
+        return this.outcomes.get(key);
+    }
+
+    /**
+     * Journals the outcome for the input key.
+     *
+     * @param key     the key of the outcome
+     * @param outcome the outcome
+     * @throws IOException if the journal file cannot be written to
+     */
+    public synchronized void putOutcome(String key, Outcome outcome) throws IOException {
+        if (outcome == this.outcomes.put(key, outcome)) {
+            return;
+        }
+        this.append(new JSONArray().put("O").put(key).put(outcome.name()));
+    }
+
+    /**
+     * Returns the number of entries in the journal.
+     *
+     * @return the number of journaled expected results and outcomes
+     */
+    public int size() {
+        return this.expected.size() + this.outcomes.size();
+    }
+
+    /**
+     * Forces every entry to disk and closes the journal file.
+     *
+     * @throws IOException if the journal file cannot be written to or closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.pendingSync != null) {
+            this.pendingSync.cancel(false);
+            this.pendingSync = null;
+        }
+        this.writer.flush();
+        this.channel.force(false);
+        this.writer.close();
+    }
+
+    /**
+     * Appends a single entry to the journal file, forcing it to disk if the last time
+     * that happened was long enough ago, and otherwise making sure that it will be once
+     * SYNC_INTERVAL_MILLIS have passed since then.
+     *
+     * @param entry the entry to be appended
+     * @throws IOException if the journal file cannot be written to
+     */
+    private void append(JSONArray entry) throws IOException {
+        this.writer.write(entry + "\n");
+        this.writer.flush();
+        long elapsed = System.currentTimeMillis() - this.lastSync;
+        if (elapsed >= SYNC_INTERVAL_MILLIS) {
+            this.sync();
+        } else if (this.pendingSync == null) {
+            this.pendingSync = SYNCER.schedule(this::syncPending,
+                    SYNC_INTERVAL_MILLIS - elapsed, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Forces every entry written so far to disk.
+     *
+     * @throws IOException if the journal file cannot be written to
+     */
+    private void sync() throws IOException {
+        if (this.pendingSync != null) {
+            this.pendingSync.cancel(false);
+            this.pendingSync = null;
+        }
+        this.channel.force(false);
+        this.lastSync = System.currentTimeMillis();
+    }
+
+    /**
+     * Forces the entries that have been waiting since a scheduled sync was requested to
+     * disk; called on the sync thread.
+     */
+    private synchronized void syncPending() {
+        if (this.pendingSync == null || !this.channel.isOpen()) {
+            return;
+        }
+        this.pendingSync = null;
+        try {
+            this.sync();
+        } catch (IOException e) {
+            // The next append or close() forces the entries again and reports the error
+        }
+    }
+
+    /**
+     * Replays a single entry from a line of the journal file. A line that is not valid
+     * UTF-8 or cannot be parsed (e.g., one that was only partly written when the last run
+     * died) is skipped.
+     *
+     * @param contents the contents of the journal file
+     * @param offset   the offset of the line in contents
+     * @param length   the length of the line, excluding its newline
+     */
+    private void replay(byte[] contents, int offset, int length) {
+        try {
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+            String line = decoder.decode(ByteBuffer.wrap(contents, offset, length))
+                    .toString();
+            JSONArray entry = new JSONArray(line);
+            if (entry.length() != 3) {
+                return;
+            }
+            if (entry.getString(0).equals("E")) {
+                this.expected.put(entry.getString(1), entry.getString(2));
+            } else if (entry.getString(0).equals("O")) {
+                this.outcomes.put(entry.getString(1), Outcome.valueOf(entry.getString(2)));
+            }
+        } catch (CharacterCodingException | JSONException | IllegalArgumentException e) {
+            // Not a complete entry, so skip the line
+        }
+    }
+}
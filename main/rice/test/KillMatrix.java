@@ -0,0 +1,473 @@
+package main.rice.test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A dense record of which test cases caught which files, with one bit per (test case,
+ * file) cell. The bits are stored twice, once by test case and once by file, so that
+ * both the files caught by a test case and the test cases that caught a file can be
+ * read (and counted) a word at a time. Cells may be set from several threads at once;
+ * setting a cell never blocks, and a cell once set stays set.
+ */
+public class KillMatrix {
+
+    /**
+     * The number of bits in each word of a row.
+     */
+    private static final int WORD_BITS = Long.SIZE;
+
+    /**
+     * The number of test cases, i.e., the number of rows in byCase.
+     */
+    private final int numCases;
+
+    /**
+     * The number of files, i.e., the number of rows in byFile.
+     */
+    private final int numFiles;
+
+    /**
+     * The number of words in each row of byCase.
+     */
+    private final int caseWords;
+
+    /**
+     * The number of words in each row of byFile.
+     */
+    private final int fileWords;
+
+    /**
+     * The bits of the matrix by test case: bit j of the i-th row (the row starting at
+     * word i * caseWords) is set if the i-th test case caught the j-th file.
+     */
+    private final AtomicLongArray byCase;
+
+    /**
+     * The bits of the matrix by file: bit i of the j-th row (the row starting at word
+     * j * fileWords) is set if the j-th file was caught by the i-th test case.
+     */
+    private final AtomicLongArray byFile;
+
+    /**
+     * Constructor for an empty KillMatrix, in which no test case has caught any file.
+     *
+     * @param numCases the number of test cases
+     * @param numFiles the number of files
+     */
+    public KillMatrix(int numCases, int numFiles) {
+        if (numCases < 0 || numFiles < 0) {
+            throw new IllegalArgumentException("matrix dimensions must be non-negative");
+        }
+        this.numCases = numCases;
+        this.numFiles = numFiles;
+        this.caseWords = wordsFor(numFiles);
+        this.fileWords = wordsFor(numCases);
+        this.byCase = new AtomicLongArray(Math.multiplyExact(numCases, this.caseWords));
+        this.byFile = new AtomicLongArray(Math.multiplyExact(numFiles, this.fileWords));
+    }
+
+    /**
+     * Builds a KillMatrix out of a per-case list of the files that each test case caught.
+     *
+     * @param caseToFiles a list where the i-th element is the set of indices of the files
+     *                    caught by the i-th test case
+     * @param numFiles    the number of files; must be greater than every index in
+     *                    caseToFiles
+     * @return the equivalent KillMatrix
+     */
+    public static KillMatrix fromSets(List<Set<Integer>> caseToFiles, int numFiles) {
+        KillMatrix matrix = new KillMatrix(caseToFiles.size(), numFiles);
+        for (int caseIndex = 0; caseIndex < caseToFiles.size(); caseIndex++) {
+            for (int fileIndex : caseToFiles.get(caseIndex)) {
+                matrix.set(caseIndex, fileIndex);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Returns the number of test cases in the matrix.
+     *
+     * @return the number of test cases
+     */
+    public int getNumCases() {
+        return this.numCases;
+    }
+
+    /**
+     * Returns the number of files in the matrix.
+     *
+     * @return the number of files
+     */
+    public int getNumFiles() {
+        return this.numFiles;
+    }
+
+    /**
+     * Records that the input test case caught the input file. Safe to call from several
+     * threads at once.
+     *
+     * @param caseIndex the index of the test case
+     * @param fileIndex the index of the file
+     */
+    public void set(int caseIndex, int fileIndex) {
+        this.checkCell(caseIndex, fileIndex);
+        setBit(this.byCase, caseIndex * this.caseWords, fileIndex);
+        setBit(this.byFile, fileIndex * this.fileWords, caseIndex);
+    }
+
+    /**
+     * Returns whether the input test case caught the input file.
+     *
+     * @param caseIndex the index of the test case
+     * @param fileIndex the index of the file
+     * @return true if the test case caught the file; false otherwise
+     */
+    public boolean get(int caseIndex, int fileIndex) {
+        this.checkCell(caseIndex, fileIndex);
+        return getBit(this.byCase, caseIndex * this.caseWords, fileIndex);
+    }
+
+    /**
+     * Returns the number of files that the input test case caught.
+     *
+     * @param caseIndex the index of the test case
+     * @return the number of files caught by the test case
+     */
+    public int countFiles(int caseIndex) {
+        Objects.checkIndex(caseIndex, this.numCases);
+        return popCount(this.byCase, caseIndex * this.caseWords, this.caseWords);
+    }
+
+    /**
+     * Returns the number of test cases that caught the input file.
+     *
+     * @param fileIndex the index of the file
+     * @return the number of test cases that caught the file
+     */
+    public int countCases(int fileIndex) {
+        Objects.checkIndex(fileIndex, this.numFiles);
+        return popCount(this.byFile, fileIndex * this.fileWords, this.fileWords);
+    }
+
+    /**
+     * Returns the total number of cells that are set, i.e., the number of (test case,
+     * file) pairs where the test case caught the file.
+     *
+     * @return the number of cells that are set
+     */
+    public long countCells() {
+        return popCount(this.byCase, 0, this.byCase.length());
+    }
+
+    /**
+     * Returns a copy of the row of files caught by the input test case, in the layout of
+     * BitSet.toLongArray().
+     *
+     * @param caseIndex the index of the test case
+     * @return the bits of the files caught by the test case
+     */
+    public long[] getCaseRow(int caseIndex) {
+        Objects.checkIndex(caseIndex, this.numCases);
+        return copyRow(this.byCase, caseIndex * this.caseWords, this.caseWords);
+    }
+
+    /**
+     * Returns a copy of the row of test cases that caught the input file, in the layout
+     * of BitSet.toLongArray().
+     *
+     * @param fileIndex the index of the file
+     * @return the bits of the test cases that caught the file
+     */
+    public long[] getFileRow(int fileIndex) {
+        Objects.checkIndex(fileIndex, this.numFiles);
+        return copyRow(this.byFile, fileIndex * this.fileWords, this.fileWords);
+    }
+
+    /**
+     * Returns a read-only view of the files caught by each test case. The view reads
+     * through to the matrix, so cells set later show up in it.
+     *
+     * @return a list where the i-th element is the set of indices of the files caught by
+     * the i-th test case
+     */
+    public List<Set<Integer>> getCaseToFiles() {
+        return new RowList(this.byCase, this.numCases, this.caseWords, this.numFiles);
+    }
+
+    /**
+     * Returns a read-only view of the test cases that caught each file. The view reads
+     * through to the matrix, so cells set later show up in it.
+     *
+     * @return a list where the j-th element is the set of indices of the test cases that
+     * caught the j-th file
+     */
+    public List<Set<Integer>> getFileToCases() {
+        return new RowList(this.byFile, this.numFiles, this.fileWords, this.numCases);
+    }
+
+    /**
+     * Returns a read-only view of the files that were caught by at least one test case.
+     * The view reads through to the matrix, so cells set later show up in it.
+     *
+     * @return the set of indices of the files caught by one or more test cases
+     */
+    public Set<Integer> getCaughtFiles() {
+        return new AbstractSet<>() {
+            @Override
+            public boolean contains(Object o) {
+                return (o instanceof Integer fileIndex) && fileIndex >= 0
+                        && fileIndex < KillMatrix.this.numFiles
+                        && KillMatrix.this.countCases(fileIndex) > 0;
+            }
+
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<>() {
+                    private int next = this.advance(0);
+
+                    private int advance(int from) {
+                        while (from < KillMatrix.this.numFiles
+                                && KillMatrix.this.countCases(from) == 0) {
+                            from++;
+                        }
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.next < KillMatrix.this.numFiles;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (!this.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int current = this.next;
+                        this.next = this.advance(current + 1);
+                        return current;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (int fileIndex = 0; fileIndex < KillMatrix.this.numFiles; fileIndex++) {
+                    if (KillMatrix.this.countCases(fileIndex) > 0) {
+                        size++;
+                    }
+                }
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Throws an IndexOutOfBoundsException if the input cell is not in the matrix.
+     *
+     * @param caseIndex the index of the test case
+     * @param fileIndex the index of the file
+     */
+    private void checkCell(int caseIndex, int fileIndex) {
+        Objects.checkIndex(caseIndex, this.numCases);
+        Objects.checkIndex(fileIndex, this.numFiles);
+    }
+
+    /**
+     * Returns the number of words needed to hold the input number of bits.
+     *
+     * @param numBits the number of bits
+     * @return the number of words needed
+     */
+    private static int wordsFor(int numBits) {
+        return (numBits + WORD_BITS - 1) / WORD_BITS;
+    }
+
+    /**
+     * Atomically sets a single bit of a row, without blocking.
+     *
+     * @param words the words of the matrix
+     * @param start the index of the first word of the row
+     * @param bit   the index of the bit within the row
+     */
+    private static void setBit(AtomicLongArray words, int start, int bit) {
+        int index = start + bit / WORD_BITS;
+        long mask = 1L << (bit % WORD_BITS);
+        long word = words.get(index);
+        while ((word & mask) == 0 && !words.weakCompareAndSetVolatile(index, word,
+                word | mask)) {
+            word = words.get(index);
+        }
+    }
+
+    /**
+     * Returns a single bit of a row.
+     *
+     * @param words the words of the matrix
+     * @param start the index of the first word of the row
+     * @param bit   the index of the bit within the row
+     * @return true if the bit is set; false otherwise
+     */
+    private static boolean getBit(AtomicLongArray words, int start, int bit) {
+        return (words.get(start + bit / WORD_BITS) & (1L << (bit % WORD_BITS))) != 0;
+    }
+
+    /**
+     * Returns the number of bits set in a range of words.
+     *
+     * @param words    the words of the matrix
+     * @param start    the index of the first word in the range
+     * @param numWords the number of words in the range
+     * @return the number of bits set
+     */
+    private static int popCount(AtomicLongArray words, int start, int numWords) {
+        int count = 0;
+        for (int i = start; i < start + numWords; i++) {
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+
+    /**
+     * Returns a copy of a row.
+     *
+     * @param words    the words of the matrix
+     * @param start    the index of the first word of the row
+     * @param numWords the number of words in the row
+     * @return the words of the row
+     */
+    private static long[] copyRow(AtomicLongArray words, int start, int numWords) {
+        long[] row = new long[numWords];
+        for (int i = 0; i < numWords; i++) {
+            row[i] = words.get(start + i);
+        }
+        return row;
+    }
+
+    /**
+     * A read-only view of the rows of one of the two layouts of the matrix, as a list of
+     * sets of the indices of the bits set in each row.
+     */
+    private static class RowList extends AbstractList<Set<Integer>>
+            implements RandomAccess {
+
+        /**
+         * The words of the layout.
+         */
+        private final AtomicLongArray words;
+
+        /**
+         * The number of rows.
+         */
+        private final int numRows;
+
+        /**
+         * The number of words in each row.
+         */
+        private final int rowWords;
+
+        /**
+         * The number of bits in each row that are actually in use.
+         */
+        private final int rowBits;
+
+        /**
+         * Constructor for a RowList.
+         *
+         * @param words    the words of the layout
+         * @param numRows  the number of rows
+         * @param rowWords the number of words in each row
+         * @param rowBits  the number of bits in each row that are actually in use
+         */
+        RowList(AtomicLongArray words, int numRows, int rowWords, int rowBits) {
+            this.words = words;
+            this.numRows = numRows;
+            this.rowWords = rowWords;
+            this.rowBits = rowBits;
+        }
+
+        @Override
+        public Set<Integer> get(int index) {
+            Objects.checkIndex(index, this.numRows);
+            return new Row(index * this.rowWords);
+        }
+
+        @Override
+        public int size() {
+            return this.numRows;
+        }
+
+        /**
+         * A read-only view of a single row, as the set of the indices of its bits that
+         * are set.
+         */
+        private class Row extends AbstractSet<Integer> {
+
+            /**
+             * The index of the first word of the row.
+             */
+            private final int start;
+
+            /**
+             * Constructor for a Row.
+             *
+             * @param start the index of the first word of the row
+             */
+            Row(int start) {
+                this.start = start;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return (o instanceof Integer bit) && bit >= 0 && bit < RowList.this.rowBits
+                        && getBit(RowList.this.words, this.start, bit);
+            }
+
+            @Override
+            public int size() {
+                return popCount(RowList.this.words, this.start, RowList.this.rowWords);
+            }
+
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<>() {
+                    private int next = this.advance(0);
+
+                    private int advance(int from) {
+                        int wordIndex = from / WORD_BITS;
+                        if (wordIndex >= RowList.this.rowWords) {
+                            return -1;
+                        }
+                        long word = RowList.this.words.get(Row.this.start + wordIndex)
+                                & (-1L << (from % WORD_BITS));
+                        while (word == 0) {
+                            if (++wordIndex >= RowList.this.rowWords) {
+                                return -1;
+                            }
+                            word = RowList.this.words.get(Row.this.start + wordIndex);
+                        }
+                        return wordIndex * WORD_BITS + Long.numberOfTrailingZeros(word);
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.next >= 0;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (!this.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int current = this.next;
+                        this.next = this.advance(current + 1);
+                        return current;
+                    }
+                };
+            }
+        }
+    }
+}
@@ -0,0 +1,653 @@
+package main.rice.test;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A kill matrix kept on disk rather than on the heap, so that the results of testing
+ * huge corpora can be written and queried without ever holding the whole matrix in
+ * memory. The file is memory-mapped, so reads and writes go straight to the page cache;
+ * the matrix is written one cell at a time as outcomes come in, and is marked complete
+ * once every outcome has been recorded.
+ *
+ * The file is laid out as follows, with every number big-endian:
+ * - a 48-byte header: the magic bytes "FEATKILL", the format version (int), a flag that
+ * is 1 once the matrix is complete (int), the number of test cases (int), the number of
+ * files (int), and the offsets of the test-case table, the matrix and the over-budget
+ * matrix (long each);
+ * - the test-case table: numCases + 1 offsets (long each, relative to the start of the
+ * table) followed by the arguments of each test case, as encoded by
+ * ArgEncoder.encodeArgs() in UTF-8, where the i-th test case runs from the i-th offset
+ * to the next one;
+ * - the matrix: one row per test case, each made up of ceil(numFiles / 64) longs, where
+ * bit j of the row (bit j % 64 of its (j / 64)-th long) is set if the test case caught
+ * the j-th file;
+ * - the over-budget matrix: the same, but for the files caught by exceeding their budget.
+ */
+public class KillMatrixFile implements Closeable {
+
+    /**
+     * The magic bytes at the start of every kill matrix file.
+     */
+    private static final byte[] MAGIC = "FEATKILL".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The version of the format written by this class.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the header, in bytes.
+     */
+    private static final int HEADER_BYTES = 48;
+
+    /**
+     * The offset of the completion flag within the header.
+     */
+    private static final int COMPLETE_OFFSET = 12;
+
+    /**
+     * The largest number of bytes to map at once; a matrix bigger than this is mapped in
+     * several segments of whole rows.
+     */
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    /**
+     * The channel of the file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The number of test cases, i.e., the number of rows.
+     */
+    private final int numCases;
+
+    /**
+     * The number of files, i.e., the number of bits in use in each row.
+     */
+    private final int numFiles;
+
+    /**
+     * The number of longs in each row.
+     */
+    private final int rowWords;
+
+    /**
+     * The mapped header.
+     */
+    private final MappedByteBuffer header;
+
+    /**
+     * The mapped test-case table.
+     */
+    private final MappedByteBuffer table;
+
+    /**
+     * The number of rows in each mapped segment of a matrix.
+     */
+    private final int rowsPerSegment;
+
+    /**
+     * The mapped segments of the matrix.
+     */
+    private final MappedByteBuffer[] matrix;
+
+    /**
+     * The mapped segments of the over-budget matrix.
+     */
+    private final MappedByteBuffer[] overBudget;
+
+    /**
+     * Constructor for a KillMatrixFile; maps an existing, valid kill matrix file.
+     *
+     * @param channel  the channel of the file
+     * @param writable whether the matrix may be written to
+     * @throws IOException if the file is not a valid kill matrix file
+     */
+    private KillMatrixFile(FileChannel channel, boolean writable) throws IOException {
+        this.channel = channel;
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE
+                : FileChannel.MapMode.READ_ONLY;
+        if (channel.size() < HEADER_BYTES) {
+            throw new IOException("not a kill matrix file");
+        }
+        this.header = channel.map(mode, 0, HEADER_BYTES);
+        byte[] magic = new byte[MAGIC.length];
+        this.header.get(0, magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("not a kill matrix file");
+        }
+        if (this.header.getInt(8) != VERSION) {
+            throw new IOException("unsupported kill matrix version "
+                    + this.header.getInt(8));
+        }
+        this.numCases = this.header.getInt(16);
+        this.numFiles = this.header.getInt(20);
+        long tableOffset = this.header.getLong(24);
+        long matrixOffset = this.header.getLong(32);
+        long overBudgetOffset = this.header.getLong(40);
+        this.rowWords = (this.numFiles + Long.SIZE - 1) / Long.SIZE;
+        long matrixBytes = (long) this.numCases * this.rowWords * Long.BYTES;
+        if (this.numCases < 0 || this.numFiles < 0 || tableOffset != HEADER_BYTES
+                || matrixOffset < tableOffset
+                || overBudgetOffset != matrixOffset + matrixBytes
+                || channel.size() < overBudgetOffset + matrixBytes) {
+            throw new IOException("corrupt kill matrix file");
+        }
+
+        this.table = channel.map(FileChannel.MapMode.READ_ONLY, tableOffset,
+                matrixOffset - tableOffset);
+        long rowBytes = Math.max(1, (long) this.rowWords * Long.BYTES);
+        this.rowsPerSegment = (int) Math.max(1, MAX_SEGMENT_BYTES / rowBytes);
+        this.matrix = this.mapSegments(mode, matrixOffset);
+        this.overBudget = this.mapSegments(mode, overBudgetOffset);
+    }
+
+    /**
+     * Creates a new kill matrix file for the input test cases and number of files, in
+     * which no test case has caught any file yet, overwriting any existing file. The
+     * returned matrix must be closed once it is no longer needed.
+     *
+     * @param path     the path to the file
+     * @param tests    the test cases, i.e., the rows of the matrix
+     * @param numFiles the number of files, i.e., the columns of the matrix
+     * @return the new, empty matrix, open for writing
+     * @throws IOException if the file cannot be written
+     */
+    public static KillMatrixFile create(String path, List<TestCase> tests, int numFiles)
+            throws IOException {
+        // Lay out the test-case table
+        byte[][] encoded = new byte[tests.size()][];
+        long[] offsets = new long[tests.size() + 1];
+        offsets[0] = (long) (tests.size() + 1) * Long.BYTES;
+        for (int i = 0; i < tests.size(); i++) {
+            encoded[i] = ArgEncoder.encodeArgs(tests.get(i)).toString()
+                    .getBytes(StandardCharsets.UTF_8);
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+
+        // Keep the matrices aligned to whole longs
+        long tableOffset = HEADER_BYTES;
+        long matrixOffset = tableOffset + offsets[tests.size()];
+        matrixOffset += (Long.BYTES - matrixOffset % Long.BYTES) % Long.BYTES;
+        long matrixBytes = (long) tests.size() * ((numFiles + Long.SIZE - 1) / Long.SIZE)
+                * Long.BYTES;
+
+        Path file = Paths.get(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES);
+            head.put(MAGIC).putInt(VERSION).putInt(0).putInt(tests.size()).putInt(numFiles)
+                    .putLong(tableOffset).putLong(matrixOffset)
+                    .putLong(matrixOffset + matrixBytes);
+            writeFully(channel, head.flip(), 0);
+            ByteBuffer index = ByteBuffer.allocate(offsets.length * Long.BYTES);
+            for (long offset : offsets) {
+                index.putLong(offset);
+            }
+            writeFully(channel, index.flip(), tableOffset);
+            for (int i = 0; i < tests.size(); i++) {
+                writeFully(channel, ByteBuffer.wrap(encoded[i]), tableOffset + offsets[i]);
+            }
+
+            // Extending the file fills both matrices with zeros, i.e., no cell set
+            long size = matrixOffset + 2 * matrixBytes;
+            if (size > matrixOffset) {
+                writeFully(channel, ByteBuffer.allocate(1), size - 1);
+            }
+            return new KillMatrixFile(channel, true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing kill matrix file for reading. The returned matrix must be closed
+     * once it is no longer needed.
+     *
+     * @param path the path to the file
+     * @return the matrix in the file, open for reading only
+     * @throws IOException if the file cannot be read or is not a valid kill matrix file
+     */
+    public static KillMatrixFile open(String path) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try {
+            return new KillMatrixFile(channel, false);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of test cases in the matrix.
+     *
+     * @return the number of test cases
+     */
+    public int getNumCases() {
+        return this.numCases;
+    }
+
+    /**
+     * Returns the number of files in the matrix.
+     *
+     * @return the number of files
+     */
+    public int getNumFiles() {
+        return this.numFiles;
+    }
+
+    /**
+     * Returns the number of longs in each row of the matrix.
+     *
+     * @return the number of longs in each row
+     */
+    public int getRowWords() {
+        return this.rowWords;
+    }
+
+    /**
+     * Returns whether every outcome was recorded in the matrix before it was closed;
+     * an incomplete matrix is one whose run was interrupted.
+     *
+     * @return true if the matrix is complete; false otherwise
+     */
+    public boolean isComplete() {
+        return this.header.getInt(COMPLETE_OFFSET) == 1;
+    }
+
+    /**
+     * Returns the index-th test case in the test-case table. Since characters and strings
+     * are encoded the same way, every string in the test case is decoded as a
+     * PyStringObj.
+     *
+     * @param index the index of the test case
+     * @return the index-th test case
+     * @throws IllegalArgumentException if the test case cannot be decoded
+     */
+    public TestCase getTestCase(int index) {
+        Objects.checkIndex(index, this.numCases);
+        long start = this.table.getLong(index * Long.BYTES);
+        long end = this.table.getLong((index + 1) * Long.BYTES);
+        byte[] encoded = new byte[(int) (end - start)];
+        this.table.get((int) start, encoded);
+        try {
+            return ArgEncoder.decodeArgs(new JSONArray(
+                    new String(encoded, StandardCharsets.UTF_8)));
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("corrupt test case " + index, e);
+        }
+    }
+
+    /**
+     * Returns whether the input test case caught the input file.
+     *
+     * @param caseIndex the index of the test case
+     * @param fileIndex the index of the file
+     * @return true if the test case caught the file; false otherwise
+     */
+    public boolean get(int caseIndex, int fileIndex) {
+        Objects.checkIndex(fileIndex, this.numFiles);
+        return (this.getWord(caseIndex, fileIndex / Long.SIZE)
+                & (1L << (fileIndex % Long.SIZE))) != 0;
+    }
+
+    /**
+     * Returns whether the input test case caught the input file by exceeding its budget.
+     *
+     * @param caseIndex the index of the test case
+     * @param fileIndex the index of the file
+     * @return true if the file exceeded its budget on the test case; false otherwise
+     */
+    public boolean isOverBudget(int caseIndex, int fileIndex) {
+        Objects.checkIndex(caseIndex, this.numCases);
+        Objects.checkIndex(fileIndex, this.numFiles);
+        return (this.getOverBudgetWord(caseIndex, fileIndex / Long.SIZE)
+                & (1L << (fileIndex % Long.SIZE))) != 0;
+    }
+
+    /**
+     * Returns a single long of the row of files caught by the input test case.
+     *
+     * @param caseIndex the index of the test case
+     * @param wordIndex the index of the long within the row
+     * @return bit j of the result is set if the test case caught file 64 * wordIndex + j
+     */
+    public long getWord(int caseIndex, int wordIndex) {
+        Objects.checkIndex(caseIndex, this.numCases);
+        Objects.checkIndex(wordIndex, this.rowWords);
+        return this.matrix[caseIndex / this.rowsPerSegment].getLong(
+                this.wordPosition(caseIndex, wordIndex));
+    }
+
+    /**
+     * Returns the number of files that the input test case caught.
+     *
+     * @param caseIndex the index of the test case
+     * @return the number of files caught by the test case
+     */
+    public int countFiles(int caseIndex) {
+        int count = 0;
+        for (int wordIndex = 0; wordIndex < this.rowWords; wordIndex++) {
+            count += Long.bitCount(this.getWord(caseIndex, wordIndex));
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of cells of the matrix that are set, i.e., the number of (test
+     * case, file) pairs where the test case caught the file.
+     *
+     * @return the number of cells set
+     */
+    public long countCells() {
+        long count = 0;
+        for (int caseIndex = 0; caseIndex < this.numCases; caseIndex++) {
+            count += this.countFiles(caseIndex);
+        }
+        return count;
+    }
+
+    /**
+     * Returns a read-only view of the files caught by each test case. The view reads
+     * through to the file, so cells set later show up in it.
+     *
+     * @return a list where the i-th element is the set of indices of the files caught by
+     * the i-th test case
+     */
+    public List<Set<Integer>> getCaseToFiles() {
+        return new RowList(false);
+    }
+
+    /**
+     * Returns a read-only view of the files caught by each test case by exceeding their
+     * budget. The view reads through to the file, so cells set later show up in it.
+     *
+     * @return a list where the i-th element is the set of indices of the files that
+     * exceeded their budget on the i-th test case
+     */
+    public List<Set<Integer>> getCaseToOverBudget() {
+        return new RowList(true);
+    }
+
+    /**
+     * Returns the files that were caught by at least one test case, as of now.
+     *
+     * @return the set of indices of the files caught by one or more test cases
+     */
+    public SortedSet<Integer> getCaughtFiles() {
+        long[] caught = new long[this.rowWords];
+        for (int caseIndex = 0; caseIndex < this.numCases; caseIndex++) {
+            for (int wordIndex = 0; wordIndex < this.rowWords; wordIndex++) {
+                caught[wordIndex] |= this.getWord(caseIndex, wordIndex);
+            }
+        }
+        SortedSet<Integer> files = new TreeSet<>();
+        BitSet.valueOf(caught).stream().forEach(files::add);
+        return Collections.unmodifiableSortedSet(files);
+    }
+
+    /**
+     * Copies the matrix (but not the over-budget matrix) onto the heap.
+     *
+     * @return a KillMatrix holding the same cells as this one
+     */
+    public KillMatrix toKillMatrix() {
+        KillMatrix copy = new KillMatrix(this.numCases, this.numFiles);
+        for (int caseIndex = 0; caseIndex < this.numCases; caseIndex++) {
+            for (int wordIndex = 0; wordIndex < this.rowWords; wordIndex++) {
+                long word = this.getWord(caseIndex, wordIndex);
+                while (word != 0) {
+                    copy.set(caseIndex, wordIndex * Long.SIZE
+                            + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Records that the input test case caught the input file.
+     *
+     * @param caseIndex  the index of the test case
+     * @param fileIndex  the index of the file
+     * @param overBudget whether the file was caught by exceeding its budget
+     * @throws java.nio.ReadOnlyBufferException if the matrix was opened for reading only
+     */
+    public synchronized void set(int caseIndex, int fileIndex, boolean overBudget) {
+        Objects.checkIndex(caseIndex, this.numCases);
+        Objects.checkIndex(fileIndex, this.numFiles);
+        int position = this.wordPosition(caseIndex, fileIndex / Long.SIZE);
+        long mask = 1L << (fileIndex % Long.SIZE);
+        MappedByteBuffer segment = this.matrix[caseIndex / this.rowsPerSegment];
+        segment.putLong(position, segment.getLong(position) | mask);
+        if (overBudget) {
+            segment = this.overBudget[caseIndex / this.rowsPerSegment];
+            segment.putLong(position, segment.getLong(position) | mask);
+        }
+    }
+
+    /**
+     * Marks the matrix as complete, once every outcome has been recorded in it.
+     *
+     * @throws IOException if the matrix cannot be written to disk
+     * @throws java.nio.ReadOnlyBufferException if the matrix was opened for reading only
+     */
+    public synchronized void finish() throws IOException {
+        for (MappedByteBuffer segment : this.matrix) {
+            segment.force();
+        }
+        for (MappedByteBuffer segment : this.overBudget) {
+            segment.force();
+        }
+        this.header.putInt(COMPLETE_OFFSET, 1);
+        this.header.force();
+    }
+
+    /**
+     * Closes the file; the matrix may no longer be written afterward. Since a mapping
+     * outlives the channel it was made through, the matrix (and any view of it) can
+     * still be read.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Maps a matrix in segments of whole rows.
+     *
+     * @param mode   the mode to map the matrix in
+     * @param offset the offset of the matrix within the file
+     * @return the mapped segments, where the i-th one holds rows starting at
+     * i * rowsPerSegment
+     * @throws IOException if the matrix cannot be mapped
+     */
+    private MappedByteBuffer[] mapSegments(FileChannel.MapMode mode, long offset)
+            throws IOException {
+        int numSegments = (this.numCases + this.rowsPerSegment - 1) / this.rowsPerSegment;
+        MappedByteBuffer[] segments = new MappedByteBuffer[numSegments];
+        long rowBytes = (long) this.rowWords * Long.BYTES;
+        for (int i = 0; i < numSegments; i++) {
+            int numRows = Math.min(this.rowsPerSegment,
+                    this.numCases - i * this.rowsPerSegment);
+            segments[i] = this.channel.map(mode,
+                    offset + (long) i * this.rowsPerSegment * rowBytes, numRows * rowBytes);
+        }
+        return segments;
+    }
+
+    /**
+     * Returns the position of a single long of a row within its mapped segment.
+     *
+     * @param caseIndex the index of the test case
+     * @param wordIndex the index of the long within the row
+     * @return the position of the long within its segment
+     */
+    private int wordPosition(int caseIndex, int wordIndex) {
+        return ((caseIndex % this.rowsPerSegment) * this.rowWords + wordIndex) * Long.BYTES;
+    }
+
+    /**
+     * Returns a single long of the row of files caught by the input test case by
+     * exceeding their budget.
+     *
+     * @param caseIndex the index of the test case
+     * @param wordIndex the index of the long within the row
+     * @return bit j of the result is set if file 64 * wordIndex + j exceeded its budget
+     */
+    private long getOverBudgetWord(int caseIndex, int wordIndex) {
+        return this.overBudget[caseIndex / this.rowsPerSegment].getLong(
+                this.wordPosition(caseIndex, wordIndex));
+    }
+
+    /**
+     * Writes the whole of the input buffer to the channel at the input position.
+     *
+     * @param channel  the channel to write to
+     * @param buffer   the buffer to be written
+     * @param position the position to write at
+     * @throws IOException if the channel cannot be written to
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * A read-only view of the rows of one of the two matrices, as a list of sets of the
+     * indices of the files set in each row.
+     */
+    private class RowList extends AbstractList<Set<Integer>> implements RandomAccess {
+
+        /**
+         * Whether the view is of the over-budget matrix.
+         */
+        private final boolean overBudget;
+
+        /**
+         * Constructor for a RowList.
+         *
+         * @param overBudget whether the view is of the over-budget matrix
+         */
+        RowList(boolean overBudget) {
+            this.overBudget = overBudget;
+        }
+
+        @Override
+        public Set<Integer> get(int index) {
+            Objects.checkIndex(index, KillMatrixFile.this.numCases);
+            return new Row(index);
+        }
+
+        @Override
+        public int size() {
+            return KillMatrixFile.this.numCases;
+        }
+
+        /**
+         * Returns a single long of a row of the matrix the view is of.
+         *
+         * @param caseIndex the index of the test case
+         * @param wordIndex the index of the long within the row
+         * @return the long
+         */
+        private long word(int caseIndex, int wordIndex) {
+            return this.overBudget ? KillMatrixFile.this.getOverBudgetWord(caseIndex,
+                    wordIndex) : KillMatrixFile.this.getWord(caseIndex, wordIndex);
+        }
+
+        /**
+         * A read-only view of a single row, as the set of the indices of the files set
+         * in it.
+         */
+        private class Row extends AbstractSet<Integer> {
+
+            /**
+             * The index of the test case.
+             */
+            private final int caseIndex;
+
+            /**
+             * Constructor for a Row.
+             *
+             * @param caseIndex the index of the test case
+             */
+            Row(int caseIndex) {
+                this.caseIndex = caseIndex;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return (o instanceof Integer fileIndex) && fileIndex >= 0
+                        && fileIndex < KillMatrixFile.this.numFiles
+                        && (RowList.this.word(this.caseIndex, fileIndex / Long.SIZE)
+                        & (1L << (fileIndex % Long.SIZE))) != 0;
+            }
+
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<>() {
+                    private int wordIndex = 0;
+                    private long word = this.load(0);
+
+                    private long load(int index) {
+                        return (index < KillMatrixFile.this.rowWords)
+                                ? RowList.this.word(Row.this.caseIndex, index) : 0;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        while (this.word == 0
+                                && this.wordIndex < KillMatrixFile.this.rowWords - 1) {
+                            this.word = this.load(++this.wordIndex);
+                        }
+                        return this.word != 0;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (!this.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int bit = Long.numberOfTrailingZeros(this.word);
+                        this.word &= this.word - 1;
+                        return this.wordIndex * Long.SIZE + bit;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (int i = 0; i < KillMatrixFile.this.rowWords; i++) {
+                    size += Long.bitCount(RowList.this.word(this.caseIndex, i));
+                }
+                return size;
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package main.rice.test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A kill matrix whose cells are only computed when they are asked for. Where
+ * TestResults holds the outcome of every test case on every file, a KillOracle runs a
+ * test case on just the files a caller is still interested in, so that a caller which
+ * needs only part of the matrix does not pay for all of it.
+ */
+public interface KillOracle extends Closeable {
+
+    /**
+     * Returns the number of test cases (rows) in the matrix.
+     *
+     * @return the number of test cases
+     */
+    int getNumCases();
+
+    /**
+     * Returns the number of files (columns) in the matrix.
+     *
+     * @return the number of files
+     */
+    int getNumFiles();
+
+    /**
+     * Returns the test case at the input index.
+     *
+     * @param caseIndex the index of the test case to be returned
+     * @return the caseIndex-th test case
+     */
+    TestCase getTestCase(int caseIndex);
+
+    /**
+     * Runs a single test case on the input files and returns the ones it caught.
+     *
+     * @param caseIndex the index of the test case to be run
+     * @param files     the indices of the files to run it on
+     * @return the subset of files that the test case caught
+     * @throws IOException if the test case cannot be run
+     * @throws InterruptedException if interrupted while running the test case
+     */
+    Set<Integer> getCaught(int caseIndex, Set<Integer> files)
+            throws IOException, InterruptedException;
+
+    /**
+     * Runs a block of cells at once and returns the ones that caught their file. The
+     * cells are grouped by file, so that an oracle can run every test case requested of
+     * a file together; by default, each test case is run on its files separately.
+     *
+     * @param cells the indices of the test cases to be run on each file, by file index
+     * @return the indices of the requested test cases that caught each file, by file
+     * index; files that none of them caught may be left out
+     * @throws IOException if a test case cannot be run
+     * @throws InterruptedException if interrupted while running a test case
+     */
+    default Map<Integer, Set<Integer>> getCaught(Map<Integer, Set<Integer>> cells)
+            throws IOException, InterruptedException {
+        Map<Integer, Set<Integer>> filesByCase = new TreeMap<>();
+        for (Map.Entry<Integer, Set<Integer>> entry : cells.entrySet()) {
+            for (int caseIndex : entry.getValue()) {
+                filesByCase.computeIfAbsent(caseIndex, k -> new TreeSet<>())
+                        .add(entry.getKey());
+            }
+        }
+        Map<Integer, Set<Integer>> caught = new TreeMap<>();
+        for (Map.Entry<Integer, Set<Integer>> entry : filesByCase.entrySet()) {
+            for (int fileIndex : this.getCaught(entry.getKey(), entry.getValue())) {
+                caught.computeIfAbsent(fileIndex, k -> new TreeSet<>())
+                        .add(entry.getKey());
+            }
+        }
+        return caught;
+    }
+
+    /**
+     * Returns the number of test cases that are worth running on a file at once, e.g.
+     * because they share a process; callers may use this to decide how many cells to ask
+     * for per file in a single call to getCaught().
+     *
+     * @return the preferred number of test cases per file per call; 1 by default
+     */
+    default int getBatchWidth() {
+        return 1;
+    }
+}
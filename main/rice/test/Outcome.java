@@ -0,0 +1,59 @@
+package main.rice.test;
+
+/**
+ * The outcome of running a single test case on a single buggy implementation.
+ */
+public enum Outcome {
+
+    /**
+     * The implementation returned the expected result.
+     */
+    PASS,
+
+    /**
+     * The implementation returned an unexpected result, raised an exception, or crashed.
+     */
+    FAIL,
+
+    /**
+     * The implementation ran out of its wall-clock, CPU, or memory budget and was
+     * stopped; this is a kind of failure, but one worth telling apart from the others.
+     */
+    OVER_BUDGET;
+
+    /**
+     * The result that the wrapper reports for a test case that exceeded its budget.
+     */
+    static final String OVER_BUDGET_RESULT = "OverBudget";
+
+    /**
+     * Converts a result reported by the wrapper into an Outcome.
+     *
+     * @param result the result reported by the wrapper; may be null if none was reported
+     * @return the corresponding Outcome
+     */
+    static Outcome fromResult(String result) {
+        if ("True".equals(result)) {
+            return PASS;
+        } else if (OVER_BUDGET_RESULT.equals(result)) {
+            return OVER_BUDGET;
+        }
+        return FAIL;
+    }
+
+    /**
+     * Converts a single character of the result vector reported by the wrapper in batch
+     * mode into an Outcome.
+     *
+     * @param code the character reported for a test case
+     * @return the corresponding Outcome
+     */
+    static Outcome fromCode(char code) {
+        if (code == '1') {
+            return PASS;
+        } else if (code == 'B') {
+            return OVER_BUDGET;
+        }
+        return FAIL;
+    }
+}
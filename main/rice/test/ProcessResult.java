@@ -0,0 +1,119 @@
+package main.rice.test;
+
+/**
+ * The outcome of running a single process to completion through ProcessRunner: its exit
+ * code plus a bounded tail of everything it wrote to stdout.
+ */
+public class ProcessResult {
+
+    /**
+     * The exit code of the process.
+     */
+    private final int exitCode;
+
+    /**
+     * The retained tail of the process's stdout.
+     */
+    private final String stdout;
+
+    /**
+     * The total number of bytes the process wrote to stdout, including any that were
+     * discarded.
+     */
+    private final long stdoutBytes;
+
+    /**
+     * Whether part of the process's stdout was discarded because it exceeded the output
+     * limit.
+     */
+    private final boolean truncated;
+
+    /**
+     * Whether the process was killed for running past its deadline.
+     */
+    private final boolean timedOut;
+
+    /**
+     * Constructor for a ProcessResult; initializes all fields.
+     *
+     * @param exitCode    the exit code of the process
+     * @param stdout      the retained tail of the process's stdout
+     * @param stdoutBytes the total number of bytes written to stdout
+     * @param truncated   whether part of stdout was discarded
+     * @param timedOut    whether the process was killed for running past its deadline
+     */
+    public ProcessResult(int exitCode, String stdout, long stdoutBytes, boolean truncated,
+                         boolean timedOut) {
+        this.exitCode = exitCode;
+        this.stdout = stdout;
+        this.stdoutBytes = stdoutBytes;
+        this.truncated = truncated;
+        this.timedOut = timedOut;
+    }
+
+    /**
+     * Returns the exit code of the process.
+     *
+     * @return the exit code of the process
+     */
+    public int getExitCode() {
+        return this.exitCode;
+    }
+
+    /**
+     * Returns the retained tail of the process's stdout.
+     *
+     * @return the retained tail of the process's stdout
+     */
+    public String getStdout() {
+        return this.stdout;
+    }
+
+    /**
+     * Returns the total number of bytes the process wrote to stdout, including any that
+     * were discarded.
+     *
+     * @return the total number of bytes written to stdout by the process
+     */
+    public long getBytesWritten() {
+        return this.stdoutBytes;
+    }
+
+    /**
+     * Returns whether part of the process's stdout was discarded because it exceeded
+     * the output limit.
+     *
+     * @return true if stdout was truncated; false otherwise
+     */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
+
+    /**
+     * Returns whether the process was killed for running past its deadline.
+     *
+     * @return true if the process timed out; false otherwise
+     */
+    public boolean isTimedOut() {
+        return this.timedOut;
+    }
+
+    /**
+     * Returns the last line the process wrote to stdout (without its line terminator),
+     * which is where the Python scripts run by the Tester report their results.
+     *
+     * @return the last line of stdout, or the empty string if there was no output
+     */
+    public String getLastLine() {
+        String out = this.stdout;
+
+        // A trailing line terminator ends the last line rather than starting a new one
+        if (out.endsWith("\r\n")) {
+            out = out.substring(0, out.length() - 2);
+        } else if (out.endsWith("\n") || out.endsWith("\r")) {
+            out = out.substring(0, out.length() - 1);
+        }
+        int start = Math.max(out.lastIndexOf('\n'), out.lastIndexOf('\r')) + 1;
+        return out.substring(start);
+    }
+}
@@ -0,0 +1,243 @@
+package main.rice.test;
+
+import main.rice.metrics.Metrics;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Stateless class for running a process to completion without risking a deadlock on a
+ * full pipe. The process's stdout is drained on a separate thread while it runs, and
+ * only a bounded tail of it is kept, so an implementation that prints without end costs
+ * a fixed amount of memory; its stderr, which nothing reads, is discarded by the
+ * operating system. Its stdin is written up front if the input fits in the pipe, and
+ * fed on another thread otherwise.
+ */
+public class ProcessRunner {
+
+    /**
+     * The default number of bytes of stdout that are retained.
+     */
+    public static final int DEFAULT_OUTPUT_LIMIT = 1 << 20;
+
+    /**
+     * The largest input that is written to a process's stdin before its stdout is
+     * drained, rather than on a thread of its own; every platform's pipes buffer at
+     * least this much, so writing it never waits on the process.
+     */
+    private static final int INLINE_INPUT_LIMIT = 1 << 12;
+
+    /**
+     * The threads that feed and drain the pipes of every running process. These spend
+     * nearly all of their time blocked on I/O, so they are cheap daemon threads that are
+     * created on demand and reused once idle.
+     */
+    private static final ExecutorService PIPES = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "feat-pipe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Runs a process to completion.
+     *
+     * @param command     the command used to start the process
+     * @param input       the data to be written to the process's stdin, which is closed
+     *                    afterwards; may be null if the process reads nothing
+     * @param outputLimit the number of trailing bytes of stdout to be retained
+     * @return the exit code of the process and the retained tail of its output
+     * @throws IOException if the process cannot be started or its output cannot be read
+     * @throws InterruptedException if interrupted while waiting for the process, in which
+     *                              case the process is killed
+     */
+    public static ProcessResult run(List<String> command, String input, int outputLimit)
+            throws IOException, InterruptedException {
+        return run(command, Map.of(), input, outputLimit, 0);
+    }
+
+    /**
+     * Runs a process until it exits or its deadline passes, whichever comes first.
+     *
+     * @param command       the command used to start the process
+     * @param env           additional environment variables for the process
+     * @param input         the data to be written to the process's stdin, which is closed
+     *                      afterwards; may be null if the process reads nothing
+     * @param outputLimit   the number of trailing bytes of stdout to be retained
+     * @param timeoutMillis the number of milliseconds after which the process is killed;
+     *                      0 for no deadline
+     * @return the exit code of the process and the retained tail of its output
+     * @throws IOException if the process cannot be started or its output cannot be read
+     * @throws InterruptedException if interrupted while waiting for the process, in which
+     *                              case the process is killed
+     */
+    public static ProcessResult run(List<String> command, Map<String, String> env,
+                                    String input, int outputLimit, long timeoutMillis)
+            throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.environment().putAll(env);
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        long start = Metrics.startTimer();
+        Process process = pb.start();
+        Metrics.observeSince("feat_process_spawn_seconds", start);
+        Metrics.increment("feat_processes_started_total", 1);
+        try {
+            // Feed stdin and drain stdout concurrently, so that the process never blocks
+            // on a pipe that nobody is servicing; an input small enough to fit in the
+            // pipe cannot block, so it needs no thread of its own
+            byte[] data = (input == null) ? new byte[0]
+                    : input.getBytes(StandardCharsets.UTF_8);
+            if (data.length <= INLINE_INPUT_LIMIT) {
+                feed(process.getOutputStream(), data);
+            } else {
+                PIPES.submit(() -> feed(process.getOutputStream(), data));
+            }
+            Future<TailBuffer> stdout =
+                    PIPES.submit(() -> drain(process.getInputStream(), outputLimit));
+
+            // Kill the process if it runs past its deadline; killing it also closes its
+            // pipes, which lets the drains finish
+            boolean timedOut = false;
+            if (timeoutMillis > 0) {
+                timedOut = !process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+                if (timedOut) {
+                    process.descendants().forEach(ProcessHandle::destroyForcibly);
+                    process.destroyForcibly();
+                }
+            }
+            int exitCode = process.waitFor();
+            TailBuffer out = stdout.get();
+            Metrics.increment("feat_pipe_bytes_read_total", out.total);
+            return new ProcessResult(exitCode, out.toString(), out.total,
+                    out.total > out.size, timedOut);
+        } catch (ExecutionException e) {
+            throw new IOException("could not read process output", e.getCause());
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Writes the input to a process's stdin and then closes it.
+     *
+     * @param stdin the process's stdin
+     * @param data  the data to be written
+     */
+    private static void feed(OutputStream stdin, byte[] data) {
+        try (stdin) {
+            if (data.length > 0) {
+                stdin.write(data);
+                Metrics.increment("feat_pipe_bytes_written_total", data.length);
+            }
+        } catch (IOException e) {
+            // The process exited without reading all of its input, which is its own
+            // business; its exit code and output are still collected as usual
+        }
+    }
+
+    /**
+     * Reads everything from a process's stdout, retaining only the last limit bytes.
+     *
+     * @param stream the stream to be drained
+     * @param limit  the number of trailing bytes to be retained
+     * @return the retained bytes
+     * @throws IOException if the stream cannot be read
+     */
+    private static TailBuffer drain(InputStream stream, int limit) throws IOException {
+        TailBuffer tail = new TailBuffer(limit);
+        byte[] chunk = new byte[8192];
+        try (stream) {
+            int numRead;
+            while ((numRead = stream.read(chunk)) != -1) {
+                tail.append(chunk, numRead);
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * A ring buffer holding the last few bytes written to it. The buffer starts small and
+     * grows as bytes come in, so a generous capacity costs nothing unless the process
+     * actually prints that much; it only wraps around once it has reached its capacity.
+     */
+    private static class TailBuffer {
+
+        /**
+         * The number of bytes the buffer starts out with room for.
+         */
+        private static final int INITIAL_SIZE = 1 << 13;
+
+        /**
+         * The number of trailing bytes to retain.
+         */
+        private final int capacity;
+
+        /**
+         * The retained bytes, starting at index (total % data.length) once full; until
+         * data.length reaches capacity, the bytes simply start at index 0.
+         */
+        private byte[] data;
+
+        /**
+         * The number of bytes currently retained.
+         */
+        private int size = 0;
+
+        /**
+         * The total number of bytes ever appended.
+         */
+        private long total = 0;
+
+        /**
+         * Constructor for a TailBuffer.
+         *
+         * @param capacity the number of trailing bytes to retain
+         */
+        TailBuffer(int capacity) {
+            this.capacity = Math.max(1, capacity);
+            this.data = new byte[Math.min(this.capacity, INITIAL_SIZE)];
+        }
+
+        /**
+         * Appends the first len bytes of chunk, discarding the oldest bytes if needed.
+         *
+         * @param chunk the bytes to be appended
+         * @param len   the number of bytes of chunk to be appended
+         */
+        void append(byte[] chunk, int len) {
+            // Make room for the chunk if the buffer has yet to reach its capacity; the
+            // buffer has not wrapped around yet, so its bytes keep their indices
+            if (this.total + len > this.data.length && this.data.length < this.capacity) {
+                long needed = Math.max(this.total + len, 2L * this.data.length);
+                this.data = Arrays.copyOf(this.data, (int) Math.min(this.capacity, needed));
+            }
+
+            // Bytes that would be overwritten within this same chunk are only counted
+            int skip = Math.max(0, len - this.data.length);
+            this.total += skip;
+            for (int i = skip; i < len; i++) {
+                this.data[(int) (this.total % this.data.length)] = chunk[i];
+                this.total++;
+            }
+            this.size = (int) Math.min(this.total, this.data.length);
+        }
+
+        /**
+         * Decodes the retained bytes, oldest first, as UTF-8.
+         *
+         * @return the retained bytes as a string
+         */
+        @Override
+        public String toString() {
+            byte[] ordered = new byte[this.size];
+            int start = (int) ((this.total - this.size) % this.data.length);
+            for (int i = 0; i < this.size; i++) {
+                ordered[i] = this.data[(start + i) % this.data.length];
+            }
+            return new String(ordered, StandardCharsets.UTF_8);
+        }
+    }
+}
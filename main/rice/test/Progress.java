@@ -0,0 +1,133 @@
+package main.rice.test;
+
+/**
+ * A snapshot of how far along a call to runTests() is, as reported to a TestListener.
+ * Progress is measured in cells of the kill matrix, i.e., (test case, implementation)
+ * pairs.
+ */
+public class Progress {
+
+    /**
+     * The number of cells whose outcomes are known.
+     */
+    private final long cellsDone;
+
+    /**
+     * The total number of cells in the matrix.
+     */
+    private final long totalCells;
+
+    /**
+     * The number of implementations whose outcomes are all known.
+     */
+    private final int filesDone;
+
+    /**
+     * The total number of implementations.
+     */
+    private final int totalFiles;
+
+    /**
+     * The number of milliseconds since the run started.
+     */
+    private final long elapsedMillis;
+
+    /**
+     * Constructor for a Progress.
+     *
+     * @param cellsDone     the number of cells whose outcomes are known
+     * @param totalCells    the total number of cells in the matrix
+     * @param filesDone     the number of implementations whose outcomes are all known
+     * @param totalFiles    the total number of implementations
+     * @param elapsedMillis the number of milliseconds since the run started
+     */
+    public Progress(long cellsDone, long totalCells, int filesDone, int totalFiles,
+                    long elapsedMillis) {
+        this.cellsDone = cellsDone;
+        this.totalCells = totalCells;
+        this.filesDone = filesDone;
+        this.totalFiles = totalFiles;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Returns the number of cells whose outcomes are known.
+     *
+     * @return the number of cells whose outcomes are known
+     */
+    public long getCellsDone() {
+        return this.cellsDone;
+    }
+
+    /**
+     * Returns the total number of cells in the matrix.
+     *
+     * @return the total number of cells in the matrix
+     */
+    public long getTotalCells() {
+        return this.totalCells;
+    }
+
+    /**
+     * Returns the number of implementations whose outcomes are all known.
+     *
+     * @return the number of implementations whose outcomes are all known
+     */
+    public int getFilesDone() {
+        return this.filesDone;
+    }
+
+    /**
+     * Returns the total number of implementations.
+     *
+     * @return the total number of implementations
+     */
+    public int getTotalFiles() {
+        return this.totalFiles;
+    }
+
+    /**
+     * Returns the number of milliseconds since the run started.
+     *
+     * @return the number of milliseconds since the run started
+     */
+    public long getElapsedMillis() {
+        return this.elapsedMillis;
+    }
+
+    /**
+     * Returns the average rate at which cells have finished so far.
+     *
+     * @return the number of cells finished per second, or 0 if no time has passed
+     */
+    public double getTestsPerSecond() {
+        return (this.elapsedMillis == 0) ? 0 : this.cellsDone * 1000.0 / this.elapsedMillis;
+    }
+
+    /**
+     * Estimates how much longer the run will take, assuming the remaining cells finish
+     * at the same average rate as the ones so far.
+     *
+     * @return the estimated number of milliseconds remaining, or -1 if no cell has
+     * finished yet
+     */
+    public long getEtaMillis() {
+        if (this.cellsDone == 0) {
+            return -1;
+        }
+        return this.elapsedMillis * (this.totalCells - this.cellsDone) / this.cellsDone;
+    }
+
+    /**
+     * Summarizes the progress in a single line, e.g. for printing to a terminal.
+     *
+     * @return a human-readable summary of the progress
+     */
+    @Override
+    public String toString() {
+        long eta = this.getEtaMillis();
+        return String.format("%d/%d implementations, %d/%d tests, %.1f tests/s, ETA %s",
+                this.filesDone, this.totalFiles, this.cellsDone, this.totalCells,
+                this.getTestsPerSecond(), (eta < 0) ? "unknown" : (eta / 1000) + "s");
+    }
+}
@@ -0,0 +1,92 @@
+package main.rice.test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of which cells of the kill matrix a single call to runTests() has finished,
+ * and passes each one on to a TestListener as it finishes.
+ */
+class ProgressTracker {
+
+    /**
+     * The listener to be notified.
+     */
+    private final TestListener listener;
+
+    /**
+     * The index of each implementation, by name.
+     */
+    private final Map<String, Integer> fileIndices = new HashMap<>();
+
+    /**
+     * The number of cells of each implementation that have yet to finish.
+     */
+    private final int[] remaining;
+
+    /**
+     * The total number of cells in the matrix.
+     */
+    private final long totalCells;
+
+    /**
+     * The number of cells that have finished.
+     */
+    private long cellsDone = 0;
+
+    /**
+     * The number of implementations whose cells have all finished.
+     */
+    private int filesDone = 0;
+
+    /**
+     * The time at which the run started, in nanoseconds.
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Constructor for a ProgressTracker.
+     *
+     * @param listener  the listener to be notified
+     * @param filenames the sorted names of the implementations
+     * @param numTests  the number of test cases
+     */
+    ProgressTracker(TestListener listener, List<String> filenames, int numTests) {
+        this.listener = listener;
+        this.remaining = new int[filenames.size()];
+        for (int fileIndex = 0; fileIndex < filenames.size(); fileIndex++) {
+            this.fileIndices.put(filenames.get(fileIndex), fileIndex);
+            this.remaining[fileIndex] = numTests;
+        }
+        this.totalCells = (long) numTests * filenames.size();
+    }
+
+    /**
+     * Records the outcome of a single cell and notifies the listener.
+     *
+     * @param filename  the name of the implementation
+     * @param outcomes  the array holding the outcomes of every test case on the
+     *                  implementation
+     * @param testIndex the index of the test case
+     * @param outcome   the outcome of the test case
+     */
+    synchronized void record(String filename, Outcome[] outcomes, int testIndex,
+                             Outcome outcome) {
+        outcomes[testIndex] = outcome;
+        int fileIndex = this.fileIndices.get(filename);
+        this.cellsDone++;
+        boolean fileDone = --this.remaining[fileIndex] == 0;
+        if (fileDone) {
+            this.filesDone++;
+        }
+
+        Progress progress = new Progress(this.cellsDone, this.totalCells, this.filesDone,
+                this.remaining.length, (System.nanoTime() - this.startNanos) / 1000000);
+        this.listener.cellFinished(fileIndex, testIndex, outcome, progress);
+        if (fileDone) {
+            this.listener.implementationFinished(fileIndex, filename, outcomes.clone(),
+                    progress);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package main.rice.test;
+
+import main.rice.metrics.Metrics;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * A long-lived Python process that exchanges length-prefixed frames with the JVM over
+ * its stdin and stdout. Each frame is a header line containing the number of payload
+ * bytes, followed by the UTF-8 encoded payload itself.
+ */
+public class PythonWorker implements Closeable {
+
+    /**
+     * The thread that kills workers whose requests run past their deadline.
+     */
+    private static final ScheduledExecutorService WATCHDOG =
+            Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "feat-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * The running Python process.
+     */
+    private final Process process;
+
+    /**
+     * The stream used to send request frames to the process.
+     */
+    private final OutputStream requests;
+
+    /**
+     * The stream used to read response frames from the process.
+     */
+    private final InputStream responses;
+
+    /**
+     * Whether the worker has been killed for running past a deadline.
+     */
+    private volatile boolean killed = false;
+
+    /**
+     * Constructor for a PythonWorker; starts the process described by the input
+     * command. Anything the process writes to stderr is discarded.
+     *
+     * @param command the command used to start the worker process
+     * @throws IOException if the process cannot be started
+     */
+    public PythonWorker(List<String> command) throws IOException {
+        this(command, Map.of());
+    }
+
+    /**
+     * Constructor for a PythonWorker; starts the process described by the input command
+     * with additional environment variables. Anything the process writes to stderr is
+     * discarded.
+     *
+     * @param command the command used to start the worker process
+     * @param env     additional environment variables for the worker process
+     * @throws IOException if the process cannot be started
+     */
+    public PythonWorker(List<String> command, Map<String, String> env) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.environment().putAll(env);
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        long start = Metrics.startTimer();
+        this.process = pb.start();
+        Metrics.observeSince("feat_process_spawn_seconds", start);
+        Metrics.increment("feat_processes_started_total", 1);
+        Metrics.increment("feat_workers_started_total", 1);
+        this.requests = new BufferedOutputStream(this.process.getOutputStream());
+        this.responses = new BufferedInputStream(this.process.getInputStream());
+    }
+
+    /**
+     * Sends a single request frame to the worker and waits for its response.
+     *
+     * @param payload the body of the request
+     * @return the body of the response, or null if the worker exited or replied with a
+     * malformed frame (in which case the worker is no longer usable)
+     */
+    public String request(String payload) {
+        return this.request(payload, 0);
+    }
+
+    /**
+     * Sends a single request frame to the worker and waits for its response, killing the
+     * worker if no response arrives before the deadline.
+     *
+     * @param payload       the body of the request
+     * @param timeoutMillis the number of milliseconds to wait; 0 for no deadline
+     * @return the body of the response; Outcome.OVER_BUDGET_RESULT if the worker was
+     * killed for running past the deadline; or null if the worker exited or replied with
+     * a malformed frame (in either of the latter cases the worker is no longer usable)
+     */
+    public String request(String payload, long timeoutMillis) {
+        ScheduledFuture<?> watchdog = null;
+        if (timeoutMillis > 0) {
+            watchdog = WATCHDOG.schedule(() -> {
+                this.killed = true;
+                this.close();
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        try {
+            writeFrame(this.requests, payload);
+            Metrics.increment("feat_pipe_bytes_written_total",
+                    payload.getBytes(StandardCharsets.UTF_8).length);
+            String response = readFrame(this.responses);
+            Metrics.increment("feat_pipe_bytes_read_total",
+                    response.getBytes(StandardCharsets.UTF_8).length);
+            return response;
+        } catch (IOException | NumberFormatException e) {
+            this.close();
+            return this.killed ? Outcome.OVER_BUDGET_RESULT : null;
+        } finally {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the worker process is still running.
+     *
+     * @return true if the worker process is still running; false otherwise
+     */
+    public boolean isAlive() {
+        return !this.killed && this.process.isAlive();
+    }
+
+    /**
+     * Shuts down the worker; closing its stdin signals a well-behaved worker to exit, and
+     * the process is killed outright in case it does not.
+     */
+    @Override
+    public void close() {
+        try {
+            this.requests.close();
+        } catch (IOException e) {
+            // The process has already gone away, so there is nothing left to signal
+        }
+        this.process.descendants().forEach(ProcessHandle::destroyForcibly);
+        this.process.destroyForcibly();
+    }
+
+    /**
+     * Writes a single frame containing the input payload to the input stream.
+     *
+     * @param out     the stream to write to
+     * @param payload the body of the frame
+     * @throws IOException if the stream cannot be written to
+     */
+    public static void writeFrame(OutputStream out, String payload) throws IOException {
+        byte[] data = payload.getBytes(StandardCharsets.UTF_8);
+        out.write((data.length + "\n").getBytes(StandardCharsets.UTF_8));
+        out.write(data);
+        out.flush();
+    }
+
+    /**
+     * Reads a single frame from the input stream.
+     *
+     * @param in the stream to read from
+     * @return the body of the frame
+     * @throws IOException if the stream ends before a complete frame has been read
+     */
+    public static String readFrame(InputStream in) throws IOException {
+        // Read the header line, which holds the length of the payload
+        StringBuilder header = new StringBuilder();
+        int next;
+        while ((next = in.read()) != '\n') {
+            if (next == -1) {
+                throw new EOFException("worker exited before responding");
+            }
+            header.append((char) next);
+        }
+
+        // Read exactly that many bytes of payload
+        int length = Integer.parseInt(header.toString().trim());
+        byte[] data = in.readNBytes(length);
+        if (data.length < length) {
+            throw new EOFException("worker exited mid-response");
+        }
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,159 @@
+package main.rice.test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent cache of the outcomes of running individual test cases on individual
+ * buggy implementations. Each outcome is stored under a key derived from the contents of
+ * everything that determines it, so an entry never needs to be invalidated: a changed
+ * implementation or test case simply has a different key.
+ *
+ * The cache is kept in a single append-only file with one "key outcome" line per entry,
+ * which is read in full when the cache is opened.
+ */
+public class ResultCache implements Closeable {
+
+    /**
+     * The cached outcomes, by key.
+     */
+    private final Map<String, Outcome> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The writer used to append new entries to the cache file.
+     */
+    private final Writer writer;
+
+    /**
+     * Constructor for a ResultCache; loads every entry from the input file, creating it
+     * (and its parent directories) if it does not exist yet.
+     *
+     * @param path the path to the cache file
+     * @throws IOException if the cache file cannot be read or created
+     */
+    public ResultCache(String path) throws IOException {
+        Path file = Paths.get(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        String contents = Files.exists(file) ? Files.readString(file) : "";
+        this.load(contents.lines().toList());
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        // Finish off a line that was only partly written, so that it doesn't run into the
+        // first new entry
+        if (!contents.isEmpty() && !contents.endsWith("\n")) {
+            this.writer.write("\n");
+            this.writer.flush();
+        }
+    }
+
+    /**
+     * Returns the cached outcome for the input key.
+     *
+     * @param key the key of the outcome, as built by key()
+     * @return the cached outcome, or null if there is none
+     */
+    public Outcome get(String key) {
+        return this.entries.get(key);
+    }
+
+    /**
+     * Caches the outcome for the input key, appending it to the cache file.
+     *
+     * @param key     the key of the outcome, as built by key()
+     * @param outcome the outcome to be cached
+     * @throws IOException if the cache file cannot be written to
+     */
+    public synchronized void put(String key, Outcome outcome) throws IOException {
+        if (outcome == this.entries.put(key, outcome)) {
+            return;
+        }
+        this.writer.write(key + " " + outcome.name() + "\n");
+        this.writer.flush();
+    }
+
+    /**
+     * Returns the number of outcomes in the cache.
+     *
+     * @return the number of cached outcomes
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Closes the cache file; every entry has already been written to it.
+     *
+     * @throws IOException if the cache file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.writer.close();
+    }
+
+    /**
+     * Builds the key for the outcome of a single test case on a single implementation.
+     *
+     * @param implHash     the hash of the implementation's contents
+     * @param solutionHash the hash of the reference solution's contents
+     * @param funcName     the name of the function under test
+     * @param testRepr     the string representation of the test case
+     * @return the key for the outcome
+     */
+    public static String key(String implHash, String solutionHash, String funcName,
+                             String testRepr) {
+        // Fields are separated by a character that cannot appear in any of them, so that
+        // distinct combinations cannot run together into the same key
+        String combined = implHash + "\0" + solutionHash + "\0" + funcName + "\0"
+                + testRepr;
+        return hash(combined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Computes the SHA-256 hash of the input data.
+     *
+     * @param data the data to be hashed
+     * @return the hash as a hexadecimal string
+     */
+    public static String hash(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the entries from the lines of the cache file. A line that cannot be parsed
+     * (e.g., one that was only partly written when a previous run was killed) is skipped.
+     *
+     * @param lines the lines of the cache file
+     */
+    private void load(List<String> lines) {
+        for (String line : lines) {
+            String[] parts = line.split(" ");
+            if (parts.length != 2) {
+                continue;
+            }
+            try {
+                this.entries.put(parts[0], Outcome.valueOf(parts[1]));
+            } catch (IllegalArgumentException e) {
+                // Not a valid outcome, so skip the line
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package main.rice.test;
+
+/**
+ * Receives the results of runTests() while it is still running. Calls are made from
+ * whichever thread finished the work, but never concurrently, so an implementation need
+ * not be thread-safe; it should return quickly, since the Tester waits for it.
+ */
+public interface TestListener {
+
+    /**
+     * Called once the outcome of a single test case on a single implementation is known,
+     * whether it was run or served from the result cache.
+     *
+     * @param fileIndex the index of the implementation
+     * @param testIndex the index of the test case
+     * @param outcome   the outcome of the test case
+     * @param progress  how far along the run is, including this cell
+     */
+    default void cellFinished(int fileIndex, int testIndex, Outcome outcome,
+                              Progress progress) {
+    }
+
+    /**
+     * Called once the outcome of every test case on a single implementation is known.
+     *
+     * @param fileIndex the index of the implementation
+     * @param filename  the name of the implementation
+     * @param outcomes  an array where the i-th element is the outcome of the i-th test
+     *                  case; the listener may keep it
+     * @param progress  how far along the run is, including this implementation
+     */
+    default void implementationFinished(int fileIndex, String filename, Outcome[] outcomes,
+                                        Progress progress) {
+    }
+}
@@ -1,10 +1,15 @@
 package main.rice.test;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * A representation of the results of running a series of tests on a series of files.
+ * The results are backed by a KillMatrix, or by a KillMatrixFile when they are too big
+ * to keep on the heap, which the per-case and per-file getters are views of.
  */
 public class TestResults {
 
@@ -28,7 +33,36 @@ public class TestResults {
     private final Set<Integer> wrongSet;
 
     /**
-     * Constructor for a TestResults object; initializes all fields.
+     * A list where the i-th element is the subset of caseToFiles.get(i) that was caught
+     * because the file exceeded its time or resource budget on the i-th test case, rather
+     * than by returning a wrong result.
+     */
+    private final List<Set<Integer>> caseToOverBudget;
+
+    /**
+     * The matrix of which test cases caught which files; for results backed by a kill
+     * matrix file, null until it is first asked for.
+     */
+    private KillMatrix matrix;
+
+    /**
+     * The kill matrix file backing the results, or null if they are on the heap.
+     */
+    private final KillMatrixFile matrixFile;
+
+    /**
+     * The reasons why files could not be imported or did not define the function under
+     * test, by the indices of those files; every test case catches each such file.
+     */
+    private final Map<Integer, String> importFailures;
+
+    /**
+     * The names of the files, by index; empty if they are not known.
+     */
+    private final List<String> filenames;
+
+    /**
+     * Constructor for a TestResults object in which no file exceeded its budget.
      *
      * @param allCases    all test cases that were executed
      * @param caseToFiles a list where the i-th element is a set of integers representing
@@ -37,9 +71,149 @@ public class TestResults {
      */
     public TestResults(List<TestCase> allCases, List<Set<Integer>> caseToFiles,
                        Set<Integer> wrongSet) {
+        this(allCases, caseToFiles, wrongSet,
+                Collections.nCopies(caseToFiles.size(), Set.of()));
+    }
+
+    /**
+     * Constructor for a TestResults object; initializes all fields. The sets are copied
+     * into kill matrices (and the wrong set into a set of its own), so the getters
+     * return read-only views that later changes to the inputs do not affect.
+     *
+     * @param allCases         all test cases that were executed
+     * @param caseToFiles      a list where the i-th element is a set of integers
+     *                         representing the files that were caught by the i-th test
+     *                         case in allCases
+     * @param wrongSet         the set of all files that failed one or more tests in
+     *                         allCases
+     * @param caseToOverBudget a list where the i-th element is the subset of the files
+     *                         caught by the i-th test case that exceeded their budget on it
+     */
+    public TestResults(List<TestCase> allCases, List<Set<Integer>> caseToFiles,
+                       Set<Integer> wrongSet, List<Set<Integer>> caseToOverBudget) {
         this.allCases = allCases;
-        this.caseToFiles = caseToFiles;
-        this.wrongSet = wrongSet;
+        this.importFailures = Map.of();
+        this.filenames = List.of();
+        this.matrixFile = null;
+
+        // Size the matrices to fit every file mentioned, including wrong files that no
+        // test case caught
+        int numFiles = 0;
+        for (List<Set<Integer>> sets : List.of(caseToFiles, caseToOverBudget)) {
+            for (Set<Integer> files : sets) {
+                for (int fileIndex : files) {
+                    numFiles = Math.max(numFiles, fileIndex + 1);
+                }
+            }
+        }
+        for (int fileIndex : wrongSet) {
+            numFiles = Math.max(numFiles, fileIndex + 1);
+        }
+        this.matrix = KillMatrix.fromSets(caseToFiles, numFiles);
+        this.caseToFiles = this.matrix.getCaseToFiles();
+        this.caseToOverBudget = KillMatrix.fromSets(caseToOverBudget, numFiles)
+                .getCaseToFiles();
+        this.wrongSet = Collections.unmodifiableSet(new TreeSet<>(wrongSet));
+    }
+
+    /**
+     * Constructor for a TestResults object backed by a pair of kill matrices; the wrong
+     * set is made up of every file caught by one or more test cases. The getters return
+     * read-only views of the matrices.
+     *
+     * @param allCases   all test cases that were executed
+     * @param matrix     the matrix of which test cases caught which files
+     * @param overBudget the matrix of which test cases caught which files by exceeding
+     *                   their budget; must have the same dimensions as matrix
+     */
+    public TestResults(List<TestCase> allCases, KillMatrix matrix, KillMatrix overBudget) {
+        this(allCases, matrix, overBudget, Map.of());
+    }
+
+    /**
+     * Constructor for a TestResults object backed by a pair of kill matrices, which also
+     * records why some of the files could not be imported or did not define the function
+     * under test.
+     *
+     * @param allCases       all test cases that were executed
+     * @param matrix         the matrix of which test cases caught which files
+     * @param overBudget     the matrix of which test cases caught which files by
+     *                       exceeding their budget; must have the same dimensions as
+     *                       matrix
+     * @param importFailures the reasons why files could not be imported or did not
+     *                       define the function, by the indices of those files
+     */
+    public TestResults(List<TestCase> allCases, KillMatrix matrix, KillMatrix overBudget,
+                       Map<Integer, String> importFailures) {
+        this(allCases, matrix, overBudget, importFailures, List.of());
+    }
+
+    /**
+     * Constructor for a TestResults object backed by a pair of kill matrices, which also
+     * records why some of the files could not be imported or did not define the function
+     * under test, and the name of each file.
+     *
+     * @param allCases       all test cases that were executed
+     * @param matrix         the matrix of which test cases caught which files
+     * @param overBudget     the matrix of which test cases caught which files by
+     *                       exceeding their budget; must have the same dimensions as
+     *                       matrix
+     * @param importFailures the reasons why files could not be imported or did not
+     *                       define the function, by the indices of those files
+     * @param filenames      the names of the files, by index; empty if not known
+     */
+    public TestResults(List<TestCase> allCases, KillMatrix matrix, KillMatrix overBudget,
+                       Map<Integer, String> importFailures, List<String> filenames) {
+        if (matrix.getNumCases() != overBudget.getNumCases()
+                || matrix.getNumFiles() != overBudget.getNumFiles()) {
+            throw new IllegalArgumentException("kill matrices must have the same dimensions");
+        }
+        this.allCases = allCases;
+        this.caseToFiles = matrix.getCaseToFiles();
+        this.wrongSet = matrix.getCaughtFiles();
+        this.caseToOverBudget = overBudget.getCaseToFiles();
+        this.matrix = matrix;
+        this.matrixFile = null;
+        this.importFailures = Map.copyOf(importFailures);
+        this.filenames = List.copyOf(filenames);
+    }
+
+    /**
+     * Constructor for a TestResults object backed by a kill matrix file rather than the
+     * heap; the wrong set is made up of every file caught by one or more test cases. The
+     * per-case getters return read-only views of the file, which stay readable after it
+     * is closed.
+     *
+     * @param allCases       all test cases that were executed
+     * @param matrixFile     the kill matrix file holding the results
+     * @param importFailures the reasons why files could not be imported or did not
+     *                       define the function, by the indices of those files
+     */
+    public TestResults(List<TestCase> allCases, KillMatrixFile matrixFile,
+                       Map<Integer, String> importFailures) {
+        this(allCases, matrixFile, importFailures, List.of());
+    }
+
+    /**
+     * Constructor for a TestResults object backed by a kill matrix file rather than the
+     * heap, which also records the name of each file.
+     *
+     * @param allCases       all test cases that were executed
+     * @param matrixFile     the kill matrix file holding the results
+     * @param importFailures the reasons why files could not be imported or did not
+     *                       define the function, by the indices of those files
+     * @param filenames      the names of the files, by index; empty if not known
+     */
+    public TestResults(List<TestCase> allCases, KillMatrixFile matrixFile,
+                       Map<Integer, String> importFailures, List<String> filenames) {
+        this.allCases = allCases;
+        this.caseToFiles = matrixFile.getCaseToFiles();
+        this.wrongSet = matrixFile.getCaughtFiles();
+        this.caseToOverBudget = matrixFile.getCaseToOverBudget();
+        this.matrix = null;
+        this.matrixFile = matrixFile;
+        this.importFailures = Map.copyOf(importFailures);
+        this.filenames = List.copyOf(filenames);
     }
 
     /**
@@ -76,4 +250,63 @@ public class TestResults {
     public List<Set<Integer>> getCaseToFiles() {
         return this.caseToFiles;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the per-case list of files that each test case caught by exceeding their
+     * time or resource budget, where files are represented by their indices.
+     *
+     * @return the per-case list of files that exceeded their budget on each test case
+     */
+    public List<Set<Integer>> getCaseToOverBudget() {
+        return this.caseToOverBudget;
+    }
+
+    /**
+     * Returns the matrix of which test cases caught which files, for callers that need
+     * per-file views or bit-level counts rather than sets of indices. Results backed by a
+     * kill matrix file copy it onto the heap the first time this is called.
+     *
+     * @return the kill matrix
+     */
+    public synchronized KillMatrix getKillMatrix() {
+        if (this.matrix == null) {
+            this.matrix = this.matrixFile.toKillMatrix();
+        }
+        return this.matrix;
+    }
+
+    /**
+     * Returns the kill matrix file backing the results, for callers that can work from
+     * it directly instead of a copy of the matrix on the heap.
+     *
+     * @return the kill matrix file, or null if the results are on the heap
+     */
+    public KillMatrixFile getKillMatrixFile() {
+        return this.matrixFile;
+    }
+
+    /**
+     * Returns the reasons why files could not be imported or did not define the function
+     * under test (e.g. "SyntaxError: invalid syntax (impl3.py, line 2)"), by the indices
+     * of those files. Such files were caught by every test case.
+     *
+     * @return the reasons for the files that failed to import, by file index
+     */
+    public Map<Integer, String> getImportFailures() {
+        return this.importFailures;
+    }
+
+    /**
+     * Returns the name of the file with the input index, e.g. for reporting it to a
+     * user; files whose names are not known are named by their index instead.
+     *
+     * @param fileIndex the index of the file
+     * @return the name of the file
+     */
+    public String getFilename(int fileIndex) {
+        if (fileIndex >= 0 && fileIndex < this.filenames.size()) {
+            return this.filenames.get(fileIndex);
+        }
+        return String.valueOf(fileIndex);
+    }
+}
@@ -1,8 +1,18 @@
 package main.rice.test;
 
-import main.rice.obj.APyObj;
+import main.rice.metrics.Metrics;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.DoubleSupplier;
 
 /**
  * A class for running a test suite. Encapsulates the ability to run the test suite on a
@@ -11,7 +21,7 @@ import java.util.*;
  * to run the test suite on a set of files and identify which test cases each file fails
  * on.
  */
-public class Tester {
+public class Tester implements Closeable {
 
     /**
      * The name of the function under test.
@@ -29,125 +39,2176 @@ public class Tester {
      */
     private final String implDirPath;
 
+    /**
+     * The absolute path to the directory that the wrapper and the expected results are
+     * written to; implDir itself unless a scratch root has been set.
+     */
+    private String workDirPath;
+
+    /**
+     * The absolute path to the copy of the reference solution that is actually run,
+     * i.e., the one with the footer appended; the solution itself unless a scratch root
+     * has been set.
+     */
+    private String solutionScriptPath;
+
+    /**
+     * The scratch directory that this Tester works in; null if it works in implDir.
+     */
+    private Path scratchDir = null;
+
+    /**
+     * Whether this Tester created the scratch directory itself, and so deletes it once
+     * it is closed.
+     */
+    private boolean ownsScratchDir = false;
+
+    /**
+     * The pool of workers that outlives this Tester, to be used in WORKER_POOL or ZYGOTE
+     * mode in place of a fresh one; null for none.
+     */
+    private WorkerPool workerPool = null;
+
+    /**
+     * The directory that compiled implementations are cached in across runs; null for
+     * none.
+     */
+    private String bytecodeCache = null;
+
     /**
      * The set of test cases to be executed on the reference solution.
      */
-    private final List<TestCase> tests;
+    private final List<TestCase> tests;
+
+    /**
+     * The strategy used to execute the buggy implementations on the test cases.
+     */
+    private ExecutionMode mode = ExecutionMode.PROCESS_PER_TEST;
+
+    /**
+     * The maximum number of Python workers kept alive at once in WORKER_POOL or ZYGOTE
+     * mode.
+     */
+    private int numWorkers = 1;
+
+    /**
+     * The maximum number of implementations (or reference test cases) executed
+     * concurrently.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Whether the number of tasks executed concurrently is tuned as they run, with
+     * parallelism as its ceiling, rather than fixed at parallelism.
+     */
+    private boolean adaptive = false;
+
+    /**
+     * The concurrency level most recently chosen by a ConcurrencyController, which the
+     * next call to runInParallel() starts from; 0 if none has been chosen yet.
+     */
+    private volatile int adaptiveLimit = 0;
+
+    /**
+     * Reports the load average per CPU that adaptive concurrency backs off from, or null
+     * to read it from this machine.
+     */
+    private DoubleSupplier loadPerCpu = null;
+
+    /**
+     * Reports the fraction of memory available that adaptive concurrency backs off from,
+     * or null to read it from this machine.
+     */
+    private DoubleSupplier freeMemory = null;
+
+    /**
+     * The number of trailing bytes of a process's stdout that are retained per test case;
+     * anything printed before that is discarded.
+     */
+    private int outputLimit = ProcessRunner.DEFAULT_OUTPUT_LIMIT;
+
+    /**
+     * The number of milliseconds each test case may run on a buggy implementation; 0 for
+     * no limit.
+     */
+    private long testTimeout = 0;
+
+    /**
+     * The number of milliseconds all of the test cases together may run on a single
+     * buggy implementation; 0 for no limit.
+     */
+    private long implementationTimeout = 0;
+
+    /**
+     * The number of seconds of CPU time each test case may use on a buggy
+     * implementation; 0 for no limit.
+     */
+    private int cpuLimit = 0;
+
+    /**
+     * The number of bytes of address space a buggy implementation's process may use; 0
+     * for no limit.
+     */
+    private long memoryLimit = 0;
+
+    /**
+     * The cache of outcomes from earlier runs, if any.
+     */
+    private ResultCache cache = null;
+
+    /**
+     * The store of the reference solution's results from earlier runs, if any.
+     */
+    private ExpectedResultsStore expectedStore = null;
+
+    /**
+     * The addresses of the agents that runTests() distributes its work to; if empty, all
+     * of the work is done locally.
+     */
+    private List<InetSocketAddress> agents = List.of();
+
+    /**
+     * The number of connections (and thus work units in flight) per agent.
+     */
+    private int connectionsPerAgent = 1;
+
+    /**
+     * The secret shared with the agents.
+     */
+    private String agentSecret = null;
+
+    /**
+     * The maximum number of test cases in a single work unit sent to an agent; 0 to send
+     * every test case for an implementation as one unit.
+     */
+    private int workUnitSize = 0;
+
+    /**
+     * The journal that finished work is recorded in and replayed from; may be null.
+     */
+    private Journal journal = null;
+
+    /**
+     * The hash of each implementation's contents, by name, for the current call to
+     * runTests().
+     */
+    private final Map<String, String> implHashes = new ConcurrentHashMap<>();
+
+    /**
+     * The listener that runTests() reports its results to as they finish; may be null.
+     */
+    private TestListener listener = null;
+
+    /**
+     * The tracker that passes the results of the current call to runTests() on to the
+     * listener; null if there is no listener or no call in progress.
+     */
+    private ProgressTracker tracker = null;
+
+    /**
+     * The backend that test cases are executed through; null to use Python subprocesses
+     * as configured through the execution mode.
+     */
+    private ExecutionBackend backend = null;
+
+    /**
+     * Whether runTests() runs only one implementation out of each group whose sources
+     * are equivalent, and copies its outcomes to the rest of the group.
+     */
+    private boolean deduplicate = true;
+
+    /**
+     * The path to the file that runTests() writes the kill matrix to as outcomes come in;
+     * may be null.
+     */
+    private String killMatrixPath = null;
+
+    /**
+     * The hash of the reference solution, computed the first time it is needed.
+     */
+    private String solutionHash = null;
+
+    /**
+     * The hash of expected.py, computed the first time it is needed; workers compare it
+     * against the results they have loaded so that a worker that outlives its Tester
+     * never judges a test case against another run's expected results.
+     */
+    private String expectedHash = null;
+
+    /**
+     * The number of milliseconds past a test case's timeout after which the Tester kills
+     * the process itself, in case the implementation is stuck somewhere that the
+     * wrapper's own timer cannot interrupt.
+     */
+    private static final long BACKSTOP_GRACE_MILLIS = 1000;
+
+    /**
+     * The longest the Tester waits for a buggy implementation to be imported during its
+     * precheck, whether or not a test timeout is configured.
+     */
+    private static final long PRECHECK_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * The number of bytes of output retained from a process that runs a single test case
+     * on a buggy implementation or prechecks one (and the slack allowed on top of one
+     * character per test case in batch mode). These only ever report a verdict, or a
+     * reason of at most a few hundred characters, so unlike the solution's output they
+     * never need room for an expected result.
+     */
+    private static final int VERDICT_OUTPUT_LIMIT = 1 << 10;
+
+    /**
+     * The number of bytes of output retained from a process that computes the expected
+     * results of a whole block of test cases at once.
+     */
+    private static final int BATCH_OUTPUT_LIMIT = 1 << 26;
+
+    /**
+     * The number of test cases that a kill oracle asks to run on a file at once in BATCH
+     * mode, where they share a single process.
+     */
+    private static final int LAZY_BATCH_WIDTH = 8;
+
+    /**
+     * The number of times a work unit is retried after an agent fails to run it, before
+     * the Tester gives up on the agents and runs it locally.
+     */
+    private static final int MAX_UNIT_RETRIES = 2;
+
+    /**
+     * Constructor for a Tester, which initializes all of the fields using the given
+     * inputs.
+     *
+     * @param funcName     the name of the function under test
+     * @param solutionPath the absolute path to the file containing the reference
+     *                     implementation
+     * @param implDirPath  the absolute path to the directory containing the student
+     *                     implementations
+     * @param tests        the list of test cases to be executed
+     */
+    public Tester(String funcName, String solutionPath, String implDirPath,
+                  List<TestCase> tests) {
+        this.funcName = funcName;
+        this.implDirPath = implDirPath;
+        this.solutionPath = solutionPath;
+        this.tests = tests;
+        this.workDirPath = implDirPath;
+        this.solutionScriptPath = solutionPath;
+    }
+
+    /**
+     * Sets the strategy used to execute the buggy implementations on the test cases; the
+     * default is to start a fresh process for every (test case, implementation) pair.
+     *
+     * @param mode the strategy to be used by subsequent calls to runTests()
+     */
+    public void setExecutionMode(ExecutionMode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Sets the maximum number of Python workers (or zygotes) kept alive at once in
+     * WORKER_POOL or ZYGOTE mode.
+     *
+     * @param numWorkers the maximum number of live workers; must be positive
+     */
+    public void setNumWorkers(int numWorkers) {
+        if (numWorkers < 1) {
+            throw new IllegalArgumentException("numWorkers must be positive");
+        }
+        this.numWorkers = numWorkers;
+    }
+
+    /**
+     * Sets the maximum number of implementations (or, when computing the expected
+     * results, reference test cases) executed concurrently; the default is to execute
+     * them one at a time. The results do not depend on this setting.
+     *
+     * @param parallelism the maximum number of concurrent executions; must be positive
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets whether the number of implementations (or reference test cases) executed
+     * concurrently is tuned automatically as they run, by a ConcurrencyController that
+     * backs off when the machine is overloaded or throughput drops, and otherwise
+     * raises it by one at a time. The maximum set through setParallelism() remains the
+     * ceiling; the first run starts from the number of CPUs, and later ones from the
+     * level chosen last. This is off by default. The results do not depend on this
+     * setting.
+     *
+     * @param adaptive whether to tune the number of concurrent executions automatically
+     */
+    public void setAdaptiveConcurrency(boolean adaptive) {
+        this.adaptive = adaptive;
+        this.loadPerCpu = null;
+        this.freeMemory = null;
+    }
+
+    /**
+     * Sets whether the number of concurrent executions is tuned automatically, as
+     * setAdaptiveConcurrency(boolean) does, but by a ConcurrencyController that watches
+     * the input readings rather than this machine's load average and memory.
+     *
+     * @param adaptive   whether to tune the number of concurrent executions automatically
+     * @param loadPerCpu reports the current load average per CPU, or a negative value if
+     *                   unknown
+     * @param freeMemory reports the current fraction of memory that is available, or a
+     *                   negative value if unknown
+     */
+    public void setAdaptiveConcurrency(boolean adaptive, DoubleSupplier loadPerCpu,
+                                       DoubleSupplier freeMemory) {
+        this.adaptive = adaptive;
+        this.loadPerCpu = loadPerCpu;
+        this.freeMemory = freeMemory;
+    }
+
+    /**
+     * Sets the number of trailing bytes of the reference solution's stdout that are
+     * retained per test case. Results are always reported at the very end of the output,
+     * so this only needs to be large enough to hold the longest expected result; runs on
+     * the buggy implementations, which only report a verdict, retain far less.
+     *
+     * @param outputLimit the number of bytes to be retained; must be positive
+     */
+    public void setOutputLimit(int outputLimit) {
+        if (outputLimit < 1) {
+            throw new IllegalArgumentException("outputLimit must be positive");
+        }
+        this.outputLimit = outputLimit;
+    }
+
+    /**
+     * Sets the cache through which outcomes are shared with earlier and later runs. The
+     * outcome of a test case on an implementation is served from the cache whenever
+     * neither the implementation, the reference solution, the function under test, nor
+     * the test case itself has changed since it was cached; only the remaining test cases
+     * are actually run.
+     *
+     * @param cache the result cache to be used; null to run every test case
+     */
+    public void setResultCache(ResultCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets the store through which the reference solution's results are shared with
+     * earlier and later runs. computeExpectedResults() only runs the reference solution
+     * on the test cases whose results are not already in the store for the current
+     * contents of the solution file, and writes expected.py from the stored and newly
+     * computed results together.
+     *
+     * @param expectedStore the expected results store to be used; null to run every test
+     *                      case on the reference solution
+     */
+    public void setExpectedResultsStore(ExpectedResultsStore expectedStore) {
+        this.expectedStore = expectedStore;
+    }
+
+    /**
+     * Sets the number of milliseconds each test case may run on a buggy implementation.
+     * A test case that runs longer is stopped and recorded as Outcome.OVER_BUDGET.
+     *
+     * @param testTimeout the per-test limit in milliseconds; 0 for no limit
+     */
+    public void setTestTimeout(long testTimeout) {
+        if (testTimeout < 0) {
+            throw new IllegalArgumentException("testTimeout must be non-negative");
+        }
+        this.testTimeout = testTimeout;
+    }
+
+    /**
+     * Sets the number of milliseconds all of the test cases together may run on a single
+     * buggy implementation. Once an implementation has used up this budget, the test
+     * case it is running and all of the ones it has yet to run are recorded as
+     * Outcome.OVER_BUDGET.
+     *
+     * @param implementationTimeout the per-implementation limit in milliseconds; 0 for no
+     *                              limit
+     */
+    public void setImplementationTimeout(long implementationTimeout) {
+        if (implementationTimeout < 0) {
+            throw new IllegalArgumentException("implementationTimeout must be non-negative");
+        }
+        this.implementationTimeout = implementationTimeout;
+    }
+
+    /**
+     * Sets resource limits that are applied (as rlimits) to the Python processes running
+     * the buggy implementations; a test case that exceeds either limit is recorded as
+     * Outcome.OVER_BUDGET. The reference solution is never limited.
+     *
+     * @param cpuLimit    the number of seconds of CPU time each test case may use; 0 for
+     *                    no limit
+     * @param memoryLimit the number of bytes of address space each process may use; 0
+     *                    for no limit
+     */
+    public void setResourceLimits(int cpuLimit, long memoryLimit) {
+        if (cpuLimit < 0 || memoryLimit < 0) {
+            throw new IllegalArgumentException("resource limits must be non-negative");
+        }
+        this.cpuLimit = cpuLimit;
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * Makes runTests() act as a coordinator that shards its work across the input
+     * WorkerAgents rather than running it locally. The work is split into units of
+     * (implementation, block of test cases), which the agents pull from a set of queues;
+     * a unit that an agent fails to run is retried on another one, and any unit that no
+     * agent manages to run is run locally instead. Agents receive the implementations
+     * and expected results over the network, so they need not share a filesystem with
+     * the coordinator, and they run each unit with this Tester's execution mode and
+     * limits; an implementation split into several units gives each one a share of its
+     * budget in proportion to the number of test cases in it. computeExpectedResults()
+     * and createKillOracle() always run locally.
+     *
+     * @param agents              the addresses of the agents; empty to run locally
+     * @param connectionsPerAgent the number of units each agent runs at once
+     * @param secret              the secret the agents were started with
+     */
+    public void setAgents(List<InetSocketAddress> agents, int connectionsPerAgent,
+                          String secret) {
+        if (connectionsPerAgent < 1) {
+            throw new IllegalArgumentException("connectionsPerAgent must be positive");
+        }
+        if (!agents.isEmpty() && (secret == null || secret.isEmpty())) {
+            throw new IllegalArgumentException("agents require a non-empty secret");
+        }
+        this.agents = List.copyOf(agents);
+        this.connectionsPerAgent = connectionsPerAgent;
+        this.agentSecret = secret;
+    }
+
+    /**
+     * Sets the journal that computeExpectedResults() and runTests() record each expected
+     * result and each outcome in as soon as it is known, and replay at the start, so that
+     * a run which died partway through picks up where it left off and produces the same
+     * results as if it never had. Outcomes are journaled under the contents of the
+     * implementation, reference solution, and test case, and under the budget they were
+     * run with, so a resumed run never reuses an outcome that no longer applies. The
+     * journal is not closed by the Tester.
+     *
+     * @param journal the journal to be used; null for none
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Sets the listener that runTests() reports the outcome of each cell of the matrix
+     * to, along with its progress so far, as soon as that cell finishes (rather than
+     * only once every cell has). Outcomes served from the result cache are reported
+     * too. The listener is never called concurrently, and its calls all happen before
+     * runTests() returns.
+     *
+     * @param listener the listener to be notified; null for none
+     */
+    public void setTestListener(TestListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the maximum number of test cases in a single work unit sent to an agent;
+     * smaller units balance better across agents, while larger ones cost less overhead.
+     * The default is to send every test case for an implementation as one unit.
+     *
+     * @param workUnitSize the maximum number of test cases per unit; 0 for no limit
+     */
+    public void setWorkUnitSize(int workUnitSize) {
+        if (workUnitSize < 0) {
+            throw new IllegalArgumentException("workUnitSize must be non-negative");
+        }
+        this.workUnitSize = workUnitSize;
+    }
+
+    /**
+     * Sets the backend that test cases are executed through, in place of the Python
+     * subprocesses that the Tester starts by default; the execution mode, number of
+     * workers, output limit and budgets are then up to the backend. Caching, journaling,
+     * deduplication, distribution and progress reporting work the same regardless of
+     * the backend. The Tester never closes a backend set this way.
+     *
+     * @param backend the backend to be used; null for the default
+     */
+    public void setExecutionBackend(ExecutionBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Sets a pool of workers, obtained from createWorkerPool() on an earlier Tester, to
+     * be used in WORKER_POOL or ZYGOTE mode in place of a fresh one, so that workers
+     * outlive the Tester that started them. This is only valid for a Tester that works
+     * in the same scratch directory (see setScratchDir()), on the same implementations
+     * and the same reference solution, as the one that created the pool; the expected
+     * results may differ, since each worker reloads them whenever they change. The
+     * Tester never closes a pool set this way.
+     *
+     * @param workerPool the pool of workers to be used; null for a fresh one per run
+     */
+    public void setWorkerPool(WorkerPool workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * Sets whether runTests() runs only one implementation out of each group whose
+     * sources are equivalent (i.e., identical once comments and layout are ignored), and
+     * copies its outcomes to the rest of the group. This is on by default; it should be
+     * turned off if identical implementations can legitimately behave differently, e.g.
+     * because they are nondeterministic or read their own source.
+     *
+     * @param deduplicate whether to run only one implementation per group
+     */
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    /**
+     * Sets the file that runTests() writes the kill matrix to, in the format of
+     * KillMatrixFile, recording each outcome in it as soon as it is known and marking it
+     * complete once every outcome has been recorded. The file is overwritten on every
+     * run. The matrix is then kept in the file alone: the results runTests() returns are
+     * read from it (see TestResults.getKillMatrixFile()) rather than from a copy on the
+     * heap.
+     *
+     * @param killMatrixPath the path to the kill matrix file; null to write none
+     */
+    public void setKillMatrixFile(String killMatrixPath) {
+        this.killMatrixPath = killMatrixPath;
+    }
+
+    /**
+     * Makes the Tester work in a scratch directory of its own, created under the input
+     * root, rather than in implDir: the wrapper, the expected results and the copy of
+     * the reference solution that is actually run are all written there, and neither
+     * the implementations nor the solution are modified. This lets several Testers
+     * share a corpus concurrently. The scratch directory is deleted by close().
+     *
+     * @param scratchRoot the directory under which to create the scratch directory, e.g.
+     *                    the one returned by getDefaultScratchRoot()
+     * @throws IOException if the scratch directory cannot be created
+     */
+    public void setScratchRoot(String scratchRoot) throws IOException {
+        this.close();
+        Files.createDirectories(Paths.get(scratchRoot));
+        this.scratchDir = Files.createTempDirectory(Paths.get(scratchRoot), "feat-");
+        this.ownsScratchDir = true;
+        this.workDirPath = this.scratchDir.toString();
+        if (this.solutionPath != null) {
+            this.solutionScriptPath = this.workDirPath + "/solution.py";
+        }
+    }
+
+    /**
+     * Makes the Tester work in the input scratch directory, exactly as it would in one
+     * created through setScratchRoot(), except that the directory is neither created
+     * nor deleted by the Tester. This lets successive Testers on the same files share a
+     * directory, and thus the workers started in it (see setWorkerPool()); they must not
+     * use it at the same time.
+     *
+     * @param scratchDir the directory to work in, which must already exist
+     * @throws IOException if the Tester's current scratch directory cannot be deleted
+     */
+    public void setScratchDir(String scratchDir) throws IOException {
+        this.close();
+        this.scratchDir = Paths.get(scratchDir).toAbsolutePath();
+        this.workDirPath = this.scratchDir.toString();
+        if (this.solutionPath != null) {
+            this.solutionScriptPath = this.workDirPath + "/solution.py";
+        }
+    }
+
+    /**
+     * Returns a good place to create scratch directories: /dev/shm if it exists and can
+     * be written to, since it is backed by memory, and the system's temporary directory
+     * otherwise.
+     *
+     * @return the default scratch root
+     */
+    public static String getDefaultScratchRoot() {
+        Path shm = Paths.get("/dev/shm");
+        if (Files.isDirectory(shm) && Files.isWritable(shm)) {
+            return shm.toString();
+        }
+        return System.getProperty("java.io.tmpdir");
+    }
+
+    /**
+     * Sets the directory that the implementations are compiled into, so that a later run
+     * (by this or any other Tester) can reuse the bytecode instead of compiling them
+     * again. Each implementation is copied to a file named after the hash of its
+     * contents before it is compiled, so the cache is keyed by content rather than by
+     * path, and survives the corpus being moved or renamed. This has no effect unless a
+     * scratch root has been set; otherwise, no bytecode is kept at all.
+     *
+     * @param bytecodeCache the cache directory; null for none
+     */
+    public void setBytecodeCache(String bytecodeCache) {
+        this.bytecodeCache = bytecodeCache;
+    }
+
+    /**
+     * Deletes the scratch directory, if this Tester created one; the Tester goes back to
+     * working in implDir afterwards.
+     *
+     * @throws IOException if the scratch directory cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.scratchDir == null) {
+            return;
+        }
+        if (this.ownsScratchDir) {
+            List<Path> paths;
+            try (var walk = Files.walk(this.scratchDir)) {
+                paths = walk.sorted(Comparator.reverseOrder()).toList();
+            }
+            for (Path path : paths) {
+                Files.delete(path);
+            }
+        }
+        this.scratchDir = null;
+        this.ownsScratchDir = false;
+        this.workDirPath = this.implDirPath;
+        this.solutionScriptPath = this.solutionPath;
+    }
+
+    /**
+     * Computes the expected results by running each test case on the solution file.
+     * Stores the results in a list (which is returned) and also creates a .py file
+     * containing an equivalent list of the results.
+     *
+     * @return a list where the i-th element is the result (a string) of running the i-th
+     * test case on the reference solution
+     * @throws IOException if the path to the solution is invalid
+     * @throws InterruptedException if the process is interrupted
+     */
+    public List<String> computeExpectedResults() throws IOException, InterruptedException {
+        long start = Metrics.startTimer();
+
+        // Write an appropriate footer to the solution file to make it executable from
+        // the command-line, if the footer doesn't exist already
+        this.appendToSolution();
+
+        // Serve whichever results we can from the store or the journal, and only run the
+        // rest
+        String[] stored = new String[this.tests.size()];
+        String[] keys = this.getStoredExpectedResults(stored);
+        String[] journalKeys = this.getJournaledExpectedResults(stored);
+        List<Integer> missing = new ArrayList<>();
+        for (int testIndex = 0; testIndex < stored.length; testIndex++) {
+            if (stored[testIndex] == null) {
+                missing.add(testIndex);
+            }
+        }
+
+        Metrics.increment("feat_expected_cached_total", stored.length - missing.size());
+        Metrics.increment("feat_expected_computed_total", missing.size());
+
+        // Run each remaining test case on the solution file and gather the results; in
+        // batch mode, the test cases are split into one contiguous block per thread
+        int numBlocks = (this.mode == ExecutionMode.BATCH)
+                ? Math.min(this.parallelism, missing.size()) : missing.size();
+        ExecutionBackend backend = this.openBackend(false);
+        List<Callable<List<String>>> tasks = new ArrayList<>();
+        for (int block = 0; block < numBlocks; block++) {
+            List<Integer> blockIndices = missing.subList(block * missing.size() / numBlocks,
+                    (block + 1) * missing.size() / numBlocks);
+            tasks.add(() -> this.computeExpectedBlock(backend, blockIndices, journalKeys));
+        }
+        List<List<String>> allResults;
+        try {
+            allResults = this.runInParallel(tasks);
+        } finally {
+            this.closeBackend(backend);
+        }
+        Iterator<Integer> missingIter = missing.iterator();
+        for (List<String> blockResults : allResults) {
+            for (String result : blockResults) {
+                int testIndex = missingIter.next();
+                stored[testIndex] = result;
+                if (keys != null) {
+                    this.expectedStore.put(keys[testIndex], result);
+                }
+            }
+        }
+        List<String> results = new ArrayList<>(Arrays.asList(stored));
+
+        // Write the expected results to a .py file, so that they can be accessed via
+        // the wrapper. These cached results allow us to only run the solution once per
+        // test rather than having to run it once per test per buggy implementation.
+        this.outputExpectedResults(results);
+        Metrics.observeSince("feat_expected_results_seconds", start);
+
+        // Return the results
+        return results;
+    }
+
+    /**
+     * Runs all tests on all files in the directory of buggy implementations, comparing
+     * the outputs to the pre-generated expected results and returning the results in the
+     * form of a TestResults object.
+     *
+     * Unless an execution backend has been set, each implementation that fails every
+     * test case is then imported once on its own; if it cannot be imported or does not
+     * define the function, the reason is recorded in the results (see
+     * TestResults.getImportFailures()). Implementations tested by worker agents are not
+     * prechecked.
+     *
+     * @return the results of testing
+     * @throws IOException if the path to the directory of buggy implementations is
+     *                     invalid
+     * @throws InterruptedException if the process is interrupted
+     */
+    public TestResults runTests() throws IOException, InterruptedException {
+        long start = Metrics.startTimer();
+
+        // Create the wrapper file
+        this.createWrapperFile();
+        this.solutionHash = null;
+        this.expectedHash = null;
+        this.implHashes.clear();
+
+        // Get the list of all implementations in the input directory, and initialize the
+        // outputs
+        List<String> filenames = this.getImplementationFiles();
+        // With a kill matrix file, the outcomes go to the file alone, and the results are
+        // read back from it rather than from a copy of the matrix on the heap
+        KillMatrixFile matrixFile = (this.killMatrixPath == null) ? null
+                : KillMatrixFile.create(this.killMatrixPath, this.tests, filenames.size());
+        KillMatrix matrix = (matrixFile != null) ? null
+                : new KillMatrix(this.tests.size(), filenames.size());
+        KillMatrix overBudget = (matrixFile != null) ? null
+                : new KillMatrix(this.tests.size(), filenames.size());
+        List<List<Integer>> groups = this.groupImplementations(filenames);
+        List<String> representatives = new ArrayList<>();
+        for (List<Integer> group : groups) {
+            representatives.add(filenames.get(group.get(0)));
+        }
+        ExecutionBackend backend = this.openBackend(true);
+        Map<String, String> failures = (this.backend == null)
+                ? new ConcurrentHashMap<>() : null;
+        if (this.listener != null) {
+            this.tracker = new ProgressTracker(this.listener, filenames, this.tests.size());
+        }
+
+        // Test the first file of each group using all tests in the base test set, then
+        // copy its outcomes to the rest of the group; a file's index is its position
+        // among the implementations in sorted order, regardless of the order in which
+        // the files actually finish. Each local task records its group in the matrices
+        // as soon as it finishes, rather than waiting for every other task to finish.
+        try {
+            List<Outcome[]> groupOutcomes;
+            if (this.agents.isEmpty()) {
+                List<Callable<Outcome[]>> tasks = new ArrayList<>();
+                for (List<Integer> group : groups) {
+                    tasks.add(() -> {
+                        Outcome[] outcomes = this.runImplementation(backend,
+                                filenames.get(group.get(0)), failures);
+                        recordOutcomes(matrix, overBudget, matrixFile, group, outcomes);
+                        return outcomes;
+                    });
+                }
+                groupOutcomes = this.runInParallel(tasks);
+            } else {
+                groupOutcomes = this.runDistributed(backend, representatives);
+                for (int groupIndex = 0; groupIndex < groups.size(); groupIndex++) {
+                    recordOutcomes(matrix, overBudget, matrixFile, groups.get(groupIndex),
+                            groupOutcomes.get(groupIndex));
+                }
+            }
+            for (int groupIndex = 0; groupIndex < groups.size(); groupIndex++) {
+                List<Integer> group = groups.get(groupIndex);
+                Outcome[] shared = groupOutcomes.get(groupIndex);
+                for (int fileIndex : group.subList(1, group.size())) {
+                    Outcome[] outcomes = new Outcome[shared.length];
+                    for (int testIndex = 0; testIndex < shared.length; testIndex++) {
+                        this.setOutcome(filenames.get(fileIndex), outcomes, testIndex,
+                                shared[testIndex]);
+                    }
+                }
+            }
+            if (matrixFile != null) {
+                matrixFile.finish();
+            }
+        } finally {
+            this.tracker = null;
+            try {
+                this.closeBackend(backend);
+            } finally {
+                if (matrixFile != null) {
+                    matrixFile.close();
+                }
+            }
+        }
+
+        // Clean up the pycache that was created
+        this.deletePyCache();
+
+        // Record how much of the matrix caught something, which is what drives the cost
+        // of the set cover
+        long numCaught = (matrixFile != null) ? matrixFile.countCells()
+                : matrix.countCells();
+        long numCells = (long) this.tests.size() * filenames.size();
+        Metrics.set("feat_matrix_cells", numCells);
+        Metrics.set("feat_matrix_density",
+                (numCells == 0) ? 0 : (double) numCaught / numCells);
+        Metrics.observeSince("feat_run_tests_seconds", start);
+
+        // Every member of a group failed to import for the same reason as its first file
+        Map<Integer, String> importFailures = new TreeMap<>();
+        for (List<Integer> group : groups) {
+            String reason = (failures == null) ? null
+                    : failures.get(filenames.get(group.get(0)));
+            if (reason != null) {
+                for (int fileIndex : group) {
+                    importFailures.put(fileIndex, reason);
+                }
+            }
+        }
+
+        // Return the results
+        if (matrixFile != null) {
+            return new TestResults(this.tests, matrixFile, importFailures, filenames);
+        }
+        return new TestResults(this.tests, matrix, overBudget, importFailures, filenames);
+    }
+
+    /**
+     * Records the outcomes of a group of source-equivalent implementations in the kill
+     * matrices or the kill matrix file, keeping track of which test cases caught errors
+     * (and which of those did so by exceeding their budget). Safe to call from several
+     * threads at once.
+     *
+     * @param matrix     the matrix of which test cases caught which files; null if the
+     *                   outcomes go to a kill matrix file instead
+     * @param overBudget the matrix of which test cases caught which files by exceeding
+     *                   their budget; null if the outcomes go to a kill matrix file
+     *                   instead
+     * @param matrixFile the kill matrix file to record the outcomes in; may be null
+     * @param group      the indices of the files in the group
+     * @param outcomes   an array where the i-th element is the outcome of the i-th test
+     *                   case on every file in the group
+     */
+    private static void recordOutcomes(KillMatrix matrix, KillMatrix overBudget,
+                                       KillMatrixFile matrixFile, List<Integer> group,
+                                       Outcome[] outcomes) {
+        for (int testIndex = 0; testIndex < outcomes.length; testIndex++) {
+            if (outcomes[testIndex] == Outcome.PASS) {
+                continue;
+            }
+            boolean exceeded = outcomes[testIndex] == Outcome.OVER_BUDGET;
+            for (int fileIndex : group) {
+                if (matrixFile != null) {
+                    matrixFile.set(testIndex, fileIndex, exceeded);
+                    continue;
+                }
+                matrix.set(testIndex, fileIndex);
+                if (exceeded) {
+                    overBudget.set(testIndex, fileIndex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Prepares to run individual test cases on individual buggy implementations, rather
+     * than running the whole base test set on every implementation up front as
+     * runTests() does. This lets a caller such as ConciseSetGenerator evaluate only the
+     * cells of the kill matrix that it actually needs. As with runTests(),
+     * computeExpectedResults() must have been called first; the returned oracle must be
+     * closed once it is no longer needed.
+     *
+     * The oracle runs the test cases requested of each file together through the
+     * execution backend, so in BATCH mode they share a single process, and its batch
+     * width asks callers for several test cases per file at once in that mode. The
+     * implementation timeout does not apply to lazily evaluated cells.
+     *
+     * @return an oracle that runs the requested cells of the kill matrix on demand
+     * @throws IOException if the wrapper file cannot be created or the directory of
+     *                     implementations cannot be read
+     */
+    public KillOracle createKillOracle() throws IOException {
+        this.createWrapperFile();
+        this.solutionHash = null;
+        this.expectedHash = null;
+        List<String> filenames = this.getImplementationFiles();
+        ExecutionBackend backend = this.openBackend(false);
+
+        return new KillOracle() {
+            @Override
+            public int getNumCases() {
+                return Tester.this.tests.size();
+            }
+
+            @Override
+            public int getNumFiles() {
+                return filenames.size();
+            }
+
+            @Override
+            public TestCase getTestCase(int caseIndex) {
+                return Tester.this.tests.get(caseIndex);
+            }
+
+            @Override
+            public Set<Integer> getCaught(int caseIndex, Set<Integer> files)
+                    throws IOException, InterruptedException {
+                Map<Integer, Set<Integer>> cells = new TreeMap<>();
+                for (int fileIndex : files) {
+                    cells.put(fileIndex, Set.of(caseIndex));
+                }
+                return this.getCaught(cells).keySet();
+            }
+
+            @Override
+            public Map<Integer, Set<Integer>> getCaught(Map<Integer, Set<Integer>> cells)
+                    throws IOException, InterruptedException {
+                // Run the cells for every requested file concurrently, and those for the
+                // same file together
+                List<Integer> fileIndices = new ArrayList<>(cells.keySet());
+                Collections.sort(fileIndices);
+                List<Callable<Outcome[]>> tasks = new ArrayList<>();
+                for (int fileIndex : fileIndices) {
+                    List<Integer> testIndices = new ArrayList<>(cells.get(fileIndex));
+                    Collections.sort(testIndices);
+                    tasks.add(() -> Tester.this.runCells(backend, testIndices,
+                            filenames.get(fileIndex)));
+                }
+                List<Outcome[]> outcomes = Tester.this.runInParallel(tasks);
+
+                Map<Integer, Set<Integer>> caught = new TreeMap<>();
+                for (int i = 0; i < fileIndices.size(); i++) {
+                    for (int testIndex : cells.get(fileIndices.get(i))) {
+                        if (outcomes.get(i)[testIndex] != Outcome.PASS) {
+                            caught.computeIfAbsent(fileIndices.get(i),
+                                    k -> new TreeSet<>()).add(testIndex);
+                        }
+                    }
+                }
+                return caught;
+            }
+
+            @Override
+            public int getBatchWidth() {
+                return (Tester.this.mode == ExecutionMode.BATCH) ? LAZY_BATCH_WIDTH : 1;
+            }
+
+            @Override
+            public void close() throws IOException {
+                Tester.this.closeBackend(backend);
+                Tester.this.deletePyCache();
+            }
+        };
+    }
+
+    /**
+     * Grades every implementation in the directory of buggy implementations, learning
+     * only whether each one is correct rather than its full row of the kill matrix. The
+     * test cases are run in decreasing order of how many files they caught in the input
+     * training results (e.g., those that the concise set was built from), so that a
+     * wrong implementation is likely to fail early; each implementation stops at its
+     * first failure. Test cases that are not in the training results go last, and ties
+     * are broken in favor of the test case with the lowest index. As with runTests(),
+     * computeExpectedResults() must have been called first, and only one implementation
+     * out of each group of source-equivalent ones is actually graded.
+     *
+     * The implementation timeout does not apply while grading, since an implementation
+     * is not run on every test case.
+     *
+     * @param training the results of testing that the kill rates are taken from
+     * @return a list where the i-th element is the verdict on the i-th implementation
+     * @throws IOException if the wrapper file cannot be created or the directory of
+     *                     implementations cannot be read
+     * @throws InterruptedException if the process is interrupted
+     */
+    public List<Verdict> grade(TestResults training)
+            throws IOException, InterruptedException {
+        long start = Metrics.startTimer();
+        this.createWrapperFile();
+        this.solutionHash = null;
+        this.expectedHash = null;
+        this.implHashes.clear();
+        List<String> filenames = this.getImplementationFiles();
+        List<List<Integer>> groups = this.groupImplementations(filenames);
+        List<Integer> order = this.orderByKillRate(training);
+
+        // Run the test cases on the first file of each group in order, stopping at its
+        // first failure
+        ExecutionBackend backend = this.openBackend(false);
+        List<Verdict> groupVerdicts;
+        try {
+            List<Callable<Verdict>> tasks = new ArrayList<>();
+            for (List<Integer> group : groups) {
+                String filename = filenames.get(group.get(0));
+                tasks.add(() -> {
+                    for (int i = 0; i < order.size(); i++) {
+                        Outcome outcome = this.runCell(backend, order.get(i), filename);
+                        if (outcome != Outcome.PASS) {
+                            return new Verdict(filename, this.tests.get(order.get(i)),
+                                    outcome, i + 1);
+                        }
+                    }
+                    return new Verdict(filename, null, null, order.size());
+                });
+            }
+            groupVerdicts = this.runInParallel(tasks);
+        } finally {
+            this.closeBackend(backend);
+        }
+        this.deletePyCache();
+
+        // Copy each verdict to the rest of its group
+        List<Verdict> verdicts = new ArrayList<>(
+                Collections.nCopies(filenames.size(), null));
+        long testsRun = 0;
+        for (int groupIndex = 0; groupIndex < groups.size(); groupIndex++) {
+            Verdict verdict = groupVerdicts.get(groupIndex);
+            testsRun += verdict.getTestsRun();
+            for (int fileIndex : groups.get(groupIndex)) {
+                verdicts.set(fileIndex, new Verdict(filenames.get(fileIndex),
+                        verdict.getFirstFailure(), verdict.getOutcome(),
+                        verdict.getTestsRun()));
+            }
+        }
+        Metrics.increment("feat_grade_cells_skipped_total",
+                (long) groups.size() * order.size() - testsRun);
+        Metrics.observeSince("feat_grade_seconds", start);
+        return verdicts;
+    }
+
+    /**
+     * Orders the test cases by how many files they caught in the input training results,
+     * from most to fewest; test cases that are not in the training results go last, and
+     * ties are broken in favor of the test case with the lowest index.
+     *
+     * @param training the results of testing that the kill rates are taken from
+     * @return the indices of the test cases, in the order they should be run in
+     */
+    private List<Integer> orderByKillRate(TestResults training) {
+        Map<TestCase, Integer> killCounts = new HashMap<>();
+        KillMatrix matrix = training.getKillMatrix();
+        for (int caseIndex = 0; caseIndex < matrix.getNumCases(); caseIndex++) {
+            killCounts.merge(training.getTestCase(caseIndex), matrix.countFiles(caseIndex),
+                    Math::max);
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < this.tests.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingInt(
+                (Integer i) -> -killCounts.getOrDefault(this.tests.get(i), -1)));
+        return order;
+    }
+
+    /**
+     * Returns the names of the buggy implementations in implDir, in sorted order; a
+     * file's index everywhere in the results is its position in this list.
+     *
+     * @return the sorted names of the buggy implementations
+     * @throws IOException if implDir cannot be read
+     */
+    private List<String> getImplementationFiles() throws IOException {
+        // Get the list of all files in the input directory
+        var dir = new File(this.implDirPath);
+        String[] filenames = dir.list();
+        if (filenames == null) {
+            throw new IOException("Error: implDir is empty");
+        }
+        Arrays.sort(filenames);
+
+        // Skip anything that isn't an implementation
+        List<String> implementations = new ArrayList<>();
+        for (String filename : filenames) {
+            if (!filename.endsWith(".py") || filename.equals("wrapper.py")
+                    || filename.equals("expected.py")) {
+                continue;
+            }
+            implementations.add(filename);
+        }
+        return implementations;
+    }
+
+    /**
+     * Groups the input implementations by their sources, so that runTests() only has to
+     * run one implementation per group. Two implementations are grouped together if
+     * their syntax trees are identical, which ignores comments and layout; files that
+     * Python cannot parse are only grouped with byte-identical ones.
+     *
+     * @param filenames the sorted names of the buggy implementations
+     * @return the groups of indices into filenames, each in increasing order, ordered by
+     * their first index; every group is a singleton if deduplication is off
+     * @throws IOException if an implementation cannot be read
+     * @throws InterruptedException if the process is interrupted
+     */
+    private List<List<Integer>> groupImplementations(List<String> filenames)
+            throws IOException, InterruptedException {
+        List<List<Integer>> groups = new ArrayList<>();
+        if (!this.deduplicate || filenames.size() < 2) {
+            for (int fileIndex = 0; fileIndex < filenames.size(); fileIndex++) {
+                groups.add(List.of(fileIndex));
+            }
+            return groups;
+        }
+
+        // Ask Python for the hash of each file's syntax tree
+        JSONArray paths = new JSONArray();
+        for (String filename : filenames) {
+            paths.put(Paths.get(this.implDirPath, filename).toString());
+        }
+        JSONArray prints = null;
+        try {
+            String output = this.runBatchHelper(List.of("python3",
+                    this.workDirPath + "/wrapper.py", "--fingerprint"), paths.toString(),
+                    80 * filenames.size() + 16);
+            prints = new JSONArray(output);
+            if (prints.length() != filenames.size()) {
+                prints = null;
+            }
+        } catch (JSONException e) {
+            // Fall back to comparing the raw bytes of every file
+        }
+
+        Map<String, List<Integer>> byKey = new LinkedHashMap<>();
+        for (int fileIndex = 0; fileIndex < filenames.size(); fileIndex++) {
+            String key;
+            if (prints != null && !prints.isNull(fileIndex)) {
+                key = "ast:" + prints.getString(fileIndex);
+            } else {
+                key = "raw:" + ResultCache.hash(Files.readAllBytes(
+                        Paths.get(this.implDirPath, filenames.get(fileIndex))));
+            }
+            byKey.computeIfAbsent(key, k -> new ArrayList<>()).add(fileIndex);
+        }
+        groups.addAll(byKey.values());
+        Metrics.set("feat_implementation_groups", groups.size());
+        return groups;
+    }
+
+    /**
+     * Starts up a worker pool if the configured execution mode actually uses one; it
+     * needs room for at least one worker per thread. The pool is closed along with the
+     * backend it is used by, unless it is handed to setWorkerPool().
+     *
+     * @return a new worker pool in WORKER_POOL or ZYGOTE mode; null otherwise
+     */
+    public WorkerPool createWorkerPool() {
+        String flag;
+        if (this.mode == ExecutionMode.WORKER_POOL) {
+            flag = "--serve";
+        } else if (this.mode == ExecutionMode.ZYGOTE) {
+            flag = "--zygote";
+        } else {
+            return null;
+        }
+        return new WorkerPool(List.of("python3", this.workDirPath + "/wrapper.py", flag),
+                this.funcName, Math.max(this.numWorkers, this.parallelism),
+                this.getProcessEnv());
+    }
+
+    /**
+     * Returns the backend to run test cases through: the one set through
+     * setExecutionBackend() if there is one, and otherwise a fresh SubprocessBackend,
+     * which must be closed through closeBackend() once it is no longer needed.
+     *
+     * @param implementationBudget whether the implementation timeout applies to each
+     *                             call to evaluate() on the default backend
+     * @return the backend to be used
+     */
+    private ExecutionBackend openBackend(boolean implementationBudget) {
+        if (this.backend != null) {
+            return this.backend;
+        }
+        WorkerPool pool = this.createWorkerPool();
+        if (pool != null && this.workerPool != null) {
+            pool = this.workerPool;
+        }
+        return new SubprocessBackend(pool, implementationBudget);
+    }
+
+    /**
+     * Closes a backend returned by openBackend(), unless it belongs to the caller of
+     * setExecutionBackend().
+     *
+     * @param backend the backend to be closed
+     * @throws IOException if the backend cannot be closed
+     */
+    private void closeBackend(ExecutionBackend backend) throws IOException {
+        if (backend != this.backend) {
+            backend.close();
+        }
+    }
+
+    /**
+     * Runs a single test case on a single buggy implementation through the input backend.
+     *
+     * @param backend   the backend to run the test case through
+     * @param testIndex the index of the test case to be run
+     * @param filename  the name of the implementation being tested
+     * @return the outcome of the test case
+     * @throws IOException if a process cannot be started or its output cannot be read
+     * @throws InterruptedException if the process is interrupted
+     */
+    private Outcome runCell(ExecutionBackend backend, int testIndex, String filename)
+            throws IOException, InterruptedException {
+        return this.runCells(backend, List.of(testIndex), filename)[testIndex];
+    }
+
+    /**
+     * Runs some of the test cases on a single buggy implementation through the input
+     * backend, all in one call to evaluate() so that they can share a process. Outcomes
+     * are served from the cache where possible.
+     *
+     * @param backend     the backend to run the test cases through
+     * @param testIndices the indices of the test cases to be run, in increasing order
+     * @param filename    the name of the implementation being tested
+     * @return an array where the i-th element is the outcome of the i-th test case, if
+     * it was requested, and null otherwise
+     * @throws IOException if a process cannot be started or its output cannot be read
+     * @throws InterruptedException if the process is interrupted
+     */
+    private Outcome[] runCells(ExecutionBackend backend, List<Integer> testIndices,
+                               String filename) throws IOException, InterruptedException {
+        Outcome[] outcomes = new Outcome[this.tests.size()];
+        String[] keys = null;
+        List<Integer> pending = testIndices;
+        if (this.cache != null) {
+            String implHash = ResultCache.hash(Files.readAllBytes(
+                    Paths.get(this.implDirPath, filename)));
+            keys = new String[this.tests.size()];
+            pending = new ArrayList<>();
+            for (int testIndex : testIndices) {
+                keys[testIndex] = this.getCacheKey(implHash, testIndex);
+                outcomes[testIndex] = this.cache.get(keys[testIndex]);
+                if (outcomes[testIndex] != null) {
+                    Metrics.increment("feat_cache_hits_total", 1);
+                } else {
+                    pending.add(testIndex);
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            this.runPending(backend, filename, pending, outcomes);
+            this.cacheOutcomes(keys, pending, outcomes);
+        }
+        return outcomes;
+    }
+
+    /**
+     * Runs every test case on a single buggy implementation through the input backend.
+     * If failures is not null and the implementation failed every test case, however
+     * its outcomes were obtained, it is then prechecked to find out whether it failed
+     * because it cannot be imported or does not define the function. The precheck is
+     * charged to the implementation's budget, so that it never runs past it.
+     *
+     * @param backend  the backend to run the test cases through
+     * @param filename the name of the implementation being tested
+     * @param failures the map to record why the implementation failed its precheck in,
+     *                 by its name; null to skip the precheck
+     * @return an array where the i-th element is the outcome of the i-th test case
+     * @throws IOException if a process cannot be started or its output cannot be read
+     * @throws InterruptedException if the process is interrupted
+     */
+    private Outcome[] runImplementation(ExecutionBackend backend, String filename,
+                                        Map<String, String> failures)
+            throws IOException, InterruptedException {
+        long start = Metrics.startTimer();
+        long deadline = this.getImplementationDeadline();
+
+        // Serve whichever outcomes we can from the cache, and only run the rest
+        Outcome[] outcomes = new Outcome[this.tests.size()];
+        String[] keys = this.getCachedOutcomes(filename, outcomes);
+        this.replayJournal(filename, outcomes);
+        List<Integer> pending = new ArrayList<>();
+        for (int testIndex = 0; testIndex < outcomes.length; testIndex++) {
+            if (outcomes[testIndex] == null) {
+                pending.add(testIndex);
+            }
+        }
+        this.runPending(backend, filename, pending, outcomes);
+        this.cacheOutcomes(keys, pending, outcomes);
+
+        // Only an implementation that failed everything is worth a process of its own
+        boolean failedAll = outcomes.length > 0;
+        for (Outcome outcome : outcomes) {
+            failedAll &= outcome == Outcome.FAIL;
+        }
+        String reason = (failures == null || !failedAll) ? null
+                : this.precheck(filename, deadline);
+        if (reason != null) {
+            failures.put(filename, reason);
+            Metrics.increment("feat_precheck_failures_total", 1);
+        }
+        Metrics.observeSince("feat_implementation_seconds", start);
+        return outcomes;
+    }
+
+    /**
+     * Imports a single buggy implementation and resolves the function under test in a
+     * process of its own, without running any test case, under the same limits as a
+     * test case (including the Tester's own backstop past the test timeout), but never
+     * for longer than PRECHECK_TIMEOUT_MILLIS or past the implementation's deadline.
+     *
+     * @param filename the name of the implementation to be checked
+     * @param deadline the implementation's deadline, as returned by
+     *                 getImplementationDeadline(); 0 for none
+     * @return why the implementation could not be imported or does not define the
+     * function; null if it can be and does, or if the check was inconclusive (e.g. the
+     * import ran out of budget or killed the process)
+     * @throws IOException if the process cannot be started or its output cannot be read
+     * @throws InterruptedException if the process is interrupted
+     */
+    private String precheck(String filename, long deadline)
+            throws IOException, InterruptedException {
+        long timeout = this.getTimeoutMillis(deadline, 1);
+        if (timeout < 0) {
+            return null;
+        }
+        timeout = (timeout == 0) ? PRECHECK_TIMEOUT_MILLIS
+                : Math.min(timeout, PRECHECK_TIMEOUT_MILLIS);
+
+        long start = Metrics.startTimer();
+        ProcessResult result = ProcessRunner.run(List.of("python3",
+                this.workDirPath + "/wrapper.py", "--precheck", filename, this.funcName),
+                this.getProcessEnv(), "", VERDICT_OUTPUT_LIMIT, timeout);
+        Metrics.observeSince("feat_precheck_seconds", start);
+        String line = result.getLastLine();
+        if (!line.startsWith("\"")) {
+            return null;
+        }
+        try {
+            return new JSONArray("[" + line + "]").getString(0);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs the pending test cases on a single buggy implementation through the input
+     * backend, recording each outcome as it is reported.
+     *
+     * @param backend  the backend to run the test cases through
+     * @param filename the name of the implementation being tested
+     * @param pending  the indices of the test cases to be run, in increasing order
+     * @param outcomes an array where the i-th element will be set to the outcome of the
+     *                 i-th test case
+     * @throws IOException if a process cannot be started or its output cannot be read
+     * @throws InterruptedException if the process is interrupted
+     */
+    private void runPending(ExecutionBackend backend, String filename,
+                            List<Integer> pending, Outcome[] outcomes)
+            throws IOException, InterruptedException {
+        Metrics.increment("feat_cells_run_total", pending.size());
+        backend.evaluate(filename, pending,
+                (testIndex, outcome) -> this.setOutcome(filename, outcomes, testIndex,
+                        outcome));
+    }
+
+    /**
+     * Records the outcome of a single test case on a single buggy implementation, and
+     * reports it to the listener if there is one.
+     *
+     * @param filename  the name of the implementation being tested
+     * @param outcomes  an array where the i-th element is the outcome of the i-th test
+     *                  case on the implementation
+     * @param testIndex the index of the test case
+     * @param outcome   the outcome of the test case
+     * @throws IOException if the outcome cannot be journaled
+     */
+    private void setOutcome(String filename, Outcome[] outcomes, int testIndex,
+                            Outcome outcome) throws IOException {
+        if (this.journal != null) {
+            this.journal.putOutcome(this.getJournalKey(filename, testIndex), outcome);
+        }
+        ProgressTracker tracker = this.tracker;
+        if (tracker == null) {
+            outcomes[testIndex] = outcome;
+        } else {
+            tracker.record(filename, outcomes, testIndex, outcome);
+        }
+    }
+
+    /**
+     * Fills in the outcomes of any remaining test cases on the input implementation that
+     * are already in the journal.
+     *
+     * @param filename the name of the implementation being tested
+     * @param outcomes an array where the i-th element will be set to the journaled
+     *                 outcome of the i-th test case, if it is null and there is one
+     * @throws IOException if the implementation cannot be read
+     */
+    private void replayJournal(String filename, Outcome[] outcomes) throws IOException {
+        if (this.journal == null) {
+            return;
+        }
+        for (int testIndex = 0; testIndex < outcomes.length; testIndex++) {
+            if (outcomes[testIndex] == null) {
+                Outcome journaled = this.journal.getOutcome(
+                        this.getJournalKey(filename, testIndex));
+                if (journaled != null) {
+                    this.setOutcome(filename, outcomes, testIndex, journaled);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the key under which the outcome of a single test case on a single
+     * implementation is journaled. Unlike a cache key, it also covers the budget, since
+     * the journal records outcomes that exceeded it.
+     *
+     * @param filename  the name of the implementation
+     * @param testIndex the index of the test case
+     * @return the journal key for the test case on the implementation
+     * @throws IOException if the implementation or reference solution cannot be read
+     */
+    private String getJournalKey(String filename, int testIndex) throws IOException {
+        String implHash = this.implHashes.get(filename);
+        if (implHash == null) {
+            implHash = ResultCache.hash(Files.readAllBytes(
+                    Paths.get(this.implDirPath, filename)));
+            this.implHashes.put(filename, implHash);
+        }
+        String budget = new TreeMap<>(this.getLimitsEnv()) + " "
+                + this.implementationTimeout;
+        return ResultCache.key(implHash, this.getSolutionHash(), this.funcName,
+                this.tests.get(testIndex).toString() + "\0" + budget);
+    }
+
+    /**
+     * Stores the newly computed outcomes of the pending test cases in the result cache.
+     * Whether a test case exceeds its budget depends on the limits and on how busy the
+     * machine is, so only the outcomes that do not are worth remembering.
+     *
+     * @param keys     an array where the i-th element is the cache key for the i-th test
+     *                 case; null if there is no result cache
+     * @param pending  the indices of the test cases that were run
+     * @param outcomes an array where the i-th element is the outcome of the i-th test
+     *                 case
+     * @throws IOException if the result cache cannot be written to
+     */
+    private void cacheOutcomes(String[] keys, List<Integer> pending, Outcome[] outcomes)
+            throws IOException {
+        if (keys == null) {
+            return;
+        }
+        for (int testIndex : pending) {
+            if (outcomes[testIndex] != Outcome.OVER_BUDGET) {
+                this.cache.put(keys[testIndex], outcomes[testIndex]);
+            }
+        }
+    }
+
+    /**
+     * Runs every test case on every buggy implementation by sharding the work across the
+     * configured agents. Outcomes are served from the result cache where possible, and
+     * any work unit that the agents fail to run is run locally instead.
+     *
+     * @param backend   the backend to run units through locally
+     * @param filenames the sorted names of the buggy implementations
+     * @return a list where the i-th element holds the outcomes of every test case on the
+     * i-th implementation
+     * @throws IOException if an implementation cannot be read or a unit cannot be run
+     *                     locally
+     * @throws InterruptedException if interrupted while waiting for the agents
+     */
+    private List<Outcome[]> runDistributed(ExecutionBackend backend,
+                                           List<String> filenames)
+            throws IOException, InterruptedException {
+        List<Outcome[]> allOutcomes = new ArrayList<>();
+        List<String[]> allKeys = new ArrayList<>();
+        List<List<Integer>> allPending = new ArrayList<>();
+        List<Coordinator.WorkUnit> units = new ArrayList<>();
+        for (int fileIndex = 0; fileIndex < filenames.size(); fileIndex++) {
+            String filename = filenames.get(fileIndex);
+            Outcome[] outcomes = new Outcome[this.tests.size()];
+            String[] keys = this.getCachedOutcomes(filename, outcomes);
+            this.replayJournal(filename, outcomes);
+            List<Integer> pending = new ArrayList<>();
+            for (int testIndex = 0; testIndex < outcomes.length; testIndex++) {
+                if (outcomes[testIndex] == null) {
+                    pending.add(testIndex);
+                }
+            }
+            allOutcomes.add(outcomes);
+            allKeys.add(keys);
+            allPending.add(pending);
+
+            // Split the pending test cases into units of at most workUnitSize each, and
+            // the implementation's budget between them, so that the units together get
+            // no more time than the implementation would have had locally
+            String source = Files.readString(Paths.get(this.implDirPath, filename));
+            int size = (this.workUnitSize == 0) ? Math.max(1, pending.size())
+                    : this.workUnitSize;
+            for (int from = 0; from < pending.size(); from += size) {
+                List<Integer> block = pending.subList(from,
+                        Math.min(from + size, pending.size()));
+                long budget = (this.implementationTimeout == 0) ? 0
+                        : Math.max(1, this.implementationTimeout * block.size()
+                        / pending.size());
+                units.add(new Coordinator.WorkUnit(fileIndex, block,
+                        this.getUnitRequest(filename, source, block, budget)));
+            }
+        }
+
+        // Farm the units out, then run whatever the agents could not finish locally
+        Coordinator coordinator = new Coordinator(this.agents, this.connectionsPerAgent,
+                MAX_UNIT_RETRIES, this.agentSecret);
+        List<IOException> errors = Collections.synchronizedList(new ArrayList<>());
+        List<Coordinator.WorkUnit> unfinished = coordinator.run(units,
+                Files.readString(Paths.get(this.workDirPath, "expected.py")), unit -> {
+                    // Merge each unit back into its implementation's row as it finishes
+                    try {
+                        for (int i = 0; i < unit.outcomes.length; i++) {
+                            this.setOutcome(filenames.get(unit.fileIndex),
+                                    allOutcomes.get(unit.fileIndex), unit.tests.get(i),
+                                    unit.outcomes[i]);
+                        }
+                    } catch (IOException e) {
+                        errors.add(e);
+                    }
+                });
+        if (!errors.isEmpty()) {
+            throw errors.get(0);
+        }
+        // Run each implementation's leftover units together, under a single budget
+        Map<Integer, List<Integer>> leftovers = new TreeMap<>();
+        for (Coordinator.WorkUnit unit : unfinished) {
+            leftovers.computeIfAbsent(unit.fileIndex, k -> new ArrayList<>())
+                    .addAll(unit.tests);
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Map.Entry<Integer, List<Integer>> entry : leftovers.entrySet()) {
+            List<Integer> testIndices = entry.getValue();
+            Collections.sort(testIndices);
+            tasks.add(() -> {
+                this.runPending(backend, filenames.get(entry.getKey()), testIndices,
+                        allOutcomes.get(entry.getKey()));
+                return null;
+            });
+        }
+        this.runInParallel(tasks);
+
+        for (int fileIndex = 0; fileIndex < filenames.size(); fileIndex++) {
+            this.cacheOutcomes(allKeys.get(fileIndex), allPending.get(fileIndex),
+                    allOutcomes.get(fileIndex));
+        }
+        return allOutcomes;
+    }
+
+    /**
+     * Builds the request that asks an agent to run a block of test cases on a single
+     * buggy implementation.
+     *
+     * @param filename    the name of the implementation being tested
+     * @param source      the contents of the implementation
+     * @param testIndices the indices of the test cases to be run
+     * @param budget      the number of milliseconds the test cases may run for in
+     *                    total; 0 for no limit
+     * @return the request to be sent to the agent
+     */
+    private JSONObject getUnitRequest(String filename, String source,
+                                      List<Integer> testIndices, long budget) {
+        JSONArray args = new JSONArray();
+        for (int testIndex : testIndices) {
+            args.put(ArgEncoder.encodeArgs(this.tests.get(testIndex)));
+        }
+        return new JSONObject()
+                .put("funcName", this.funcName)
+                .put("filename", filename)
+                .put("source", source)
+                .put("tests", new JSONArray(testIndices))
+                .put("args", args)
+                .put("mode", this.mode.name())
+                .put("testTimeout", this.testTimeout)
+                .put("implementationTimeout", budget)
+                .put("cpuLimit", this.cpuLimit)
+                .put("memoryLimit", this.memoryLimit);
+    }
+
+    /**
+     * Fills in the outcomes of any test cases on the input implementation that are
+     * already in the result cache.
+     *
+     * @param filename the name of the implementation being tested
+     * @param outcomes an array where the i-th element will be set to the cached outcome
+     *                 of the i-th test case, if there is one
+     * @return an array where the i-th element is the cache key for the i-th test case,
+     * or null if there is no result cache
+     * @throws IOException if the implementation cannot be read
+     */
+    private String[] getCachedOutcomes(String filename, Outcome[] outcomes)
+            throws IOException {
+        if (this.cache == null) {
+            return null;
+        }
+        String implHash = ResultCache.hash(Files.readAllBytes(
+                Paths.get(this.implDirPath, filename)));
+        String[] keys = new String[this.tests.size()];
+        for (int testIndex = 0; testIndex < keys.length; testIndex++) {
+            keys[testIndex] = this.getCacheKey(implHash, testIndex);
+            Outcome cached = this.cache.get(keys[testIndex]);
+            if (cached != null) {
+                Metrics.increment("feat_cache_hits_total", 1);
+                this.setOutcome(filename, outcomes, testIndex, cached);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Builds the key under which the outcome of a single test case on a single
+     * implementation is cached.
+     *
+     * @param implHash  the hash of the implementation's contents
+     * @param testIndex the index of the test case
+     * @return the cache key for the test case on the implementation
+     * @throws IOException if the reference solution cannot be read
+     */
+    private String getCacheKey(String implHash, int testIndex) throws IOException {
+        return ResultCache.key(implHash, this.getSolutionHash(), this.funcName,
+                this.tests.get(testIndex).toString());
+    }
+
+    /**
+     * Returns the hash of the reference solution, which determines the expected results
+     * that every cached outcome was compared against. If there is no reference solution,
+     * the expected results themselves are hashed instead.
+     *
+     * @return the hash of the reference solution
+     * @throws IOException if the reference solution cannot be read
+     */
+    private synchronized String getSolutionHash() throws IOException {
+        if (this.solutionHash == null) {
+            String path = (this.solutionPath != null) ? this.solutionScriptPath
+                    : this.workDirPath + "/expected.py";
+            this.solutionHash = ResultCache.hash(Files.readAllBytes(Paths.get(path)));
+        }
+        return this.solutionHash;
+    }
 
     /**
-     * Constructor for a Tester, which initializes all of the fields using the given
-     * inputs.
+     * Returns the hash of expected.py (or of expected.idx, if there is only the index),
+     * which a worker uses to tell whether the expected results it has loaded are still
+     * current.
      *
-     * @param funcName     the name of the function under test
-     * @param solutionPath the absolute path to the file containing the reference
-     *                     implementation
-     * @param implDirPath  the absolute path to the directory containing the student
-     *                     implementations
-     * @param tests        the list of test cases to be executed
+     * @return the hash of the expected results
+     * @throws IOException if neither expected.py nor expected.idx can be read
      */
-    public Tester(String funcName, String solutionPath, String implDirPath,
-                  List<TestCase> tests) {
-        this.funcName = funcName;
-        this.implDirPath = implDirPath;
-        this.solutionPath = solutionPath;
-        this.tests = tests;
+    private synchronized String getExpectedHash() throws IOException {
+        if (this.expectedHash == null) {
+            Path expected = Paths.get(this.workDirPath, "expected.py");
+            if (!Files.exists(expected)) {
+                expected = Paths.get(this.workDirPath, "expected.idx");
+            }
+            this.expectedHash = ResultCache.hash(Files.readAllBytes(expected));
+        }
+        return this.expectedHash;
     }
 
     /**
-     * Computes the expected results by running each test case on the solution file.
-     * Stores the results in a list (which is returned) and also creates a .py file
-     * containing an equivalent list of the results.
+     * Computes the expected results for a block of test cases through the input
+     * backend, and journals them.
      *
-     * @return a list where the i-th element is the result (a string) of running the i-th
-     * test case on the reference solution
-     * @throws IOException if the path to the solution is invalid
+     * @param backend     the backend to run the test cases through
+     * @param testIndices the indices of the test cases in the block
+     * @param journalKeys an array where the i-th element is the journal key for the i-th
+     *                    test case, or null if there is no journal
+     * @return a list where the i-th element is the result of running the
+     * testIndices.get(i)-th test case on the reference solution
+     * @throws IOException if the test cases cannot be run or the results journaled
      * @throws InterruptedException if the process is interrupted
      */
-    public List<String> computeExpectedResults() throws IOException, InterruptedException {
-        // Write an appropriate footer to the solution file to make it executable from
-        // the command-line, if the footer doesn't exist already
-        this.appendToSolution();
-
-        // Run each test case on the solution file and gather the results in a map
-        List<String> results = new ArrayList<>();
-        for (int i = 0; i < this.tests.size(); i++) {
-            List<String> args = this.getExpTestArgs(i);
-            String result = this.runTestHelper(args);
-            results.add(result);
+    private List<String> computeExpectedBlock(ExecutionBackend backend,
+                                              List<Integer> testIndices,
+                                              String[] journalKeys)
+            throws IOException, InterruptedException {
+        List<String> results = backend.computeExpected(testIndices);
+        if (results.size() != testIndices.size()) {
+            throw new IOException("backend returned " + results.size() + " results for "
+                    + testIndices.size() + " test cases");
+        }
+        for (int i = 0; journalKeys != null && i < results.size(); i++) {
+            this.journal.putExpected(journalKeys[testIndices.get(i)], results.get(i));
         }
+        return results;
+    }
 
-        // Write the expected results to a .py file, so that they can be accessed via
-        // the wrapper. These cached results allow us to only run the solution once per
-        // test rather than having to run it once per test per buggy implementation.
-        this.outputExpectedResults(results);
+    /**
+     * Fills in the expected results of any remaining test cases that are already in the
+     * journal.
+     *
+     * @param results an array where the i-th element will be set to the journaled result
+     *                of the i-th test case, if it is null and there is one
+     * @return an array where the i-th element is the journal key for the i-th test case,
+     * or null if there is no journal
+     * @throws IOException if the reference solution cannot be read
+     */
+    private String[] getJournaledExpectedResults(String[] results) throws IOException {
+        if (this.journal == null) {
+            return null;
+        }
+        String solutionHash = ResultCache.hash(Files.readAllBytes(
+                Paths.get(this.solutionScriptPath)));
+        String[] keys = new String[this.tests.size()];
+        for (int testIndex = 0; testIndex < keys.length; testIndex++) {
+            keys[testIndex] = ExpectedResultsStore.key(solutionHash, this.funcName,
+                    this.tests.get(testIndex).toString());
+            if (results[testIndex] == null) {
+                results[testIndex] = this.journal.getExpected(keys[testIndex]);
+            }
+        }
+        return keys;
+    }
 
-        // Return the results
-        return results;
+    /**
+     * Fills in the expected results of any test cases that are already in the expected
+     * results store.
+     *
+     * @param results an array where the i-th element will be set to the stored result of
+     *                the i-th test case, if there is one
+     * @return an array where the i-th element is the store key for the i-th test case,
+     * or null if there is no expected results store
+     * @throws IOException if the reference solution cannot be read
+     */
+    private String[] getStoredExpectedResults(String[] results) throws IOException {
+        if (this.expectedStore == null) {
+            return null;
+        }
+        String solutionHash = ResultCache.hash(Files.readAllBytes(
+                Paths.get(this.solutionScriptPath)));
+        String[] keys = new String[this.tests.size()];
+        for (int testIndex = 0; testIndex < keys.length; testIndex++) {
+            keys[testIndex] = ExpectedResultsStore.key(solutionHash, this.funcName,
+                    this.tests.get(testIndex).toString());
+            results[testIndex] = this.expectedStore.get(keys[testIndex]);
+        }
+        return keys;
     }
 
     /**
-     * Runs all tests on all files in the directory of buggy implementations, comparing
-     * the outputs to the pre-generated expected results and returning the results in the
-     * form of a TestResults object.
+     * Runs the input tasks on up to parallelism threads, returning their results in the
+     * same order as the tasks themselves. With adaptive concurrency, a fresh
+     * ConcurrencyController decides how many of those threads may run a task at once;
+     * it is not reused across calls, since throughput is only comparable between tasks
+     * of the same kind.
      *
-     * @return the results of testing
-     * @throws IOException if the path to the directory of buggy implementations is
-     *                     invalid
-     * @throws InterruptedException if the process is interrupted
+     * @param tasks the tasks to be run
+     * @param <T>   the type of result produced by each task
+     * @return a list where the i-th element is the result of the i-th task
+     * @throws IOException if any task throws an IOException
+     * @throws InterruptedException if any task (or the wait for it) is interrupted
      */
-    public TestResults runTests() throws IOException, InterruptedException {
-        // Create the wrapper file
-        this.createWrapperFile();
+    private <T> List<T> runInParallel(List<Callable<T>> tasks)
+            throws IOException, InterruptedException {
+        List<T> results = new ArrayList<>();
 
-        // Initialize the outputs
-        List<Set<Integer>> caseToFiles = new ArrayList<>();
-        for (int i = 0; i < this.tests.size(); i++) {
-            caseToFiles.add(new HashSet<>());
+        // Don't bother spinning up threads if there's nothing to run concurrently
+        if (this.parallelism == 1 || tasks.size() <= 1) {
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (Exception e) {
+                    throw asIOException(e);
+                }
+            }
+            return results;
         }
-        Set<Integer> wrongSet = new HashSet<>();
 
-        // Get the list of all files in the input directory
-        var dir = new File(this.implDirPath);
-        String[] filenames = dir.list();
-        if (filenames == null) {
-            throw new IOException("Error: implDir is empty");
+        int numThreads = Math.min(this.parallelism, tasks.size());
+        List<Callable<T>> gated = tasks;
+        ConcurrencyController controller = null;
+        if (this.adaptive) {
+            int initial = (this.adaptiveLimit > 0) ? this.adaptiveLimit
+                    : Runtime.getRuntime().availableProcessors();
+            controller = (this.loadPerCpu == null)
+                    ? new ConcurrencyController(initial, numThreads)
+                    : new ConcurrencyController(initial, numThreads, this.loadPerCpu,
+                    this.freeMemory);
+            ConcurrencyController limiter = controller;
+            gated = new ArrayList<>();
+            for (Callable<T> task : tasks) {
+                gated.add(() -> {
+                    limiter.acquire();
+                    try {
+                        return task.call();
+                    } finally {
+                        limiter.release();
+                    }
+                });
+            }
         }
-        Arrays.sort(filenames);
 
-        // If implDirPath didn't actually point to a directory, files would be null
-        int trueIndex = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            for (Future<T> future : executor.invokeAll(gated)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw asIOException(e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            if (controller != null) {
+                this.adaptiveLimit = controller.getLimit();
+            }
+        }
+        return results;
+    }
 
-        // Test each individual file using all tests in the base test set
-        for (String filename : filenames) {
-            if (!filename.endsWith(".py") || filename.equals("wrapper.py")
-                    || filename.equals("expected.py")) {
+    /**
+     * Narrows an exception thrown by a task to the exceptions declared by runTests() and
+     * computeExpectedResults(); unchecked exceptions and InterruptedExceptions are
+     * rethrown as-is, and any other checked exception is wrapped in an IOException.
+     *
+     * @param cause the exception thrown by the task
+     * @return the IOException to be thrown in place of cause
+     * @throws InterruptedException if cause is an InterruptedException
+     */
+    private static IOException asIOException(Throwable cause) throws InterruptedException {
+        if (cause instanceof IOException e) {
+            return e;
+        } else if (cause instanceof InterruptedException e) {
+            throw e;
+        } else if (cause instanceof RuntimeException e) {
+            throw e;
+        } else if (cause instanceof Error e) {
+            throw e;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * Runs the pending test cases on a single buggy implementation, starting a fresh
+     * process for each test case.
+     *
+     * @param filename the name of the implementation being tested
+     * @param pending  the indices of the test cases to be run, in increasing order
+     * @param deadline the System.nanoTime() by which every test case must finish, as
+     *                 returned by getImplementationDeadline(); 0 for none
+     * @param sink     the sink to report each outcome to
+     * @throws IOException if a process cannot be started or its output cannot be read
+     * @throws InterruptedException if the process is interrupted
+     */
+    private void runImplementation(String filename, List<Integer> pending, long deadline,
+                                   ExecutionBackend.OutcomeSink sink)
+            throws IOException, InterruptedException {
+        for (int testIndex : pending) {
+            long timeout = this.getTimeoutMillis(deadline, 1);
+            if (timeout < 0) {
+                sink.accept(testIndex, Outcome.OVER_BUDGET);
                 continue;
             }
+            sink.accept(testIndex, this.runTestOnImplementation(testIndex, filename, timeout));
+        }
+    }
+
+    /**
+     * Runs a single test case on a single buggy implementation in a fresh process.
+     *
+     * @param testIndex the index of the test case to be run
+     * @param filename  the name of the implementation being tested
+     * @param timeout   the number of milliseconds after which the process is killed; 0
+     *                  for no limit
+     * @return the outcome of the test case
+     * @throws IOException if the process cannot be started or its output cannot be read
+     * @throws InterruptedException if the process is interrupted
+     */
+    private Outcome runTestOnImplementation(int testIndex, String filename, long timeout)
+            throws IOException, InterruptedException {
+        long start = Metrics.startTimer();
+        List<String> args = this.getTestArgs(testIndex, filename);
+        ProcessResult result = ProcessRunner.run(args, this.getProcessEnv(),
+                this.getEncodedArgs(testIndex), VERDICT_OUTPUT_LIMIT, timeout);
+        Metrics.observeSince("feat_test_seconds", start);
+        return result.isTimedOut() ? Outcome.OVER_BUDGET
+                : Outcome.fromResult(result.getLastLine());
+    }
+
+    /**
+     * Runs the pending test cases on a single buggy implementation using a worker from
+     * the input pool, which imports the implementation only once. If the implementation
+     * takes down its worker, the test case that did so is treated as having caught it
+     * and a fresh worker is started for the remaining test cases.
+     *
+     * @param pool     the pool of workers to draw from
+     * @param filename the name of the implementation being tested
+     * @param pending  the indices of the test cases to be run, in increasing order
+     * @param deadline the System.nanoTime() by which every test case must finish, as
+     *                 returned by getImplementationDeadline(); 0 for none
+     * @param sink     the sink to report each outcome to
+     * @throws IOException if a worker cannot be started
+     * @throws InterruptedException if interrupted while waiting for a worker
+     */
+    private void runImplementationOnWorker(WorkerPool pool, String filename,
+                                           List<Integer> pending, long deadline,
+                                           ExecutionBackend.OutcomeSink sink)
+            throws IOException, InterruptedException {
+        PythonWorker worker = null;
+        try {
+            for (int testIndex : pending) {
+                long timeout = this.getTimeoutMillis(deadline, 1);
+                if (timeout < 0) {
+                    sink.accept(testIndex, Outcome.OVER_BUDGET);
+                    continue;
+                }
+                if (worker == null) {
+                    worker = pool.acquire(filename);
+                }
+                long start = Metrics.startTimer();
+                String result = worker.request(this.getWorkerRequest(testIndex)
+                        .put(this.getExpectedHash()).toString(), timeout);
+                Metrics.observeSince("feat_test_seconds", start);
+                if (result == null || !worker.isAlive()) {
+                    // The implementation took down its worker (or the worker was killed
+                    // for running too long), so a fresh one will be needed for the next
+                    // test case
+                    pool.discard(worker);
+                    worker = null;
+                }
+                sink.accept(testIndex, Outcome.fromResult(result));
+            }
+        } finally {
+            if (worker != null) {
+                pool.release(filename, worker);
+            }
+        }
+    }
+
+    /**
+     * Runs the pending test cases on a single buggy implementation within a single
+     * process, which reports one result character per test case. If the implementation
+     * takes down the process partway through (or the process is killed for running too
+     * long), the test case that did so is treated as having caught it and a fresh process
+     * is started for the remaining test cases.
+     *
+     * @param filename the name of the implementation being tested
+     * @param pending  the indices of the test cases to be run, in increasing order
+     * @param deadline the System.nanoTime() by which every test case must finish, as
+     *                 returned by getImplementationDeadline(); 0 for none
+     * @param sink     the sink to report each outcome to
+     * @throws IOException if a process cannot be started or its output cannot be read
+     * @throws InterruptedException if the process is interrupted
+     */
+    private void runImplementationInBatch(String filename, List<Integer> pending,
+                                          long deadline, ExecutionBackend.OutcomeSink sink)
+            throws IOException, InterruptedException {
+        List<String> args = List.of("python3", this.workDirPath + "/wrapper.py", "--batch",
+                filename, this.funcName);
 
-            // Run each test case on this file, keeping track of which ones caught
-            // errors
-            HashSet<Integer> caughtBy = new HashSet<>();
-            for (int testIndex = 0; testIndex < this.tests.size(); testIndex++) {
-                List<String> args = this.getTestArgs(testIndex, filename);
-                String result = this.runTestHelper(args);
-                if (!result.equals("True")) {
-                    caseToFiles.get(testIndex).add(trueIndex);
-                    caughtBy.add(testIndex);
+        int next = 0;
+        while (next < pending.size()) {
+            // Give the process enough time for every remaining test case, without going
+            // past the implementation's own deadline
+            long timeout = this.getTimeoutMillis(deadline, pending.size() - next);
+            if (timeout < 0) {
+                for (int testIndex : pending.subList(next, pending.size())) {
+                    sink.accept(testIndex, Outcome.OVER_BUDGET);
                 }
+                break;
+            }
+
+            // Send all of the remaining test cases to a fresh process
+            JSONArray requests = new JSONArray();
+            for (int testIndex : pending.subList(next, pending.size())) {
+                requests.put(this.getWorkerRequest(testIndex));
             }
+            long start = Metrics.startTimer();
+            ProcessResult result = ProcessRunner.run(args, this.getProcessEnv(),
+                    requests.toString(), pending.size() + VERDICT_OUTPUT_LIMIT,
+                    timeout);
+            Metrics.observeSince("feat_batch_seconds", start);
+            String vector = result.getStdout().trim();
 
-            // Add to wrongSet if applicable
-            if (caughtBy.size() > 0) {
-                wrongSet.add(trueIndex);
+            // Each character of the output is the result of one test case
+            for (int i = 0; i < vector.length() && next < pending.size(); i++, next++) {
+                sink.accept(pending.get(next), Outcome.fromCode(vector.charAt(i)));
+            }
+
+            // A short vector means the process died (or was killed) on the next test case
+            if (next < pending.size()) {
+                sink.accept(pending.get(next),
+                        result.isTimedOut() ? Outcome.OVER_BUDGET : Outcome.FAIL);
+                next++;
             }
-            trueIndex++;
         }
+    }
 
-        // Clean up the pycache that was created
-        this.deletePyCache();
+    /**
+     * Returns the System.nanoTime() at which a buggy implementation that starts running
+     * now will have used up its budget.
+     *
+     * @return the deadline for an implementation starting now, or 0 if there is none
+     */
+    private long getImplementationDeadline() {
+        if (this.implementationTimeout == 0) {
+            return 0;
+        }
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.implementationTimeout);
+    }
 
-        // Return the results
-        return new TestResults(this.tests, caseToFiles, wrongSet);
+    /**
+     * Returns how long the Tester should wait for a process running the input number of
+     * test cases before killing it.
+     *
+     * @param deadline the implementation's deadline, as returned by
+     *                 getImplementationDeadline()
+     * @param numTests the number of test cases the process will run
+     * @return the number of milliseconds to wait (0 for no limit), or -1 if the
+     * implementation has already used up its budget
+     */
+    private long getTimeoutMillis(long deadline, int numTests) {
+        long timeout = (this.testTimeout == 0) ? 0
+                : (this.testTimeout + BACKSTOP_GRACE_MILLIS) * numTests;
+        if (deadline != 0) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return -1;
+            }
+            timeout = (timeout == 0) ? remaining : Math.min(timeout, remaining);
+        }
+        return timeout;
+    }
+
+    /**
+     * Builds the environment variables through which the budget for each test case is
+     * passed to the wrapper, which enforces it from within the Python process.
+     *
+     * @return the environment variables describing the configured limits
+     */
+    private Map<String, String> getLimitsEnv() {
+        Map<String, String> env = new HashMap<>();
+        if (this.testTimeout > 0) {
+            env.put("FEAT_TEST_TIMEOUT", String.valueOf(this.testTimeout / 1000.0));
+        }
+        if (this.cpuLimit > 0) {
+            env.put("FEAT_CPU_LIMIT", String.valueOf(this.cpuLimit));
+        }
+        if (this.memoryLimit > 0) {
+            env.put("FEAT_MEMORY_LIMIT", String.valueOf(this.memoryLimit));
+        }
+        return env;
+    }
+
+    /**
+     * Builds the environment variables that tell a Python process where to find things
+     * when the Tester works in a scratch directory. The wrapper and the copy of the
+     * solution live there rather than next to the files they import, so implDir and the
+     * solution's directory are put on the module search path explicitly; and bytecode is
+     * written to the bytecode cache, if there is one, and nowhere otherwise, so that
+     * nothing is written into the input directories.
+     *
+     * @return the environment variables to be added; empty if the Tester works in
+     * implDir
+     */
+    private Map<String, String> getWorkspaceEnv() {
+        Map<String, String> env = new HashMap<>();
+        if (this.scratchDir == null) {
+            return env;
+        }
+        List<String> path = new ArrayList<>();
+        path.add(this.implDirPath);
+        if (this.solutionPath != null) {
+            path.add(Paths.get(this.solutionPath).toAbsolutePath().getParent().toString());
+        }
+        if (System.getenv("PYTHONPATH") != null) {
+            path.add(System.getenv("PYTHONPATH"));
+        }
+        env.put("PYTHONPATH", String.join(File.pathSeparator, path));
+        if (this.bytecodeCache != null) {
+            env.put("PYTHONPYCACHEPREFIX",
+                    Paths.get(this.bytecodeCache, "pyc").toAbsolutePath().toString());
+        } else {
+            env.put("PYTHONDONTWRITEBYTECODE", "1");
+        }
+        return env;
+    }
+
+    /**
+     * Builds the environment variables for a process that runs test cases on a buggy
+     * implementation, combining getLimitsEnv() and getWorkspaceEnv().
+     *
+     * @return the environment variables to be added
+     */
+    private Map<String, String> getProcessEnv() {
+        Map<String, String> env = this.getLimitsEnv();
+        env.putAll(this.getWorkspaceEnv());
+        return env;
+    }
+
+    /**
+     * Runs a block of test cases on the reference solution within a single process.
+     *
+     * @param testIndices the indices of the test cases in the block
+     * @return a list where the i-th element is the result of running the
+     * testIndices.get(i)-th test case on the reference solution, or null if the process
+     * did not report a result for every test case
+     * @throws IOException if the process cannot be started or its output cannot be read
+     * @throws InterruptedException if the process is interrupted
+     */
+    private List<String> computeExpectedResultsInBatch(List<Integer> testIndices)
+            throws IOException, InterruptedException {
+        JSONArray requests = new JSONArray();
+        for (int testIndex : testIndices) {
+            requests.put(this.getWorkerRequest(testIndex).get(1));
+        }
+        // The whole block shares one output limit; if its results do not fit, the
+        // output cannot be parsed and the block is rerun one test case at a time
+        String output = this.runBatchHelper(List.of("python3", this.solutionScriptPath,
+                "--batch"), requests.toString(),
+                Math.max(this.outputLimit, BATCH_OUTPUT_LIMIT));
+
+        // Parse the reported results, which should be a JSON list of strings
+        try {
+            JSONArray reported = new JSONArray(output);
+            if (reported.length() != testIndices.size()) {
+                return null;
+            }
+            List<String> results = new ArrayList<>();
+            for (int i = 0; i < reported.length(); i++) {
+                results.add(reported.getString(i));
+            }
+            return results;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A helper function for the batch mode which runs a Python process, writes the input
+     * to its stdin, and reads what it writes to stdout.
+     *
+     * @param args        the arguments for the process to be created
+     * @param input       the data to be written to the process's stdin
+     * @param outputLimit the number of trailing bytes of stdout to be retained
+     * @return the retained tail of what the process wrote to stdout
+     * @throws IOException if the process cannot be started or its output cannot be read
+     * @throws InterruptedException if the process is interrupted
+     */
+    private String runBatchHelper(List<String> args, String input, int outputLimit)
+            throws IOException, InterruptedException {
+        return ProcessRunner.run(args, this.getWorkspaceEnv(), input, outputLimit, 0)
+                .getStdout().trim();
+    }
+
+    /**
+     * Builds the request sent to a worker in order to run a single test case: a JSON
+     * array holding the index of the test case and the string representations of its
+     * arguments.
+     *
+     * @param testIndex the index of the test case to be run
+     * @return the request for running the given test case
+     */
+    private JSONArray getWorkerRequest(int testIndex) {
+        return new JSONArray().put(testIndex)
+                .put(ArgEncoder.encodeArgs(this.tests.get(testIndex)));
     }
 
     /**
@@ -160,16 +2221,10 @@ public class Tester {
     private List<String> getExpTestArgs(int testIndex) {
         List<String> args = new ArrayList<>();
 
-        // The solution must be a python3 file
+        // The solution must be a python3 file; the arguments themselves are sent over
+        // stdin (see getEncodedArgs()), and the footer will take care of decoding them
         args.add("python3");
-        args.add(this.solutionPath);
-
-        // Add each argument as a string; the footer will take care of converting these to
-        // Python objects before invoking the function under test
-        TestCase test = this.tests.get(testIndex);
-        for (APyObj arg : test.getArgs()) {
-            args.add(arg.toString());
-        }
+        args.add(this.solutionScriptPath);
         return args;
     }
 
@@ -188,7 +2243,7 @@ public class Tester {
         args.add("python3");
 
         // Directly invoking the wrapper, which will dynamically load the file under test
-        args.add(this.implDirPath + "/wrapper.py");
+        args.add(this.workDirPath + "/wrapper.py");
 
         // Need to include the index of the test case so that we can look up the expected
         // results to determine whether the test passes or fails
@@ -199,54 +2254,61 @@ public class Tester {
         args.add(filename);
         args.add(this.funcName);
 
-        // Add each argument as a string; the footer will take care of converting these to
-        // Python objects before invoking the function under test
-        TestCase test = this.tests.get(testIndex);
-        for (APyObj arg : test.getArgs()) {
-            args.add(arg.toString());
-        }
+        // The arguments themselves are sent over stdin (see getEncodedArgs()), and the
+        // wrapper will take care of decoding them
         return args;
     }
 
+    /**
+     * Encodes the arguments of a single test case, to be written to the stdin of a
+     * process started with getTestArgs() or getExpTestArgs(). Sending the arguments this
+     * way rather than on the command line means that they are not subject to the
+     * operating system's limit on the length of a command line, and that they can be
+     * decoded without a call to eval().
+     *
+     * @param testIndex the index of the test case
+     * @return the encoded arguments of the test case
+     */
+    private String getEncodedArgs(int testIndex) {
+        return ArgEncoder.encodeArgs(this.tests.get(testIndex)).toString();
+    }
+
     /**
      * A helper function for runTest and runExpTest which runs a Python process (using a
      * list of arguments, as output by getTestArgs or getExpTestArgs) and reads its
      * output.
      *
-     * @param args the arguments for the process to be created
+     * @param args  the arguments for the process to be created
+     * @param input the data to be written to the process's stdin
      * @return the result of reading from the process
      * @throws IOException if the file to run or its output cannot be accessed
      * @throws InterruptedException if the process is interrupted
      */
-    private String runTestHelper(List<String> args) throws IOException, InterruptedException {
-        ProcessBuilder pb = new ProcessBuilder();
-        pb.command(args);
-        Process process = pb.start();
-
-        // Redirect the output of the process to here
-        var sb = new StringBuilder();
-        var reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-
-        // Wait until the process has exited
-        process.waitFor();
-
-        // Read the output of the process, the last line of which should be the result
-        String line;
-        String prevLine = "";
-        while ((line = reader.readLine()) != null) {
-            prevLine = line;
-        }
-        reader.close();
+    private String runTestHelper(List<String> args, String input)
+            throws IOException, InterruptedException {
+        // The process's output is drained while it runs, so that one which prints a lot
+        // cannot block on a full pipe; only the last line of it is needed
+        ProcessResult result = ProcessRunner.run(args, this.getWorkspaceEnv(), input,
+                this.outputLimit, 0);
 
         // Return the result
-        return prevLine;
+        return result.getLastLine();
     }
 
     /**
-     * Creates a wrapper file that imports the expected results, reads the command-line
-     * args, dynamically imports the buggy implementation, generates the actual results
+     * Creates a wrapper file that looks up the expected results, reads the command-line
+     * args and the encoded test case args (from stdin), dynamically imports the buggy
+     * implementation, generates the actual results
      * for a single test case, compares the returned value to the expected value, and then
-     * returns a boolean value (True if test passes, False otherwise).
+     * returns a boolean value (True if test passes, False otherwise), or OverBudget if the
+     * test case exceeds the limits configured through the Tester. When invoked with
+     * --serve, the wrapper instead acts as a PythonWorker for a single implementation,
+     * answering one request frame per test case until its stdin is closed; when invoked
+     * with --zygote, it answers the same requests by forking a fresh child for each one;
+     * when invoked with --batch, it runs a whole list of test cases read from stdin; when
+     * invoked with --precheck, it only imports an implementation and resolves the
+     * function, printing why that failed; and when invoked with --fingerprint, it prints
+     * a hash of the syntax tree of each file named on stdin.
      *
      * @throws IOException if the wrapper file cannot be created
      */
@@ -254,39 +2316,348 @@ public class Tester {
         StringBuilder sb = new StringBuilder();
 
         // Import the expected results, plus the other modules we'll need
-        sb.append("import sys\nfrom importlib import import_module\nfrom expected " +
-                "import results\n\n");
+        sb.append("import os\nimport sys\nimport json\nimport mmap\nimport signal\n" +
+                "import struct\nimport importlib.util\n" +
+                "from importlib import import_module\n\n");
+        sb.append("try:\n");
+        sb.append("    import resource\n");
+        sb.append("except ImportError:\n");
+        sb.append("    resource = None\n\n");
+
+        // The budget for each test case, as configured through the Tester; a test case
+        // that exceeds it is interrupted by a signal and reported as OverBudget. The
+        // alarm keeps firing every ALARM_INTERVAL seconds until the test case gives up,
+        // so that an implementation which swallows the first one (e.g. with a bare
+        // except) is interrupted again, and is reported as OverBudget even if it then
+        // returns normally
+        sb.append("TEST_TIMEOUT = float(os.environ.get('FEAT_TEST_TIMEOUT', '0'))\n");
+        sb.append("CPU_LIMIT = int(os.environ.get('FEAT_CPU_LIMIT', '0'))\n");
+        sb.append("MEMORY_LIMIT = int(os.environ.get('FEAT_MEMORY_LIMIT', '0'))\n");
+        sb.append("ALARM_INTERVAL = 0.05\n");
+        sb.append("EXPIRED = [False]\n\n");
+        sb.append("class BudgetExceeded(BaseException):\n");
+        sb.append("    pass\n\n");
+        sb.append("def over_budget(signum, frame):\n");
+        sb.append("    EXPIRED[0] = True\n");
+        sb.append("    raise BudgetExceeded()\n\n");
+        sb.append("def apply_limits():\n");
+        sb.append("    if TEST_TIMEOUT:\n");
+        sb.append("        signal.signal(signal.SIGALRM, over_budget)\n");
+        sb.append("    if resource is None:\n");
+        sb.append("        return\n");
+        sb.append("    if CPU_LIMIT:\n");
+        sb.append("        signal.signal(signal.SIGXCPU, over_budget)\n");
+        sb.append("    if MEMORY_LIMIT:\n");
+        sb.append("        resource.setrlimit(resource.RLIMIT_AS, (MEMORY_LIMIT, " +
+                "MEMORY_LIMIT))\n\n");
+
+        // The CPU limit applies to the whole process, so it is moved forward before each
+        // test case to allow that test case (only) CPU_LIMIT more seconds
+        sb.append("def run_budgeted(case_num, impl_name, fname, args):\n");
+        sb.append("    EXPIRED[0] = False\n");
+        sb.append("    if TEST_TIMEOUT:\n");
+        sb.append("        signal.setitimer(signal.ITIMER_REAL, TEST_TIMEOUT, " +
+                "ALARM_INTERVAL)\n");
+        sb.append("    if CPU_LIMIT and resource is not None:\n");
+        sb.append("        usage = resource.getrusage(resource.RUSAGE_SELF)\n");
+        sb.append("        soft = int(usage.ru_utime + usage.ru_stime) + 1 + CPU_LIMIT\n");
+        sb.append("        hard = resource.getrlimit(resource.RLIMIT_CPU)[1]\n");
+        sb.append("        if hard != resource.RLIM_INFINITY:\n");
+        sb.append("            soft = min(soft, hard)\n");
+        sb.append("        resource.setrlimit(resource.RLIMIT_CPU, (soft, hard))\n");
+        sb.append("    try:\n");
+        sb.append("        passed = test_buggy_impl(case_num, impl_name, fname, args)\n");
+        sb.append("    except (BudgetExceeded, MemoryError):\n");
+        sb.append("        return 'OverBudget'\n");
+        sb.append("    finally:\n");
+        sb.append("        if TEST_TIMEOUT:\n");
+        sb.append("            signal.setitimer(signal.ITIMER_REAL, 0)\n");
+        sb.append("    return 'OverBudget' if EXPIRED[0] else passed\n\n");
+
+        // Function for importing a buggy implementation; if sources.json maps it to a
+        // copy in the bytecode cache, the copy is imported instead (under the same
+        // module name), so that its bytecode is cached by content rather than by path
+        sb.append("SOURCES = []\n\n");
+        sb.append("def load_impl(impl_name):\n");
+        sb.append("    mod_name = impl_name[:-3]\n");
+        sb.append("    if not SOURCES:\n");
+        sb.append("        path = os.path.join(os.path.dirname(os.path.abspath(__file__)), " +
+                "'sources.json')\n");
+        sb.append("        try:\n");
+        sb.append("            with open(path) as f:\n");
+        sb.append("                SOURCES.append(json.load(f))\n");
+        sb.append("        except (OSError, ValueError):\n");
+        sb.append("            SOURCES.append({})\n");
+        sb.append("    source = SOURCES[0].get(impl_name)\n");
+        sb.append("    if source is None or mod_name in sys.modules:\n");
+        sb.append("        return import_module(mod_name)\n");
+        sb.append("    spec = importlib.util.spec_from_file_location(mod_name, source)\n");
+        sb.append("    mod = importlib.util.module_from_spec(spec)\n");
+        sb.append("    sys.modules[mod_name] = mod\n");
+        sb.append("    try:\n");
+        sb.append("        spec.loader.exec_module(mod)\n");
+        sb.append("    except BaseException:\n");
+        sb.append("        del sys.modules[mod_name]\n");
+        sb.append("        raise\n");
+        sb.append("    return mod\n\n");
 
         // Function for comparing the buggy implementation's results to the
         // pre-determined expected results
         sb.append("def test_buggy_impl(case_num, impl_name, fname, args):\n");
-        sb.append("    mod_name = impl_name[:-3]\n");
-        sb.append("    mod = import_module(mod_name)\n");
+        sb.append("    mod = load_impl(impl_name)\n");
         sb.append("    func = getattr(mod, fname)\n");
         sb.append("    actual = func(*args)\n");
-        sb.append("    expected = results[case_num]\n");
+        sb.append("    expected = expected_result(case_num)\n");
         sb.append("    return (actual == expected)\n\n");
 
+        // Function for looking up a single expected result, which maps expected.idx
+        // into memory and decodes only the results that are actually used; without an
+        // index, it falls back to importing every result from expected.py
+        sb.append("EXPECTED = {}\n");
+        sb.append("INDEX = []\n\n");
+        sb.append("def load_expected():\n");
+        sb.append("    if not INDEX:\n");
+        sb.append("        path = os.path.join(os.path.dirname(os.path.abspath(__file__)), " +
+                "'expected.idx')\n");
+        sb.append("        try:\n");
+        sb.append("            with open(path, 'rb') as f:\n");
+        sb.append("                INDEX.append(mmap.mmap(f.fileno(), 0, " +
+                "access=mmap.ACCESS_READ))\n");
+        sb.append("        except (OSError, ValueError):\n");
+        sb.append("            from expected import results\n");
+        sb.append("            EXPECTED.update(enumerate(results))\n");
+        sb.append("            INDEX.append(None)\n");
+        sb.append("    return INDEX[0]\n\n");
+        sb.append("LOADED = [None]\n\n");
+        sb.append("def reload_expected(expected_hash):\n");
+        sb.append("    if expected_hash != LOADED[0]:\n");
+        sb.append("        EXPECTED.clear()\n");
+        sb.append("        del INDEX[:]\n");
+        sb.append("        sys.modules.pop('expected', None)\n");
+        sb.append("        LOADED[0] = expected_hash\n\n");
+        sb.append("def expected_result(case_num):\n");
+        sb.append("    index = load_expected()\n");
+        sb.append("    if case_num in EXPECTED or index is None:\n");
+        sb.append("        return EXPECTED[case_num]\n");
+        sb.append("    count = struct.unpack_from('>I', index, 72)[0]\n");
+        sb.append("    if not 0 <= case_num < count:\n");
+        sb.append("        raise IndexError(case_num)\n");
+        sb.append("    start, end = struct.unpack_from('>qq', index, 76 + 8 * case_num)\n");
+        sb.append("    data = 76 + 8 * (count + 1)\n");
+        sb.append("    EXPECTED[case_num] = eval(index[data + start:data + end]" +
+                ".decode('utf-8'))\n");
+        sb.append("    return EXPECTED[case_num]\n\n");
+
+        // Decoder for the arguments of each test case, as encoded by ArgEncoder
+        appendArgDecoder(sb);
+
+        // Helpers for exchanging length-prefixed frames with a PythonWorker
+        sb.append("def read_frame(stream):\n");
+        sb.append("    header = stream.readline()\n");
+        sb.append("    if not header:\n");
+        sb.append("        return None\n");
+        sb.append("    return stream.read(int(header)).decode('utf-8')\n\n");
+        sb.append("def write_frame(stream, payload):\n");
+        sb.append("    data = payload.encode('utf-8')\n");
+        sb.append("    stream.write(str(len(data)).encode('utf-8') + b'\\n' + data)\n");
+        sb.append("    stream.flush()\n\n");
+
+        // Worker loop, which keeps the implementation imported across test cases, and
+        // reloads the expected results whenever a request names different ones; stdin
+        // and stdout are reserved for frames, so anything the implementation prints is
+        // diverted to stderr
+        sb.append("def serve(impl_name, fname):\n");
+        sb.append("    requests = sys.stdin.buffer\n");
+        sb.append("    responses = sys.stdout.buffer\n");
+        sb.append("    sys.stdin = open(os.devnull)\n");
+        sb.append("    sys.stdout = sys.stderr\n");
+        sb.append("    while True:\n");
+        sb.append("        request = read_frame(requests)\n");
+        sb.append("        if request is None:\n");
+        sb.append("            return\n");
+        sb.append("        case_num, args, expected_hash = json.loads(request)\n");
+        sb.append("        reload_expected(expected_hash)\n");
+        sb.append("        try:\n");
+        sb.append("            args = [decode_arg(arg) for arg in args]\n");
+        sb.append("            passed = run_budgeted(case_num, impl_name, fname, args)\n");
+        sb.append("        except BaseException:\n");
+        sb.append("            passed = False\n");
+        sb.append("        write_frame(responses, str(passed))\n\n");
+
+        // Zygote loop, which imports the implementation once and then forks a fresh
+        // child for each test case, so that no state the implementation mutates can
+        // leak from one test case into the next; a child that dies without reporting a
+        // result has failed its test case, but the zygote itself lives on. The expected
+        // results are reloaded before forking whenever a request names different ones
+        sb.append("def zygote(impl_name, fname):\n");
+        sb.append("    requests = sys.stdin.buffer\n");
+        sb.append("    responses = sys.stdout.buffer\n");
+        sb.append("    sys.stdin = open(os.devnull)\n");
+        sb.append("    sys.stdout = sys.stderr\n");
+        sb.append("    try:\n");
+        sb.append("        load_expected()\n");
+        sb.append("        load_impl(impl_name)\n");
+        sb.append("    except BaseException:\n");
+        sb.append("        pass\n");
+        sb.append("    while True:\n");
+        sb.append("        request = read_frame(requests)\n");
+        sb.append("        if request is None:\n");
+        sb.append("            return\n");
+        sb.append("        case_num, args, expected_hash = json.loads(request)\n");
+        sb.append("        reload_expected(expected_hash)\n");
+        sb.append("        try:\n");
+        sb.append("            load_expected()\n");
+        sb.append("        except BaseException:\n");
+        sb.append("            pass\n");
+        sb.append("        read_end, write_end = os.pipe()\n");
+        sb.append("        pid = os.fork()\n");
+        sb.append("        if pid == 0:\n");
+        sb.append("            os.close(read_end)\n");
+        sb.append("            try:\n");
+        sb.append("                args = [decode_arg(arg) for arg in args]\n");
+        sb.append("                passed = run_budgeted(case_num, impl_name, fname, args)\n");
+        sb.append("            except BaseException:\n");
+        sb.append("                passed = False\n");
+        sb.append("            os.write(write_end, str(passed).encode('utf-8'))\n");
+        sb.append("            os._exit(0)\n");
+        sb.append("        os.close(write_end)\n");
+        sb.append("        with os.fdopen(read_end, 'rb') as result:\n");
+        sb.append("            passed = result.read().decode('utf-8')\n");
+        sb.append("        os.waitpid(pid, 0)\n");
+        sb.append("        write_frame(responses, passed or 'False')\n\n");
+
+        // Batch loop, which runs every requested test case in this one process and
+        // reports a single pass/fail character per test case as soon as it finishes
+        sb.append("def run_batch(impl_name, fname):\n");
+        sb.append("    requests = json.loads(sys.stdin.read())\n");
+        sb.append("    responses = sys.stdout\n");
+        sb.append("    sys.stdin = open(os.devnull)\n");
+        sb.append("    sys.stdout = sys.stderr\n");
+        sb.append("    for case_num, args in requests:\n");
+        sb.append("        try:\n");
+        sb.append("            args = [decode_arg(arg) for arg in args]\n");
+        sb.append("            passed = run_budgeted(case_num, impl_name, fname, args)\n");
+        sb.append("        except BaseException:\n");
+        sb.append("            passed = False\n");
+        sb.append("        if passed == 'OverBudget':\n");
+        sb.append("            responses.write('B')\n");
+        sb.append("        else:\n");
+        sb.append("            responses.write('1' if str(passed) == 'True' else '0')\n");
+        sb.append("        responses.flush()\n\n");
+
+        // Precheck, which imports the implementation and resolves the function once,
+        // reporting why that failed as a JSON string (or null if it did not fail, or ran
+        // out of budget trying) so that an implementation failing everything is explained
+        sb.append("def precheck(impl_name, fname):\n");
+        sb.append("    responses = sys.stdout\n");
+        sb.append("    sys.stdin = open(os.devnull)\n");
+        sb.append("    sys.stdout = sys.stderr\n");
+        sb.append("    reason = None\n");
+        sb.append("    EXPIRED[0] = False\n");
+        sb.append("    if TEST_TIMEOUT:\n");
+        sb.append("        signal.setitimer(signal.ITIMER_REAL, TEST_TIMEOUT, " +
+                "ALARM_INTERVAL)\n");
+        sb.append("    try:\n");
+        sb.append("        func = getattr(load_impl(impl_name), fname)\n");
+        sb.append("        if not callable(func):\n");
+        sb.append("            raise TypeError(fname + ' is not callable')\n");
+        sb.append("    except (BudgetExceeded, MemoryError):\n");
+        sb.append("        pass\n");
+        sb.append("    except BaseException as e:\n");
+        sb.append("        reason = (type(e).__name__ + ': ' + str(e))[:200]\n");
+        sb.append("    finally:\n");
+        sb.append("        if TEST_TIMEOUT:\n");
+        sb.append("            signal.setitimer(signal.ITIMER_REAL, 0)\n");
+        sb.append("    if EXPIRED[0]:\n");
+        sb.append("        reason = None\n");
+        sb.append("    responses.write(json.dumps(reason) + '\\n')\n");
+        sb.append("    responses.flush()\n\n");
+
+        // Fingerprinting, which hashes the syntax tree of each file named on stdin so
+        // that implementations differing only in comments or layout can be told apart
+        // from ones that actually differ
+        sb.append("def fingerprint():\n");
+        sb.append("    import ast\n");
+        sb.append("    import hashlib\n");
+        sb.append("    prints = []\n");
+        sb.append("    for path in json.loads(sys.stdin.read()):\n");
+        sb.append("        try:\n");
+        sb.append("            with open(path, 'rb') as source:\n");
+        sb.append("                tree = ast.parse(source.read())\n");
+        sb.append("            dump = ast.dump(tree).encode('utf-8')\n");
+        sb.append("            prints.append(hashlib.sha256(dump).hexdigest())\n");
+        sb.append("        except Exception:\n");
+        sb.append("            prints.append(None)\n");
+        sb.append("    print(json.dumps(prints))\n\n");
+
         // Footer to make the function executable from the command line
         sb.append("if __name__ == \"__main__\":\n");
+        sb.append("    if sys.argv[1] == \"--fingerprint\":\n");
+        sb.append("        fingerprint()\n");
+        sb.append("        sys.exit(0)\n");
+        sb.append("    apply_limits()\n");
+        sb.append("    if sys.argv[1] == \"--serve\":\n");
+        sb.append("        serve(sys.argv[2], sys.argv[3])\n");
+        sb.append("        sys.exit(0)\n");
+        sb.append("    if sys.argv[1] == \"--zygote\":\n");
+        sb.append("        zygote(sys.argv[2], sys.argv[3])\n");
+        sb.append("        sys.exit(0)\n");
+        sb.append("    if sys.argv[1] == \"--batch\":\n");
+        sb.append("        run_batch(sys.argv[2], sys.argv[3])\n");
+        sb.append("        sys.exit(0)\n");
+        sb.append("    if sys.argv[1] == \"--precheck\":\n");
+        sb.append("        precheck(sys.argv[2], sys.argv[3])\n");
+        sb.append("        sys.exit(0)\n");
         sb.append("    case_num = int(sys.argv[1])\n");
         sb.append("    impl_name = sys.argv[2]\n");
         sb.append("    fname = sys.argv[3]\n");
-        sb.append("    args = sys.argv[4:]\n");
-        sb.append("    args = [eval(arg) for arg in args]\n");
-        sb.append("    print (test_buggy_impl(case_num, impl_name, fname, args))");
+        sb.append("    args = json.loads(sys.stdin.read())\n");
+        sb.append("    args = [decode_arg(arg) for arg in args]\n");
+        sb.append("    print (run_budgeted(case_num, impl_name, fname, args))");
         String wrapperContents = sb.toString();
 
         // Create the Python wrapper file including the above code
-        FileWriter writer = new FileWriter(this.implDirPath + "/wrapper.py");
+        FileWriter writer = new FileWriter(this.workDirPath + "/wrapper.py");
         writer.write(wrapperContents);
         writer.close();
+        this.writeSourceMap();
+
+        // Make sure the wrapper won't read results from an outdated index
+        this.removeStaleExpectedIndex();
+    }
+
+    /**
+     * Appends the Python function decode_arg(), which reverses ArgEncoder.encode(), to
+     * the input script.
+     *
+     * @param sb the script being generated
+     */
+    private static void appendArgDecoder(StringBuilder sb) {
+        sb.append("def decode_arg(value):\n");
+        sb.append("    if not isinstance(value, list):\n");
+        sb.append("        return value\n");
+        sb.append("    tag, payload = value\n");
+        sb.append("    if tag == 'f':\n");
+        sb.append("        return float(payload)\n");
+        sb.append("    if tag == 'l':\n");
+        sb.append("        return [decode_arg(elem) for elem in payload]\n");
+        sb.append("    if tag == 't':\n");
+        sb.append("        return tuple(decode_arg(elem) for elem in payload)\n");
+        sb.append("    if tag == 's':\n");
+        sb.append("        return {decode_arg(elem) for elem in payload}\n");
+        sb.append("    if tag == 'd':\n");
+        sb.append("        return {decode_arg(key): decode_arg(val) for key, val in " +
+                "payload}\n");
+        sb.append("    raise ValueError('unknown tag ' + repr(tag))\n\n");
     }
 
     /**
-     * Writes a footer to the solution file which converts the command-line args from
-     * strings into Python objects of the appropriate type, calls the function under test
-     * with arguments, and prints the result.
+     * Writes a footer to the solution file which decodes the args read from stdin into
+     * Python objects of the appropriate type, calls the function under test with
+     * arguments, and prints the result. When invoked with --batch, the footer instead
+     * runs every test case read from stdin and prints a JSON list of the results. When
+     * working in a scratch directory, the footer is written to a copy of the solution in
+     * that directory instead.
      *
      * @throws IOException if the solution file cannot be accessed
      */
@@ -301,18 +2672,46 @@ public class Tester {
         String contents = sb.toString();
         reader.close();
 
-        // Generate the footer, which converts the command-line args from strings into
-        // Python objects of the appropriate types, calls the function under test with
-        // these arguments, and prints the result
+        // Generate the footer, which decodes the args read from stdin into Python
+        // objects of the appropriate types, calls the function under test with these
+        // arguments, and prints the result
         sb = new StringBuilder();
-        sb.append("import sys\n\n");
+        sb.append("import sys\nimport json\n\n");
+        appendArgDecoder(sb);
         sb.append("if __name__ == \"__main__\":\n");
-        sb.append("    args = sys.argv[1:]\n");
-        sb.append("    new_args = [eval(arg) for arg in args]\n");
+
+        // In batch mode, the args for every test case are read from stdin as a JSON list
+        // and the results are written back as a JSON list; anything printed by the
+        // function under test goes to stderr so that it cannot corrupt that list
+        sb.append("    if sys.argv[1:] == [\"--batch\"]:\n");
+        sb.append("        cases = json.loads(sys.stdin.read())\n");
+        sb.append("        out = sys.stdout\n");
+        sb.append("        sys.stdout = sys.stderr\n");
+        sb.append("        results = []\n");
+        sb.append("        for args in cases:\n");
+        sb.append("            try:\n");
+        sb.append("                new_args = [decode_arg(arg) for arg in args]\n");
+        sb.append("                results.append(repr(").append(this.funcName)
+                .append("(*new_args)))\n");
+        sb.append("            except BaseException:\n");
+        sb.append("                results.append('')\n");
+        sb.append("        out.write(json.dumps(results))\n");
+        sb.append("        sys.exit(0)\n");
+        sb.append("    args = json.loads(sys.stdin.read())\n");
+        sb.append("    new_args = [decode_arg(arg) for arg in args]\n");
         sb.append("    print (repr(").append(this.funcName).append("(*new_args)))");
         String textToAdd = sb.toString();
 
-        if (!contents.contains("import sys")) {
+        if (!this.solutionScriptPath.equals(this.solutionPath)) {
+            // When working in a scratch directory, leave the solution itself alone and
+            // write a copy with the footer instead
+            String keepContents = contents.contains("import sys")
+                    ? contents.split("import sys")[0] : contents + "\n";
+            FileWriter writer = new FileWriter(this.solutionScriptPath);
+            writer.write(keepContents);
+            writer.write(textToAdd);
+            writer.close();
+        } else if (!contents.contains("import sys")) {
             // If no footer is present, append it to the file
             FileWriter writer = new FileWriter(this.solutionPath, true);
             writer.write("\n");
@@ -339,10 +2738,66 @@ public class Tester {
         // Convert input results to Python list
         String contents = "results = " + results.toString();
 
-        // Output results to expected.py, within the implementation directory
-        FileWriter writer = new FileWriter(this.implDirPath + "/expected.py");
+        // Output results to expected.py, within the implementation (or scratch) directory
+        FileWriter writer = new FileWriter(this.workDirPath + "/expected.py");
         writer.write(contents);
         writer.close();
+
+        // Also output an index of the same results, which lets the wrapper look up a
+        // single result without parsing all of them
+        ExpectedIndex.write(Paths.get(this.workDirPath, "expected.idx"), results,
+                ResultCache.hash(Files.readAllBytes(
+                        Paths.get(this.workDirPath, "expected.py"))));
+    }
+
+    /**
+     * Copies every implementation into the bytecode cache under the hash of its
+     * contents, and writes sources.json next to the wrapper to tell it which copy to
+     * import for which implementation. Does nothing unless the Tester works in a scratch
+     * directory and has a bytecode cache.
+     *
+     * @throws IOException if an implementation cannot be read or copied, or sources.json
+     *                     cannot be written
+     */
+    private void writeSourceMap() throws IOException {
+        if (this.scratchDir == null || this.bytecodeCache == null) {
+            return;
+        }
+        Path store = Paths.get(this.bytecodeCache, "src").toAbsolutePath();
+        Files.createDirectories(store);
+        JSONObject sources = new JSONObject();
+        for (String filename : this.getImplementationFiles()) {
+            byte[] contents = Files.readAllBytes(Paths.get(this.implDirPath, filename));
+            Path copy = store.resolve(ResultCache.hash(contents) + ".py");
+            if (!Files.exists(copy)) {
+                // Write the copy under a temporary name first, so that a concurrent run
+                // never imports half of it; once in place, it is never touched again, so
+                // the bytecode compiled from it stays valid
+                Path temp = Files.createTempFile(store, "tmp-", ".part");
+                Files.write(temp, contents);
+                Files.move(temp, copy, StandardCopyOption.ATOMIC_MOVE);
+            }
+            sources.put(filename, copy.toString());
+        }
+        Files.writeString(Paths.get(this.workDirPath, "sources.json"), sources.toString());
+    }
+
+    /**
+     * Deletes expected.idx if it no longer matches expected.py (e.g., because
+     * expected.py was written by something other than computeExpectedResults()), so that
+     * the wrapper falls back to importing expected.py instead. An index without any
+     * expected.py alongside it is kept, since there is nothing it could contradict.
+     *
+     * @throws IOException if either file cannot be read, or expected.idx cannot be
+     *                     deleted
+     */
+    private void removeStaleExpectedIndex() throws IOException {
+        Path index = Paths.get(this.workDirPath, "expected.idx");
+        Path expected = Paths.get(this.workDirPath, "expected.py");
+        if (Files.exists(index) && Files.exists(expected) && !ExpectedIndex.isCurrent(
+                index, ResultCache.hash(Files.readAllBytes(expected)))) {
+            Files.delete(index);
+        }
     }
 
     /**
@@ -353,6 +2808,11 @@ public class Tester {
      *                     fails
      */
     private void deletePyCache() throws IOException {
+        // Nothing is ever compiled into implDir when working in a scratch directory
+        if (this.scratchDir != null) {
+            return;
+        }
+
         // Get the list of all files in the pycache
         File pyCacheDir = new File(this.implDirPath + "/__pycache__/");
         String[] filepaths = pyCacheDir.list();
@@ -370,4 +2830,87 @@ public class Tester {
             }
         }
     }
+
+    /**
+     * The default ExecutionBackend, which runs test cases in Python subprocesses as
+     * configured through the Tester's execution mode.
+     */
+    private class SubprocessBackend implements ExecutionBackend {
+
+        /**
+         * The pool of workers to draw from in WORKER_POOL or ZYGOTE mode; null otherwise.
+         */
+        private final WorkerPool pool;
+
+        /**
+         * Whether the implementation timeout applies to each call to evaluate().
+         */
+        private final boolean implementationBudget;
+
+        /**
+         * Constructor for a SubprocessBackend.
+         *
+         * @param pool                 the pool of workers to draw from in WORKER_POOL or
+         *                             ZYGOTE mode; null otherwise
+         * @param implementationBudget whether the implementation timeout applies to each
+         *                             call to evaluate()
+         */
+        SubprocessBackend(WorkerPool pool, boolean implementationBudget) {
+            this.pool = pool;
+            this.implementationBudget = implementationBudget;
+        }
+
+        /**
+         * Runs a block of test cases on the reference solution, in a single process in
+         * batch mode and in one process per test case otherwise. In batch mode, falls
+         * back to one process per test case if the batch process did not report a result
+         * for every test case in the block.
+         */
+        @Override
+        public List<String> computeExpected(List<Integer> testIndices)
+                throws IOException, InterruptedException {
+            if (Tester.this.mode == ExecutionMode.BATCH) {
+                List<String> results = Tester.this.computeExpectedResultsInBatch(testIndices);
+                if (results != null) {
+                    return results;
+                }
+            }
+            List<String> results = new ArrayList<>();
+            for (int i : testIndices) {
+                List<String> args = Tester.this.getExpTestArgs(i);
+                results.add(Tester.this.runTestHelper(args, Tester.this.getEncodedArgs(i)));
+            }
+            return results;
+        }
+
+        /**
+         * Runs a block of test cases on a single buggy implementation, on a worker from
+         * the pool if there is one, in a single process in batch mode, and in one process
+         * per test case otherwise.
+         */
+        @Override
+        public void evaluate(String filename, List<Integer> testIndices, OutcomeSink sink)
+                throws IOException, InterruptedException {
+            long deadline = this.implementationBudget
+                    ? Tester.this.getImplementationDeadline() : 0;
+            if (this.pool != null) {
+                Tester.this.runImplementationOnWorker(this.pool, filename, testIndices,
+                        deadline, sink);
+            } else if (Tester.this.mode == ExecutionMode.BATCH) {
+                Tester.this.runImplementationInBatch(filename, testIndices, deadline, sink);
+            } else {
+                Tester.this.runImplementation(filename, testIndices, deadline, sink);
+            }
+        }
+
+        /**
+         * Shuts down every worker in the pool, if there is one.
+         */
+        @Override
+        public void close() {
+            if (this.pool != null && this.pool != Tester.this.workerPool) {
+                this.pool.close();
+            }
+        }
+    }
 }
\ No newline at end of file
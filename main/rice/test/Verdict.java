@@ -0,0 +1,108 @@
+package main.rice.test;
+
+/**
+ * The result of grading a single implementation with Tester.grade(): whether it passed
+ * every test case and, if not, the first test case it failed.
+ */
+public class Verdict {
+
+    /**
+     * The name of the implementation.
+     */
+    private final String filename;
+
+    /**
+     * The first test case that the implementation failed; null if it passed every one.
+     */
+    private final TestCase firstFailure;
+
+    /**
+     * The outcome of the first failing test case; null if the implementation passed
+     * every test case.
+     */
+    private final Outcome outcome;
+
+    /**
+     * The number of test cases that were run on the implementation, including the one it
+     * failed.
+     */
+    private final int testsRun;
+
+    /**
+     * Constructor for a Verdict.
+     *
+     * @param filename     the name of the implementation
+     * @param firstFailure the first test case that the implementation failed; null if it
+     *                     passed every one
+     * @param outcome      the outcome of the first failing test case; null if the
+     *                     implementation passed every test case
+     * @param testsRun     the number of test cases that were run on the implementation
+     */
+    public Verdict(String filename, TestCase firstFailure, Outcome outcome, int testsRun) {
+        this.filename = filename;
+        this.firstFailure = firstFailure;
+        this.outcome = outcome;
+        this.testsRun = testsRun;
+    }
+
+    /**
+     * Returns the name of the implementation.
+     *
+     * @return the name of the implementation
+     */
+    public String getFilename() {
+        return this.filename;
+    }
+
+    /**
+     * Returns whether the implementation passed every test case.
+     *
+     * @return true if the implementation is correct as far as the test cases can tell;
+     * false otherwise
+     */
+    public boolean isCorrect() {
+        return this.firstFailure == null;
+    }
+
+    /**
+     * Returns the first test case that the implementation failed.
+     *
+     * @return the first failing test case; null if the implementation passed every one
+     */
+    public TestCase getFirstFailure() {
+        return this.firstFailure;
+    }
+
+    /**
+     * Returns the outcome of the first test case that the implementation failed.
+     *
+     * @return the outcome of the first failing test case; null if the implementation
+     * passed every test case
+     */
+    public Outcome getOutcome() {
+        return this.outcome;
+    }
+
+    /**
+     * Returns the number of test cases that were run on the implementation before a
+     * verdict was reached.
+     *
+     * @return the number of test cases run, including the failing one if any
+     */
+    public int getTestsRun() {
+        return this.testsRun;
+    }
+
+    /**
+     * Reports the verdict on a single line, e.g. "impl3.py: FAIL on [1, 'a']".
+     *
+     * @return a human-readable report of the verdict
+     */
+    @Override
+    public String toString() {
+        if (this.isCorrect()) {
+            return this.filename + ": PASS";
+        }
+        return this.filename + ": " + this.outcome + " on " + this.firstFailure;
+    }
+}
@@ -0,0 +1,268 @@
+package main.rice.test;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A server that runs work units on behalf of a Coordinator. Each connection begins with a
+ * frame holding the contents of expected.py, followed by any number of request frames,
+ * each of which names an implementation (along with its source), the indices and encoded
+ * arguments of a block of test cases, and the limits to run them under. The agent runs
+ * each block in a scratch directory using a Tester of its own, and replies with a frame
+ * holding the outcome of each test case. Frames are the same length-prefixed frames used
+ * by PythonWorker.
+ *
+ * Connections are served concurrently, so a coordinator controls how much work an agent
+ * does at once through the number of connections it opens.
+ *
+ * Since an agent runs whatever code it is sent, it listens on the loopback interface
+ * unless told otherwise, and the first frame of every connection must also hold the
+ * secret that the agent was started with; a connection that does not present it is
+ * closed without running anything.
+ */
+public class WorkerAgent implements Closeable {
+
+    /**
+     * The environment variable from which main() and Main read the secret that agents
+     * and coordinators share.
+     */
+    public static final String SECRET_ENV = "FEAT_AGENT_SECRET";
+
+    /**
+     * The number of milliseconds a new connection has to send its first frame.
+     */
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * The secret that every connection must present, as UTF-8.
+     */
+    private final byte[] secret;
+
+    /**
+     * The socket on which the agent accepts connections.
+     */
+    private final ServerSocket server;
+
+    /**
+     * The threads that serve each connection.
+     */
+    private final ExecutorService connections = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "feat-agent");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The connections that are currently open.
+     */
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor for a WorkerAgent; binds to the input port on the loopback interface.
+     *
+     * @param port   the port to listen on; 0 to pick any free port
+     * @param secret the secret that every connection must present; must be non-empty
+     * @throws IOException if the port cannot be bound
+     */
+    public WorkerAgent(int port, String secret) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port, secret);
+    }
+
+    /**
+     * Constructor for a WorkerAgent; binds to the input port on the input address.
+     *
+     * @param address the address to listen on
+     * @param port    the port to listen on; 0 to pick any free port
+     * @param secret  the secret that every connection must present; must be non-empty
+     * @throws IOException if the port cannot be bound
+     */
+    public WorkerAgent(InetAddress address, int port, String secret) throws IOException {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("secret must be non-empty");
+        }
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.server = new ServerSocket(port, 0, address);
+    }
+
+    /**
+     * Returns the port the agent is listening on.
+     *
+     * @return the port the agent is listening on
+     */
+    public int getPort() {
+        return this.server.getLocalPort();
+    }
+
+    /**
+     * Starts accepting connections on a background thread.
+     */
+    public void start() {
+        this.connections.submit(this::run);
+    }
+
+    /**
+     * Accepts connections until the agent is closed.
+     */
+    public void run() {
+        while (!this.server.isClosed()) {
+            try {
+                Socket socket = this.server.accept();
+                this.open.add(socket);
+                this.connections.submit(() -> this.serve(socket));
+            } catch (IOException e) {
+                // The server socket was closed
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and abandons any units in progress.
+     */
+    @Override
+    public void close() {
+        try {
+            this.server.close();
+        } catch (IOException e) {
+            // There is nothing more to do about a socket that will not close
+        }
+        for (Socket socket : this.open) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Likewise
+            }
+        }
+        this.connections.shutdownNow();
+    }
+
+    /**
+     * Serves every request sent over a single connection.
+     *
+     * @param socket the connection
+     */
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+            JSONObject hello = new JSONObject(PythonWorker.readFrame(in));
+            byte[] secret = hello.optString("secret").getBytes(StandardCharsets.UTF_8);
+            if (!MessageDigest.isEqual(secret, this.secret)) {
+                return;
+            }
+            socket.setSoTimeout(0);
+            String expected = hello.getString("expected");
+            while (true) {
+                String frame;
+                try {
+                    frame = PythonWorker.readFrame(in);
+                } catch (EOFException e) {
+                    return;
+                }
+
+                JSONObject response = new JSONObject();
+                try {
+                    response.put("outcomes", this.runUnit(new JSONObject(frame), expected));
+                } catch (IOException | RuntimeException e) {
+                    response.put("error", String.valueOf(e.getMessage()));
+                }
+                PythonWorker.writeFrame(out, response.toString());
+            }
+        } catch (IOException | JSONException | InterruptedException e) {
+            // The coordinator went away, or the agent is shutting down
+        } finally {
+            this.open.remove(socket);
+        }
+    }
+
+    /**
+     * Runs a single work unit in a scratch directory.
+     *
+     * @param request  the request describing the unit
+     * @param expected the contents of expected.py
+     * @return the name of the outcome of each test case in the unit, in order
+     * @throws IOException if the scratch directory cannot be set up or a process cannot
+     *                     be run
+     * @throws InterruptedException if interrupted while running the unit
+     */
+    private JSONArray runUnit(JSONObject request, String expected)
+            throws IOException, InterruptedException {
+        String filename = request.getString("filename");
+        if (!filename.endsWith(".py") || filename.contains("/")
+                || filename.equals("wrapper.py") || filename.equals("expected.py")) {
+            throw new IllegalArgumentException("invalid implementation name " + filename);
+        }
+
+        JSONArray testIndices = request.getJSONArray("tests");
+        JSONArray allArgs = request.getJSONArray("args");
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < allArgs.length(); i++) {
+            tests.add(ArgEncoder.decodeArgs(allArgs.getJSONArray(i)));
+        }
+
+        Path dir = Files.createTempDirectory("feat-agent");
+        try {
+            // Renumber the expected results so that they line up with this block alone
+            Files.writeString(dir.resolve(filename), request.getString("source"));
+            Files.writeString(dir.resolve("expected.py"), expected
+                    + "\nresults = [results[i] for i in " + testIndices + "]\n");
+
+            Tester tester = new Tester(request.getString("funcName"), null,
+                    dir.toString(), tests);
+            tester.setExecutionMode(ExecutionMode.valueOf(request.getString("mode")));
+            tester.setTestTimeout(request.getLong("testTimeout"));
+            tester.setImplementationTimeout(request.getLong("implementationTimeout"));
+            tester.setResourceLimits(request.getInt("cpuLimit"),
+                    request.getLong("memoryLimit"));
+            TestResults results = tester.runTests();
+
+            JSONArray outcomes = new JSONArray();
+            for (int i = 0; i < tests.size(); i++) {
+                if (results.getCaseToOverBudget().get(i).contains(0)) {
+                    outcomes.put(Outcome.OVER_BUDGET.name());
+                } else if (results.getCaseToFiles().get(i).contains(0)) {
+                    outcomes.put(Outcome.FAIL.name());
+                } else {
+                    outcomes.put(Outcome.PASS.name());
+                }
+            }
+            return outcomes;
+        } finally {
+            try (var paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Runs an agent until the process is killed, with the secret taken from the
+     * FEAT_AGENT_SECRET environment variable.
+     *
+     * @param args the port to listen on, optionally followed by the address to listen
+     *             on (by default, the loopback interface)
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        InetAddress address = (args.length > 1) ? InetAddress.getByName(args[1])
+                : InetAddress.getLoopbackAddress();
+        try (WorkerAgent agent = new WorkerAgent(address, Integer.parseInt(args[0]),
+                System.getenv(SECRET_ENV))) {
+            System.out.println("Listening on " + address.getHostAddress() + " port "
+                    + agent.getPort());
+            agent.run();
+        }
+    }
+}
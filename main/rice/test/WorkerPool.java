@@ -0,0 +1,171 @@
+package main.rice.test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A bounded pool of long-lived Python workers. Each worker is bound to a single
+ * implementation, which it imports once when it starts; idle workers are kept around so
+ * that later requests for the same implementation can reuse them, and the least recently
+ * used idle worker is shut down whenever a new one is needed and the pool is full.
+ */
+public class WorkerPool implements Closeable {
+
+    /**
+     * The command prefix used to start a worker; the name of the implementation and the
+     * name of the function under test are appended to it.
+     */
+    private final List<String> command;
+
+    /**
+     * The name of the function under test.
+     */
+    private final String funcName;
+
+    /**
+     * Additional environment variables for each worker.
+     */
+    private final Map<String, String> env;
+
+    /**
+     * The maximum number of workers that may be alive at once.
+     */
+    private final int capacity;
+
+    /**
+     * The idle workers, in least-to-most recently used order, each paired with the name
+     * of the implementation it has imported.
+     */
+    private final LinkedList<Map.Entry<String, PythonWorker>> idle = new LinkedList<>();
+
+    /**
+     * The number of workers that are currently alive, whether idle or in use.
+     */
+    private int numLive = 0;
+
+    /**
+     * Constructor for a WorkerPool.
+     *
+     * @param command  the command prefix used to start a worker
+     * @param funcName the name of the function under test
+     * @param capacity the maximum number of workers that may be alive at once
+     */
+    public WorkerPool(List<String> command, String funcName, int capacity) {
+        this(command, funcName, capacity, Map.of());
+    }
+
+    /**
+     * Constructor for a WorkerPool whose workers run with additional environment
+     * variables.
+     *
+     * @param command  the command prefix used to start a worker
+     * @param funcName the name of the function under test
+     * @param capacity the maximum number of workers that may be alive at once
+     * @param env      additional environment variables for each worker
+     */
+    public WorkerPool(List<String> command, String funcName, int capacity,
+                      Map<String, String> env) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.command = command;
+        this.funcName = funcName;
+        this.capacity = capacity;
+        this.env = env;
+    }
+
+    /**
+     * Returns a worker that has imported the input implementation, reusing an idle one
+     * if possible and otherwise starting a new one (blocking until the pool has room).
+     *
+     * @param implName the filename of the implementation
+     * @return a worker bound to implName, for the exclusive use of the caller until it
+     * is handed back through release()
+     * @throws IOException if a new worker cannot be started
+     * @throws InterruptedException if interrupted while waiting for room in the pool
+     */
+    public PythonWorker acquire(String implName) throws IOException, InterruptedException {
+        synchronized (this) {
+            // Prefer the most recently used idle worker for this implementation
+            ListIterator<Map.Entry<String, PythonWorker>> iter =
+                    this.idle.listIterator(this.idle.size());
+            while (iter.hasPrevious()) {
+                Map.Entry<String, PythonWorker> entry = iter.previous();
+                if (entry.getKey().equals(implName)) {
+                    iter.remove();
+                    if (entry.getValue().isAlive()) {
+                        return entry.getValue();
+                    }
+                    entry.getValue().close();
+                    this.numLive--;
+                }
+            }
+
+            // Make room for a new worker, evicting idle workers for other implementations
+            while (this.numLive >= this.capacity) {
+                if (this.idle.isEmpty()) {
+                    this.wait();
+                } else {
+                    this.idle.removeFirst().getValue().close();
+                    this.numLive--;
+                }
+            }
+            this.numLive++;
+        }
+
+        // Start the worker outside of the lock, since the interpreter takes a while to
+        // start up
+        List<String> args = new ArrayList<>(this.command);
+        args.add(implName);
+        args.add(this.funcName);
+        try {
+            return new PythonWorker(args, this.env);
+        } catch (IOException e) {
+            this.discard(null);
+            throw e;
+        }
+    }
+
+    /**
+     * Hands a worker obtained from acquire() back to the pool so that it can be reused.
+     *
+     * @param implName the filename of the implementation the worker has imported
+     * @param worker   the worker to be returned
+     */
+    public synchronized void release(String implName, PythonWorker worker) {
+        if (worker.isAlive()) {
+            this.idle.addLast(Map.entry(implName, worker));
+            this.notifyAll();
+        } else {
+            this.discard(worker);
+        }
+    }
+
+    /**
+     * Shuts down a worker obtained from acquire() that is no longer usable (e.g., because
+     * the implementation crashed the interpreter).
+     *
+     * @param worker the worker to be shut down; may be null if it never started
+     */
+    public synchronized void discard(PythonWorker worker) {
+        if (worker != null) {
+            worker.close();
+        }
+        this.numLive--;
+        this.notifyAll();
+    }
+
+    /**
+     * Shuts down all idle workers.
+     */
+    @Override
+    public synchronized void close() {
+        for (Map.Entry<String, PythonWorker> entry : this.idle) {
+            entry.getValue().close();
+            this.numLive--;
+        }
+        this.idle.clear();
+        this.notifyAll();
+    }
+}
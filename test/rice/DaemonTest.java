@@ -0,0 +1,143 @@
+package test.rice;
+
+import main.rice.Daemon;
+import main.rice.metrics.Metrics;
+import main.rice.obj.PyIntObj;
+import main.rice.test.ArgEncoder;
+import main.rice.test.PythonWorker;
+import main.rice.test.TestCase;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test cases for the Daemon class.
+ */
+public class DaemonTest {
+
+    /**
+     * The absolute path to this project directory, which we'll use to find the provided
+     * pyfiles.
+     */
+    private static final String userDir = System.getProperty("user.dir");
+
+    /**
+     * Tests that a daemon runs several jobs over one connection, reuses the parsed config
+     * and base set for the second one, and answers an invalid job with an error without
+     * dropping the connection.
+     */
+    @Test
+    void testJobs() throws Exception {
+        Path state = Files.createTempDirectory("feat-daemon");
+        try (Daemon daemon = new Daemon(0, state.toString(), 2)) {
+            daemon.start();
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                    daemon.getPort())) {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                String pyfiles = userDir + "/src/test/rice/test/pyfiles/";
+                JSONObject job = new JSONObject()
+                        .put("config", userDir
+                                + "/src/test/rice/parse/config/func0oneTest.json")
+                        .put("impls", pyfiles + "f0multipleWrong")
+                        .put("solution", pyfiles + "sols/func0sol.py");
+                Set<TestCase> expected = Set.of(new TestCase(List.of(new PyIntObj(0))));
+
+                long hits = Metrics.getCounter("feat_daemon_config_hits_total");
+                assertEquals(expected, runJob(in, out, job));
+                assertEquals(expected, runJob(in, out, job.put("lazy", true)));
+                assertEquals(hits + 1,
+                        Metrics.getCounter("feat_daemon_config_hits_total"));
+
+                PythonWorker.writeFrame(out, new JSONObject(job.toMap())
+                        .put("config", "/a/b/c/d/e").toString());
+                assertTrue(new JSONObject(PythonWorker.readFrame(in)).has("error"));
+                assertEquals(expected, runJob(in, out, job));
+            }
+        } finally {
+            try (var paths = Files.walk(state)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that a job on the same implementations as an earlier one reuses the workers
+     * that the earlier job started, even though its test cases and expected results
+     * differ, and that those workers judge it against its own expected results.
+     */
+    @Test
+    void testWorkersReused() throws Exception {
+        Path state = Files.createTempDirectory("feat-daemon");
+        Path impls = Files.createDirectories(state.resolve("impls"));
+        Files.writeString(impls.resolve("impl0.py"),
+                "def func0(intval):\n    return 0 if intval == 7 else intval\n");
+        List<String> configs = new ArrayList<>();
+        for (String domain : List.of("0~4", "5~9")) {
+            Path config = state.resolve("func0" + domain + ".json");
+            Files.writeString(config, new JSONObject().put("fname", "func0")
+                    .put("types", new JSONArray().put("int"))
+                    .put("exhaustive domain", new JSONArray().put(domain))
+                    .put("random domain", new JSONArray().put(domain))
+                    .put("num random", 0).toString());
+            configs.add(config.toString());
+        }
+        JSONObject job = new JSONObject().put("impls", impls.toString()).put("solution",
+                userDir + "/src/test/rice/test/pyfiles/sols/func0sol.py");
+        try (Daemon daemon = new Daemon(0, state.resolve("state").toString(), 1)) {
+            daemon.start();
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                    daemon.getPort())) {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                assertEquals(Set.of(),
+                        runJob(in, out, job.put("config", configs.get(0))));
+
+                long started = Metrics.getCounter("feat_workers_started_total");
+                assertEquals(Set.of(new TestCase(List.of(new PyIntObj(7)))),
+                        runJob(in, out, job.put("config", configs.get(1))));
+                assertEquals(started, Metrics.getCounter("feat_workers_started_total"));
+            }
+        } finally {
+            try (var paths = Files.walk(state)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper function that sends a job to a daemon and decodes the concise test set in
+     * its response.
+     *
+     * @param in  the stream to read the response from
+     * @param out the stream to send the job to
+     * @param job the job
+     * @return the concise test set
+     * @throws IOException if the daemon cannot be reached
+     */
+    private static Set<TestCase> runJob(InputStream in, OutputStream out, JSONObject job)
+            throws IOException {
+        PythonWorker.writeFrame(out, job.toString());
+        JSONObject response = new JSONObject(PythonWorker.readFrame(in));
+        assertFalse(response.has("error"), response.optString("error"));
+        JSONArray tests = response.getJSONArray("tests");
+        Set<TestCase> concise = new HashSet<>();
+        for (int i = 0; i < tests.length(); i++) {
+            concise.add(ArgEncoder.decodeArgs(tests.getJSONArray(i)));
+        }
+        return concise;
+    }
+}
@@ -4,9 +4,12 @@ import main.rice.Main;
 import main.rice.obj.*;
 import main.rice.parse.InvalidConfigException;
 import main.rice.test.TestCase;
+import org.json.JSONObject;
 import org.junit.jupiter.api.*;
 import test.rice.node.APyNodeTest;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -43,6 +46,107 @@ public class MainTest {
         mainTestHelper(args, expected);
     }
 
+    /**
+     * Tests the situation where the config file only specifies a single test case, and
+     * that test catches the wrong programs, computing the results lazily.
+     */
+    @Test
+    void testOnlyOneCaseLazy() {
+        String[] args = buildArgs("func0", "func0oneTest", "f0multipleWrong");
+        args = new String[]{args[0], args[1], args[2], "--lazy"};
+        Set<TestCase> expected = Collections
+                .singleton(new TestCase(Collections.singletonList(new PyIntObj(0))));
+        mainTestHelper(args, expected);
+    }
+
+    /**
+     * Tests the situation where all files are correct, computing the results lazily.
+     */
+    @Test
+    void testAllFilesCorrectLazy() {
+        String[] args = buildArgs("func0", "func0simple", "f0multipleRight");
+        args = new String[]{args[0], args[1], args[2], "--lazy"};
+        mainTestHelper(args, Collections.emptySet());
+    }
+
+    /**
+     * Tests that running twice with the same result cache gives the same results both
+     * times, the second time from the cache.
+     */
+    @Test
+    void testOnlyOneCaseCached() throws IOException {
+        Path cacheFile = Files.createTempFile("feat-cache", ".txt");
+        try {
+            String[] args = buildArgs("func0", "func0oneTest", "f0multipleWrong");
+            args = new String[]{args[0], args[1], args[2], "--cache=" + cacheFile};
+            Set<TestCase> expected = Collections
+                    .singleton(new TestCase(Collections.singletonList(new PyIntObj(0))));
+            mainTestHelper(args, expected);
+            long cachedSize = Files.size(cacheFile);
+            assertTrue(cachedSize > 0);
+            mainTestHelper(args, expected);
+            assertEquals(cachedSize, Files.size(cacheFile));
+        } finally {
+            Files.delete(cacheFile);
+        }
+    }
+
+    /**
+     * Tests that --matrix writes the kill matrix file and covers it to the same test set,
+     * made up of the base set's own test cases.
+     */
+    @Test
+    void testOnlyOneCaseMatrix() throws IOException {
+        Path matrixFile = Files.createTempFile("feat-matrix", ".bin");
+        try {
+            String[] args = buildArgs("func0", "func0oneTest", "f0multipleWrong");
+            args = new String[]{args[0], args[1], args[2], "--matrix=" + matrixFile};
+            Set<TestCase> expected = Collections
+                    .singleton(new TestCase(Collections.singletonList(new PyIntObj(0))));
+            mainTestHelper(args, expected);
+            assertTrue(Files.size(matrixFile) > 0);
+        } finally {
+            Files.delete(matrixFile);
+        }
+    }
+
+    /**
+     * Tests that --metrics writes a JSON and a Prometheus report covering every stage of
+     * the run.
+     */
+    @Test
+    void testOnlyOneCaseMetrics() throws IOException {
+        Path dir = Files.createTempDirectory("feat-metrics");
+        String prefix = dir + "/run";
+        try {
+            String[] args = buildArgs("func0", "func0oneTest", "f0multipleWrong");
+            args = new String[]{args[0], args[1], args[2], "--metrics=" + prefix};
+            Set<TestCase> expected = Collections
+                    .singleton(new TestCase(Collections.singletonList(new PyIntObj(0))));
+            mainTestHelper(args, expected);
+
+            JSONObject report = new JSONObject(Files.readString(Path.of(prefix + ".json")));
+            JSONObject histograms = report.getJSONObject("histograms");
+            for (String stage : List.of("feat_parse_seconds", "feat_base_set_seconds",
+                    "feat_expected_results_seconds", "feat_run_tests_seconds",
+                    "feat_set_cover_seconds")) {
+                assertEquals(1, histograms.getJSONObject(stage).getLong("count"));
+            }
+            assertTrue(histograms.getJSONObject("feat_test_seconds").getLong("count") > 0);
+            assertTrue(report.getJSONObject("counters")
+                    .getLong("feat_pipe_bytes_written_total") > 0);
+            assertTrue(report.getJSONObject("gauges").getDouble("feat_matrix_density") > 0);
+
+            String prom = Files.readString(Path.of(prefix + ".prom"));
+            assertTrue(prom.contains("# TYPE feat_run_tests_seconds histogram\n"));
+            assertTrue(prom.contains("feat_run_tests_seconds_count 1\n"));
+        } finally {
+            Files.deleteIfExists(Path.of(prefix + ".json"));
+            Files.deleteIfExists(Path.of(prefix + ".prom"));
+            Files.delete(dir);
+        }
+    }
+
     /**
      * Tests the situation where the config file specifies multiple test cases, a subset
      * (of size > 1) of which is required to catch all wrong programs. Can be satisfied
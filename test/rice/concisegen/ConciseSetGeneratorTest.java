@@ -1,17 +1,26 @@
 package test.rice.concisegen;
 
 import main.rice.concisegen.ConciseSetGenerator;
+import main.rice.concisegen.SignatureGroups;
 import main.rice.obj.APyObj;
+import main.rice.obj.PyCharObj;
 import main.rice.obj.PyFloatObj;
 import main.rice.obj.PyIntObj;
 import main.rice.obj.PyStringObj;
+import main.rice.test.KillMatrix;
+import main.rice.test.KillMatrixFile;
+import main.rice.test.KillOracle;
 import main.rice.test.TestCase;
 import main.rice.test.TestResults;
 import org.junit.jupiter.api.*;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Test cases for the ConciseSetGenerator class.
@@ -311,6 +320,273 @@ class ConciseSetGeneratorTest {
         assertEquals(expected, actual);
     }
 
+    /**
+     * Tests that the lazy setCover() selects exactly the same test cases as the eager one
+     * on a variety of randomly generated results, including files that no test catches.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(12)
+    void testLazyMatchesEager() throws Exception {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 50; trial++) {
+            List<TestCase> allCases = generateIntegerCases(20);
+            List<Set<Integer>> caseToFiles = new ArrayList<>();
+            Set<Integer> wrongSet = new HashSet<>();
+            for (int i = 0; i < 20; i++) {
+                Set<Integer> caught = new HashSet<>();
+                for (int file = 0; file < 15; file++) {
+                    if (random.nextInt(10) == 0) {
+                        caught.add(file);
+                    }
+                }
+                caseToFiles.add(caught);
+                wrongSet.addAll(caught);
+            }
+            TestResults input = new TestResults(allCases, caseToFiles, wrongSet);
+            assertEquals(ConciseSetGenerator.setCover(input),
+                    ConciseSetGenerator.setCover(new MatrixOracle(input, 15)));
+        }
+    }
+
+    /**
+     * Tests that the lazy setCover() needs only part of the results when one test case
+     * catches every file, and that it still selects that test case.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(13)
+    void testLazyEvaluatesFewerCells() throws Exception {
+        // Test 0 catches every file; every other test catches a single file
+        List<TestCase> allCases = generateIntegerCases(10);
+        List<Set<Integer>> caseToFiles = new ArrayList<>();
+        caseToFiles.add(generateAllWrong(10));
+        for (int i = 1; i < 10; i++) {
+            caseToFiles.add(Set.of(i));
+        }
+        TestResults input = new TestResults(allCases, caseToFiles, generateAllWrong(10));
+
+        // Once test 0 has been run, no other test can catch anything new
+        MatrixOracle oracle = new MatrixOracle(input, 10);
+        Set<TestCase> actual = ConciseSetGenerator.setCover(oracle);
+        assertEquals(Set.of(allCases.get(0)), actual);
+        assertEquals(10, oracle.numEvaluated);
+    }
+
+    /**
+     * Tests that the lazy setCover() selects nothing when every file passes every test,
+     * after confirming that with every cell.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(14)
+    void testLazyAllRight() throws Exception {
+        List<Set<Integer>> caseToFiles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            caseToFiles.add(new HashSet<>());
+        }
+        TestResults input = new TestResults(generateIntegerCases(5), caseToFiles,
+                new HashSet<>());
+        MatrixOracle oracle = new MatrixOracle(input, 4);
+        assertEquals(Collections.emptySet(), ConciseSetGenerator.setCover(oracle));
+        assertEquals(20, oracle.numEvaluated);
+    }
+
+    /**
+     * Tests that files caught by exactly the same test cases are grouped under the file
+     * with the lowest index, and that the report lists every group.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(15)
+    void testSignatureGroups() {
+        SignatureGroups groups = new SignatureGroups(weightedResults());
+        assertEquals(Set.of(0, 4, 5), groups.getRepresentatives());
+        assertEquals(Set.of(0, 1, 2, 3), groups.getMembers(0));
+        assertEquals(Set.of(5, 6), groups.getMembers(5));
+        assertEquals(Set.of(), groups.getMembers(6));
+        assertEquals(List.of(Set.of(0), Set.of(4, 5), Set.of(0, 4)),
+                groups.getCaseToGroups());
+        assertEquals(Set.of(0, 4, 5), groups.getWrongGroups());
+        assertEquals("0: [0, 1, 2, 3]\n4: [4]\n5: [5, 6]\n", groups.toString());
+    }
+
+    /**
+     * Tests that setCover() weights each group by the number of files it stands for, so
+     * that it still selects the test cases that greedy selection over the original files
+     * would, rather than those that greedy selection over the groups would.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(16)
+    void testSignatureGroupsWeighted() {
+        // Over the files, test 2 catches five and goes first, then test 1 catches the
+        // remaining two; over the groups, test 1 would have gone first instead
+        TestResults input = weightedResults();
+        Set<TestCase> expected = Set.of(input.getTestCase(1), input.getTestCase(2));
+        assertEquals(expected, ConciseSetGenerator.setCover(input));
+        assertEquals(expected, ConciseSetGenerator.setCover(new SignatureGroups(input)));
+    }
+
+    /**
+     * Tests that setCover() on a kill matrix file selects exactly the same test cases as
+     * on the results it was written from, on randomly generated results whose rows span
+     * several longs.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(17)
+    void testKillMatrixFileMatchesResults() throws Exception {
+        Random random = new Random(7);
+        Path file = Files.createTempFile("feat-matrix", ".bin");
+        try {
+            for (int trial = 0; trial < 20; trial++) {
+                List<TestCase> allCases = generateIntegerCases(30);
+                List<Set<Integer>> caseToFiles = new ArrayList<>();
+                Set<Integer> wrongSet = new HashSet<>();
+                try (KillMatrixFile matrix = KillMatrixFile.create(file.toString(),
+                        allCases, 150)) {
+                    for (int i = 0; i < 30; i++) {
+                        Set<Integer> caught = new HashSet<>();
+                        for (int fileIndex = 0; fileIndex < 150; fileIndex++) {
+                            if (random.nextInt(20) == 0) {
+                                caught.add(fileIndex);
+                                matrix.set(i, fileIndex, false);
+                            }
+                        }
+                        caseToFiles.add(caught);
+                        wrongSet.addAll(caught);
+                    }
+                    matrix.finish();
+                }
+                TestResults input = new TestResults(allCases, caseToFiles, wrongSet);
+                try (KillMatrixFile matrix = KillMatrixFile.open(file.toString())) {
+                    assertEquals(ConciseSetGenerator.setCover(input),
+                            ConciseSetGenerator.setCover(matrix));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that setCover() covers results backed by a kill matrix file straight from the
+     * file, selecting the same test cases as for the same results on the heap, and
+     * returns the test cases that were run rather than ones decoded from the file (which
+     * would turn each PyCharObj into a PyStringObj).
+     */
+    @Test
+    @Tag("1.0")
+    @Order(19)
+    void testKillMatrixFileResultsKeepTestCases() throws Exception {
+        List<TestCase> allCases = new ArrayList<>();
+        for (char c = 'a'; c < 'e'; c++) {
+            allCases.add(new TestCase(List.of(new PyCharObj(c))));
+        }
+        List<Set<Integer>> caseToFiles = List.of(Set.of(0, 1), Set.of(1, 2, 3), Set.of(),
+                Set.of(4));
+        Path file = Files.createTempFile("feat-matrix", ".bin");
+        try {
+            try (KillMatrixFile matrix = KillMatrixFile.create(file.toString(), allCases,
+                    5)) {
+                for (int i = 0; i < caseToFiles.size(); i++) {
+                    for (int fileIndex : caseToFiles.get(i)) {
+                        matrix.set(i, fileIndex, false);
+                    }
+                }
+                matrix.finish();
+                assertNotEquals(allCases.get(0), matrix.getTestCase(0));
+                TestResults results = new TestResults(allCases, matrix, Map.of());
+                Set<TestCase> expected = Set.of(allCases.get(0), allCases.get(1),
+                        allCases.get(3));
+                assertEquals(expected, ConciseSetGenerator.setCover(results));
+                assertEquals(expected, ConciseSetGenerator.setCover(new TestResults(
+                        allCases, caseToFiles, Set.of(0, 1, 2, 3, 4))));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that the report of the groups names each file when the results know the
+     * names of the files.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(20)
+    void testSignatureGroupsFilenames() {
+        TestResults weighted = weightedResults();
+        List<String> filenames = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            filenames.add("impl" + i + ".py");
+        }
+        SignatureGroups groups = new SignatureGroups(new TestResults(
+                generateIntegerCases(3), weighted.getKillMatrix(), new KillMatrix(3, 7),
+                Map.of(), filenames));
+        assertEquals(List.of(Set.of(0), Set.of(4, 5), Set.of(0, 4)),
+                groups.getCaseToGroups());
+        assertEquals("impl0.py: [impl0.py, impl1.py, impl2.py, impl3.py]\n"
+                + "impl4.py: [impl4.py]\nimpl5.py: [impl5.py, impl6.py]\n",
+                groups.toString());
+    }
+
+    /**
+     * Tests that the lazy setCover() needs only part of the results when no test case
+     * catches every file and some files are caught by none, both one test case at a time
+     * and several at once, and that it selects the same test cases as the eager one.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(18)
+    void testLazyEvaluatesFewerCellsWithoutDominantTest() throws Exception {
+        // Files 90-99 are right; every tenth test catches about half of the wrong files,
+        // and the rest catch about one in twenty
+        Random random = new Random(3);
+        List<TestCase> allCases = generateIntegerCases(200);
+        List<Set<Integer>> caseToFiles = new ArrayList<>();
+        Set<Integer> wrongSet = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            Set<Integer> caught = new HashSet<>();
+            for (int fileIndex = 0; fileIndex < 90; fileIndex++) {
+                if (random.nextInt(i % 10 == 0 ? 2 : 20) == 0) {
+                    caught.add(fileIndex);
+                }
+            }
+            caseToFiles.add(caught);
+            wrongSet.addAll(caught);
+        }
+        TestResults input = new TestResults(allCases, caseToFiles, wrongSet);
+        Set<TestCase> expected = ConciseSetGenerator.setCover(input);
+
+        MatrixOracle oracle = new MatrixOracle(input, 100);
+        assertEquals(expected, ConciseSetGenerator.setCover(oracle));
+        assertTrue(oracle.numEvaluated < 200 * 100 * 3 / 4);
+
+        MatrixOracle wide = new MatrixOracle(input, 100) {
+            @Override
+            public int getBatchWidth() {
+                return 4;
+            }
+        };
+        assertEquals(expected, ConciseSetGenerator.setCover(wide));
+        assertTrue(wide.numEvaluated < 200 * 100 * 3 / 4);
+    }
+
+    /**
+     * Helper function which generates results with seven wrong files in three groups:
+     * files 0-3 are caught by tests 0 and 2, file 4 by tests 1 and 2, and files 5-6 by
+     * test 1 alone.
+     *
+     * @return the results of testing
+     */
+    private static TestResults weightedResults() {
+        List<Set<Integer>> caseToFiles = List.of(Set.of(0, 1, 2, 3), Set.of(4, 5, 6),
+                Set.of(0, 1, 2, 3, 4));
+        return new TestResults(generateIntegerCases(3), caseToFiles, generateAllWrong(7));
+    }
+
     /**
      * Helper function which generates an allCases list containing integers from 0 to
      * numTests - 1, inclusive.
@@ -432,4 +708,65 @@ class ConciseSetGeneratorTest {
         Set<TestCase> actual = ConciseSetGenerator.setCover(input);
         assertEquals(expected, actual);
     }
+
+    /**
+     * A KillOracle backed by fully computed results, which counts the number of cells it
+     * is asked for.
+     */
+    private static class MatrixOracle implements KillOracle {
+
+        /**
+         * The results that the cells are drawn from.
+         */
+        private final TestResults results;
+
+        /**
+         * The number of files tested.
+         */
+        private final int numFiles;
+
+        /**
+         * The number of cells requested so far.
+         */
+        private int numEvaluated = 0;
+
+        /**
+         * Constructor for a MatrixOracle.
+         *
+         * @param results  the results that the cells are drawn from
+         * @param numFiles the number of files tested
+         */
+        MatrixOracle(TestResults results, int numFiles) {
+            this.results = results;
+            this.numFiles = numFiles;
+        }
+
+        @Override
+        public int getNumCases() {
+            return this.results.getCaseToFiles().size();
+        }
+
+        @Override
+        public int getNumFiles() {
+            return this.numFiles;
+        }
+
+        @Override
+        public TestCase getTestCase(int caseIndex) {
+            return this.results.getTestCase(caseIndex);
+        }
+
+        @Override
+        public Set<Integer> getCaught(int caseIndex, Set<Integer> files) {
+            assertTrue(files.size() > 0);
+            this.numEvaluated += files.size();
+            Set<Integer> caught = new HashSet<>(files);
+            caught.retainAll(this.results.getCaseToFiles().get(caseIndex));
+            return caught;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package test.rice.metrics;
+
+import main.rice.metrics.Histogram;
+import main.rice.metrics.Metrics;
+import org.json.JSONObject;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test cases for the Metrics and Histogram classes.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class MetricsTest {
+
+    /**
+     * Tests that each observation is counted in the first bucket whose bound it does not
+     * exceed, and in every bucket after that cumulatively.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(1)
+    void testHistogramBuckets() {
+        Histogram histogram = new Histogram(new double[]{1, 5});
+        histogram.observe(0.5);
+        histogram.observe(1);
+        histogram.observe(3);
+        histogram.observe(9);
+        assertArrayEquals(new long[]{2, 3, 4}, histogram.getCumulativeCounts());
+        assertEquals(4, histogram.getCount());
+        assertEquals(13.5, histogram.getSum(), 1e-9);
+    }
+
+    /**
+     * Tests that counters accumulate and gauges keep their latest value, and that both
+     * show up in the JSON report.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(2)
+    void testCountersAndGauges() {
+        Metrics.increment("test_counter_total", 2);
+        Metrics.increment("test_counter_total", 3);
+        Metrics.set("test_gauge", 1.5);
+        Metrics.set("test_gauge", 0.25);
+        assertEquals(5, Metrics.getCounter("test_counter_total"));
+        assertEquals(0.25, Metrics.getGauge("test_gauge"));
+
+        JSONObject report = Metrics.toJson();
+        assertEquals(5, report.getJSONObject("counters").getLong("test_counter_total"));
+        assertEquals(0.25, report.getJSONObject("gauges").getDouble("test_gauge"));
+    }
+
+    /**
+     * Tests that a duration histogram is written in the Prometheus text format, with
+     * cumulative buckets ending in +Inf.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(3)
+    void testPrometheus() {
+        Metrics.observeSince("test_duration_seconds", Metrics.startTimer());
+        String prom = Metrics.toPrometheus();
+        assertTrue(prom.contains("# TYPE test_duration_seconds histogram\n"));
+        assertTrue(prom.contains("test_duration_seconds_bucket{le=\"0.001\"} 1\n"));
+        assertTrue(prom.contains("test_duration_seconds_bucket{le=\"+Inf\"} 1\n"));
+        assertTrue(prom.contains("test_duration_seconds_count 1\n"));
+        assertEquals(0, Metrics.getCounter("test_missing_total"));
+    }
+}
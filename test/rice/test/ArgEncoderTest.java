@@ -0,0 +1,78 @@
+package test.rice.test;
+
+import main.rice.obj.*;
+import main.rice.test.ArgEncoder;
+import main.rice.test.TestCase;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test cases for the ArgEncoder class.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ArgEncoderTest {
+
+    /**
+     * Tests that booleans, integers, and strings are encoded as plain JSON values.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(1)
+    void testSimple() {
+        TestCase test = new TestCase(List.of(new PyBoolObj(true), new PyIntObj(-3),
+                new PyStringObj("it's \"ok\"")));
+        assertEquals("[true,-3,\"it's \\\"ok\\\"\"]", ArgEncoder.encodeArgs(test).toString());
+    }
+
+    /**
+     * Tests that floats are tagged, so that an integral float is not mistaken for an
+     * integer.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(2)
+    void testFloat() {
+        assertEquals("[\"f\",\"4.0\"]", ArgEncoder.encode(new PyFloatObj(4.0)).toString());
+    }
+
+    /**
+     * Tests that lists, tuples, sets, and dicts are each tagged differently, including
+     * when nested.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(3)
+    void testIterables() {
+        PyListObj<PyIntObj> list = new PyListObj<>(List.of(new PyIntObj(1)));
+        PyTupleObj<PyListObj<PyIntObj>> tuple = new PyTupleObj<>(List.of(list));
+        PySetObj<PyIntObj> set = new PySetObj<>(Set.of(new PyIntObj(2)));
+        PyDictObj<PyStringObj, PySetObj<PyIntObj>> dict = new PyDictObj<>(
+                Map.of(new PyStringObj("k"), set));
+        assertEquals("[\"t\",[[\"l\",[1]]]]", ArgEncoder.encode(tuple).toString());
+        assertEquals("[\"d\",[[\"k\",[\"s\",[2]]]]]", ArgEncoder.encode(dict).toString());
+        assertEquals("[\"l\",[]]", ArgEncoder.encode(new PyListObj<>(List.of())).toString());
+    }
+
+    /**
+     * Tests that decoding an encoded test case gives back an equal test case, and that
+     * encoding it again gives back the same JSON.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(4)
+    void testDecodeRoundTrip() {
+        PyListObj<PyFloatObj> list = new PyListObj<>(List.of(new PyFloatObj(4.0)));
+        PyTupleObj<PyListObj<PyFloatObj>> tuple = new PyTupleObj<>(List.of(list));
+        PyDictObj<PyStringObj, PySetObj<PyIntObj>> dict = new PyDictObj<>(
+                Map.of(new PyStringObj("k"), new PySetObj<>(Set.of(new PyIntObj(2)))));
+        TestCase test = new TestCase(List.of(new PyBoolObj(false), new PyIntObj(7),
+                new PyStringObj("ab"), tuple, dict));
+        TestCase decoded = ArgEncoder.decodeArgs(ArgEncoder.encodeArgs(test));
+        assertEquals(test.toString(), decoded.toString());
+        assertEquals(ArgEncoder.encodeArgs(test).toString(),
+                ArgEncoder.encodeArgs(decoded).toString());
+    }
+}
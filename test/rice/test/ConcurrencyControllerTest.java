@@ -0,0 +1,122 @@
+package test.rice.test;
+
+import main.rice.metrics.Metrics;
+import main.rice.test.ConcurrencyController;
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test cases for the ConcurrencyController class.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ConcurrencyControllerTest {
+
+    /**
+     * Tests that the limit rises by one per window while throughput holds up, stops at
+     * the maximum, and is halved once a raise makes throughput drop.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(1)
+    void testIncreaseThenBackOff() {
+        ConcurrencyController controller = new ConcurrencyController(2, 4, () -> 0.5,
+                () -> 0.5);
+        controller.adjust(10);
+        assertEquals(3, controller.getLimit());
+        controller.adjust(14);
+        assertEquals(4, controller.getLimit());
+        controller.adjust(16);
+        assertEquals(4, controller.getLimit());
+        assertEquals(4.0, Metrics.getGauge("feat_concurrency_limit"));
+
+        // Throughput may drop at the ceiling without a raise to blame it on
+        controller.adjust(12);
+        assertEquals(4, controller.getLimit());
+
+        ConcurrencyController raised = new ConcurrencyController(4, 8, () -> 0.5,
+                () -> 0.5);
+        raised.adjust(20);
+        assertEquals(5, raised.getLimit());
+        raised.adjust(15);
+        assertEquals(2, raised.getLimit());
+    }
+
+    /**
+     * Tests that the limit is cut when the load average is too high or memory runs low,
+     * however good the throughput, but never below one; unknown readings are ignored.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(2)
+    void testOverloaded() {
+        double[] load = {4.0};
+        double[] free = {-1};
+        ConcurrencyController controller = new ConcurrencyController(8, 8,
+                () -> load[0], () -> free[0]);
+        controller.adjust(100);
+        assertEquals(4, controller.getLimit());
+
+        load[0] = -1;
+        free[0] = 0.01;
+        controller.adjust(100);
+        controller.adjust(100);
+        controller.adjust(100);
+        assertEquals(1, controller.getLimit());
+
+        free[0] = -1;
+        controller.adjust(100);
+        assertEquals(2, controller.getLimit());
+    }
+
+    /**
+     * Tests that no more tasks than the limit run at once, and that a blocked task starts
+     * as soon as a running one releases its slot.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(3)
+    void testAcquireBlocks() throws InterruptedException {
+        ConcurrencyController controller = new ConcurrencyController(1, 1, () -> -1,
+                () -> -1);
+        controller.acquire();
+        AtomicInteger started = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                controller.acquire();
+                started.incrementAndGet();
+                controller.release();
+                done.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(0, started.get());
+
+        controller.release();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, started.get());
+        waiter.join();
+    }
+
+    /**
+     * Tests that a controller cannot be given a non-positive maximum, and that the
+     * initial limit is clamped to the maximum.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(4)
+    void testLimits() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ConcurrencyController(1, 0));
+        assertEquals(3, new ConcurrencyController(10, 3, () -> -1, () -> -1).getLimit());
+        assertEquals(1, new ConcurrencyController(0, 3, () -> -1, () -> -1).getLimit());
+    }
+}
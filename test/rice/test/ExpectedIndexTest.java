@@ -0,0 +1,79 @@
+package test.rice.test;
+
+import main.rice.test.ExpectedIndex;
+import main.rice.test.ResultCache;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test cases for the ExpectedIndex class.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ExpectedIndexTest {
+
+    /**
+     * Tests that every result written to an index can be read back individually,
+     * including empty and non-ASCII ones.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(1)
+    void testWriteRead() throws Exception {
+        Path file = Files.createTempFile("feat-index", ".idx");
+        try {
+            List<String> results = List.of("0", "'h\u00e9llo'", "", "[1, 2, (3, 4)]");
+            ExpectedIndex.write(file, results, ResultCache.hash(new byte[0]));
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(results.get(i), ExpectedIndex.read(file, i));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that an index is only current with respect to the expected.py it was written
+     * alongside.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(2)
+    void testIsCurrent() throws Exception {
+        Path file = Files.createTempFile("feat-index", ".idx");
+        try {
+            String hash = ResultCache.hash("results = [0]".getBytes());
+            ExpectedIndex.write(file, List.of("0"), hash);
+            assertTrue(ExpectedIndex.isCurrent(file, hash));
+            assertFalse(ExpectedIndex.isCurrent(file,
+                    ResultCache.hash("results = [1]".getBytes())));
+
+            // A truncated file is never current
+            Files.write(file, new byte[10]);
+            assertFalse(ExpectedIndex.isCurrent(file, hash));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that reading a result beyond the end of the index fails.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(3)
+    void testReadOutOfRange() throws Exception {
+        Path file = Files.createTempFile("feat-index", ".idx");
+        try {
+            ExpectedIndex.write(file, List.of("0"), ResultCache.hash(new byte[0]));
+            assertThrows(IOException.class, () -> ExpectedIndex.read(file, 1));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package test.rice.test;
+
+import main.rice.test.ExpectedResultsStore;
+import org.junit.jupiter.api.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test cases for the ExpectedResultsStore class.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ExpectedResultsStoreTest {
+
+    /**
+     * Tests that results (including ones with awkward characters) survive closing and
+     * reopening the store.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(1)
+    void testPersists() throws Exception {
+        Path file = Files.createTempFile("feat-expected", ".txt");
+        String key1 = ExpectedResultsStore.key("sol", "func0", "[1]");
+        String key2 = ExpectedResultsStore.key("sol", "func0", "[2]");
+        try {
+            try (ExpectedResultsStore store = new ExpectedResultsStore(file.toString())) {
+                assertNull(store.get(key1));
+                store.put(key1, "'a \"quoted\"\nline'");
+                store.put(key2, "");
+                assertEquals("", store.get(key2));
+            }
+            try (ExpectedResultsStore store = new ExpectedResultsStore(file.toString())) {
+                assertEquals("'a \"quoted\"\nline'", store.get(key1));
+                assertEquals("", store.get(key2));
+                assertEquals(2, store.size());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that a partly written line left behind by an interrupted run is skipped, and
+     * does not swallow the next entry that is written.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(2)
+    void testPartialLine() throws Exception {
+        Path file = Files.createTempFile("feat-expected", ".txt");
+        String key1 = ExpectedResultsStore.key("sol", "func0", "[1]");
+        String key2 = ExpectedResultsStore.key("sol", "func0", "[2]");
+        try {
+            Files.writeString(file, "[\"" + key1 + "\", \"1\"]\n[\"" + key2);
+            try (ExpectedResultsStore store = new ExpectedResultsStore(file.toString())) {
+                assertEquals(1, store.size());
+                store.put(key2, "2");
+            }
+            try (ExpectedResultsStore store = new ExpectedResultsStore(file.toString())) {
+                assertEquals("1", store.get(key1));
+                assertEquals("2", store.get(key2));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that keys differ whenever any of their parts differs.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(3)
+    void testKeysDistinct() {
+        String key = ExpectedResultsStore.key("sol", "func0", "[1]");
+        assertEquals(key, ExpectedResultsStore.key("sol", "func0", "[1]"));
+        assertNotEquals(key, ExpectedResultsStore.key("sol2", "func0", "[1]"));
+        assertNotEquals(key, ExpectedResultsStore.key("sol", "func1", "[1]"));
+        assertNotEquals(key, ExpectedResultsStore.key("sol", "func0", "[2]"));
+    }
+}
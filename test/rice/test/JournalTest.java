@@ -0,0 +1,109 @@
+package test.rice.test;
+
+import main.rice.test.Journal;
+import main.rice.test.Outcome;
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test cases for the Journal class.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class JournalTest {
+
+    /**
+     * Tests that expected results and outcomes are kept apart, and that both survive
+     * closing and reopening the journal.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(1)
+    void testReplay() throws Exception {
+        Path file = Files.createTempFile("feat-journal", ".log");
+        try {
+            try (Journal journal = new Journal(file.toString())) {
+                journal.putExpected("k", "[1, 'a b']");
+                journal.putOutcome("k", Outcome.OVER_BUDGET);
+                journal.putOutcome("k", Outcome.OVER_BUDGET);
+                assertEquals(2, journal.size());
+            }
+            assertEquals(2, Files.readAllLines(file).size());
+
+            try (Journal journal = new Journal(file.toString())) {
+                assertEquals("[1, 'a b']", journal.getExpected("k"));
+                assertEquals(Outcome.OVER_BUDGET, journal.getOutcome("k"));
+                assertNull(journal.getExpected("other"));
+                assertNull(journal.getOutcome("other"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that an entry which was only partly written when a run died is skipped, and
+     * that entries written after reopening the journal are not mangled by it.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(2)
+    void testTornEntry() throws Exception {
+        Path file = Files.createTempFile("feat-journal", ".log");
+        try {
+            Files.writeString(file, "[\"O\",\"a\",\"PASS\"]\n[\"O\",\"b\",\"FA");
+            try (Journal journal = new Journal(file.toString())) {
+                assertEquals(Outcome.PASS, journal.getOutcome("a"));
+                assertNull(journal.getOutcome("b"));
+                journal.putOutcome("b", Outcome.FAIL);
+            }
+            try (Journal journal = new Journal(file.toString())) {
+                assertEquals(Outcome.FAIL, journal.getOutcome("b"));
+                assertEquals(2, journal.size());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that an entry torn in the middle of a multi-byte character, or a line that is
+     * not valid UTF-8 at all, is skipped without losing the entries around it.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(3)
+    void testTornCharacter() throws Exception {
+        Path file = Files.createTempFile("feat-journal", ".log");
+        try {
+            byte[] torn = "[\"E\",\"b\",\"caf\u00e9\"]".getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream contents = new ByteArrayOutputStream();
+            contents.writeBytes("[\"E\",\"a\",\"\u00e9t\u00e9\"]\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            contents.writeBytes(new byte[]{'[', (byte) 0xff, ']', '\n'});
+            contents.writeBytes("[\"O\",\"a\",\"PASS\"]\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            contents.write(torn, 0, torn.length - 3);
+            Files.write(file, contents.toByteArray());
+
+            try (Journal journal = new Journal(file.toString())) {
+                assertEquals("\u00e9t\u00e9", journal.getExpected("a"));
+                assertEquals(Outcome.PASS, journal.getOutcome("a"));
+                assertNull(journal.getExpected("b"));
+                assertEquals(2, journal.size());
+                journal.putExpected("b", "caf\u00e9");
+            }
+            try (Journal journal = new Journal(file.toString())) {
+                assertEquals("caf\u00e9", journal.getExpected("b"));
+                assertEquals(3, journal.size());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package test.rice.test;
+
+import main.rice.obj.*;
+import main.rice.test.KillMatrixFile;
+import main.rice.test.TestCase;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test cases for the KillMatrixFile class.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class KillMatrixFileTest {
+
+    /**
+     * Tests that cells and test cases written to a matrix file read back the same once
+     * the file is reopened, across a row that spans several longs.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(1)
+    void testRoundTrip() throws IOException {
+        List<TestCase> tests = List.of(
+                new TestCase(List.of(new PyIntObj(1), new PyStringObj("caf\u00e9"))),
+                new TestCase(List.of(new PyListObj<>(List.of(new PyFloatObj(0.5))))),
+                new TestCase(List.of(new PyBoolObj(false))));
+        Path file = Files.createTempFile("feat-matrix", ".bin");
+        try {
+            try (KillMatrixFile matrix = KillMatrixFile.create(file.toString(), tests, 130)) {
+                matrix.set(0, 0, false);
+                matrix.set(0, 129, true);
+                matrix.set(2, 64, false);
+                assertFalse(matrix.isComplete());
+                matrix.finish();
+            }
+
+            try (KillMatrixFile matrix = KillMatrixFile.open(file.toString())) {
+                assertTrue(matrix.isComplete());
+                assertEquals(3, matrix.getNumCases());
+                assertEquals(130, matrix.getNumFiles());
+                assertEquals(3, matrix.getRowWords());
+                assertEquals(tests, List.of(matrix.getTestCase(0), matrix.getTestCase(1),
+                        matrix.getTestCase(2)));
+                assertTrue(matrix.get(0, 129));
+                assertTrue(matrix.isOverBudget(0, 129));
+                assertFalse(matrix.isOverBudget(0, 0));
+                assertTrue(matrix.get(2, 64));
+                assertFalse(matrix.get(1, 64));
+                assertEquals(2, matrix.countFiles(0));
+                assertEquals(0, matrix.countFiles(1));
+                assertEquals(1L, matrix.getWord(2, 1));
+                assertThrows(IndexOutOfBoundsException.class, () -> matrix.get(3, 0));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that a matrix that was never finished reads back as incomplete, and that
+     * one opened for reading cannot be written to.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(2)
+    void testIncomplete() throws IOException {
+        Path file = Files.createTempFile("feat-matrix", ".bin");
+        try {
+            try (KillMatrixFile matrix = KillMatrixFile.create(file.toString(),
+                    List.of(new TestCase(List.of(new PyIntObj(0)))), 2)) {
+                matrix.set(0, 1, false);
+            }
+            try (KillMatrixFile matrix = KillMatrixFile.open(file.toString())) {
+                assertFalse(matrix.isComplete());
+                assertTrue(matrix.get(0, 1));
+                assertThrows(RuntimeException.class, () -> matrix.set(0, 0, false));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that opening a file that is not a kill matrix file throws an IOException.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(3)
+    void testNotAMatrix() throws IOException {
+        Path file = Files.createTempFile("feat-matrix", ".bin");
+        try {
+            Files.writeString(file, "results = [0, 1, 2, 3, 4]\n".repeat(4));
+            assertThrows(IOException.class, () -> KillMatrixFile.open(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that the per-case views, the caught files and the heap copy of a matrix file
+     * agree with its cells across a row that spans several longs, and that they can
+     * still be read once the file is closed.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(4)
+    void testViews() throws IOException {
+        List<TestCase> tests = List.of(new TestCase(List.of(new PyIntObj(0))),
+                new TestCase(List.of(new PyIntObj(1))));
+        Path file = Files.createTempFile("feat-matrix", ".bin");
+        try {
+            List<Set<Integer>> caseToFiles;
+            List<Set<Integer>> caseToOverBudget;
+            try (KillMatrixFile matrix = KillMatrixFile.create(file.toString(), tests, 130)) {
+                matrix.set(0, 3, false);
+                matrix.set(0, 129, true);
+                matrix.set(1, 64, false);
+                matrix.set(1, 3, false);
+                caseToFiles = matrix.getCaseToFiles();
+                caseToOverBudget = matrix.getCaseToOverBudget();
+                assertEquals(new TreeSet<>(Set.of(3, 64, 129)), matrix.getCaughtFiles());
+                assertEquals(4, matrix.countCells());
+                assertEquals(List.of(Set.of(3, 129), Set.of(3, 64)),
+                        matrix.toKillMatrix().getCaseToFiles());
+            }
+            assertEquals(List.of(Set.of(3, 129), Set.of(3, 64)), caseToFiles);
+            assertEquals(List.of(3, 129), new ArrayList<>(caseToFiles.get(0)));
+            assertEquals(List.of(Set.of(129), Set.of()), caseToOverBudget);
+            assertTrue(caseToFiles.get(1).contains(64));
+            assertFalse(caseToFiles.get(1).contains(130));
+            assertEquals(2, caseToFiles.get(1).size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package test.rice.test;
+
+import main.rice.test.KillMatrix;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test cases for the KillMatrix class.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class KillMatrixTest {
+
+    /**
+     * Tests that both views of a matrix spanning several words per row agree with the
+     * sets it was built from, including the counts.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(1)
+    void testViews() {
+        List<Set<Integer>> caseToFiles = List.of(Set.of(0, 63, 64, 129), Set.of(),
+                Set.of(1, 129));
+        KillMatrix matrix = KillMatrix.fromSets(caseToFiles, 130);
+        assertEquals(caseToFiles, matrix.getCaseToFiles());
+        assertEquals(Set.of(0, 1, 63, 64, 129), matrix.getCaughtFiles());
+        assertEquals(Set.of(0, 2), matrix.getFileToCases().get(129));
+        assertEquals(Set.of(), matrix.getFileToCases().get(2));
+        assertEquals(List.of(0, 63, 64, 129),
+                new ArrayList<>(matrix.getCaseToFiles().get(0)));
+        assertEquals(4, matrix.countFiles(0));
+        assertEquals(2, matrix.countCases(129));
+        assertEquals(6, matrix.countCells());
+        assertTrue(matrix.get(2, 1));
+        assertFalse(matrix.get(1, 1));
+        assertFalse(matrix.getCaseToFiles().get(0).contains(130));
+        assertEquals(BitSet.valueOf(new long[]{1L | (1L << 63), 1L, 1L << 1}),
+                BitSet.valueOf(matrix.getCaseRow(0)));
+    }
+
+    /**
+     * Tests that the views read through to the matrix and cannot be modified.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(2)
+    void testViewsReadThrough() {
+        KillMatrix matrix = new KillMatrix(2, 3);
+        Set<Integer> caught = matrix.getCaughtFiles();
+        Set<Integer> row = matrix.getCaseToFiles().get(1);
+        assertTrue(caught.isEmpty());
+        matrix.set(1, 2);
+        assertEquals(Set.of(2), caught);
+        assertEquals(Set.of(2), row);
+        assertThrows(UnsupportedOperationException.class, () -> row.add(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.set(2, 0));
+    }
+
+    /**
+     * Tests that cells set from several threads at once, many of them sharing words, all
+     * end up set.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(3)
+    void testConcurrentSet() throws InterruptedException {
+        int numCases = 50;
+        int numFiles = 200;
+        KillMatrix matrix = new KillMatrix(numCases, numFiles);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int offset = t;
+            threads.add(new Thread(() -> {
+                for (int caseIndex = 0; caseIndex < numCases; caseIndex++) {
+                    for (int fileIndex = offset; fileIndex < numFiles; fileIndex += 8) {
+                        matrix.set(caseIndex, fileIndex);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals((long) numCases * numFiles, matrix.countCells());
+        for (int fileIndex = 0; fileIndex < numFiles; fileIndex++) {
+            assertEquals(numCases, matrix.countCases(fileIndex));
+        }
+    }
+}
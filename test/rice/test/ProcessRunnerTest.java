@@ -0,0 +1,145 @@
+package test.rice.test;
+
+import main.rice.test.ProcessResult;
+import main.rice.test.ProcessRunner;
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test cases for the ProcessRunner class.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ProcessRunnerTest {
+
+    /**
+     * Tests that the last line of output is reported, without its line terminator.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(1)
+    void testLastLine() throws Exception {
+        ProcessResult result = ProcessRunner.run(List.of("python3", "-c",
+                "print('first')\nprint('second')"), null, 1024);
+        assertEquals("second", result.getLastLine());
+        assertEquals(0, result.getExitCode());
+        assertFalse(result.isTruncated());
+    }
+
+    /**
+     * Tests that a process with no output reports an empty last line.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(2)
+    void testNoOutput() throws Exception {
+        ProcessResult result = ProcessRunner.run(List.of("python3", "-c", "pass"), null,
+                1024);
+        assertEquals("", result.getLastLine());
+    }
+
+    /**
+     * Tests that the input is delivered to the process's stdin.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(3)
+    void testInput() throws Exception {
+        ProcessResult result = ProcessRunner.run(List.of("python3", "-c",
+                "import sys\nprint(sys.stdin.read().upper())"), "feat", 1024);
+        assertEquals("FEAT", result.getLastLine());
+    }
+
+    /**
+     * Tests that a process writing far more than a pipe buffer to both stdout and stderr
+     * runs to completion, that only the tail of its stdout is retained, and that its
+     * stderr is not counted, since it is discarded unread.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(4)
+    void testLargeOutputTruncated() throws Exception {
+        ProcessResult result = ProcessRunner.run(List.of("python3", "-c",
+                "import sys\nfor i in range(100000):\n    print(i)\n" +
+                        "    print(i, file=sys.stderr)"), null, 64);
+        assertEquals("99999", result.getLastLine());
+        assertTrue(result.isTruncated());
+        assertTrue(result.getStdout().length() <= 64);
+        assertEquals(588890, result.getBytesWritten());
+    }
+
+    /**
+     * Tests that the exit code of the process is reported.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(5)
+    void testExitCode() throws Exception {
+        ProcessResult result = ProcessRunner.run(List.of("python3", "-c",
+                "import sys\nsys.exit(3)"), null, 1024);
+        assertEquals(3, result.getExitCode());
+    }
+
+    /**
+     * Tests that a process which runs past its deadline is killed and reported as timed
+     * out, and that environment variables are passed through to it.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(6)
+    void testTimeoutAndEnv() throws Exception {
+        ProcessResult result = ProcessRunner.run(List.of("python3", "-c",
+                "import os, time\nprint(os.environ['FEAT_GREETING'], flush=True)\n" +
+                        "time.sleep(60)"), Map.of("FEAT_GREETING", "hello"), null, 1024, 500);
+        assertTrue(result.isTimedOut());
+        assertEquals("hello", result.getLastLine());
+    }
+
+    /**
+     * Tests that a huge output limit costs nothing up front, so that many processes can
+     * run with one at once, and that output which grows past the initial buffer in both
+     * small and large chunks is retained whole up to the limit and truncated past it.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(7)
+    void testOutputLimitGrowsLazily() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            ProcessResult result = ProcessRunner.run(List.of("python3", "-c",
+                    "print('x')"), null, Integer.MAX_VALUE - 8);
+            assertEquals("x", result.getLastLine());
+        }
+
+        ProcessResult whole = ProcessRunner.run(List.of("python3", "-c",
+                "import sys\nfor i in range(20000):\n    print(i)\n" +
+                        "sys.stdout.write('y' * 100000 + '\\nend\\n')"), null, 1 << 20);
+        assertFalse(whole.isTruncated());
+        assertTrue(whole.getStdout().startsWith("0\n1\n2\n"));
+        assertEquals("end", whole.getLastLine());
+
+        ProcessResult truncated = ProcessRunner.run(List.of("python3", "-c",
+                "import sys\nfor i in range(20000):\n    print(i)\n" +
+                        "sys.stdout.write('y' * 100000 + '\\nend\\n')"), null, 50000);
+        assertTrue(truncated.isTruncated());
+        assertEquals(50000, truncated.getStdout().length());
+        assertEquals("end", truncated.getLastLine());
+    }
+
+    /**
+     * Tests that an input too large to be written before the process starts reading is
+     * still delivered whole, even to a process that writes output as it reads.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(8)
+    void testLargeInput() throws Exception {
+        ProcessResult result = ProcessRunner.run(List.of("python3", "-c",
+                "import sys\nfor line in sys.stdin:\n    print(line.strip())\n" +
+                        "print('done')"), "z\n".repeat(200000), 64);
+        assertEquals("done", result.getLastLine());
+        assertEquals(400005, result.getBytesWritten());
+    }
+}
@@ -0,0 +1,104 @@
+package test.rice.test;
+
+import main.rice.test.Outcome;
+import main.rice.test.ResultCache;
+import org.junit.jupiter.api.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test cases for the ResultCache class.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ResultCacheTest {
+
+    /**
+     * Tests that an outcome which was put into the cache can be retrieved.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(1)
+    void testPutGet() throws Exception {
+        Path file = Files.createTempFile("feat-cache", ".txt");
+        try (ResultCache cache = new ResultCache(file.toString())) {
+            String key = ResultCache.key("impl", "sol", "func0", "[1]");
+            assertNull(cache.get(key));
+            cache.put(key, Outcome.FAIL);
+            assertEquals(Outcome.FAIL, cache.get(key));
+            assertEquals(1, cache.size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that the outcomes in the cache survive closing and reopening it.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(2)
+    void testPersists() throws Exception {
+        Path file = Files.createTempFile("feat-cache", ".txt");
+        String key1 = ResultCache.key("impl", "sol", "func0", "[1]");
+        String key2 = ResultCache.key("impl", "sol", "func0", "[2]");
+        try {
+            try (ResultCache cache = new ResultCache(file.toString())) {
+                cache.put(key1, Outcome.PASS);
+                cache.put(key2, Outcome.FAIL);
+            }
+            try (ResultCache cache = new ResultCache(file.toString())) {
+                assertEquals(Outcome.PASS, cache.get(key1));
+                assertEquals(Outcome.FAIL, cache.get(key2));
+                assertEquals(2, cache.size());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that a partly written line left behind by an interrupted run is skipped, and
+     * does not swallow the next entry that is written.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(3)
+    void testPartialLine() throws Exception {
+        Path file = Files.createTempFile("feat-cache", ".txt");
+        String key1 = ResultCache.key("impl", "sol", "func0", "[1]");
+        String key2 = ResultCache.key("impl", "sol", "func0", "[2]");
+        try {
+            Files.writeString(file, key1 + " PASS\n" + key2.substring(0, 10));
+            try (ResultCache cache = new ResultCache(file.toString())) {
+                assertEquals(1, cache.size());
+                cache.put(key2, Outcome.FAIL);
+            }
+            try (ResultCache cache = new ResultCache(file.toString())) {
+                assertEquals(Outcome.PASS, cache.get(key1));
+                assertEquals(Outcome.FAIL, cache.get(key2));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that keys differ whenever any of their parts differs, including when the
+     * parts are split up differently.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(4)
+    void testKeysDistinct() {
+        String key = ResultCache.key("impl", "sol", "func0", "[1]");
+        assertEquals(key, ResultCache.key("impl", "sol", "func0", "[1]"));
+        assertNotEquals(key, ResultCache.key("impl2", "sol", "func0", "[1]"));
+        assertNotEquals(key, ResultCache.key("impl", "sol2", "func0", "[1]"));
+        assertNotEquals(key, ResultCache.key("impl", "sol", "func1", "[1]"));
+        assertNotEquals(key, ResultCache.key("impl", "sol", "func0", "[2]"));
+        assertNotEquals(key, ResultCache.key("imp", "lsol", "func0", "[1]"));
+    }
+}
@@ -3,6 +3,7 @@ package test.rice.test;
 import main.rice.obj.PyBoolObj;
 import main.rice.obj.PyIntObj;
 import main.rice.obj.PyStringObj;
+import main.rice.test.KillMatrix;
 import main.rice.test.TestCase;
 import main.rice.test.TestResults;
 import org.junit.jupiter.api.*;
@@ -11,6 +12,8 @@ import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * Test cases for the TestResults class.
@@ -175,4 +178,49 @@ class TestResultsTest {
     void testGetCaseToFilesNonEmpty() {
         assertEquals(new ArrayList<>(someFilesFail), someFail.getCaseToFiles());
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that results backed by kill matrices expose them through the usual getters,
+     * with the wrong set made up of every file that some test case caught.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(10)
+    void testKillMatrixBacked() {
+        KillMatrix matrix = KillMatrix.fromSets(someFilesFail, 10);
+        KillMatrix overBudget = new KillMatrix(10, 10);
+        overBudget.set(0, 3);
+        TestResults results = new TestResults(testCases, matrix, overBudget);
+        assertEquals(someFilesFail, results.getCaseToFiles());
+        assertEquals(wrongSet, results.getWrongSet());
+        assertEquals(Set.of(3), results.getCaseToOverBudget().get(0));
+        assertEquals(Set.of(), results.getCaseToOverBudget().get(1));
+        assertSame(matrix, results.getKillMatrix());
+        assertEquals(wrongSet, someFail.getKillMatrix().getCaughtFiles());
+    }
+
+    /**
+     * Tests that results built from sets keep their own copy of them, so that changing
+     * the inputs afterwards neither shows through the getters nor makes them disagree
+     * with the kill matrix, and that the getters are read-only.
+     */
+    @Test
+    @Tag("0.5")
+    @Order(11)
+    void testSetsCopied() {
+        List<Set<Integer>> caseToFiles = new ArrayList<>();
+        caseToFiles.add(new HashSet<>(Set.of(0, 1)));
+        Set<Integer> wrong = new HashSet<>(Set.of(0, 1, 2));
+        TestResults results = new TestResults(testCases.subList(0, 1), caseToFiles, wrong);
+        caseToFiles.get(0).add(3);
+        caseToFiles.add(new HashSet<>(Set.of(4)));
+        wrong.add(5);
+        assertEquals(List.of(Set.of(0, 1)), results.getCaseToFiles());
+        assertEquals(Set.of(0, 1, 2), results.getWrongSet());
+        assertEquals(results.getCaseToFiles(), results.getKillMatrix().getCaseToFiles());
+        assertThrows(UnsupportedOperationException.class,
+                () -> results.getWrongSet().add(6));
+        assertThrows(UnsupportedOperationException.class,
+                () -> results.getCaseToFiles().get(0).add(6));
+    }
+}
@@ -1,15 +1,39 @@
 package test.rice.test;
 
+import main.rice.metrics.Metrics;
 import main.rice.obj.*;
+import main.rice.test.ExecutionBackend;
+import main.rice.test.ExecutionMode;
+import main.rice.test.ExpectedIndex;
+import main.rice.test.ExpectedResultsStore;
+import main.rice.test.Journal;
+import main.rice.test.KillMatrixFile;
+import main.rice.test.KillOracle;
+import main.rice.test.Outcome;
+import main.rice.test.PythonWorker;
+import main.rice.test.Progress;
+import main.rice.test.ResultCache;
 import main.rice.test.TestCase;
+import main.rice.test.TestListener;
 import main.rice.test.TestResults;
 import main.rice.test.Tester;
+import main.rice.test.Verdict;
+import main.rice.test.WorkerAgent;
+import org.json.JSONObject;
 import org.junit.jupiter.api.*;
 
 import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -25,6 +49,11 @@ class TesterTest {
      */
     private static final String userDir = System.getProperty("user.dir");
 
+    /**
+     * The secret shared by the agents and coordinators in these tests.
+     */
+    private static final String AGENT_SECRET = "feat-test-secret";
+
     /**
      * Lists of test cases for each of the functions under test (function definitions
      * themselves can be found in the test.rice.test.pyfiles package).
@@ -911,160 +940,1866 @@ class TesterTest {
     }
 
     /**
-     * Sets up the test cases for function f0, which takes one simple argument.
+     * Tests running a mix of tests on multiple implementations using a worker pool, where
+     * one implementation is buggy and the other is not; checks caseToFiles.
      */
-    private static void setUpF0Tests() {
-        // Create five test cases with one argument that's an integer
-        for (int i = 0; i < 5; i++) {
-            f0Tests.add(new TestCase(Collections.singletonList(new PyIntObj(i))));
+    @Test
+    @Tag("1.0")
+    @Order(46)
+    void testRunTestsWorkerPoolMixedCorrectness() {
+        runTestsHelper("func0", f0Tests, "f0multipleMixed2",
+                "results = [0, 1, 2, 3, 4]", Set.of(0),
+                List.of(Set.of(0), Collections.emptySet(), Set.of(0), Collections.emptySet(),
+                        Set.of(0)), 1, tester -> tester.setExecutionMode(ExecutionMode.WORKER_POOL));
+    }
+
+    /**
+     * Tests that output printed by an implementation running in a worker pool does not
+     * interfere with the worker's responses; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(47)
+    void testRunTestsWorkerPoolPrints() {
+        runTestsHelper("func0", f0Tests, "f0onePrints",
+                "results = [0, 1, 2, 3, 4]", Set.of(),
+                List.of(Set.of(), Set.of(), Set.of(), Set.of(), Set.of()), 1,
+                tester -> tester.setExecutionMode(ExecutionMode.WORKER_POOL));
+    }
+
+    /**
+     * Tests running malformed implementations (wrong name, wrong arity, raises) using a
+     * pool of several workers; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(48)
+    void testRunTestsWorkerPoolMalformed() {
+        List<Set<Integer>> expected = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            expected.add(Set.of(0, 1, 2));
         }
+        runTestsHelper("func3", f3Tests, "f3malformed", f3resultStr, Set.of(0, 1, 2),
+                expected, 1, tester -> {
+                    tester.setExecutionMode(ExecutionMode.WORKER_POOL);
+                    tester.setNumWorkers(2);
+                });
     }
 
     /**
-     * Sets up the test cases for function f1, which takes multiple simple arguments.
+     * Tests that a worker pool produces the same results as running one process per test
+     * when the implementations take multiple nested arguments; checks wrongSet.
      */
-    private static void setUpF1Tests() {
-        // Create eight test cases with (bool, int, float) arguments
-        for (boolean b : new boolean[]{true, false}) {
-            for (int i = 0; i < 2; i++) {
-                for (double f : new double[]{4.4, -6.07}) {
-                    f1Tests.add(new TestCase(List.of(new PyBoolObj(b), new PyIntObj(i), new PyFloatObj(f))));
-                }
-            }
+    @Test
+    @Tag("1.0")
+    @Order(49)
+    void testRunTestsWorkerPoolMultipleFilesPassAllComplex() {
+        List<Set<Integer>> expected = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            expected.add(Set.of());
         }
+        runTestsHelper("func3", f3Tests, "f3multipleRight", f3resultStr, Set.of(),
+                expected, 0, tester -> tester.setExecutionMode(ExecutionMode.WORKER_POOL));
     }
 
     /**
-     * Sets up the test cases for function f2, which takes one nested argument.
+     * Tests that an implementation which takes down its worker is caught by the test that
+     * did so, and that a fresh worker runs the remaining tests; checks caseToFiles.
      */
-    private static void setUpF2Tests() {
-        // Create nine possible test cases with (dict(string:int)) arguments
-        for (int val1 = -3; val1 < 0; val1++) {
-            for (int val2 = -1; val2 < 2; val2++) {
-                f2Tests.add(new TestCase(Collections.singletonList(new PyDictObj<>(
-                        Map.of(new PyStringObj("key1"), new PyIntObj(val1),
-                                new PyStringObj("key2"), new PyIntObj(val2))))));
+    @Test
+    @Tag("1.0")
+    @Order(50)
+    void testRunTestsWorkerPoolCrash() {
+        runTestsHelper("func0", f0Tests, "f0oneCrashes",
+                "results = [0, 1, 2, 3, 4]", Set.of(0),
+                List.of(Set.of(), Set.of(), Set.of(0), Set.of(), Set.of()), 1,
+                tester -> tester.setExecutionMode(ExecutionMode.WORKER_POOL));
+    }
+
+    /**
+     * Tests running a mix of tests on multiple implementations in batch mode, where one
+     * implementation is buggy and the other is not; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(51)
+    void testRunTestsBatchMixedCorrectness() {
+        runTestsHelper("func0", f0Tests, "f0multipleMixed2",
+                "results = [0, 1, 2, 3, 4]", Set.of(0),
+                List.of(Set.of(0), Collections.emptySet(), Set.of(0), Collections.emptySet(),
+                        Set.of(0)), 1, tester -> tester.setExecutionMode(ExecutionMode.BATCH));
+    }
+
+    /**
+     * Tests running malformed implementations in batch mode; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(52)
+    void testRunTestsBatchMalformed() {
+        List<Set<Integer>> expected = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            expected.add(Set.of(0, 1, 2));
+        }
+        runTestsHelper("func3", f3Tests, "f3malformed", f3resultStr, Set.of(0, 1, 2),
+                expected, 1, tester -> tester.setExecutionMode(ExecutionMode.BATCH));
+    }
+
+    /**
+     * Tests that an implementation which takes down its batch process is caught by the
+     * test that did so, and that the remaining tests are still run; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(53)
+    void testRunTestsBatchCrash() {
+        runTestsHelper("func0", f0Tests, "f0oneCrashes",
+                "results = [0, 1, 2, 3, 4]", Set.of(0),
+                List.of(Set.of(), Set.of(), Set.of(0), Set.of(), Set.of()), 1,
+                tester -> tester.setExecutionMode(ExecutionMode.BATCH));
+    }
+
+    /**
+     * Tests computeExpectedResults() in batch mode using multiple tests on a function
+     * that takes multiple nested arguments.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(54)
+    @SuppressWarnings("unchecked")
+    void testGetExpectedResultsBatch() {
+        List<String> expected = new ArrayList<>();
+        for (TestCase test : f3Tests) {
+            if (((Set<PyIntObj>) test.getArgs().get(0).getValue()).size() > 0) {
+                expected.add("('3', '4')");
+            } else if (((List<PyIntObj>) test.getArgs().get(1).getValue()).size()
+                    > ((List<PyIntObj>) test.getArgs().get(2).getValue()).size()) {
+                expected.add("('4', '5')");
+            } else {
+                expected.add("('5', '6')");
             }
         }
+        expectedHelper("func3", f3Tests, "func3sol.py", expected,
+                tester -> tester.setExecutionMode(ExecutionMode.BATCH));
     }
 
     /**
-     * Sets up the test cases for function f3, which takes multiple nested arguments.
+     * Tests that running six implementations on several threads (one process per test)
+     * keeps every file at its sorted index; checks caseToFiles.
      */
-    private static void setUpF3Tests() {
-        // Create two possible set(int)s
-        PySetObj<PyIntObj> set1 = new PySetObj<>(Set.of());
-        PySetObj<PyIntObj> set2 = new PySetObj<>(Set.of(new PyIntObj(3)));
+    @Test
+    @Tag("1.0")
+    @Order(55)
+    void testRunTestsParallelKeepsFileOrder() {
+        parallelHelper(ExecutionMode.PROCESS_PER_TEST);
+    }
 
-        // Create two possible list(int)s
-        PyListObj<PyIntObj> list1 =
-                new PyListObj<>(Collections.singletonList(new PyIntObj(4)));
-        PyListObj<PyIntObj> list2 =
-                new PyListObj<>(List.of(new PyIntObj(4), new PyIntObj(4)));
+    /**
+     * Tests that running six implementations on several threads with a worker pool keeps
+     * every file at its sorted index; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(56)
+    void testRunTestsParallelWorkerPoolKeepsFileOrder() {
+        parallelHelper(ExecutionMode.WORKER_POOL);
+    }
 
-        // Create two possible tuple(int)s
-        PyTupleObj<PyIntObj> tup1 =
-                new PyTupleObj<>(Collections.singletonList(new PyIntObj(5)));
-        PyTupleObj<PyIntObj> tup2 =
-                new PyTupleObj<>(List.of(new PyIntObj(5), new PyIntObj(5)));
+    /**
+     * Tests that running six implementations on several threads in batch mode keeps
+     * every file at its sorted index; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(57)
+    void testRunTestsParallelBatchKeepsFileOrder() {
+        parallelHelper(ExecutionMode.BATCH);
+    }
 
-        // Create eight test cases with (set(int), list(int), tuple(int)) arguments
-        for (PySetObj<?> set : new PySetObj[]{set1, set2}) {
-            for (PyListObj<?> list : new PyListObj[]{list1, list2}) {
-                for (PyTupleObj<?> tup : new PyTupleObj[]{tup1, tup2}) {
-                    f3Tests.add(new TestCase(List.of(set, list, tup)));
-                }
+    /**
+     * Tests computeExpectedResults() on several threads, both with one process per test
+     * and in batch mode, using a function that takes multiple simple arguments.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(58)
+    void testGetExpectedResultsParallel() {
+        List<String> expected = new ArrayList<>();
+        for (TestCase test : f1Tests) {
+            if ((boolean) test.getArgs().get(0).getValue()) {
+                expected.add(String.valueOf((int) test.getArgs().get(1).getValue()
+                        * (double) test.getArgs().get(2).getValue()));
+            } else {
+                expected.add(String.valueOf((int) test.getArgs().get(1).getValue()
+                        + (double) test.getArgs().get(2).getValue()));
             }
         }
+        expectedHelper("func1", f1Tests, "func1sol.py", expected,
+                tester -> tester.setParallelism(3));
+        expectedHelper("func1", f1Tests, "func1sol.py", expected, tester -> {
+            tester.setExecutionMode(ExecutionMode.BATCH);
+            tester.setParallelism(3);
+        });
+    }
 
-        f3resultStr =
-                "results = [('5', '6'), ('5', '6'), ('4', '5'), ('5', '6'), ('3', '4'), "
-                        + "('3', '4'), ('3', '4'), ('3', '4')]";
+    /**
+     * Tests that an implementation which prints far more than a pipe buffer's worth to
+     * both stdout and stderr neither hangs the run nor hides its result; checks
+     * caseToFiles.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(59)
+    void testRunTestsOneFileOneTestPrintsLots() {
+        runTestsHelper("func0", Collections.singletonList(f0Tests.get(4)), "f0onePrintsLots",
+                "results = [4]", Set.of(), List.of(Set.of()), 1);
     }
 
     /**
-     * Helper function for testing the computeExpectedResults() function; instantiates a
-     * Tester object, computes the expected results, and compares those to the
-     * manually-created expected results.
-     *
-     * @param funcName the name of the function under test
-     * @param tests    the set of tests to be run
-     * @param solName  the filename of the reference solution, which can be found in * the
-     *                 test.rice.test.pyfiles.sols package
-     * @param expected the expected (expected) results
+     * Tests that an implementation which loops, allocates too much memory, sleeps, or
+     * hangs inside C code is stopped on each of those test cases when running one process
+     * per test; checks caseToFiles and caseToOverBudget.
      */
-    private static void expectedHelper(String funcName, List<TestCase> tests, String solName, List<String> expected) {
-        int solNum = Integer.parseInt(String.valueOf(funcName.charAt(funcName.length() - 1)));
+    @Test
+    @Tag("2.0")
+    @Order(60)
+    void testRunTestsOverBudget() {
+        overBudgetHelper(ExecutionMode.PROCESS_PER_TEST);
+    }
 
-        // Note that this is hard-coded to use the same directory for its expected.py output regardless of which
-        // function is under test. This is because we are testing computeExpectedResults() and runTests()
-        // independently, so runTests() will never actually use the expected.py that is written here.
-        Tester tester = new Tester(funcName, userDir +
-                "/src/test/rice/test/pyfiles/sols/" + solName, userDir +
-                "/src/test/rice/test/pyfiles/f0oneRight", tests);
-        try {
-            // Compute the actual results and compare to the expected
-            writeSolContents(solNum);
-            List<String> actual = tester.computeExpectedResults();
-            assertEquals(expected, actual);
-        } catch (Exception e) {
-            e.printStackTrace();
-            fail();
-        }
+    /**
+     * Tests that an implementation which exceeds its budget in various ways is stopped on
+     * each of those test cases when running in a worker pool; checks caseToFiles and
+     * caseToOverBudget.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(61)
+    void testRunTestsWorkerPoolOverBudget() {
+        overBudgetHelper(ExecutionMode.WORKER_POOL);
     }
 
     /**
-     * Helper function for writing the contents of a solution file from scratch.
-     *
-     * @param solNum the number of the solution to be written; valid numbers are {0, 1, 2, 3}
-     * @throws IOException if something goes wrong
+     * Tests that an implementation which exceeds its budget in various ways is stopped on
+     * each of those test cases when running in batch mode; checks caseToFiles and
+     * caseToOverBudget.
      */
-   private static void writeSolContents(int solNum) throws IOException {
-        // Get path and contents
-        String solPath = userDir + "/src/test/rice/test/pyfiles/sols/func" + solNum + "sol.py";
-        String solContents = solContentsArray[solNum];
+    @Test
+    @Tag("2.0")
+    @Order(62)
+    void testRunTestsBatchOverBudget() {
+        overBudgetHelper(ExecutionMode.BATCH);
+    }
 
-        // Write solution file from scratch
-        FileWriter writer = new FileWriter(solPath);
-        writer.write(solContents);
-        writer.close();
+    /**
+     * Tests that once an implementation has used up its overall budget, the test case it
+     * is stuck on and all of the remaining ones are recorded as over budget; checks
+     * caseToFiles and caseToOverBudget.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(63)
+    void testRunTestsImplementationTimeout() {
+        List<Set<Integer>> expected = List.of(Set.of(), Set.of(0), Set.of(0), Set.of(0),
+                Set.of(0));
+        TestResults results = runTestsHelper("func0", f0Tests, "f0oneLoops",
+                "results = [0, 1, 2, 3, 4]",
+                tester -> tester.setImplementationTimeout(1500));
+        assertEquals(expected, results.getCaseToFiles());
+        assertEquals(expected, results.getCaseToOverBudget());
     }
 
     /**
-     * Helper function for testing the runTests() function; instantiates a Tester object,
-     * fakes computation of the expected results, gets the actual results, and compares
-     * both the wrongSet and caseToFile mappings between the actual and expected results.
-     *
-     * @param funcName      name of the function under test
-     * @param tests         the set of tests to be run
-     * @param implDir       the path to the directory containing the buggy implementations
-     * @param solResults    the expected contents of expected.py, assuming
-     *                      computeExpectedResults() is correct
-     * @param expWrongSet   the expected wrongSet
-     * @param expResults    the expected caseToFile list
-     * @param outputToCheck an integer representing which output to check
+     * Tests that a CPU limit stops an implementation on the test case that spins, while
+     * still letting the following test cases run in the same worker; checks caseToFiles
+     * and caseToOverBudget.
      */
-    private static void runTestsHelper(String funcName, List<TestCase> tests, String implDir,
-                                String solResults, Set<Integer> expWrongSet, List<Set<Integer>> expResults,
-                                int outputToCheck) {
-        Tester tester = new Tester(funcName, null,
-                userDir + "/src/test/rice/test/pyfiles/" + implDir, tests);
+    @Test
+    @Tag("2.0")
+    @Order(64)
+    void testRunTestsCpuLimit() {
+        List<Set<Integer>> expected = List.of(Set.of(), Set.of(0), Set.of(), Set.of(),
+                Set.of());
+        TestResults results = runTestsHelper("func0", f0Tests, "f0oneLoops",
+                "results = [0, 1, 2, 3, 4]", tester -> {
+                    tester.setExecutionMode(ExecutionMode.WORKER_POOL);
+                    tester.setResourceLimits(1, 0);
+                });
+        assertEquals(expected, results.getCaseToFiles());
+        assertEquals(expected, results.getCaseToOverBudget());
+    }
+
+    /**
+     * Tests that a kill oracle reports the same cells as runTests() when asked for every
+     * file, and only the requested files when asked for some of them.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(65)
+    void testKillOracle() {
+        killOracleHelper(ExecutionMode.PROCESS_PER_TEST);
+    }
+
+    /**
+     * Tests that a kill oracle backed by a worker pool reports the same cells as
+     * runTests().
+     */
+    @Test
+    @Tag("1.0")
+    @Order(66)
+    void testKillOracleWorkerPool() {
+        killOracleHelper(ExecutionMode.WORKER_POOL);
+    }
+
+    /**
+     * Tests that running with a result cache fills the cache with one outcome per cell,
+     * and that a later run serves its outcomes from the cache rather than running them;
+     * checks caseToFiles.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(67)
+    void testRunTestsResultCache() throws IOException {
+        Path file = Files.createTempFile("feat-cache", ".txt");
         try {
-            // Generate the expected.py file (to fake computing the expected results
-            // without creating a dependency on computeExpectedResults())
-            FileWriter writer = new FileWriter(userDir +
-                    "/src/test/rice/test/pyfiles/" + implDir + "/expected.py");
-            writer.write(solResults);
-            writer.close();
+            // The first run computes every cell
+            try (ResultCache cache = new ResultCache(file.toString())) {
+                runTestsHelper("func0", f0Tests, "f0multipleMixed2",
+                        "results = [0, 1, 2, 3, 4]", Set.of(0),
+                        List.of(Set.of(0), Set.of(), Set.of(0), Set.of(), Set.of(0)), 1,
+                        tester -> tester.setResultCache(cache));
+                assertEquals(10, cache.size());
+            }
 
-            // Run the tester
-            TestResults results = tester.runTests();
-            if (outputToCheck == 0) {
-                assertEquals(expWrongSet, results.getWrongSet());
-            } else if (outputToCheck == 1) {
-                assertEquals(expResults, results.getCaseToFiles());
-            } else {
-                for (int i = 0; i < tests.size(); i++) {
+            // Tamper with the cache, so that file 0 is recorded as passing everything;
+            // a rerun in any mode then reports whatever the cache says
+            List<String> lines = new ArrayList<>();
+            for (String line : Files.readAllLines(file)) {
+                lines.add(line.replace("FAIL", "PASS"));
+            }
+            Files.write(file, lines);
+            for (ExecutionMode mode : ExecutionMode.values()) {
+                try (ResultCache cache = new ResultCache(file.toString())) {
+                    runTestsHelper("func0", f0Tests, "f0multipleMixed2",
+                            "results = [0, 1, 2, 3, 4]", Set.of(),
+                            List.of(Set.of(), Set.of(), Set.of(), Set.of(), Set.of()), 1,
+                            tester -> {
+                                tester.setExecutionMode(mode);
+                                tester.setResultCache(cache);
+                            });
+                }
+            }
+
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that computing the expected results with a store fills the store, that a
+     * later run serves its results from the store rather than running the solution, and
+     * that expected.py is written from the stored and newly computed results together.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(68)
+    void testGetExpectedResultsStore() throws IOException {
+        Path file = Files.createTempFile("feat-expected", ".txt");
+        try {
+            // The first run computes every result
+            try (ExpectedResultsStore store = new ExpectedResultsStore(file.toString())) {
+                expectedHelper("func0", f0Tests, "func0sol.py",
+                        List.of("0", "1", "2", "3", "4"),
+                        tester -> tester.setExpectedResultsStore(store));
+                assertEquals(5, f0Tests.size());
+                assertEquals(5, store.size());
+            }
+
+            // Tamper with the store, so that every stored result is off by 100; a rerun
+            // with one extra test case then only computes that one
+            List<String> lines = new ArrayList<>();
+            for (String line : Files.readAllLines(file)) {
+                lines.add(line.replaceAll("\"(\\d)\"]$", "\"10$1\"]"));
+            }
+            Files.write(file, lines);
+            List<TestCase> moreTests = new ArrayList<>(f0Tests);
+            moreTests.add(new TestCase(Collections.singletonList(new PyIntObj(6))));
+            for (ExecutionMode mode : List.of(ExecutionMode.PROCESS_PER_TEST,
+                    ExecutionMode.BATCH)) {
+                try (ExpectedResultsStore store = new ExpectedResultsStore(file.toString())) {
+                    expectedHelper("func0", moreTests, "func0sol.py",
+                            List.of("100", "101", "102", "103", "104", "6"), tester -> {
+                                tester.setExecutionMode(mode);
+                                tester.setExpectedResultsStore(store);
+                            });
+                    assertEquals(6, store.size());
+                }
+            }
+            assertEquals("results = [100, 101, 102, 103, 104, 6]", Files.readString(
+                    Paths.get(userDir + "/src/test/rice/test/pyfiles/f0oneRight/expected.py")));
+        } finally {
+            Files.delete(file);
+            deletedExpected("f0oneRight");
+        }
+    }
+
+    /**
+     * Tests that computeExpectedResults() writes an index of the expected results, and
+     * that runTests() looks results up in it without needing expected.py at all; checks
+     * caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(69)
+    void testExpectedIndexUsed() {
+        String implDir = userDir + "/src/test/rice/test/pyfiles/f0multipleMixed2";
+        Tester tester = new Tester("func0",
+                userDir + "/src/test/rice/test/pyfiles/sols/func0sol.py", implDir, f0Tests);
+        try {
+            writeSolContents(0);
+            tester.computeExpectedResults();
+            Path index = Paths.get(implDir, "expected.idx");
+            assertEquals("3", ExpectedIndex.read(index, 3));
+
+            // Remove expected.py, so that the wrapper can only use the index
+            Files.delete(Paths.get(implDir, "expected.py"));
+            for (ExecutionMode mode : ExecutionMode.values()) {
+                tester.setExecutionMode(mode);
+                assertEquals(List.of(Set.of(0), Set.of(), Set.of(0), Set.of(), Set.of(0)),
+                        tester.runTests().getCaseToFiles());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            deletedExpected("f0multipleMixed2");
+        }
+    }
+
+    /**
+     * Tests that an index left over from an earlier computeExpectedResults() is ignored
+     * once expected.py has been replaced; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(70)
+    void testStaleExpectedIndexIgnored() {
+        String implDir = userDir + "/src/test/rice/test/pyfiles/f0multipleMixed2";
+        Tester tester = new Tester("func0",
+                userDir + "/src/test/rice/test/pyfiles/sols/func0sol.py", implDir, f0Tests);
+        try {
+            writeSolContents(0);
+            tester.computeExpectedResults();
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        }
+
+        // With these expected results, file 0 is right and file 1 is wrong on the even
+        // inputs, the opposite of what the index says
+        runTestsHelper("func0", f0Tests, "f0multipleMixed2", "results = [1, 1, 3, 3, 5]",
+                Set.of(1), List.of(Set.of(1), Set.of(), Set.of(1), Set.of(), Set.of(1)), 1);
+        assertFalse(Files.exists(Paths.get(implDir, "expected.idx")));
+    }
+
+    /**
+     * Tests computeExpectedResults() with an argument whose repr is far longer than the
+     * operating system allows a single command-line argument to be, in every execution
+     * mode.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(71)
+    void testGetExpectedResultsHugeArg() {
+        List<PyIntObj> elems = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            elems.add(new PyIntObj(7 + i));
+        }
+        List<TestCase> tests = List.of(new TestCase(List.of(new PySetObj<>(Set.of()),
+                new PyListObj<>(elems), new PyTupleObj<>(List.of(new PyIntObj(1))))));
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            expectedHelper("func3", tests, "func3sol.py", List.of("('7', '8')"),
+                    tester -> tester.setExecutionMode(mode));
+        }
+    }
+
+    /**
+     * Tests running implementations in zygote mode, where some are right and some are
+     * wrong; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(72)
+    void testRunTestsZygoteMixedCorrectness() {
+        runTestsHelper("func0", f0Tests, "f0multipleMixed2",
+                "results = [0, 1, 2, 3, 4]", Set.of(0),
+                List.of(Set.of(0), Collections.emptySet(), Set.of(0), Collections.emptySet(),
+                        Set.of(0)), 1, tester -> tester.setExecutionMode(ExecutionMode.ZYGOTE));
+    }
+
+    /**
+     * Tests that global state mutated by an implementation carries over between test
+     * cases in a worker pool, but not in zygote mode; checks caseToFiles.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(73)
+    void testRunTestsZygoteIsolatesState() {
+        runTestsHelper("func0", f0Tests, "f0oneGlobalState",
+                "results = [0, 1, 2, 3, 4]", Set.of(0),
+                List.of(Set.of(), Set.of(0), Set.of(0), Set.of(0), Set.of(0)), 1,
+                tester -> tester.setExecutionMode(ExecutionMode.WORKER_POOL));
+        runTestsHelper("func0", f0Tests, "f0oneGlobalState",
+                "results = [0, 1, 2, 3, 4]", Set.of(),
+                List.of(Set.of(), Set.of(), Set.of(), Set.of(), Set.of()), 1,
+                tester -> tester.setExecutionMode(ExecutionMode.ZYGOTE));
+    }
+
+    /**
+     * Tests that an implementation which kills its process in zygote mode only takes down
+     * the child running that test case; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(74)
+    void testRunTestsZygoteCrash() {
+        runTestsHelper("func0", f0Tests, "f0oneCrashes",
+                "results = [0, 1, 2, 3, 4]", Set.of(0),
+                List.of(Set.of(), Set.of(), Set.of(0), Set.of(), Set.of()), 1,
+                tester -> tester.setExecutionMode(ExecutionMode.ZYGOTE));
+    }
+
+    /**
+     * Tests that running six implementations on several threads in zygote mode keeps
+     * every file at its sorted index; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(75)
+    void testRunTestsParallelZygoteKeepsFileOrder() {
+        parallelHelper(ExecutionMode.ZYGOTE);
+    }
+
+    /**
+     * Tests that an implementation which exceeds its budget in various ways is stopped on
+     * each of those test cases in zygote mode; checks caseToFiles and caseToOverBudget.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(76)
+    void testRunTestsZygoteOverBudget() {
+        overBudgetHelper(ExecutionMode.ZYGOTE);
+    }
+
+    /**
+     * Tests that sharding six implementations across three agents, in units of three
+     * test cases, keeps every file at its sorted index; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(77)
+    void testRunTestsDistributed() {
+        distributedHelper(ExecutionMode.PROCESS_PER_TEST, 3, 0);
+    }
+
+    /**
+     * Tests that agents run their units in the execution mode of the coordinating
+     * Tester; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(78)
+    void testRunTestsDistributedBatch() {
+        distributedHelper(ExecutionMode.BATCH, 2, 0);
+    }
+
+    /**
+     * Tests that units which an agent drops are retried on the agents that are still
+     * up; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(79)
+    void testRunTestsDistributedRetries() {
+        distributedHelper(ExecutionMode.PROCESS_PER_TEST, 1, 2);
+    }
+
+    /**
+     * Tests that the work is done locally if no agent manages to run it; checks
+     * caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(80)
+    void testRunTestsDistributedNoAgents() {
+        distributedHelper(ExecutionMode.PROCESS_PER_TEST, 0, 2);
+    }
+
+    /**
+     * Tests that agents enforce the budget of the coordinating Tester and report which
+     * test cases exceeded it; checks caseToFiles and caseToOverBudget.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(81)
+    void testRunTestsDistributedOverBudget() {
+        List<Set<Integer>> expected = List.of(Set.of(), Set.of(0), Set.of(0), Set.of(0),
+                Set.of(0));
+        try (WorkerAgent agent = new WorkerAgent(0, AGENT_SECRET)) {
+            agent.start();
+            TestResults results = runTestsHelper("func0", f0Tests, "f0oneOverBudget",
+                    "results = [0, 1, 2, 3, 4]", tester -> {
+                        tester.setAgents(List.of(loopback(agent.getPort())), 2,
+                                AGENT_SECRET);
+                        tester.setWorkUnitSize(1);
+                        tester.setTestTimeout(500);
+                        tester.setResourceLimits(0, 1L << 30);
+                    });
+            assertEquals(expected, results.getCaseToFiles());
+            assertEquals(expected, results.getCaseToOverBudget());
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    /**
+     * Tests that a listener hears about every cell exactly once, and about every
+     * implementation once all of its cells are done, when running on several threads.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(82)
+    void testRunTestsListener() {
+        listenerHelper(tester -> {
+            tester.setExecutionMode(ExecutionMode.WORKER_POOL);
+            tester.setParallelism(4);
+        });
+    }
+
+    /**
+     * Tests that a listener hears about every cell in batch mode, where a whole
+     * implementation is run by a single process.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(83)
+    void testRunTestsListenerBatch() {
+        listenerHelper(tester -> tester.setExecutionMode(ExecutionMode.BATCH));
+    }
+
+    /**
+     * Tests that a listener hears about every cell when the work is done by agents.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(84)
+    void testRunTestsListenerDistributed() {
+        try (WorkerAgent agent = new WorkerAgent(0, AGENT_SECRET)) {
+            agent.start();
+            listenerHelper(tester -> {
+                tester.setAgents(List.of(loopback(agent.getPort())), 2, AGENT_SECRET);
+                tester.setWorkUnitSize(4);
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    /**
+     * Tests that a run resumed from the journal of a run that died partway through (with
+     * its last entry only partly written) runs only the cells that were never journaled,
+     * and produces the same results.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(85)
+    void testRunTestsJournalResume() throws IOException {
+        Path file = Files.createTempFile("feat-journal", ".log");
+        try {
+            TestResults first = journalHelper(file, ExecutionMode.PROCESS_PER_TEST);
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(60, lines.size());
+
+            // Keep the first 25 entries and half of the 26th
+            String torn = lines.get(25).substring(0, lines.get(25).length() / 2);
+            Files.writeString(file, String.join("\n", lines.subList(0, 25)) + "\n" + torn);
+            long numRun = Metrics.getCounter("feat_cells_run_total");
+            TestResults resumed = journalHelper(file, ExecutionMode.WORKER_POOL);
+            assertEquals(35, Metrics.getCounter("feat_cells_run_total") - numRun);
+            assertEquals(first.getCaseToFiles(), resumed.getCaseToFiles());
+            assertEquals(first.getWrongSet(), resumed.getWrongSet());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that outcomes which exceeded their budget are replayed from the journal, but
+     * only for a run with the same budget; checks caseToFiles and caseToOverBudget.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(86)
+    void testRunTestsJournalOverBudget() throws IOException {
+        Path file = Files.createTempFile("feat-journal", ".log");
+        List<Set<Integer>> expected = List.of(Set.of(), Set.of(0), Set.of(0), Set.of(0),
+                Set.of(0));
+        try (Journal journal = new Journal(file.toString())) {
+            Consumer<Tester> configure = tester -> {
+                tester.setJournal(journal);
+                tester.setTestTimeout(500);
+                tester.setResourceLimits(0, 1L << 30);
+            };
+            runTestsHelper("func0", f0Tests, "f0oneOverBudget", "results = [0, 1, 2, 3, 4]",
+                    configure);
+            long numRun = Metrics.getCounter("feat_cells_run_total");
+            TestResults results = runTestsHelper("func0", f0Tests, "f0oneOverBudget",
+                    "results = [0, 1, 2, 3, 4]", configure);
+            assertEquals(numRun, Metrics.getCounter("feat_cells_run_total"));
+            assertEquals(expected, results.getCaseToFiles());
+            assertEquals(expected, results.getCaseToOverBudget());
+
+            // A different budget means different journal keys, so everything is rerun
+            runTestsHelper("func0", f0Tests, "f0oneOverBudget", "results = [0, 1, 2, 3, 4]",
+                    configure.andThen(tester -> tester.setTestTimeout(400)));
+            assertEquals(numRun + 5, Metrics.getCounter("feat_cells_run_total"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that expected results are replayed from the journal rather than recomputed.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(87)
+    void testComputeExpectedResultsJournal() throws IOException {
+        Path file = Files.createTempFile("feat-journal", ".log");
+        try (Journal journal = new Journal(file.toString())) {
+            expectedHelper("func0", f0Tests, "func0sol.py",
+                    List.of("0", "1", "2", "3", "4"), tester -> tester.setJournal(journal));
+            assertEquals(5, journal.size());
+            long numComputed = Metrics.getCounter("feat_expected_computed_total");
+            expectedHelper("func0", f0Tests, "func0sol.py",
+                    List.of("0", "1", "2", "3", "4"), tester -> tester.setJournal(journal));
+            assertEquals(numComputed, Metrics.getCounter("feat_expected_computed_total"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that implementations whose sources differ only in comments and layout, or
+     * not at all, are each run once per group in every mode, and that every member of
+     * a group still gets its own results; checks caseToFiles and wrongSet.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(88)
+    void testRunTestsDeduplicate() {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            long numRun = Metrics.getCounter("feat_cells_run_total");
+            int[] numCells = new int[1];
+            TestResults results = runTestsHelper("func0", f0Tests, "f0duplicates",
+                    "results = [0, 1, 2, 3, 4]", tester -> {
+                        tester.setExecutionMode(mode);
+                        tester.setParallelism(2);
+                        tester.setTestListener(new TestListener() {
+                            @Override
+                            public void cellFinished(int fileIndex, int testIndex,
+                                                     Outcome outcome, Progress progress) {
+                                numCells[0]++;
+                            }
+                        });
+                    });
+            assertEquals(20, Metrics.getCounter("feat_cells_run_total") - numRun);
+            assertEquals(40, numCells[0]);
+            assertEquals(List.of(Set.of(6, 7), Set.of(0, 1, 2, 4, 6, 7), Set.of(6, 7),
+                    Set.of(0, 1, 2, 6, 7), Set.of(4, 6, 7)), results.getCaseToFiles());
+            assertEquals(Set.of(0, 1, 2, 4, 6, 7), results.getWrongSet());
+        }
+    }
+
+    /**
+     * Tests that turning deduplication off runs every implementation, with the same
+     * results; checks caseToFiles and wrongSet.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(89)
+    void testRunTestsNoDeduplicate() {
+        long numRun = Metrics.getCounter("feat_cells_run_total");
+        TestResults results = runTestsHelper("func0", f0Tests, "f0duplicates",
+                "results = [0, 1, 2, 3, 4]", tester -> tester.setDeduplicate(false));
+        assertEquals(40, Metrics.getCounter("feat_cells_run_total") - numRun);
+        assertEquals(List.of(Set.of(6, 7), Set.of(0, 1, 2, 4, 6, 7), Set.of(6, 7),
+                Set.of(0, 1, 2, 6, 7), Set.of(4, 6, 7)), results.getCaseToFiles());
+        assertEquals(Set.of(0, 1, 2, 4, 6, 7), results.getWrongSet());
+    }
+
+    /**
+     * Tests that a Tester working in a scratch directory leaves both the implementations
+     * and the solution untouched in every mode, and that closing it deletes everything
+     * it wrote; checks caseToFiles.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(90)
+    void testRunTestsScratch() throws IOException {
+        String implDir = userDir + "/src/test/rice/test/pyfiles/f0duplicates";
+        String solPath = userDir + "/src/test/rice/test/pyfiles/sols/func0sol.py";
+        Path root = Files.createTempDirectory("feat-scratch");
+        Tester tester = new Tester("func0", solPath, implDir, f0Tests);
+        try {
+            writeSolContents(0);
+            Map<Path, String> before = snapshot(Paths.get(implDir));
+            tester.setScratchRoot(root.toString());
+            tester.computeExpectedResults();
+            for (ExecutionMode mode : ExecutionMode.values()) {
+                tester.setExecutionMode(mode);
+                assertEquals(List.of(Set.of(6, 7), Set.of(0, 1, 2, 4, 6, 7), Set.of(6, 7),
+                        Set.of(0, 1, 2, 6, 7), Set.of(4, 6, 7)),
+                        tester.runTests().getCaseToFiles());
+            }
+            assertEquals(before, snapshot(Paths.get(implDir)));
+            assertEquals(solContentsArray[0], Files.readString(Paths.get(solPath)));
+
+            tester.close();
+            assertEquals(Map.of(), snapshot(root));
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            tester.close();
+            Files.delete(root);
+        }
+    }
+
+    /**
+     * Tests that implementations are compiled into the bytecode cache once, keyed by
+     * their contents, and that a later run by another Tester reuses that bytecode rather
+     * than compiling them again; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(91)
+    void testRunTestsBytecodeCache() throws IOException {
+        String implDir = userDir + "/src/test/rice/test/pyfiles/f0duplicates";
+        Path root = Files.createTempDirectory("feat-scratch");
+        Path cache = Files.createTempDirectory("feat-pycache");
+        try {
+            Map<Path, Long> compiled = null;
+            for (int run = 0; run < 2; run++) {
+                try (Tester tester = new Tester("func0",
+                        userDir + "/src/test/rice/test/pyfiles/sols/func0sol.py", implDir,
+                        f0Tests)) {
+                    writeSolContents(0);
+                    tester.setScratchRoot(root.toString());
+                    tester.setBytecodeCache(cache.toString());
+                    tester.computeExpectedResults();
+                    assertEquals(List.of(Set.of(6, 7), Set.of(0, 1, 2, 4, 6, 7),
+                            Set.of(6, 7), Set.of(0, 1, 2, 6, 7), Set.of(4, 6, 7)),
+                            tester.runTests().getCaseToFiles());
+                }
+
+                // Six distinct sources, three of which were run and compile (the cache
+                // also holds the bytecode of any standard modules they imported)
+                Set<String> sources = new HashSet<>();
+                for (Path path : snapshot(cache.resolve("src")).keySet()) {
+                    sources.add(path.toString().split("\\.")[0]);
+                }
+                Map<Path, Long> modified = new HashMap<>();
+                for (Path path : snapshot(cache.resolve("pyc")).keySet()) {
+                    if (sources.contains(path.getFileName().toString().split("\\.")[0])) {
+                        modified.put(path, Files.getLastModifiedTime(
+                                cache.resolve("pyc").resolve(path)).toMillis());
+                    }
+                }
+                assertEquals(6, sources.size());
+                assertEquals(3, modified.size());
+                if (compiled != null) {
+                    assertEquals(compiled, modified);
+                }
+                compiled = modified;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            for (Path dir : List.of(cache, root)) {
+                try (var paths = Files.walk(dir)) {
+                    for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.delete(path);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that a Tester runs everything through a custom ExecutionBackend, and that it
+     * leaves closing that backend to its owner; checks expected.py and caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(92)
+    void testCustomExecutionBackend() {
+        String implDirPath = userDir + "/src/test/rice/test/pyfiles/f0oneRight";
+        List<String> evaluated = Collections.synchronizedList(new ArrayList<>());
+        boolean[] closed = {false};
+        ExecutionBackend backend = new ExecutionBackend() {
+            @Override
+            public List<String> computeExpected(List<Integer> testIndices) {
+                List<String> results = new ArrayList<>();
+                for (int i : testIndices) {
+                    results.add(String.valueOf(i * 10));
+                }
+                return results;
+            }
+
+            @Override
+            public void evaluate(String filename, List<Integer> testIndices,
+                                 OutcomeSink sink) throws IOException {
+                for (int i : testIndices) {
+                    evaluated.add(filename + ":" + i);
+                    sink.accept(i, (i == 2) ? Outcome.FAIL : Outcome.PASS);
+                }
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        try (Tester tester = new Tester("func0",
+                userDir + "/src/test/rice/test/pyfiles/sols/func0sol.py", implDirPath,
+                f0Tests)) {
+            tester.setExecutionBackend(backend);
+            tester.setDeduplicate(false);
+            tester.computeExpectedResults();
+            assertEquals("results = [0, 10, 20, 30, 40]",
+                    Files.readString(Paths.get(implDirPath + "/expected.py")));
+
+            TestResults results = tester.runTests();
+            assertEquals(List.of(Set.of(), Set.of(), Set.of(0), Set.of(), Set.of()),
+                    results.getCaseToFiles());
+            assertEquals(Set.of(0), results.getWrongSet());
+            assertEquals(List.of("impl0.py:0", "impl0.py:1", "impl0.py:2", "impl0.py:3",
+                    "impl0.py:4"), evaluated.stream().sorted().toList());
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            deletedExpected("f0oneRight");
+        }
+        assertFalse(closed[0]);
+    }
+
+    /**
+     * Tests that runTests() writes the kill matrix to a complete matrix file that agrees
+     * with the results it returns, which are read back from the file; checks caseToFiles
+     * and wrongSet.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(93)
+    void testRunTestsKillMatrixFile() throws IOException {
+        Path file = Files.createTempFile("feat-matrix", ".bin");
+        List<Set<Integer>> expected = List.of(Set.of(0), Set.of(1), Set.of(0), Set.of(1),
+                Set.of(0));
+        try {
+            TestResults results = runTestsHelper("func0", f0Tests, "f0multipleMixed",
+                    "results = [0, 1, 2, 3, 4]",
+                    tester -> tester.setKillMatrixFile(file.toString()));
+            assertNotNull(results.getKillMatrixFile());
+            assertEquals(expected, results.getCaseToFiles());
+            assertEquals(Set.of(0, 1), results.getWrongSet());
+            assertEquals(Collections.nCopies(5, Set.of()), results.getCaseToOverBudget());
+            assertEquals(expected, results.getKillMatrix().getCaseToFiles());
+            try (KillMatrixFile matrix = KillMatrixFile.open(file.toString())) {
+                assertTrue(matrix.isComplete());
+                assertEquals(5, matrix.getNumCases());
+                assertEquals(2, matrix.getNumFiles());
+                for (int caseIndex = 0; caseIndex < 5; caseIndex++) {
+                    assertEquals(f0Tests.get(caseIndex), matrix.getTestCase(caseIndex));
+                    for (int fileIndex = 0; fileIndex < 2; fileIndex++) {
+                        assertEquals(expected.get(caseIndex).contains(fileIndex),
+                                matrix.get(caseIndex, fileIndex));
+                    }
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that grade() runs the test cases in decreasing order of their kill rates in
+     * the training results, and stops each implementation at its first failure.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(94)
+    void testGrade() {
+        // Test 3 catches the most training files, then test 1, then test 4; impl0 fails
+        // tests 0, 2 and 4, and impl1 fails tests 1 and 3
+        TestResults training = new TestResults(f0Tests, List.of(Set.of(), Set.of(0, 1, 2),
+                Set.of(), Set.of(0, 1, 2, 3), Set.of(0)), Set.of(0, 1, 2, 3));
+        List<List<Object>> expected = List.of(
+                Arrays.asList("impl0.py", f0Tests.get(4), Outcome.FAIL, 3),
+                Arrays.asList("impl1.py", f0Tests.get(3), Outcome.FAIL, 1));
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            List<List<Object>> actual = new ArrayList<>();
+            runGradeHelper("f0multipleMixed", training, mode, actual);
+            assertEquals(expected, actual);
+        }
+    }
+
+    /**
+     * Tests that grade() runs every test case on a correct implementation, including
+     * those that are not in the training results.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(95)
+    void testGradeCorrect() {
+        TestResults training = new TestResults(f0Tests.subList(0, 2),
+                List.of(Set.of(0), Set.of()), Set.of(0));
+        List<List<Object>> actual = new ArrayList<>();
+        runGradeHelper("f0oneRight", training, ExecutionMode.PROCESS_PER_TEST, actual);
+        assertEquals(List.of(Arrays.asList("impl0.py", null, null, 5)), actual);
+    }
+
+    /**
+     * Tests that implementations with a syntax error are caught by every test case in
+     * every mode, and that the reason is recorded for each member of their group; checks
+     * caseToFiles and importFailures.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(96)
+    void testRunTestsPrecheckSyntaxError() {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            long numRun = Metrics.getCounter("feat_cells_run_total");
+            TestResults results = runTestsHelper("func0", f0Tests, "f0duplicates",
+                    "results = [0, 1, 2, 3, 4]", tester -> tester.setExecutionMode(mode));
+            assertEquals(20, Metrics.getCounter("feat_cells_run_total") - numRun);
+            assertEquals(Set.of(6, 7), results.getImportFailures().keySet());
+            assertTrue(results.getImportFailures().get(6).startsWith("SyntaxError: "));
+            for (Set<Integer> caught : results.getCaseToFiles()) {
+                assertTrue(caught.containsAll(Set.of(6, 7)));
+            }
+        }
+    }
+
+    /**
+     * Tests that implementations which do not define the function are caught by every
+     * test case and prechecked, while one that defines it but raises is not; checks
+     * caseToFiles and importFailures.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(97)
+    void testRunTestsPrecheckMissingFunction() {
+        long numRun = Metrics.getCounter("feat_cells_run_total");
+        TestResults results = runTestsHelper("func3", f3Tests, "f3malformed", f3resultStr,
+                tester -> { });
+        assertEquals(3 * f3Tests.size(), Metrics.getCounter("feat_cells_run_total") - numRun);
+        assertEquals(Set.of(0, 1), results.getImportFailures().keySet());
+        assertTrue(results.getImportFailures().get(0).startsWith("AttributeError: "));
+        assertTrue(results.getImportFailures().get(1).contains("func3"));
+        for (Set<Integer> caught : results.getCaseToFiles()) {
+            assertEquals(Set.of(0, 1, 2), caught);
+        }
+    }
+
+    /**
+     * Tests that adaptive concurrency cuts its limit down to one while the machine reads
+     * as overloaded, raises it again once the machine reads as idle, and that every run
+     * produces the same results as a run without it; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(98)
+    void testRunTestsAdaptiveConcurrency() {
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tests.add(new TestCase(Collections.singletonList(new PyIntObj(i))));
+        }
+        String implDir = "f0multipleMixedDeterministic";
+        String solResults = "results = [0, 1, 2, 3, 4, 5, 6, 7, 8, 9]";
+        TestResults fixed = runTestsHelper("func0", tests, implDir, solResults,
+                tester -> tester.setParallelism(6));
+
+        // Each reading also records the limit the controller is on as it adjusts it
+        double[] load = {4.0};
+        List<Double> limits = Collections.synchronizedList(new ArrayList<>());
+        Tester tester = new Tester("func0", null,
+                userDir + "/src/test/rice/test/pyfiles/" + implDir, tests);
+        tester.setParallelism(6);
+        tester.setAdaptiveConcurrency(true, () -> {
+            limits.add(Metrics.getGauge("feat_concurrency_limit"));
+            return load[0];
+        }, () -> -1);
+        try {
+            Files.writeString(Paths.get(userDir, "src/test/rice/test/pyfiles", implDir,
+                    "expected.py"), solResults);
+
+            // Two overloaded runs cut the limit from wherever it starts down to one
+            for (int run = 0; run < 2; run++) {
+                assertEquals(fixed.getCaseToFiles(), tester.runTests().getCaseToFiles());
+            }
+            assertEquals(1.0, Metrics.getGauge("feat_concurrency_limit"));
+
+            // The next run starts from one, and raises it after its first task
+            load[0] = 0;
+            limits.clear();
+            assertEquals(fixed.getCaseToFiles(), tester.runTests().getCaseToFiles());
+            assertEquals(1.0, limits.get(0));
+            assertEquals(2.0, limits.get(1));
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            deletedExpected(implDir);
+        }
+    }
+
+    /**
+     * Tests that an implementation which swallows the alarm for its budget with a bare
+     * except is interrupted again well before the Tester's own backstop in every mode,
+     * and is caught by exceeding its budget even if it then returns the right result;
+     * checks caseToFiles and caseToOverBudget.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(99)
+    void testRunTestsSwallowedAlarm() {
+        List<Set<Integer>> expected = List.of(Set.of(), Set.of(), Set.of(0), Set.of(0),
+                Set.of());
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            long start = System.nanoTime();
+            TestResults results = runTestsHelper("func0", f0Tests, "f0oneSwallowsAlarm",
+                    "results = [0, 1, 2, 3, 4]", tester -> {
+                        tester.setExecutionMode(mode);
+                        tester.setTestTimeout(300);
+                    });
+            assertTrue(System.nanoTime() - start < 4_000_000_000L, mode.toString());
+            assertEquals(expected, results.getCaseToFiles(), mode.toString());
+            assertEquals(expected, results.getCaseToOverBudget(), mode.toString());
+        }
+    }
+
+    /**
+     * Tests that a kill oracle in batch mode reports the same cells as runTests(), and
+     * asks for several test cases per file at once.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(100)
+    void testKillOracleBatch() {
+        killOracleHelper(ExecutionMode.BATCH);
+    }
+
+    /**
+     * Tests that an agent started with a different secret runs nothing, so that all of
+     * the work is done locally; checks caseToFiles.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(101)
+    void testRunTestsDistributedWrongSecret() {
+        try (WorkerAgent agent = new WorkerAgent(0, "some-other-secret")) {
+            agent.start();
+            long numRun = Metrics.getCounter("feat_cells_run_total");
+            parallelHelper(tester -> {
+                tester.setAgents(List.of(loopback(agent.getPort())), 2, AGENT_SECRET);
+                tester.setWorkUnitSize(3);
+            });
+            assertEquals(60, Metrics.getCounter("feat_cells_run_total") - numRun);
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    /**
+     * Tests that units sent to an agent which accepts them but never replies time out
+     * and are rerun on a working agent, rather than hanging the run; checks caseToFiles.
+     */
+    @Test
+    @Tag("2.0")
+    @Order(102)
+    void testRunTestsDistributedHungAgent() {
+        List<String> frames = Collections.synchronizedList(new ArrayList<>());
+        try (WorkerAgent agent = new WorkerAgent(0, AGENT_SECRET);
+             ServerSocket hung = fakeAgent(frames, false)) {
+            agent.start();
+            assertTimeoutPreemptively(Duration.ofSeconds(60),
+                    () -> parallelHelper(tester -> {
+                        tester.setAgents(List.of(loopback(hung.getLocalPort()),
+                                loopback(agent.getPort())), 2, AGENT_SECRET);
+                        tester.setWorkUnitSize(3);
+                        tester.setTestTimeout(500);
+                    }));
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    /**
+     * Tests that the units an implementation is split into share its budget, rather
+     * than each getting all of it, and that every connection presents the secret.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(103)
+    void testRunTestsDistributedBudgetShare() {
+        List<String> frames = Collections.synchronizedList(new ArrayList<>());
+        try (ServerSocket agent = fakeAgent(frames, true)) {
+            runTestsHelper("func0", f0Tests, "f0oneRight", "results = [0, 1, 2, 3, 4]",
+                    tester -> {
+                        tester.setAgents(List.of(loopback(agent.getLocalPort())),
+                                1, AGENT_SECRET);
+                        tester.setWorkUnitSize(2);
+                        tester.setImplementationTimeout(1000);
+                    });
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail();
+        }
+
+        List<Long> budgets = new ArrayList<>();
+        for (String frame : frames) {
+            JSONObject json = new JSONObject(frame);
+            if (json.has("expected")) {
+                assertEquals(AGENT_SECRET, json.getString("secret"));
+            } else {
+                budgets.add(json.getLong("implementationTimeout"));
+            }
+        }
+        Collections.sort(budgets);
+        assertEquals(List.of(200L, 400L, 400L), budgets);
+    }
+
+    /**
+     * Tests that the reasons why implementations failed to import are still reported
+     * when every outcome is served from the result cache or the journal, without
+     * running any test case; checks importFailures.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(104)
+    void testRunTestsPrecheckCached() throws IOException {
+        Path cacheFile = Files.createTempFile("feat-cache", ".txt");
+        Path journalFile = Files.createTempFile("feat-journal", ".log");
+        try {
+            for (int run = 0; run < 2; run++) {
+                long numRun = Metrics.getCounter("feat_cells_run_total");
+                TestResults cached;
+                TestResults journaled;
+                try (ResultCache cache = new ResultCache(cacheFile.toString())) {
+                    cached = runTestsHelper("func0", f0Tests, "f0duplicates",
+                            "results = [0, 1, 2, 3, 4]",
+                            tester -> tester.setResultCache(cache));
+                }
+                try (Journal journal = new Journal(journalFile.toString())) {
+                    journaled = runTestsHelper("func0", f0Tests, "f0duplicates",
+                            "results = [0, 1, 2, 3, 4]",
+                            tester -> tester.setJournal(journal));
+                }
+                assertEquals((run == 0) ? 40 : 0,
+                        Metrics.getCounter("feat_cells_run_total") - numRun);
+                for (TestResults results : List.of(cached, journaled)) {
+                    assertEquals(Set.of(6, 7), results.getImportFailures().keySet());
+                    assertTrue(results.getImportFailures().get(6)
+                            .startsWith("SyntaxError: "));
+                }
+            }
+        } finally {
+            Files.delete(cacheFile);
+            Files.delete(journalFile);
+        }
+    }
+
+    /**
+     * Tests that an implementation whose import spins where the wrapper's own timer
+     * cannot interrupt it exceeds its budget on every test case, and is not prechecked
+     * since it failed none of them; checks caseToFiles and caseToOverBudget.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(105)
+    void testRunTestsPrecheckTimeout() {
+        List<Set<Integer>> expected = Collections.nCopies(5, Set.of(0));
+        TestResults results = assertTimeoutPreemptively(Duration.ofSeconds(60),
+                () -> runTestsHelper("func0", f0Tests, "f0importHangs",
+                        "results = [0, 1, 2, 3, 4]",
+                        tester -> tester.setTestTimeout(300)));
+        assertEquals(expected, results.getCaseToFiles());
+        assertEquals(expected, results.getCaseToOverBudget());
+        assertEquals(Map.of(), results.getImportFailures());
+    }
+
+    /**
+     * Tests that the precheck of an implementation that failed every test case is
+     * charged to the implementation's budget when no test timeout is configured, so that
+     * an import which only spins under the precheck is killed well before the precheck's
+     * own upper bound; checks caseToFiles and importFailures.
+     */
+    @Test
+    @Tag("1.0")
+    @Order(106)
+    void testRunTestsPrecheckCharged() {
+        long start = System.nanoTime();
+        TestResults results = assertTimeoutPreemptively(Duration.ofSeconds(60),
+                () -> runTestsHelper("func0", f0Tests, "f0precheckHangs",
+                        "results = [0, 1, 2, 3, 4]",
+                        tester -> tester.setImplementationTimeout(1000)));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(8));
+        assertEquals(Collections.nCopies(5, Set.of(0)), results.getCaseToFiles());
+        assertEquals(Map.of(), results.getImportFailures());
+    }
+
+    /**
+     * Sets up the test cases for function f0, which takes one simple argument.
+     */
+    private static void setUpF0Tests() {
+        // Create five test cases with one argument that's an integer
+        for (int i = 0; i < 5; i++) {
+            f0Tests.add(new TestCase(Collections.singletonList(new PyIntObj(i))));
+        }
+    }
+
+    /**
+     * Sets up the test cases for function f1, which takes multiple simple arguments.
+     */
+    private static void setUpF1Tests() {
+        // Create eight test cases with (bool, int, float) arguments
+        for (boolean b : new boolean[]{true, false}) {
+            for (int i = 0; i < 2; i++) {
+                for (double f : new double[]{4.4, -6.07}) {
+                    f1Tests.add(new TestCase(List.of(new PyBoolObj(b), new PyIntObj(i), new PyFloatObj(f))));
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets up the test cases for function f2, which takes one nested argument.
+     */
+    private static void setUpF2Tests() {
+        // Create nine possible test cases with (dict(string:int)) arguments
+        for (int val1 = -3; val1 < 0; val1++) {
+            for (int val2 = -1; val2 < 2; val2++) {
+                f2Tests.add(new TestCase(Collections.singletonList(new PyDictObj<>(
+                        Map.of(new PyStringObj("key1"), new PyIntObj(val1),
+                                new PyStringObj("key2"), new PyIntObj(val2))))));
+            }
+        }
+    }
+
+    /**
+     * Sets up the test cases for function f3, which takes multiple nested arguments.
+     */
+    private static void setUpF3Tests() {
+        // Create two possible set(int)s
+        PySetObj<PyIntObj> set1 = new PySetObj<>(Set.of());
+        PySetObj<PyIntObj> set2 = new PySetObj<>(Set.of(new PyIntObj(3)));
+
+        // Create two possible list(int)s
+        PyListObj<PyIntObj> list1 =
+                new PyListObj<>(Collections.singletonList(new PyIntObj(4)));
+        PyListObj<PyIntObj> list2 =
+                new PyListObj<>(List.of(new PyIntObj(4), new PyIntObj(4)));
+
+        // Create two possible tuple(int)s
+        PyTupleObj<PyIntObj> tup1 =
+                new PyTupleObj<>(Collections.singletonList(new PyIntObj(5)));
+        PyTupleObj<PyIntObj> tup2 =
+                new PyTupleObj<>(List.of(new PyIntObj(5), new PyIntObj(5)));
+
+        // Create eight test cases with (set(int), list(int), tuple(int)) arguments
+        for (PySetObj<?> set : new PySetObj[]{set1, set2}) {
+            for (PyListObj<?> list : new PyListObj[]{list1, list2}) {
+                for (PyTupleObj<?> tup : new PyTupleObj[]{tup1, tup2}) {
+                    f3Tests.add(new TestCase(List.of(set, list, tup)));
+                }
+            }
+        }
+
+        f3resultStr =
+                "results = [('5', '6'), ('5', '6'), ('4', '5'), ('5', '6'), ('3', '4'), "
+                        + "('3', '4'), ('3', '4'), ('3', '4')]";
+    }
+
+    /**
+     * Helper function for testing the computeExpectedResults() function; instantiates a
+     * Tester object, computes the expected results, and compares those to the
+     * manually-created expected results.
+     *
+     * @param funcName the name of the function under test
+     * @param tests    the set of tests to be run
+     * @param solName  the filename of the reference solution, which can be found in * the
+     *                 test.rice.test.pyfiles.sols package
+     * @param expected the expected (expected) results
+     */
+    private static void expectedHelper(String funcName, List<TestCase> tests, String solName, List<String> expected) {
+        expectedHelper(funcName, tests, solName, expected, tester -> { });
+    }
+
+    /**
+     * Same as the helper above, but applies the input configuration to the Tester before
+     * computing the expected results.
+     *
+     * @param funcName  the name of the function under test
+     * @param tests     the set of tests to be run
+     * @param solName   the filename of the reference solution
+     * @param expected  the expected (expected) results
+     * @param configure the configuration to apply to the Tester
+     */
+    private static void expectedHelper(String funcName, List<TestCase> tests, String solName,
+                                       List<String> expected, Consumer<Tester> configure) {
+        int solNum = Integer.parseInt(String.valueOf(funcName.charAt(funcName.length() - 1)));
+
+        // Note that this is hard-coded to use the same directory for its expected.py output regardless of which
+        // function is under test. This is because we are testing computeExpectedResults() and runTests()
+        // independently, so runTests() will never actually use the expected.py that is written here.
+        Tester tester = new Tester(funcName, userDir +
+                "/src/test/rice/test/pyfiles/sols/" + solName, userDir +
+                "/src/test/rice/test/pyfiles/f0oneRight", tests);
+        configure.accept(tester);
+        try {
+            // Compute the actual results and compare to the expected
+            writeSolContents(solNum);
+            List<String> actual = tester.computeExpectedResults();
+            assertEquals(expected, actual);
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    /**
+     * Helper function for testing runTests() on several threads; runs ten tests on the
+     * six implementations in f0multipleMixedDeterministic (each of which is wrong on a
+     * known set of inputs) and checks caseToFiles.
+     *
+     * @param mode the execution mode to be used
+     */
+    private static void parallelHelper(ExecutionMode mode) {
+        parallelHelper(tester -> {
+            tester.setExecutionMode(mode);
+            tester.setParallelism(4);
+        });
+    }
+
+    /**
+     * Helper function for running ten tests on the six implementations in
+     * f0multipleMixedDeterministic (each of which is wrong on a known set of inputs)
+     * and checking caseToFiles.
+     *
+     * @param configure the configuration to apply to the Tester
+     */
+    private static void parallelHelper(Consumer<Tester> configure) {
+        int[][] wrongInputs = {{1, 2, 5, 6}, {1, 2, 4, 6}, {6, 7, 8, 9}, {2, 3}, {2, 4},
+                {4, 5, 7}};
+        List<TestCase> tests = new ArrayList<>();
+        List<Set<Integer>> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tests.add(new TestCase(Collections.singletonList(new PyIntObj(i))));
+            expected.add(new HashSet<>());
+        }
+        for (int file = 0; file < wrongInputs.length; file++) {
+            for (int input : wrongInputs[file]) {
+                expected.get(input).add(file);
+            }
+        }
+        runTestsHelper("func0", tests, "f0multipleMixedDeterministic",
+                "results = [0, 1, 2, 3, 4, 5, 6, 7, 8, 9]", Set.of(0, 1, 2, 3, 4, 5),
+                expected, 1, configure);
+    }
+
+    /**
+     * Returns the address of the input port on the loopback interface, where the agents
+     * in these tests listen.
+     *
+     * @param port the port
+     * @return the address of the port
+     */
+    private static InetSocketAddress loopback(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Starts a fake agent, which records every frame sent to it and either replies to
+     * each request with every test case passing or never replies at all.
+     *
+     * @param frames the list to which each frame received is added
+     * @param reply  whether to reply to requests
+     * @return the socket the fake agent listens on, which stops it once closed
+     * @throws IOException if the socket cannot be bound
+     */
+    private static ServerSocket fakeAgent(List<String> frames, boolean reply)
+            throws IOException {
+        ServerSocket server = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(() -> {
+            while (true) {
+                try {
+                    Socket socket = server.accept();
+                    Thread connection = new Thread(() -> {
+                        try (socket) {
+                            InputStream in = socket.getInputStream();
+                            OutputStream out = socket.getOutputStream();
+                            frames.add(PythonWorker.readFrame(in));
+                            while (true) {
+                                String frame = PythonWorker.readFrame(in);
+                                frames.add(frame);
+                                if (reply) {
+                                    int numTests = new JSONObject(frame)
+                                            .getJSONArray("tests").length();
+                                    PythonWorker.writeFrame(out, new JSONObject()
+                                            .put("outcomes", Collections.nCopies(numTests,
+                                                    Outcome.PASS.name())).toString());
+                                }
+                            }
+                        } catch (IOException e) {
+                            // The coordinator hung up
+                        }
+                    });
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+
+    /**
+     * Helper function for testing runTests() with agents; runs parallelHelper's matrix on
+     * a mix of working agents and broken ones, which accept connections but drop them
+     * without reading anything.
+     *
+     * @param mode      the execution mode to be used
+     * @param numAgents the number of working agents
+     * @param numBroken the number of broken agents
+     */
+    private static void distributedHelper(ExecutionMode mode, int numAgents,
+                                          int numBroken) {
+        List<WorkerAgent> agents = new ArrayList<>();
+        List<ServerSocket> broken = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        try {
+            for (int i = 0; i < numAgents; i++) {
+                WorkerAgent agent = new WorkerAgent(0, AGENT_SECRET);
+                agent.start();
+                agents.add(agent);
+                addresses.add(loopback(agent.getPort()));
+            }
+            for (int i = 0; i < numBroken; i++) {
+                ServerSocket server = new ServerSocket(0);
+                Thread thread = new Thread(() -> {
+                    while (true) {
+                        try (Socket socket = server.accept()) {
+                            socket.setSoLinger(true, 0);
+                        } catch (IOException e) {
+                            return;
+                        }
+                    }
+                });
+                thread.setDaemon(true);
+                thread.start();
+                broken.add(server);
+                addresses.add(loopback(server.getLocalPort()));
+            }
+            parallelHelper(tester -> {
+                tester.setExecutionMode(mode);
+                tester.setAgents(addresses, 2, AGENT_SECRET);
+                tester.setWorkUnitSize(3);
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            agents.forEach(WorkerAgent::close);
+            for (ServerSocket server : broken) {
+                try {
+                    server.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper function for testing TestListeners; runs ten tests on the six
+     * implementations in f0multipleMixedDeterministic while recording everything the
+     * listener hears, and checks that it matches the final results.
+     *
+     * @param configure the configuration to apply to the Tester
+     */
+    private static void listenerHelper(Consumer<Tester> configure) {
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tests.add(new TestCase(Collections.singletonList(new PyIntObj(i))));
+        }
+        Map<List<Integer>, Outcome> cells = new HashMap<>();
+        Map<Integer, Outcome[]> files = new HashMap<>();
+        List<Progress> progress = new ArrayList<>();
+        TestListener listener = new TestListener() {
+            @Override
+            public void cellFinished(int fileIndex, int testIndex, Outcome outcome,
+                                     Progress cellProgress) {
+                assertNull(cells.put(List.of(fileIndex, testIndex), outcome));
+                progress.add(cellProgress);
+            }
+
+            @Override
+            public void implementationFinished(int fileIndex, String filename,
+                                               Outcome[] outcomes, Progress fileProgress) {
+                assertNull(files.put(fileIndex, outcomes));
+            }
+        };
+        TestResults results = runTestsHelper("func0", tests, "f0multipleMixedDeterministic",
+                "results = [0, 1, 2, 3, 4, 5, 6, 7, 8, 9]", configure.andThen(
+                        tester -> tester.setTestListener(listener)));
+
+        assertEquals(60, cells.size());
+        assertEquals(6, files.size());
+        for (Map.Entry<List<Integer>, Outcome> cell : cells.entrySet()) {
+            int fileIndex = cell.getKey().get(0);
+            int testIndex = cell.getKey().get(1);
+            assertEquals(results.getCaseToFiles().get(testIndex).contains(fileIndex),
+                    cell.getValue() != Outcome.PASS);
+            assertEquals(cell.getValue(), files.get(fileIndex)[testIndex]);
+        }
+        Progress last = progress.get(progress.size() - 1);
+        assertEquals(60, last.getCellsDone());
+        assertEquals(60, last.getTotalCells());
+        assertEquals(6, last.getFilesDone());
+        assertEquals(0, last.getEtaMillis());
+    }
+
+    /**
+     * Helper function for testing journals; runs ten tests on the six implementations in
+     * f0multipleMixedDeterministic on four threads, journaling to the input file.
+     *
+     * @param file the path to the journal file
+     * @param mode the execution mode to be used
+     * @return the results of running the tester
+     * @throws IOException if the journal cannot be opened or closed
+     */
+    private static TestResults journalHelper(Path file, ExecutionMode mode)
+            throws IOException {
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tests.add(new TestCase(Collections.singletonList(new PyIntObj(i))));
+        }
+        try (Journal journal = new Journal(file.toString())) {
+            return runTestsHelper("func0", tests, "f0multipleMixedDeterministic",
+                    "results = [0, 1, 2, 3, 4, 5, 6, 7, 8, 9]", tester -> {
+                        tester.setExecutionMode(mode);
+                        tester.setParallelism(4);
+                        tester.setJournal(journal);
+                    });
+        }
+    }
+
+    /**
+     * Helper function for testing the time and memory limits; runs the implementation in
+     * f0oneOverBudget, which exceeds its budget in a different way on every input but 0,
+     * and checks that each of those test cases caught it by exceeding its budget.
+     *
+     * @param mode the execution mode to be used
+     */
+    private static void overBudgetHelper(ExecutionMode mode) {
+        List<Set<Integer>> expected = List.of(Set.of(), Set.of(0), Set.of(0), Set.of(0),
+                Set.of(0));
+        TestResults results = runTestsHelper("func0", f0Tests, "f0oneOverBudget",
+                "results = [0, 1, 2, 3, 4]", tester -> {
+                    tester.setExecutionMode(mode);
+                    tester.setTestTimeout(500);
+                    tester.setResourceLimits(0, 1L << 30);
+                });
+        assertEquals(expected, results.getCaseToFiles());
+        assertEquals(expected, results.getCaseToOverBudget());
+    }
+
+    /**
+     * Helper function for testing runTests() when more than one of its outputs needs to be
+     * checked; runs the tester and returns everything it produced.
+     *
+     * @param funcName   name of the function under test
+     * @param tests      the set of tests to be run
+     * @param implDir    the path to the directory containing the buggy implementations
+     * @param solResults the expected contents of expected.py, assuming
+     *                   computeExpectedResults() is correct
+     * @param configure  the configuration to apply to the Tester
+     * @return the results of running the tester
+     */
+    private static TestResults runTestsHelper(String funcName, List<TestCase> tests,
+                                              String implDir, String solResults,
+                                              Consumer<Tester> configure) {
+        Tester tester = new Tester(funcName, null,
+                userDir + "/src/test/rice/test/pyfiles/" + implDir, tests);
+        configure.accept(tester);
+        try {
+            // Generate the expected.py file, as above
+            FileWriter writer = new FileWriter(userDir +
+                    "/src/test/rice/test/pyfiles/" + implDir + "/expected.py");
+            writer.write(solResults);
+            writer.close();
+            return tester.runTests();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return fail();
+        } finally {
+            deletedExpected(implDir);
+        }
+    }
+
+    /**
+     * Helper function for testing createKillOracle(); asks for every cell of the results
+     * of running f0multipleMixed2 (whose file 0 is wrong) on f0Tests, then for a single
+     * cell, and then for several test cases on each file at once.
+     *
+     * @param mode the execution mode to be used
+     */
+    private static void killOracleHelper(ExecutionMode mode) {
+        String implDir = "f0multipleMixed2";
+        Tester tester = new Tester("func0", null,
+                userDir + "/src/test/rice/test/pyfiles/" + implDir, f0Tests);
+        tester.setExecutionMode(mode);
+        tester.setParallelism(2);
+        try {
+            FileWriter writer = new FileWriter(userDir +
+                    "/src/test/rice/test/pyfiles/" + implDir + "/expected.py");
+            writer.write("results = [0, 1, 2, 3, 4]");
+            writer.close();
+
+            try (KillOracle oracle = tester.createKillOracle()) {
+                assertEquals(f0Tests.size(), oracle.getNumCases());
+                assertEquals(2, oracle.getNumFiles());
+                assertEquals(mode == ExecutionMode.BATCH, oracle.getBatchWidth() > 1);
+                List<Set<Integer>> actual = new ArrayList<>();
+                for (int i = 0; i < oracle.getNumCases(); i++) {
+                    actual.add(oracle.getCaught(i, Set.of(0, 1)));
+                }
+                assertEquals(List.of(Set.of(0), Set.of(), Set.of(0), Set.of(), Set.of(0)),
+                        actual);
+                assertEquals(Set.of(), oracle.getCaught(0, Set.of(1)));
+                assertEquals(Map.of(0, Set.of(0, 2, 4)), oracle.getCaught(
+                        Map.of(0, Set.of(0, 1, 2, 3, 4), 1, Set.of(0, 2))));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            deletedExpected(implDir);
+        }
+    }
+
+    /**
+     * Helper function which hashes every regular file under a directory.
+     *
+     * @param dir the directory to be read
+     * @return the hash of the contents of each file, by its path relative to dir
+     * @throws IOException if something goes wrong
+     */
+    private static Map<Path, String> snapshot(Path dir) throws IOException {
+        Map<Path, String> hashes = new HashMap<>();
+        try (var paths = Files.walk(dir)) {
+            for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                hashes.put(dir.relativize(path), ResultCache.hash(Files.readAllBytes(path)));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Helper function for writing the contents of a solution file from scratch.
+     *
+     * @param solNum the number of the solution to be written; valid numbers are {0, 1, 2, 3}
+     * @throws IOException if something goes wrong
+     */
+   private static void writeSolContents(int solNum) throws IOException {
+        // Get path and contents
+        String solPath = userDir + "/src/test/rice/test/pyfiles/sols/func" + solNum + "sol.py";
+        String solContents = solContentsArray[solNum];
+
+        // Write solution file from scratch
+        FileWriter writer = new FileWriter(solPath);
+        writer.write(solContents);
+        writer.close();
+    }
+
+    /**
+     * Helper function for testing the runTests() function; instantiates a Tester object,
+     * fakes computation of the expected results, gets the actual results, and compares
+     * both the wrongSet and caseToFile mappings between the actual and expected results.
+     *
+     * @param funcName      name of the function under test
+     * @param tests         the set of tests to be run
+     * @param implDir       the path to the directory containing the buggy implementations
+     * @param solResults    the expected contents of expected.py, assuming
+     *                      computeExpectedResults() is correct
+     * @param expWrongSet   the expected wrongSet
+     * @param expResults    the expected caseToFile list
+     * @param outputToCheck an integer representing which output to check
+     */
+    private static void runTestsHelper(String funcName, List<TestCase> tests, String implDir,
+                                String solResults, Set<Integer> expWrongSet, List<Set<Integer>> expResults,
+                                int outputToCheck) {
+        runTestsHelper(funcName, tests, implDir, solResults, expWrongSet, expResults,
+                outputToCheck, tester -> { });
+    }
+
+    /**
+     * Same as the helper above, but applies the input configuration to the Tester before
+     * running it.
+     *
+     * @param funcName      name of the function under test
+     * @param tests         the set of tests to be run
+     * @param implDir       the path to the directory containing the buggy implementations
+     * @param solResults    the expected contents of expected.py, assuming
+     *                      computeExpectedResults() is correct
+     * @param expWrongSet   the expected wrongSet
+     * @param expResults    the expected caseToFile list
+     * @param outputToCheck an integer representing which output to check
+     * @param configure     the configuration to apply to the Tester
+     */
+    private static void runTestsHelper(String funcName, List<TestCase> tests, String implDir,
+                                String solResults, Set<Integer> expWrongSet, List<Set<Integer>> expResults,
+                                int outputToCheck, Consumer<Tester> configure) {
+        Tester tester = new Tester(funcName, null,
+                userDir + "/src/test/rice/test/pyfiles/" + implDir, tests);
+        configure.accept(tester);
+        try {
+            // Generate the expected.py file (to fake computing the expected results
+            // without creating a dependency on computeExpectedResults())
+            FileWriter writer = new FileWriter(userDir +
+                    "/src/test/rice/test/pyfiles/" + implDir + "/expected.py");
+            writer.write(solResults);
+            writer.close();
+
+            // Run the tester
+            TestResults results = tester.runTests();
+            if (outputToCheck == 0) {
+                assertEquals(expWrongSet, results.getWrongSet());
+            } else if (outputToCheck == 1) {
+                assertEquals(expResults, results.getCaseToFiles());
+            } else {
+                for (int i = 0; i < tests.size(); i++) {
                     assertEquals(tests.get(i), results.getTestCase(i));
                 }
             }
@@ -1079,7 +2814,38 @@ class TesterTest {
     }
 
     /**
-     * Deletes the file containing the expected results.
+     * Helper function for testing grade(); grades f0Tests on the input implementations,
+     * faking the expected results as runTestsHelper() does.
+     *
+     * @param implDir  the path to the directory containing the buggy implementations
+     * @param training the results of testing that the kill rates are taken from
+     * @param mode     the execution mode to grade in
+     * @param actual   the list to add the filename, first failure, outcome and number
+     *                 of tests run of each verdict to
+     */
+    private static void runGradeHelper(String implDir, TestResults training,
+                                       ExecutionMode mode, List<List<Object>> actual) {
+        Tester tester = new Tester("func0", null,
+                userDir + "/src/test/rice/test/pyfiles/" + implDir, f0Tests);
+        tester.setExecutionMode(mode);
+        try {
+            Files.writeString(Paths.get(userDir, "/src/test/rice/test/pyfiles/", implDir,
+                    "expected.py"), "results = [0, 1, 2, 3, 4]");
+            for (Verdict verdict : tester.grade(training)) {
+                actual.add(Arrays.asList(verdict.getFilename(), verdict.getFirstFailure(),
+                        verdict.getOutcome(), verdict.getTestsRun()));
+                assertEquals(verdict.getFirstFailure() == null, verdict.isCorrect());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            deletedExpected(implDir);
+        }
+    }
+
+    /**
+     * Deletes the files containing the expected results.
      *
      * @param implDir the path to the directory containing the expected results
      */
@@ -1087,5 +2853,8 @@ class TesterTest {
         File expFile = new File(userDir + "/src/test/rice/test/pyfiles/" +
                 implDir + "/expected.py");
         expFile.delete();
+        File indexFile = new File(userDir + "/src/test/rice/test/pyfiles/" +
+                implDir + "/expected.idx");
+        indexFile.delete();
     }
 }
\ No newline at end of file
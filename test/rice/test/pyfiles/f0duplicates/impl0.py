@@ -0,0 +1,4 @@
+def func0(intval):
+    if intval in [1, 3]:
+        return intval + 1
+    return intval
\ No newline at end of file
@@ -0,0 +1,7 @@
+# Same as impl0, but with different comments and layout
+def func0( intval ):
+
+    if intval in [1,
+                  3]:  # off by one
+        return intval + 1
+    return (intval)
@@ -0,0 +1,2 @@
+def func0(intval):
+    return intval
\ No newline at end of file
@@ -0,0 +1,6 @@
+# Spins entirely in C at import time, so only the Tester itself can stop it
+TOTAL = sum(range(10 ** 15))
+
+
+def func0(intval):
+    return intval
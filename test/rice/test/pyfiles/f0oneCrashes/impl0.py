@@ -0,0 +1,7 @@
+import os
+
+
+def func0(intval):
+    if intval == 2:
+        os._exit(1)
+    return intval
@@ -0,0 +1,9 @@
+calls = []
+
+
+def func0(intval):
+    # Only right the first time it is called within a process
+    calls.append(intval)
+    if len(calls) > 1:
+        return intval + 1
+    return intval
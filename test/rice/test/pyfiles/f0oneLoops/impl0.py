@@ -0,0 +1,5 @@
+def func0(intval):
+    if intval == 1:
+        while True:
+            pass
+    return intval
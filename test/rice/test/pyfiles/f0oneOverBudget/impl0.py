@@ -0,0 +1,15 @@
+import time
+
+
+def func0(intval):
+    if intval == 1:
+        while True:
+            pass
+    if intval == 2:
+        return len(bytearray(1 << 34))
+    if intval == 3:
+        time.sleep(1000)
+    if intval == 4:
+        # Runs entirely in C, so only the Tester itself can stop it
+        return sum(range(10 ** 15))
+    return intval
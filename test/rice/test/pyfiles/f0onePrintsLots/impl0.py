@@ -0,0 +1,8 @@
+import sys
+
+
+def func0(intval):
+    for _ in range(20000):
+        print("the quick brown fox jumps over the lazy dog " * 4)
+        print("and then complains about it", file=sys.stderr)
+    return intval
@@ -0,0 +1,13 @@
+def func0(intval):
+    if intval in [2, 3]:
+        # Swallows the first alarm, then either loops again or returns as if nothing
+        # had happened
+        try:
+            while True:
+                pass
+        except:
+            pass
+        if intval == 2:
+            while True:
+                pass
+    return intval
@@ -0,0 +1,6 @@
+import sys
+
+# Never defines func0, so every test case fails quickly, but spins in C when imported by
+# the precheck, so that only the Tester itself can stop it
+if "--precheck" in sys.argv:
+    TOTAL = sum(range(10 ** 15))